@@ -0,0 +1,60 @@
+package com.erp.rag.ragplatform.rag.audit;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One change to the RAG query audit trail ({@code rag_queries} / {@code rag_query_documents}).
+ * <p>
+ * Story 1.5 – AC7: Events are queued by {@link QueryAuditLog} and applied in order by
+ * {@link QueryAuditWriter}. They are plain data so they can be spilled to disk as JSON lines
+ * and replayed later without loss.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = QueryAuditEvent.QueryStarted.class, name = "started"),
+        @JsonSubTypes.Type(value = QueryAuditEvent.QueryCompleted.class, name = "completed"),
+        @JsonSubTypes.Type(value = QueryAuditEvent.QueryFailed.class, name = "failed")
+})
+public sealed interface QueryAuditEvent {
+
+    /**
+     * @return id of the {@code rag_queries} row the event applies to
+     */
+    Long queryId();
+
+    /**
+     * A query was received; inserts the {@code pending} row.
+     */
+    record QueryStarted(Long queryId, Long companyId, UUID userId, String queryText,
+            float[] queryEmbedding, String language, OffsetDateTime createdAt) implements QueryAuditEvent {
+    }
+
+    /**
+     * A query finished; marks the row {@code complete} and records the retrieved documents.
+     */
+    record QueryCompleted(Long queryId, Integer retrievalLatencyMs, Integer totalLatencyMs,
+            OffsetDateTime completedAt, List<RetrievedDocument> documents) implements QueryAuditEvent {
+    }
+
+    /**
+     * A query failed; marks the row {@code error}.
+     */
+    record QueryFailed(Long queryId, String errorMessage, OffsetDateTime completedAt) implements QueryAuditEvent {
+    }
+
+    /**
+     * One {@code rag_query_documents} row.
+     */
+    record RetrievedDocument(Long documentVectorId, int rank, Double relevanceScore, Integer tokensUsed,
+            String excerpt) {
+    }
+}
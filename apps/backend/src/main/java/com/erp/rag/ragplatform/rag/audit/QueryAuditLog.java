@@ -0,0 +1,471 @@
+package com.erp.rag.ragplatform.rag.audit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.dao.UncategorizedDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for the RAG query audit trail.
+ * <p>
+ * Story 1.5 – AC7: Keeps audit I/O off the query path. Callers {@link #submit} events into a
+ * bounded in-memory queue; a single background writer drains it in batches through
+ * {@link QueryAuditWriter}. Query ids are handed out from pre-allocated blocks
+ * ({@link #nextQueryId()}), so a query can be referenced before its row exists.
+ * </p>
+ * <p>
+ * Nothing is dropped (Circular 200 requires a complete 10-year trail):
+ * <ul>
+ * <li>When the queue is full, {@link #submit} waits at most {@code rag.audit.submit-timeout-ms}
+ * for the writer to catch up, then throws {@link AuditUnavailableException} so the query fails
+ * instead of running unaudited or hanging.</li>
+ * <li>When a batch cannot be written and a spill file is configured
+ * ({@code rag.audit.spill-file}), the batch is appended to it as JSON lines, and every later
+ * batch follows it there until the file has been replayed, so events stay in order.
+ * Without a spill file the writer retries the batch with backoff.</li>
+ * <li>Only transient failures (connection loss, timeouts, deadlocks) are retried. A batch the
+ * database rejects outright (constraint or data errors) is split in halves until the
+ * offending events are isolated; the rest are written and each rejected event is quarantined:
+ * appended to {@code rag.audit.quarantine-file}, or logged as JSON if none is configured, and
+ * counted in {@code rag_audit_events_quarantined_total}. Spill file lines that no longer
+ * parse are quarantined the same way, so one bad event cannot stall the writer or replay.</li>
+ * <li>On shutdown the queue is drained and the spill file replayed before the writer
+ * exits; anything still unwritable stays in the spill file for the next start.</li>
+ * </ul>
+ * Only the writer thread touches the spill file.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Component
+public class QueryAuditLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryAuditLog.class);
+
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000;
+
+    private final QueryAuditWriter writer;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<QueryAuditEvent> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int idBlockSize;
+    private final long shutdownTimeoutMs;
+    private final Path spillFile;
+    private final Path quarantineFile;
+    private final long submitTimeoutMs;
+    private final Deque<Long> idPool = new ArrayDeque<>();
+    private final Counter writtenCounter;
+    private final Counter spilledCounter;
+    private final Counter failedCounter;
+    private final Counter quarantinedCounter;
+    private final Counter rejectedCounter;
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+    private long retryBackoffMs;
+    private long nextReplayAt;
+
+    public QueryAuditLog(QueryAuditWriter writer,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${rag.audit.queue-capacity:10000}") int queueCapacity,
+            @Value("${rag.audit.batch-size:200}") int batchSize,
+            @Value("${rag.audit.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${rag.audit.id-block-size:50}") int idBlockSize,
+            @Value("${rag.audit.shutdown-timeout-ms:30000}") long shutdownTimeoutMs,
+            @Value("${rag.audit.spill-file:}") String spillFile,
+            @Value("${rag.audit.quarantine-file:}") String quarantineFile,
+            @Value("${rag.audit.submit-timeout-ms:1000}") long submitTimeoutMs) {
+        this.writer = writer;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.idBlockSize = Math.max(1, idBlockSize);
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.spillFile = spillFile == null || spillFile.isBlank() ? null : Path.of(spillFile);
+        this.quarantineFile = quarantineFile == null || quarantineFile.isBlank() ? null : Path.of(quarantineFile);
+        this.submitTimeoutMs = Math.max(0, submitTimeoutMs);
+
+        Gauge.builder("rag_audit_queue_depth", queue, BlockingQueue::size)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("rag_audit_events_written_total")
+                .description("Audit events written to the database")
+                .register(meterRegistry);
+        this.spilledCounter = Counter.builder("rag_audit_events_spilled_total")
+                .description("Audit events spilled to the local file")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("rag_audit_write_failures_total")
+                .description("Failed audit batch writes")
+                .register(meterRegistry);
+        this.quarantinedCounter = Counter.builder("rag_audit_events_quarantined_total")
+                .description("Audit events the database rejected permanently, set aside")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("rag_audit_events_rejected_total")
+                .description("Audit events refused because the queue stayed full")
+                .register(meterRegistry);
+
+        this.writerThread = Thread.ofVirtual().name("query-audit-writer").start(this::run);
+    }
+
+    /**
+     * Next {@code rag_queries} id, taken from a block reserved in the database.
+     *
+     * @return query id
+     */
+    public synchronized long nextQueryId() {
+        if (idPool.isEmpty()) {
+            idPool.addAll(writer.allocateIds(idBlockSize));
+        }
+        return idPool.removeFirst();
+    }
+
+    /**
+     * Queue an event for writing. Blocks only while the queue is full, and at most
+     * {@code rag.audit.submit-timeout-ms}.
+     *
+     * @param event audit event
+     * @throws AuditUnavailableException if the queue stays full for the whole timeout
+     */
+    public void submit(QueryAuditEvent event) {
+        if (!running) {
+            writeAfterShutdown(event);
+            return;
+        }
+        try {
+            if (!queue.offer(event)) {
+                logger.warn("Audit queue full ({} events), waiting for writer", queue.size());
+                if (!queue.offer(event, submitTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    rejectedCounter.increment();
+                    throw new AuditUnavailableException("Audit queue still full after " + submitTimeoutMs
+                            + "ms; event for query " + event.queryId() + " not accepted");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeAfterShutdown(event);
+        }
+    }
+
+    /**
+     * Stop accepting work, drain the queue and replay the spill file.
+     */
+    @PreDestroy
+    public void close() {
+        running = false;
+        try {
+            if (!writerThread.join(Duration.ofMillis(shutdownTimeoutMs))) {
+                logger.error("Audit writer did not finish within {}ms; {} events still queued",
+                        shutdownTimeoutMs, queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of events waiting in memory
+     */
+    int pendingEvents() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<QueryAuditEvent> batch = new ArrayList<>(batchSize);
+        replaySpill();
+        while (running || !queue.isEmpty()) {
+            try {
+                QueryAuditEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    replaySpillIfDue();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // Treated as a shutdown request; keep draining so nothing queued is lost
+                running = false;
+            }
+        }
+        replaySpill();
+        logger.info("Audit writer stopped");
+    }
+
+    /**
+     * Write a batch, or spill it behind an existing backlog to keep events in order. Retries
+     * the unwritten remainder with backoff while neither the database nor the spill file
+     * accepts it.
+     */
+    private void flush(List<QueryAuditEvent> batch) {
+        List<QueryAuditEvent> pending = batch;
+        while (true) {
+            if (!hasSpillBacklog()) {
+                int handled = writeIsolating(pending);
+                if (handled == pending.size()) {
+                    retryBackoffMs = 0;
+                    return;
+                }
+                pending = pending.subList(handled, pending.size());
+                scheduleReplayRetry();
+            }
+            if (spillFile != null && spill(pending)) {
+                replaySpillIfDue();
+                return;
+            }
+            long backoff = nextBackoff();
+            logger.warn("Retrying audit batch of {} events in {}ms", pending.size(), backoff);
+            pause(backoff);
+        }
+    }
+
+    /**
+     * Write events in order, splitting on permanent rejections until each rejected event is
+     * isolated and quarantined.
+     *
+     * @return number of leading events written or quarantined; fewer than all means a
+     *         transient failure stopped at the next one
+     */
+    private int writeIsolating(List<QueryAuditEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        try {
+            writer.write(events);
+            writtenCounter.increment(events.size());
+            return events.size();
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            if (!isPermanent(e)) {
+                logger.warn("Audit batch of {} events failed: {}", events.size(), e.getMessage());
+                return 0;
+            }
+            if (events.size() == 1) {
+                quarantine(events.get(0), e);
+                return 1;
+            }
+            logger.warn("Audit batch of {} events rejected, splitting: {}", events.size(), e.getMessage());
+            int half = events.size() / 2;
+            int handled = writeIsolating(events.subList(0, half));
+            if (handled < half) {
+                return handled;
+            }
+            return half + writeIsolating(events.subList(half, events.size()));
+        }
+    }
+
+    /**
+     * A rejection that retrying cannot fix. Connection and resource failures, and errors
+     * Spring could not classify, count as transient.
+     */
+    static boolean isPermanent(RuntimeException e) {
+        return e instanceof NonTransientDataAccessException
+                && !(e instanceof DataAccessResourceFailureException)
+                && !(e instanceof NonTransientDataAccessResourceException)
+                && !(e instanceof UncategorizedDataAccessException);
+    }
+
+    private void quarantine(QueryAuditEvent event, Exception cause) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            json = String.valueOf(event);
+        }
+        quarantine(json, cause);
+    }
+
+    private void quarantine(String line, Exception cause) {
+        quarantinedCounter.increment();
+        if (quarantineFile != null) {
+            try {
+                if (quarantineFile.getParent() != null) {
+                    Files.createDirectories(quarantineFile.getParent());
+                }
+                Files.writeString(quarantineFile, line + System.lineSeparator(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                logger.error("Audit event quarantined to {}: {}", quarantineFile, cause.getMessage());
+                return;
+            } catch (IOException e) {
+                logger.error("Cannot write audit quarantine file {}: {}", quarantineFile, e.getMessage());
+            }
+        }
+        logger.error("Audit event quarantined ({}): {}", cause.getMessage(), line);
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            running = false;
+        }
+    }
+
+    private void replaySpillIfDue() {
+        if (hasSpillBacklog() && System.currentTimeMillis() >= nextReplayAt) {
+            replaySpill();
+        }
+    }
+
+    /**
+     * Write spilled events back in file order, quarantining lines that do not parse or that
+     * the database rejects; on a transient failure keep the unwritten remainder.
+     */
+    private void replaySpill() {
+        if (!hasSpillBacklog()) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(spillFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.error("Cannot read audit spill file {}: {}", spillFile, e.getMessage());
+            scheduleReplayRetry();
+            return;
+        }
+
+        int done = 0;
+        Set<Integer> quarantined = new HashSet<>();
+        try {
+            while (done < lines.size()) {
+                int end = Math.min(lines.size(), done + batchSize);
+                List<QueryAuditEvent> events = new ArrayList<>(end - done);
+                List<Integer> eventLines = new ArrayList<>(end - done);
+                for (int i = done; i < end; i++) {
+                    try {
+                        events.add(objectMapper.readValue(lines.get(i), QueryAuditEvent.class));
+                        eventLines.add(i);
+                    } catch (JsonProcessingException e) {
+                        quarantine(lines.get(i), e);
+                        quarantined.add(i);
+                    }
+                }
+                int handled = writeIsolating(events);
+                if (handled < events.size()) {
+                    done = eventLines.get(handled);
+                    logger.warn("Audit spill replay stopped after {} of {} events", done, lines.size());
+                    List<String> remaining = new ArrayList<>(lines.size() - done);
+                    for (int i = done; i < lines.size(); i++) {
+                        if (!quarantined.contains(i)) {
+                            remaining.add(lines.get(i));
+                        }
+                    }
+                    rewriteSpill(remaining);
+                    scheduleReplayRetry();
+                    return;
+                }
+                done = end;
+            }
+            Files.delete(spillFile);
+            retryBackoffMs = 0;
+            logger.info("Replayed {} spilled audit events", done);
+        } catch (IOException e) {
+            logger.error("Cannot delete replayed audit spill file {}: {}", spillFile, e.getMessage());
+            rewriteSpill(List.of());
+            scheduleReplayRetry();
+        }
+    }
+
+    private boolean hasSpillBacklog() {
+        return spillFile != null && Files.exists(spillFile);
+    }
+
+    private boolean spill(List<QueryAuditEvent> batch) {
+        try {
+            if (spillFile.getParent() != null) {
+                Files.createDirectories(spillFile.getParent());
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (QueryAuditEvent event : batch) {
+                    out.write(objectMapper.writeValueAsString(event));
+                    out.newLine();
+                }
+            }
+            spilledCounter.increment(batch.size());
+            return true;
+        } catch (IOException e) {
+            logger.error("Cannot spill audit events to {}: {}", spillFile, e.getMessage());
+            return false;
+        }
+    }
+
+    private void rewriteSpill(List<String> remaining) {
+        Path tmp = spillFile.resolveSibling(spillFile.getFileName() + ".tmp");
+        try {
+            Files.write(tmp, remaining, StandardCharsets.UTF_8);
+            Files.move(tmp, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Cannot rewrite audit spill file {}: {}", spillFile, e.getMessage());
+        }
+    }
+
+    private void scheduleReplayRetry() {
+        nextReplayAt = System.currentTimeMillis() + nextBackoff();
+    }
+
+    private long nextBackoff() {
+        retryBackoffMs = retryBackoffMs == 0 ? 500 : Math.min(MAX_RETRY_BACKOFF_MS, retryBackoffMs * 2);
+        return retryBackoffMs;
+    }
+
+    /**
+     * Late events (after shutdown started) are written synchronously once the writer has
+     * drained, so they still land after the events queued before them.
+     */
+    private synchronized void writeAfterShutdown(QueryAuditEvent event) {
+        try {
+            writerThread.join(Duration.ofMillis(shutdownTimeoutMs));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.write(List.of(event));
+            writtenCounter.increment();
+        } catch (RuntimeException e) {
+            logger.error("Audit event for query {} could not be written after shutdown: {}",
+                    event.queryId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Thrown by {@link #submit} when the writer has not made room within the submit timeout.
+     */
+    public static class AuditUnavailableException extends RuntimeException {
+        public AuditUnavailableException(String message) {
+            super(message);
+        }
+    }
+}
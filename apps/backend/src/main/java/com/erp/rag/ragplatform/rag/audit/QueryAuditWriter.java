@@ -0,0 +1,138 @@
+package com.erp.rag.ragplatform.rag.audit;
+
+import com.erp.rag.ragplatform.rag.audit.QueryAuditEvent.QueryCompleted;
+import com.erp.rag.ragplatform.rag.audit.QueryAuditEvent.QueryFailed;
+import com.erp.rag.ragplatform.rag.audit.QueryAuditEvent.QueryStarted;
+import com.erp.rag.ragplatform.rag.audit.QueryAuditEvent.RetrievedDocument;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC batch writer for the RAG query audit trail.
+ * <p>
+ * Story 1.5 – AC7: Applies a batch of {@link QueryAuditEvent}s in one transaction with one
+ * JDBC batch per statement kind: inserts of new queries, inserts of retrieved documents,
+ * then completion and error updates. Within a batch that order is always valid because a
+ * query's start event precedes its completion or failure.
+ * </p>
+ * <p>
+ * Query ids are allocated ahead of time from the {@code rag_queries} serial sequence so
+ * callers can reference a query before its row is written.
+ * </p>
+ * <p>
+ * A retrieved document is recorded under its query's company: the foreign key to the
+ * partitioned {@code vector_documents} is {@code (document_vector_id, document_company_id)}
+ * (changelog 013), so a document of another tenant is rejected.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Repository
+public class QueryAuditWriter {
+
+    static final String ALLOCATE_IDS_SQL = "SELECT nextval(pg_get_serial_sequence('accounting.rag_queries', 'id')) " +
+            "FROM generate_series(1, ?)";
+
+    static final String INSERT_QUERY_SQL = "INSERT INTO accounting.rag_queries " +
+            "(id, company_id, user_id, query_text, query_embedding, language, status, created_at) " +
+            "VALUES (?, ?, ?, ?, CAST(? AS vector), ?, 'pending', ?)";
+
+    static final String INSERT_DOCUMENT_SQL = "INSERT INTO accounting.rag_query_documents " +
+            "(query_id, document_vector_id, document_company_id, rank, relevance_score, tokens_used, excerpt) " +
+            "VALUES (?, ?, (SELECT company_id FROM accounting.rag_queries WHERE id = ?), ?, ?, ?, ?)";
+
+    static final String COMPLETE_QUERY_SQL = "UPDATE accounting.rag_queries " +
+            "SET status = 'complete', retrieval_latency_ms = ?, total_latency_ms = ?, completed_at = ? " +
+            "WHERE id = ?";
+
+    static final String FAIL_QUERY_SQL = "UPDATE accounting.rag_queries " +
+            "SET status = 'error', error_message = ?, completed_at = ? " +
+            "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public QueryAuditWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Reserve a block of {@code rag_queries} ids.
+     *
+     * @param count number of ids
+     * @return allocated ids in ascending order
+     */
+    public List<Long> allocateIds(int count) {
+        return jdbcTemplate.queryForList(ALLOCATE_IDS_SQL, Long.class, count);
+    }
+
+    /**
+     * Apply a batch of audit events atomically.
+     *
+     * @param events events in submission order
+     */
+    @Transactional
+    public void write(List<? extends QueryAuditEvent> events) {
+        List<QueryStarted> started = new ArrayList<>();
+        List<QueryCompleted> completed = new ArrayList<>();
+        List<QueryFailed> failed = new ArrayList<>();
+        List<Object[]> documents = new ArrayList<>();
+
+        for (QueryAuditEvent event : events) {
+            switch (event) {
+                case QueryStarted e -> started.add(e);
+                case QueryCompleted e -> {
+                    completed.add(e);
+                    for (RetrievedDocument doc : e.documents()) {
+                        documents.add(new Object[] { e.queryId(), doc.documentVectorId(), e.queryId(), doc.rank(),
+                                doc.relevanceScore(), doc.tokensUsed(), doc.excerpt() });
+                    }
+                }
+                case QueryFailed e -> failed.add(e);
+            }
+        }
+
+        if (!started.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_QUERY_SQL, started, started.size(), QueryAuditWriter::bindStarted);
+        }
+        if (!documents.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_DOCUMENT_SQL, documents);
+        }
+        if (!completed.isEmpty()) {
+            jdbcTemplate.batchUpdate(COMPLETE_QUERY_SQL, completed, completed.size(), (ps, e) -> {
+                ps.setObject(1, e.retrievalLatencyMs(), Types.INTEGER);
+                ps.setObject(2, e.totalLatencyMs(), Types.INTEGER);
+                ps.setObject(3, e.completedAt());
+                ps.setLong(4, e.queryId());
+            });
+        }
+        if (!failed.isEmpty()) {
+            jdbcTemplate.batchUpdate(FAIL_QUERY_SQL, failed, failed.size(), (ps, e) -> {
+                ps.setString(1, e.errorMessage());
+                ps.setObject(2, e.completedAt());
+                ps.setLong(3, e.queryId());
+            });
+        }
+    }
+
+    private static void bindStarted(PreparedStatement ps, QueryStarted e) throws SQLException {
+        ps.setLong(1, e.queryId());
+        ps.setLong(2, e.companyId());
+        ps.setObject(3, e.userId());
+        ps.setString(4, e.queryText());
+        if (e.queryEmbedding() != null) {
+            ps.setObject(5, e.queryEmbedding()); // binary float4[], cast to vector
+        } else {
+            ps.setNull(5, Types.OTHER);
+        }
+        ps.setString(6, e.language());
+        ps.setObject(7, e.createdAt());
+    }
+}
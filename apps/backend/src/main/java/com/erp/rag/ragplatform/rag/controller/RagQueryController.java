@@ -3,6 +3,7 @@ package com.erp.rag.ragplatform.rag.controller;
 import com.erp.rag.ragplatform.rag.dto.QueryRequest;
 import com.erp.rag.ragplatform.rag.dto.QueryResponse;
 import com.erp.rag.ragplatform.rag.service.RagQueryService;
+import com.erp.rag.supabase.vector.VectorFilter;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,6 +50,14 @@ public class RagQueryController {
         logger.info("Received RAG query request: companyId={}, language={}, query={}",
                 request.getCompanyId(), request.getLanguage(), request.getQuery());
 
+        try {
+            // Story 1.5 – AC6: reject unknown or malformed metadata filters up front
+            VectorFilter.of(request.getFilters());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected RAG query filters {}: {}", request.getFilters(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
         try {
             // TODO: Extract userId from JWT token (AC1 - RBAC validation)
             UUID userId = null; // Placeholder for JWT extraction
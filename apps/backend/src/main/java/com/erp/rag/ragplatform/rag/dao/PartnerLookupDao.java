@@ -0,0 +1,67 @@
+package com.erp.rag.ragplatform.rag.dao;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * DAO resolving tax codes to the customers and vendors of a company.
+ * <p>
+ * Story 1.5 – AC1: lets a question quoting a tax code be answered without semantic search. Tax
+ * codes are masked in {@code vector_documents}, so they are resolved here to partner codes,
+ * which are the document numbers of the partners' vector documents. Both tables are filtered
+ * by company in SQL, through the {@code tax_code} indexes (changelogs 004 and 012).
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Repository
+public class PartnerLookupDao {
+
+    static final String PARTNERS_BY_TAX_CODE_SQL = """
+            SELECT 'customer' AS document_type, c.code
+            FROM accounting.customers c
+            WHERE c.company_id = :companyId
+              AND c.tax_code = :taxCode
+              AND c.deleted_at IS NULL
+            UNION ALL
+            SELECT 'vendor' AS document_type, v.code
+            FROM accounting.vendors v
+            WHERE v.company_id = :companyId
+              AND v.tax_code = :taxCode
+              AND v.deleted_at IS NULL
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public PartnerLookupDao(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Customers and vendors of a company registered under a tax code.
+     *
+     * @param companyId company id
+     * @param taxCode   tax code as written (10 digits, optionally -NNN)
+     * @return matching partners of that company
+     */
+    public List<PartnerCode> findByTaxCode(Long companyId, String taxCode) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("taxCode", taxCode);
+        return jdbcTemplate.query(PARTNERS_BY_TAX_CODE_SQL, params,
+                (rs, rowNum) -> new PartnerCode(rs.getString("document_type"), rs.getString("code")));
+    }
+
+    /**
+     * Customer or vendor found by tax code.
+     *
+     * @param documentType {@code customer} or {@code vendor}
+     * @param code         partner code (the document number of its vector document)
+     */
+    public record PartnerCode(String documentType, String code) {
+    }
+}
@@ -0,0 +1,101 @@
+package com.erp.rag.ragplatform.rag.dao;
+
+import com.erp.rag.supabase.vector.PgVector;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * DAO for the persistent query embedding cache ({@code accounting.rag_query_embedding_cache}).
+ * <p>
+ * Story 1.5 – AC2: Rows are keyed by company, the SHA-256 of the normalised question text and
+ * the embedding model id. Questions are not PII-masked, so these rows live apart from the
+ * worker's {@code embedding_cache} and expire after a retention period: lookups ignore older
+ * rows and {@link #purgeOlderThan(int)} deletes them. Embeddings are read through
+ * {@code vector_send} and decoded with {@link PgVector#fromBinary(byte[])}.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Repository
+public class QueryEmbeddingCacheDao {
+
+    static final String FIND_SQL = """
+            SELECT vector_send(embedding) AS embedding
+            FROM accounting.rag_query_embedding_cache
+            WHERE company_id = :companyId
+              AND content_hash = :hash
+              AND model_id = :modelId
+              AND created_at > now() - make_interval(days => :retentionDays)
+            """;
+
+    static final String UPSERT_SQL = """
+            INSERT INTO accounting.rag_query_embedding_cache (company_id, content_hash, model_id, embedding)
+            VALUES (:companyId, :hash, :modelId, CAST(:embedding AS vector))
+            ON CONFLICT (company_id, content_hash, model_id)
+            DO UPDATE SET embedding = EXCLUDED.embedding, created_at = now()
+            """;
+
+    static final String PURGE_SQL = """
+            DELETE FROM accounting.rag_query_embedding_cache
+            WHERE created_at <= now() - make_interval(days => :retentionDays)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public QueryEmbeddingCacheDao(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Fetch a company's cached embedding of a question.
+     *
+     * @param companyId     company id
+     * @param modelId       embedding model id
+     * @param hash          SHA-256 digest of the normalised question
+     * @param retentionDays rows older than this many days are treated as absent
+     * @return the embedding, or null if none is cached
+     */
+    public float[] find(Long companyId, String modelId, byte[] hash, int retentionDays) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("hash", hash)
+                .addValue("modelId", modelId)
+                .addValue("retentionDays", retentionDays);
+
+        List<float[]> found = jdbcTemplate.query(FIND_SQL, params,
+                (rs, rowNum) -> PgVector.fromBinary(rs.getBytes("embedding")).toArray());
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Store a company's embedding of a question, restarting the retention period of an
+     * existing row.
+     *
+     * @param companyId company id
+     * @param modelId   embedding model id
+     * @param hash      SHA-256 digest of the normalised question
+     * @param embedding the embedding
+     */
+    public void upsert(Long companyId, String modelId, byte[] hash, float[] embedding) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("hash", hash)
+                .addValue("modelId", modelId)
+                .addValue("embedding", embedding);
+        jdbcTemplate.update(UPSERT_SQL, params);
+    }
+
+    /**
+     * Delete rows past the retention period.
+     *
+     * @param retentionDays retention period in days
+     * @return rows deleted
+     */
+    public int purgeOlderThan(int retentionDays) {
+        return jdbcTemplate.update(PURGE_SQL, new MapSqlParameterSource("retentionDays", retentionDays));
+    }
+}
@@ -1,5 +1,7 @@
 package com.erp.rag.ragplatform.rag.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.Map;
 
 /**
@@ -8,6 +10,9 @@ import java.util.Map;
  * Story 1.5 – AC10: Retrieved document with id, type, relevance, excerpt, and
  * metadata.
  * </p>
+ * <p>
+ * The full content text is carried along for context building but is not serialized.
+ * </p>
  *
  * @author dev-agent
  * @since 1.0.0
@@ -21,6 +26,9 @@ public class RetrievedDocumentDTO {
     private String excerpt;
     private Map<String, Object> metadata;
 
+    @JsonIgnore
+    private String contentText;
+
     public RetrievedDocumentDTO() {
     }
 
@@ -83,6 +91,15 @@ public class RetrievedDocumentDTO {
         this.metadata = metadata;
     }
 
+    @JsonIgnore
+    public String getContentText() {
+        return contentText;
+    }
+
+    public void setContentText(String contentText) {
+        this.contentText = contentText;
+    }
+
     @Override
     public String toString() {
         return "RetrievedDocumentDTO{" +
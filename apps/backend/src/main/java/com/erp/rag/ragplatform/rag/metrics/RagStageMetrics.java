@@ -0,0 +1,116 @@
+package com.erp.rag.ragplatform.rag.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage latency timers for the RAG query pipeline.
+ * <p>
+ * Story 1.5 – AC8: Publishes {@code rag.stage.latency.seconds} tagged with {@code stage}
+ * (identifier, embedding, log_start, search, context, log_complete) and {@code tier}, the tenant tier of
+ * the querying company. Percentile histograms for this metric are configured in
+ * {@code application-metrics.yml} and exposed on {@code /actuator/prometheus}.
+ * </p>
+ * <p>
+ * Tiers come from {@code rag.metrics.tenant-tiers} ({@code companyId:tier} pairs, comma
+ * separated); unlisted companies get {@code rag.metrics.default-tier}. Tags are never taken
+ * from request data, so the number of series stays bounded.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Component
+public class RagStageMetrics {
+
+    public static final String STAGE_LATENCY = "rag.stage.latency.seconds";
+
+    /**
+     * Pipeline stages, in execution order.
+     */
+    public enum Stage {
+        IDENTIFIER("identifier"),
+        EMBEDDING("embedding"),
+        LOG_START("log_start"),
+        SEARCH("search"),
+        CONTEXT("context"),
+        LOG_COMPLETE("log_complete");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Long, String> tenantTiers;
+    private final String defaultTier;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public RagStageMetrics(MeterRegistry meterRegistry,
+            @Value("${rag.metrics.tenant-tiers:}") String tenantTiers,
+            @Value("${rag.metrics.default-tier:standard}") String defaultTier) {
+        this.meterRegistry = meterRegistry;
+        this.tenantTiers = parseTiers(tenantTiers);
+        this.defaultTier = defaultTier;
+    }
+
+    /**
+     * @param companyId the company id
+     * @return tier tag for the company
+     */
+    public String tierOf(Long companyId) {
+        return companyId != null ? tenantTiers.getOrDefault(companyId, defaultTier) : defaultTier;
+    }
+
+    /**
+     * Record the time elapsed since {@code startNanos} for a stage.
+     *
+     * @param stage      pipeline stage
+     * @param tier       tenant tier, see {@link #tierOf(Long)}
+     * @param startNanos {@link System#nanoTime()} at stage start
+     * @return elapsed milliseconds, for the response's latency breakdown
+     */
+    public int recordSince(Stage stage, String tier, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        timer(stage, tier).record(elapsed, TimeUnit.NANOSECONDS);
+        return (int) TimeUnit.NANOSECONDS.toMillis(elapsed);
+    }
+
+    private Timer timer(Stage stage, String tier) {
+        return timers.computeIfAbsent(stage.tag() + '|' + tier, key -> Timer.builder(STAGE_LATENCY)
+                .description("RAG query pipeline stage latency")
+                .tag("stage", stage.tag())
+                .tag("tier", tier)
+                .register(meterRegistry));
+    }
+
+    static Map<Long, String> parseTiers(String spec) {
+        Map<Long, String> tiers = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return tiers;
+        }
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split(":", 2);
+            if (parts.length != 2 || parts[1].isBlank()) {
+                throw new IllegalArgumentException("Invalid rag.metrics.tenant-tiers entry: '" + entry.trim()
+                        + "' (expected companyId:tier)");
+            }
+            tiers.put(Long.parseLong(parts[0].trim()), parts[1].trim());
+        }
+        return tiers;
+    }
+}
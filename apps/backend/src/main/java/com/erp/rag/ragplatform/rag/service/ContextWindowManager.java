@@ -1,16 +1,14 @@
 package com.erp.rag.ragplatform.rag.service;
 
 import com.erp.rag.ragplatform.rag.dto.RetrievedDocumentDTO;
-import com.erp.rag.supabase.vector.VectorDocument;
-import com.erp.rag.supabase.vector.VectorDocumentRepository;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.erp.rag.supabase.vector.VectorSearchDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 /**
  * Service for managing context window for LLM.
@@ -18,6 +16,11 @@ import java.util.UUID;
  * Story 1.5 – AC5: Prune documents to fit 8K token budget, concatenate with
  * separators for clear LLM context boundaries.
  * </p>
+ * <p>
+ * Works from the content text carried by the search results. Only documents that arrive
+ * without text are loaded, all in one batched query, and the context and per-document
+ * token counts are produced in the same pass.
+ * </p>
  *
  * @author dev-agent
  * @since 1.0.0
@@ -29,49 +32,48 @@ public class ContextWindowManager {
     private static final int MAX_TOKENS = 8000;
     private static final String DOCUMENT_SEPARATOR = "\n\n---\n\n";
 
-    private final VectorDocumentRepository vectorDocumentRepository;
+    private final VectorSearchDao vectorSearchDao;
 
-    public ContextWindowManager(VectorDocumentRepository vectorDocumentRepository) {
-        this.vectorDocumentRepository = vectorDocumentRepository;
+    public ContextWindowManager(VectorSearchDao vectorSearchDao) {
+        this.vectorSearchDao = vectorSearchDao;
     }
 
     /**
-     * Prune documents to fit token budget and build grounded context.
+     * Prune documents to fit the token budget, build the grounded context and count the
+     * tokens of every retrieved document.
      *
      * @param retrievedDocuments list of retrieved documents ordered by relevance
-     * @param documentIds        list of document vector IDs
-     * @return grounded context string
+     * @param companyId          the company UUID
+     * @return grounded context and tokens per retrieved document (same order)
      */
-    public String buildGroundedContext(List<RetrievedDocumentDTO> retrievedDocuments,
-            List<Long> documentIds, Long companyId) {
+    public GroundedContext build(List<RetrievedDocumentDTO> retrievedDocuments, Long companyId) {
         logger.debug("Building grounded context from {} documents", retrievedDocuments.size());
 
+        Map<Long, String> fetched = fetchMissingContent(retrievedDocuments, companyId);
+
         StringBuilder context = new StringBuilder();
+        List<Integer> tokensPerDocument = new ArrayList<>(retrievedDocuments.size());
         int totalTokens = 0;
         int includedDocs = 0;
+        boolean budgetExceeded = false;
 
-        for (int i = 0; i < Math.min(retrievedDocuments.size(), documentIds.size()); i++) {
-            Long docId = documentIds.get(i);
-            
-            // Fetch full document text
-            var docOptional = vectorDocumentRepository.findByIdAndCompanyId(docId, companyId);
-            if (docOptional.isEmpty()) {
-                continue;
-            }
-
-            String docText = extractContentText(docOptional.get());
-            if (docText == null || docText.isEmpty()) {
-                continue;
-            }
+        for (RetrievedDocumentDTO doc : retrievedDocuments) {
+            String docText = doc.getContentText() != null ? doc.getContentText() : fetched.get(doc.getId());
 
             // Estimate tokens (chars ÷ 4 approximation)
             int docTokens = estimateTokens(docText);
+            tokensPerDocument.add(docTokens);
+
+            if (budgetExceeded || docText == null || docText.isEmpty()) {
+                continue;
+            }
 
             // Check if adding this document exceeds budget
             if (totalTokens + docTokens > MAX_TOKENS) {
-                logger.debug("Token budget exceeded, pruned {} documents", 
+                logger.debug("Token budget exceeded, pruned {} documents",
                         retrievedDocuments.size() - includedDocs);
-                break;
+                budgetExceeded = true;
+                continue;
             }
 
             // Add document to context
@@ -85,21 +87,22 @@ public class ContextWindowManager {
         }
 
         logger.info("Grounded context built: {} documents, ~{} tokens", includedDocs, totalTokens);
-        return context.toString();
+        return new GroundedContext(context.toString(), tokensPerDocument);
     }
 
     /**
-     * Estimate token count from character count.
-     * Uses approximation: tokens ≈ chars ÷ 4
+     * Prune documents to fit token budget and build grounded context.
      *
-     * @param text the text to estimate
-     * @return estimated token count
+     * @param retrievedDocuments list of retrieved documents ordered by relevance
+     * @param documentIds        list of document vector IDs
+     * @return grounded context string
+     * @deprecated use {@link #build(List, Long)}, which also returns the token counts
      */
-    private int estimateTokens(String text) {
-        if (text == null || text.isEmpty()) {
-            return 0;
-        }
-        return text.length() / 4;
+    @Deprecated
+    public String buildGroundedContext(List<RetrievedDocumentDTO> retrievedDocuments,
+            List<Long> documentIds, Long companyId) {
+        int count = Math.min(retrievedDocuments.size(), documentIds.size());
+        return build(retrievedDocuments.subList(0, count), companyId).context();
     }
 
     /**
@@ -108,33 +111,54 @@ public class ContextWindowManager {
      * @param documentIds list of document IDs
      * @param companyId   the company UUID
      * @return list of token counts corresponding to each document
+     * @deprecated use {@link #build(List, Long)}, which counts tokens from the search results
      */
+    @Deprecated
     public List<Integer> calculateTokensPerDocument(List<Long> documentIds, Long companyId) {
-        List<Integer> tokens = new ArrayList<>();
+        Map<Long, String> texts = vectorSearchDao.findContentText(companyId, documentIds);
 
+        List<Integer> tokens = new ArrayList<>(documentIds.size());
         for (Long docId : documentIds) {
-            var docOptional = vectorDocumentRepository.findByIdAndCompanyId(docId, companyId);
-            if (docOptional.isPresent()) {
-                String docText = extractContentText(docOptional.get());
-                tokens.add(estimateTokens(docText));
-            } else {
-                tokens.add(0);
-            }
+            tokens.add(estimateTokens(texts.get(docId)));
         }
-
         return tokens;
     }
 
     /**
-     * Extract content text from metadata JSON.
-     * Story 1.5 dependency: content_text stored in metadata by Story 1.4.
+     * Load content text for results that did not carry it, in a single query.
+     */
+    private Map<Long, String> fetchMissingContent(List<RetrievedDocumentDTO> documents, Long companyId) {
+        List<Long> missing = documents.stream()
+                .filter(doc -> doc.getContentText() == null && doc.getId() != null)
+                .map(RetrievedDocumentDTO::getId)
+                .toList();
+        if (missing.isEmpty()) {
+            return Map.of();
+        }
+        logger.debug("Fetching content text for {} documents", missing.size());
+        return vectorSearchDao.findContentText(companyId, missing);
+    }
+
+    /**
+     * Estimate token count from character count.
+     * Uses approximation: tokens ≈ chars ÷ 4
+     *
+     * @param text the text to estimate
+     * @return estimated token count
      */
-    private String extractContentText(VectorDocument doc) {
-        JsonNode metadata = doc.getMetadata();
-        if (metadata != null && metadata.has("content_text")) {
-            return metadata.get("content_text").asText();
+    private int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
         }
-        logger.warn("No content_text found in metadata for document: {}", doc.getId());
-        return "";
+        return text.length() / 4;
+    }
+
+    /**
+     * Grounded context and the estimated tokens of each retrieved document.
+     *
+     * @param context           documents that fit the budget, joined by separators
+     * @param tokensPerDocument tokens per retrieved document, in retrieval order
+     */
+    public record GroundedContext(String context, List<Integer> tokensPerDocument) {
     }
 }
@@ -0,0 +1,198 @@
+package com.erp.rag.ragplatform.rag.service;
+
+import com.erp.rag.ragplatform.rag.dao.PartnerLookupDao;
+import com.erp.rag.ragplatform.rag.dto.RetrievedDocumentDTO;
+import com.erp.rag.supabase.vector.VectorFilter;
+import com.erp.rag.supabase.vector.VectorSearchDao;
+import com.erp.rag.supabase.vector.VectorSearchResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Exact-identifier lookup for questions that quote a document number or tax code.
+ * <p>
+ * Story 1.5 – AC1: "show invoice INV-2024-0042" or "payments for tax code 0312345678" name
+ * a document or partner. Such identifiers are detected before retrieval and resolved by
+ * btree lookups: document numbers (invoice, bill, payment, entry, transaction numbers and
+ * partner codes) on {@code vector_documents.metadata->>'document_number'}, tax codes on the
+ * customers and vendors tables and then by partner code. Request filters still apply.
+ * </p>
+ * <p>
+ * The hits answer the question on their own ({@link Lookup#answersQuery()}, skipping the query
+ * embedding and the HNSW scan) only when they come from document numbers and the question has
+ * at most {@code rag.identifier.max-query-words} other words, as in "show invoice
+ * INV-2024-0042". A tax code only finds the partner record, not the payments or invoices the
+ * question asks about, and longer questions carry context the lookup ignores; their hits are
+ * ranked ahead of semantic search results instead ({@link Lookup#mergeInto(List)}). Outcomes
+ * are counted in {@code rag_identifier_lookups_total{outcome=hit|merged|miss}}.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Service
+public class IdentifierLookupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdentifierLookupService.class);
+    private static final int MAX_RESULTS = 10;
+
+    /** Letter prefix, then dash-separated digit groups, e.g. INV-2024-0042, JE-001. */
+    static final Pattern DOCUMENT_NUMBER = Pattern.compile(
+            "(?<![\\p{L}\\p{N}_-])[A-Za-z]{2,6}-\\d+(?:-\\d+)*(?![\\p{L}\\p{N}_-])");
+
+    /** Vietnamese tax code: 10 digits, optionally a -NNN branch suffix. */
+    static final Pattern TAX_CODE = Pattern.compile("(?<![\\p{N}-])\\d{10}(?:-\\d{3})?(?![\\p{N}-])");
+
+    private final VectorSearchDao vectorSearchDao;
+    private final PartnerLookupDao partnerLookupDao;
+    private final boolean enabled;
+    private final int maxQueryWords;
+    private final Counter hitCounter;
+    private final Counter mergedCounter;
+    private final Counter missCounter;
+
+    public IdentifierLookupService(VectorSearchDao vectorSearchDao,
+            PartnerLookupDao partnerLookupDao,
+            MeterRegistry meterRegistry,
+            @Value("${rag.identifier.enabled:true}") boolean enabled,
+            @Value("${rag.identifier.max-query-words:4}") int maxQueryWords) {
+        this.vectorSearchDao = vectorSearchDao;
+        this.partnerLookupDao = partnerLookupDao;
+        this.enabled = enabled;
+        this.maxQueryWords = maxQueryWords;
+        this.hitCounter = Counter.builder("rag_identifier_lookups_total")
+                .description("Identifier fast-path lookups by outcome")
+                .tag("outcome", "hit")
+                .register(meterRegistry);
+        this.mergedCounter = Counter.builder("rag_identifier_lookups_total")
+                .description("Identifier fast-path lookups by outcome")
+                .tag("outcome", "merged")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("rag_identifier_lookups_total")
+                .description("Identifier fast-path lookups by outcome")
+                .tag("outcome", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resolve the identifiers quoted by a question.
+     *
+     * @param companyId the company id
+     * @param query     question text
+     * @param filters   optional metadata filters
+     * @return the documents found and whether they answer the question without semantic search
+     */
+    public Lookup lookup(Long companyId, String query, Map<String, Object> filters) {
+        if (!enabled || query == null) {
+            return Lookup.NONE;
+        }
+        Identifiers identifiers = detect(query);
+        if (identifiers.isEmpty()) {
+            return Lookup.NONE;
+        }
+
+        VectorFilter filter = VectorFilter.of(filters);
+        Map<Long, VectorSearchResult> hits = new LinkedHashMap<>();
+        vectorSearchDao.findByDocumentNumbers(companyId, identifiers.documentNumbers(), null, filter, MAX_RESULTS)
+                .forEach(hit -> hits.putIfAbsent(hit.id(), hit));
+        for (String taxCode : identifiers.taxCodes()) {
+            for (PartnerLookupDao.PartnerCode partner : partnerLookupDao.findByTaxCode(companyId, taxCode)) {
+                vectorSearchDao.findByDocumentNumbers(companyId, List.of(partner.code()),
+                                partner.documentType(), filter, MAX_RESULTS)
+                        .forEach(hit -> hits.putIfAbsent(hit.id(), hit));
+            }
+        }
+
+        if (hits.isEmpty()) {
+            missCounter.increment();
+            logger.debug("No document for identifiers {} of company {}", identifiers, companyId);
+            return Lookup.NONE;
+        }
+        List<RetrievedDocumentDTO> documents = hits.values().stream()
+                .limit(MAX_RESULTS)
+                .map(VectorSearchService::toDto)
+                .toList();
+        boolean answersQuery = identifiers.taxCodes().isEmpty() && identifiers.otherWords() <= maxQueryWords;
+        (answersQuery ? hitCounter : mergedCounter).increment();
+        logger.info("Resolved {} documents by identifier for company {} ({})", documents.size(), companyId,
+                answersQuery ? "answered" : "merged into search");
+        return new Lookup(documents, answersQuery);
+    }
+
+    /**
+     * Documents found by identifier.
+     *
+     * @param documents    exact hits, relevance 1.0
+     * @param answersQuery whether the hits answer the question without semantic search
+     */
+    public record Lookup(List<RetrievedDocumentDTO> documents, boolean answersQuery) {
+
+        static final Lookup NONE = new Lookup(List.of(), false);
+
+        /**
+         * Rank the exact hits ahead of semantic search results. Search results already among
+         * the hits are dropped, and the list keeps the length of the longer input.
+         *
+         * @param searched semantic search results
+         * @return merged results
+         */
+        public List<RetrievedDocumentDTO> mergeInto(List<RetrievedDocumentDTO> searched) {
+            if (documents.isEmpty()) {
+                return searched;
+            }
+            Map<Long, RetrievedDocumentDTO> merged = new LinkedHashMap<>();
+            documents.forEach(doc -> merged.putIfAbsent(doc.getId(), doc));
+            searched.forEach(doc -> merged.putIfAbsent(doc.getId(), doc));
+            return merged.values().stream()
+                    .limit(Math.max(documents.size(), searched.size()))
+                    .toList();
+        }
+    }
+
+    /**
+     * Identifiers quoted by a question and the number of its other words.
+     */
+    static Identifiers detect(String query) {
+        List<String> documentNumbers = new ArrayList<>();
+        List<String> taxCodes = new ArrayList<>();
+        String rest = collect(DOCUMENT_NUMBER, query, documentNumbers);
+        rest = collect(TAX_CODE, rest, taxCodes);
+        String words = rest.replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+        return new Identifiers(documentNumbers, taxCodes, words.isEmpty() ? 0 : words.split(" ").length);
+    }
+
+    private static String collect(Pattern pattern, String text, List<String> found) {
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            String value = matcher.group().toUpperCase(Locale.ROOT);
+            if (!found.contains(value)) {
+                found.add(value);
+            }
+        }
+        return matcher.replaceAll(" ");
+    }
+
+    /**
+     * @param documentNumbers upper-cased document numbers
+     * @param taxCodes        tax codes
+     * @param otherWords      words of the question that are not identifiers
+     */
+    record Identifiers(List<String> documentNumbers, List<String> taxCodes, int otherWords) {
+
+        boolean isEmpty() {
+            return documentNumbers.isEmpty() && taxCodes.isEmpty();
+        }
+    }
+}
@@ -1,18 +1,60 @@
 package com.erp.rag.ragplatform.rag.service;
 
-import com.erp.rag.ragplatform.worker.service.embedding.AzureOpenAiEmbeddingService;
+import com.erp.rag.ragplatform.rag.dao.QueryEmbeddingCacheDao;
+import com.erp.rag.ragplatform.worker.pipeline.MicroBatcher;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingCacheService;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingProviderResolver;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingService;
 import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingService.EmbeddingGenerationException;
+import com.erp.rag.supabase.vector.PgVector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Service for generating query embeddings.
  * <p>
- * Story 1.5 – AC2: Reuses AzureOpenAiEmbeddingService from Story 1.4 for
- * semantic consistency (same model: text-embedding-3-large, 1536 dimensions).
+ * Story 1.5 – AC2: Reuses the embedding providers from Story 1.4 for
+ * semantic consistency: a query is embedded by the same provider as its tenant's documents
+ * ({@link EmbeddingProviderResolver#forQuery(Long)}), 1536 dimensions.
+ * </p>
+ * <p>
+ * Concurrent queries are coalesced per provider by a {@link MicroBatcher}: texts arriving
+ * within {@code rag.query.embedding.max-wait-ms} of each other go out as one batch request
+ * (up to {@code rag.query.embedding.max-batch-size} texts and the provider's token limit)
+ * instead of one request each. A query never waits more than the max wait before its
+ * request is sent; 0 disables coalescing.
+ * </p>
+ * <p>
+ * Repeated questions are served from a cache keyed by the model id and the normalised query
+ * text ({@link #normalize(String)}: Unicode NFC, lower case, collapsed whitespace), so
+ * "Công nợ  quá hạn" and "công nợ quá hạn" share one embedding. An in-memory LRU bounded by
+ * {@code rag.query.embedding.cache.capacity} and {@code rag.query.embedding.cache.ttl-ms}
+ * sits in front of the persistent {@code accounting.rag_query_embedding_cache} table, so
+ * embeddings survive restarts. Questions are not PII-masked, so that table is kept apart from
+ * the worker's {@code embedding_cache}: rows are scoped per company, only queries with a
+ * company id are persisted, and rows expire after
+ * {@code rag.query.embedding.cache.retention-days} (purged hourly). Cache failures fall back
+ * to embedding the query.
  * </p>
  *
  * @author dev-agent
@@ -22,11 +64,73 @@ import java.util.Arrays;
 public class QueryEmbeddingService {
 
     private static final Logger logger = LoggerFactory.getLogger(QueryEmbeddingService.class);
+    private static final Pattern WHITESPACE = Pattern.compile("[\\s\\p{Z}]+");
+    private static final long PURGE_INTERVAL_MS = 3_600_000;
+
+    private final EmbeddingProviderResolver providerResolver;
+    private final int maxBatchSize;
+    private final Duration maxWait;
+    private final Map<EmbeddingService, MicroBatcher<String, float[]>> coalescers = new ConcurrentHashMap<>();
+    private final DistributionSummary batchSizeSummary;
+    private final QueryEmbeddingCacheDao cacheDao;
+    private final boolean cacheEnabled;
+    private final boolean cachePersistent;
+    private final int cacheRetentionDays;
+    private final ScheduledExecutorService purger;
+    private final long cacheTtlNanos;
+    private final Map<CacheKey, CacheEntry> cache;
+    private final Counter memoryHitCounter;
+    private final Counter databaseHitCounter;
+    private final Counter missCounter;
 
-    private final AzureOpenAiEmbeddingService embeddingService;
+    public QueryEmbeddingService(EmbeddingProviderResolver providerResolver,
+            QueryEmbeddingCacheDao cacheDao,
+            MeterRegistry meterRegistry,
+            @Value("${rag.query.embedding.max-batch-size:64}") int maxBatchSize,
+            @Value("${rag.query.embedding.max-wait-ms:5}") long maxWaitMs,
+            @Value("${rag.query.embedding.cache.enabled:true}") boolean cacheEnabled,
+            @Value("${rag.query.embedding.cache.capacity:2000}") int cacheCapacity,
+            @Value("${rag.query.embedding.cache.ttl-ms:3600000}") long cacheTtlMs,
+            @Value("${rag.query.embedding.cache.persistent:true}") boolean cachePersistent,
+            @Value("${rag.query.embedding.cache.retention-days:30}") int cacheRetentionDays) {
+        this.providerResolver = providerResolver;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWait = Duration.ofMillis(Math.max(0, maxWaitMs));
+        this.batchSizeSummary = DistributionSummary.builder("rag_query_embedding_batch_size")
+                .description("Query texts per coalesced embedding request")
+                .register(meterRegistry);
 
-    public QueryEmbeddingService(AzureOpenAiEmbeddingService embeddingService) {
-        this.embeddingService = embeddingService;
+        this.cacheDao = cacheDao;
+        this.cacheEnabled = cacheEnabled;
+        this.cachePersistent = cachePersistent;
+        this.cacheRetentionDays = Math.max(1, cacheRetentionDays);
+        this.cacheTtlNanos = Duration.ofMillis(Math.max(1, cacheTtlMs)).toNanos();
+        int capacity = Math.max(0, cacheCapacity);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.memoryHitCounter = Counter.builder("rag_query_embedding_cache_hits_total")
+                .description("Query embeddings served from the cache")
+                .tag("level", "memory")
+                .register(meterRegistry);
+        this.databaseHitCounter = Counter.builder("rag_query_embedding_cache_hits_total")
+                .description("Query embeddings served from the cache")
+                .tag("level", "database")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("rag_query_embedding_cache_misses_total")
+                .description("Query embeddings not found in the cache")
+                .register(meterRegistry);
+        if (cacheEnabled && cachePersistent) {
+            purger = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("query-embedding-cache-purge").daemon().factory());
+            purger.scheduleWithFixedDelay(this::purgeExpired, PURGE_INTERVAL_MS, PURGE_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            purger = null;
+        }
     }
 
     /**
@@ -37,34 +141,181 @@ public class QueryEmbeddingService {
      * @throws EmbeddingGenerationException if embedding generation fails
      */
     public float[] generateQueryEmbedding(String queryText) throws EmbeddingGenerationException {
+        return generateQueryEmbedding(queryText, null);
+    }
+
+    /**
+     * Generate embedding for query text with the tenant's provider.
+     *
+     * @param queryText the query text
+     * @param companyId company id, or null for the default provider
+     * @return embedding vector as float array (1536 dimensions)
+     * @throws EmbeddingGenerationException if embedding generation fails
+     */
+    public float[] generateQueryEmbedding(String queryText, Long companyId) throws EmbeddingGenerationException {
         logger.debug("Generating query embedding for text: {}", queryText.substring(0, Math.min(50, queryText.length())));
         
-        float[] embedding = embeddingService.generateEmbedding(queryText);
+        EmbeddingService embeddingService = providerResolver.forQuery(companyId);
+        CacheKey key = cacheEnabled ? new CacheKey(embeddingService.getModelId(), normalize(queryText)) : null;
+        if (key != null) {
+            float[] cached = cacheGet(key);
+            if (cached != null) {
+                memoryHitCounter.increment();
+                return cached;
+            }
+            cached = findStored(key, companyId);
+            if (cached != null) {
+                databaseHitCounter.increment();
+                cachePut(key, cached);
+                return cached;
+            }
+            missCounter.increment();
+        }
+
+        float[] embedding = maxWait.isZero()
+                ? embeddingService.generateEmbedding(queryText)
+                : await(coalescers.computeIfAbsent(embeddingService, this::coalescer).submit(queryText));
         
         if (embedding == null || embedding.length != 1536) {
             throw new EmbeddingGenerationException("Invalid embedding dimension: expected 1536, got " + 
                     (embedding == null ? "null" : embedding.length));
         }
+
+        if (key != null) {
+            cachePut(key, embedding);
+            store(key, companyId, embedding);
+        }
         
         logger.debug("Query embedding generated successfully");
         return embedding;
     }
 
+    /**
+     * Cache key form of a query: Unicode NFC, lower case, whitespace collapsed to single
+     * spaces and trimmed.
+     *
+     * @param queryText the query text
+     * @return normalised text
+     */
+    static String normalize(String queryText) {
+        String nfc = Normalizer.normalize(queryText, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(nfc).replaceAll(" ").trim();
+    }
+
+    private float[] cacheGet(CacheKey key) {
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAtNanos() > 0) {
+                cache.remove(key);
+                return null;
+            }
+            return entry.embedding();
+        }
+    }
+
+    private void cachePut(CacheKey key, float[] embedding) {
+        synchronized (cache) {
+            cache.put(key, new CacheEntry(embedding, System.nanoTime() + cacheTtlNanos));
+        }
+    }
+
+    private float[] findStored(CacheKey key, Long companyId) {
+        if (!cachePersistent || companyId == null) {
+            return null;
+        }
+        try {
+            float[] stored = cacheDao.find(companyId, key.modelId(), key.hash(), cacheRetentionDays);
+            return stored != null && stored.length == 1536 ? stored : null;
+        } catch (RuntimeException e) {
+            logger.warn("Query embedding cache lookup failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(CacheKey key, Long companyId, float[] embedding) {
+        if (!cachePersistent || companyId == null) {
+            return;
+        }
+        try {
+            cacheDao.upsert(companyId, key.modelId(), key.hash(), embedding);
+        } catch (RuntimeException e) {
+            logger.warn("Could not store query embedding in cache: {}", e.getMessage());
+        }
+    }
+
+    void purgeExpired() {
+        try {
+            int purged = cacheDao.purgeOlderThan(cacheRetentionDays);
+            if (purged > 0) {
+                logger.info("Purged {} query embeddings older than {} days", purged, cacheRetentionDays);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Query embedding cache purge failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (purger != null) {
+            purger.shutdownNow();
+        }
+        coalescers.values().forEach(MicroBatcher::close);
+    }
+
+    private MicroBatcher<String, float[]> coalescer(EmbeddingService provider) {
+        return new MicroBatcher<>("query-embedding-" + provider.getProviderName(),
+                Math.min(maxBatchSize, Math.max(1, provider.getMaxBatchSize())),
+                Math.max(1, provider.getMaxTokensPerRequest()), provider::estimateTokens, maxWait,
+                texts -> {
+                    batchSizeSummary.record(texts.size());
+                    return texts.size() == 1
+                            ? Collections.singletonList(provider.generateEmbedding(texts.get(0)))
+                            : provider.generateEmbeddings(texts);
+                });
+    }
+
+    private static float[] await(Future<float[]> result) throws EmbeddingGenerationException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmbeddingGenerationException("Interrupted waiting for query embedding", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EmbeddingGenerationException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new EmbeddingGenerationException("Query embedding failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
     /**
      * Convert float array to PostgreSQL vector string format.
      *
      * @param embedding float array
      * @return vector string format "[0.1,0.2,...]"
+     * @deprecated queries bind {@link PgVector} directly; the text form is only useful for logging
      */
+    @Deprecated
     public String formatEmbeddingForPostgres(float[] embedding) {
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < embedding.length; i++) {
-            if (i > 0) {
-                sb.append(",");
-            }
-            sb.append(embedding[i]);
+        return new PgVector(embedding).toString();
+    }
+
+    /**
+     * Model id and normalised query text; {@link #hash()} (with the company id) addresses the persistent cache.
+     */
+    private record CacheKey(String modelId, String text) {
+
+        byte[] hash() {
+            return EmbeddingCacheService.sha256(text);
         }
-        sb.append("]");
-        return sb.toString();
+    }
+
+    private record CacheEntry(float[] embedding, long expiresAtNanos) {
     }
 }
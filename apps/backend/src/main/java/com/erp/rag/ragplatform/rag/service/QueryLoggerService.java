@@ -1,16 +1,16 @@
 package com.erp.rag.ragplatform.rag.service;
 
+import com.erp.rag.ragplatform.rag.audit.QueryAuditEvent;
+import com.erp.rag.ragplatform.rag.audit.QueryAuditLog;
 import com.erp.rag.ragplatform.rag.dto.RetrievedDocumentDTO;
 import com.erp.rag.supabase.entity.RagQuery;
-import com.erp.rag.supabase.entity.RagQueryDocument;
-import com.erp.rag.supabase.repository.RagQueryDocumentRepository;
-import com.erp.rag.supabase.repository.RagQueryRepository;
+import com.erp.rag.supabase.vector.PgVector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -20,6 +20,10 @@ import java.util.UUID;
  * Story 1.5 – AC7: Persist queries and retrieved documents to immutable
  * audit trail with timestamps, latency metrics (Circular 200 compliance).
  * </p>
+ * <p>
+ * Entries are written behind the request by {@link QueryAuditLog}: these methods only
+ * reserve an id and enqueue an event, so query latency does not include audit I/O.
+ * </p>
  *
  * @author dev-agent
  * @since 1.0.0
@@ -29,13 +33,10 @@ public class QueryLoggerService {
 
     private static final Logger logger = LoggerFactory.getLogger(QueryLoggerService.class);
 
-    private final RagQueryRepository ragQueryRepository;
-    private final RagQueryDocumentRepository ragQueryDocumentRepository;
+    private final QueryAuditLog auditLog;
 
-    public QueryLoggerService(RagQueryRepository ragQueryRepository,
-            RagQueryDocumentRepository ragQueryDocumentRepository) {
-        this.ragQueryRepository = ragQueryRepository;
-        this.ragQueryDocumentRepository = ragQueryDocumentRepository;
+    public QueryLoggerService(QueryAuditLog auditLog) {
+        this.auditLog = auditLog;
     }
 
     /**
@@ -44,13 +45,12 @@ public class QueryLoggerService {
      * @param companyId      company UUID
      * @param userId         user UUID (optional)
      * @param queryText      the query text
-     * @param queryEmbedding the query embedding string
+     * @param queryEmbedding the query embedding
      * @param language       the language
-     * @return the created RagQuery entity
+     * @return the RagQuery entry with its reserved id (written asynchronously)
      */
-    @Transactional
     public RagQuery logQueryStart(Long companyId, UUID userId, String queryText,
-            String queryEmbedding, String language) {
+            PgVector queryEmbedding, String language) {
         logger.debug("Logging query start for company: {}, user: {}", companyId, userId);
 
         RagQuery query = new RagQuery();
@@ -58,18 +58,21 @@ public class QueryLoggerService {
         // Use provided userId or default test UUID if null
         query.setUserId(userId != null ? userId : UUID.fromString("00000000-0000-0000-0000-000000000000"));
         query.setQueryText(queryText);
-        // Don't set queryEmbedding here - will update it separately with native SQL
+        query.setQueryEmbedding(queryEmbedding);
         query.setLanguage(language);
         query.setStatus("pending");
         query.setCreatedAt(OffsetDateTime.now());
+        query.setId(auditLog.nextQueryId());
+
+        auditLog.submit(new QueryAuditEvent.QueryStarted(
+                query.getId(),
+                query.getCompanyId(),
+                query.getUserId(),
+                query.getQueryText(),
+                queryEmbedding != null ? queryEmbedding.toArray() : null, // bound as binary float4[]
+                query.getLanguage(),
+                query.getCreatedAt()));
 
-        query = ragQueryRepository.save(query);
-        
-        // Update query_embedding using native SQL with vector casting
-        if (queryEmbedding != null) {
-            ragQueryRepository.updateQueryEmbedding(query.getId(), queryEmbedding);
-        }
-        
         logger.info("Query logged with ID: {}", query.getId());
 
         return query;
@@ -84,39 +87,27 @@ public class QueryLoggerService {
      * @param retrievedDocuments    list of retrieved documents
      * @param tokensPerDocument     tokens used per document
      */
-    @Transactional
     public void logQueryComplete(Long queryId, Integer retrievalLatencyMs,
             Integer totalLatencyMs, List<RetrievedDocumentDTO> retrievedDocuments,
             List<Integer> tokensPerDocument) {
         logger.debug("Logging query completion for query ID: {}", queryId);
 
-        // Update query status
-        RagQuery query = ragQueryRepository.findById(queryId)
-                .orElseThrow(() -> new IllegalArgumentException("Query not found: " + queryId));
-
-        query.setStatus("complete");
-        query.setRetrievalLatencyMs(retrievalLatencyMs);
-        query.setTotalLatencyMs(totalLatencyMs);
-        query.setCompletedAt(OffsetDateTime.now());
-
-        ragQueryRepository.save(query);
-
-        // Log retrieved documents
+        List<QueryAuditEvent.RetrievedDocument> documents = new ArrayList<>(retrievedDocuments.size());
         for (int i = 0; i < retrievedDocuments.size(); i++) {
             RetrievedDocumentDTO doc = retrievedDocuments.get(i);
             Integer tokens = i < tokensPerDocument.size() ? tokensPerDocument.get(i) : 0;
 
-            RagQueryDocument queryDoc = new RagQueryDocument();
-            queryDoc.setQueryId(queryId);
-            queryDoc.setDocumentVectorId(doc.getId());
-            queryDoc.setRank(i + 1);
-            queryDoc.setRelevanceScore(doc.getRelevanceScore());
-            queryDoc.setTokensUsed(tokens);
-            queryDoc.setExcerpt(doc.getExcerpt());
-
-            ragQueryDocumentRepository.save(queryDoc);
+            documents.add(new QueryAuditEvent.RetrievedDocument(
+                    doc.getId(),
+                    i + 1,
+                    doc.getRelevanceScore(),
+                    tokens,
+                    doc.getExcerpt()));
         }
 
+        auditLog.submit(new QueryAuditEvent.QueryCompleted(
+                queryId, retrievalLatencyMs, totalLatencyMs, OffsetDateTime.now(), documents));
+
         logger.info("Query completion logged: {} documents", retrievedDocuments.size());
     }
 
@@ -126,17 +117,9 @@ public class QueryLoggerService {
      * @param queryId      the query UUID
      * @param errorMessage the error message
      */
-    @Transactional
     public void logQueryError(Long queryId, String errorMessage) {
         logger.error("Logging query error for query ID: {}, error: {}", queryId, errorMessage);
 
-        RagQuery query = ragQueryRepository.findById(queryId)
-                .orElseThrow(() -> new IllegalArgumentException("Query not found: " + queryId));
-
-        query.setStatus("error");
-        query.setErrorMessage(errorMessage);
-        query.setCompletedAt(OffsetDateTime.now());
-
-        ragQueryRepository.save(query);
+        auditLog.submit(new QueryAuditEvent.QueryFailed(queryId, errorMessage, OffsetDateTime.now()));
     }
 }
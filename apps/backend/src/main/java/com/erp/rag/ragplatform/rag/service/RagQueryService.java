@@ -4,8 +4,11 @@ import com.erp.rag.ragplatform.rag.dto.LatencyMetrics;
 import com.erp.rag.ragplatform.rag.dto.QueryRequest;
 import com.erp.rag.ragplatform.rag.dto.QueryResponse;
 import com.erp.rag.ragplatform.rag.dto.RetrievedDocumentDTO;
+import com.erp.rag.ragplatform.rag.metrics.RagStageMetrics;
+import com.erp.rag.ragplatform.rag.metrics.RagStageMetrics.Stage;
 import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingService.EmbeddingGenerationException;
 import com.erp.rag.supabase.entity.RagQuery;
+import com.erp.rag.supabase.vector.PgVector;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
@@ -15,7 +18,6 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * Main orchestration service for RAG query processing.
@@ -25,6 +27,16 @@ import java.util.stream.Collectors;
  * response with queryId, retrieved documents, grounded context, and latency
  * metrics.
  * </p>
+ * <p>
+ * Each stage is timed into {@code rag.stage.latency.seconds{stage,tier}} via
+ * {@link RagStageMetrics}; the same measurements fill the response's latency breakdown.
+ * </p>
+ * <p>
+ * Questions quoting an exact identifier are first offered to {@link IdentifierLookupService}.
+ * When its hits answer the question, the embedding and vector search stages are skipped
+ * (embedding latency 0, search latency is the lookup's) and the rest of the pipeline is
+ * unchanged. Other hits are ranked ahead of the vector search results.
+ * </p>
  *
  * @author dev-agent
  * @since 1.0.0
@@ -35,22 +47,28 @@ public class RagQueryService {
     private static final Logger logger = LoggerFactory.getLogger(RagQueryService.class);
 
     private final QueryEmbeddingService queryEmbeddingService;
+    private final IdentifierLookupService identifierLookupService;
     private final VectorSearchService vectorSearchService;
     private final ContextWindowManager contextWindowManager;
     private final QueryLoggerService queryLoggerService;
+    private final RagStageMetrics stageMetrics;
     private final Counter queryCounter;
     private final Counter errorCounter;
     private final Timer queryLatencyTimer;
 
     public RagQueryService(QueryEmbeddingService queryEmbeddingService,
+            IdentifierLookupService identifierLookupService,
             VectorSearchService vectorSearchService,
             ContextWindowManager contextWindowManager,
             QueryLoggerService queryLoggerService,
+            RagStageMetrics stageMetrics,
             MeterRegistry meterRegistry) {
         this.queryEmbeddingService = queryEmbeddingService;
+        this.identifierLookupService = identifierLookupService;
         this.vectorSearchService = vectorSearchService;
         this.contextWindowManager = contextWindowManager;
         this.queryLoggerService = queryLoggerService;
+        this.stageMetrics = stageMetrics;
 
         // Initialize metrics
         this.queryCounter = Counter.builder("rag_query_total")
@@ -80,54 +98,71 @@ public class RagQueryService {
                 request.getCompanyId(), request.getLanguage(), userId);
 
         RagQuery ragQuery = null;
+        String tier = stageMetrics.tierOf(request.getCompanyId());
 
         try {
-            // Step 1: Generate query embedding
-            long embeddingStart = System.currentTimeMillis();
-            float[] embedding = queryEmbeddingService.generateQueryEmbedding(request.getQuery());
-            String embeddingStr = queryEmbeddingService.formatEmbeddingForPostgres(embedding);
-            int embeddingLatency = (int) (System.currentTimeMillis() - embeddingStart);
+            // Step 0: Resolve quoted identifiers (invoice number, tax code...) by index lookup
+            long stageStart = System.nanoTime();
+            IdentifierLookupService.Lookup identified = identifierLookupService.lookup(
+                    request.getCompanyId(),
+                    request.getQuery(),
+                    request.getFilters());
+            int identifierLatency = stageMetrics.recordSince(Stage.IDENTIFIER, tier, stageStart);
+
+            // Step 1: Generate query embedding (not needed when the identifiers answer the query)
+            PgVector embedding = null;
+            int embeddingLatency = 0;
+            if (!identified.answersQuery()) {
+                stageStart = System.nanoTime();
+                embedding = new PgVector(queryEmbeddingService.generateQueryEmbedding(request.getQuery(), request.getCompanyId()));
+                embeddingLatency = stageMetrics.recordSince(Stage.EMBEDDING, tier, stageStart);
+            }
 
             // Step 2: Log query start
+            stageStart = System.nanoTime();
             ragQuery = queryLoggerService.logQueryStart(
                     request.getCompanyId(),
                     userId,
                     request.getQuery(),
-                    embeddingStr,
+                    embedding,
                     request.getLanguage());
-
-            // Step 3: Execute vector search
-            long searchStart = System.currentTimeMillis();
-            List<RetrievedDocumentDTO> retrievedDocuments = vectorSearchService.search(
-                    request.getCompanyId(),
-                    embeddingStr,
-                    request.getFilters());
-            int searchLatency = (int) (System.currentTimeMillis() - searchStart);
+            stageMetrics.recordSince(Stage.LOG_START, tier, stageStart);
+
+            // Step 3: Execute vector search (or use the identifier hits)
+            List<RetrievedDocumentDTO> retrievedDocuments;
+            int searchLatency;
+            if (identified.answersQuery()) {
+                retrievedDocuments = identified.documents();
+                searchLatency = identifierLatency;
+            } else {
+                stageStart = System.nanoTime();
+                retrievedDocuments = identified.mergeInto(vectorSearchService.search(
+                        request.getCompanyId(),
+                        request.getQuery(),
+                        embedding,
+                        request.getFilters()));
+                searchLatency = stageMetrics.recordSince(Stage.SEARCH, tier, stageStart);
+            }
 
             // Step 4: Build grounded context
-            long contextStart = System.currentTimeMillis();
-            List<Long> documentIds = retrievedDocuments.stream()
-                    .map(RetrievedDocumentDTO::getId)
-                    .collect(Collectors.toList());
-
-            String groundedContext = contextWindowManager.buildGroundedContext(
+            stageStart = System.nanoTime();
+            ContextWindowManager.GroundedContext grounded = contextWindowManager.build(
                     retrievedDocuments,
-                    documentIds,
-                    request.getCompanyId());
-
-            List<Integer> tokensPerDoc = contextWindowManager.calculateTokensPerDocument(
-                    documentIds,
                     request.getCompanyId());
-            int contextLatency = (int) (System.currentTimeMillis() - contextStart);
+            String groundedContext = grounded.context();
+            List<Integer> tokensPerDoc = grounded.tokensPerDocument();
+            int contextLatency = stageMetrics.recordSince(Stage.CONTEXT, tier, stageStart);
 
             // Step 5: Log query completion
             int totalLatency = (int) (System.currentTimeMillis() - startTime);
+            stageStart = System.nanoTime();
             queryLoggerService.logQueryComplete(
                     ragQuery.getId(),
                     searchLatency,
                     totalLatency,
                     retrievedDocuments,
                     tokensPerDoc);
+            stageMetrics.recordSince(Stage.LOG_COMPLETE, tier, stageStart);
 
             // Step 6: Build response
             LatencyMetrics latencyMetrics = new LatencyMetrics(
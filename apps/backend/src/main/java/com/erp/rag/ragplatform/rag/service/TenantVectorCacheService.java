@@ -0,0 +1,394 @@
+package com.erp.rag.ragplatform.rag.service;
+
+import com.erp.rag.ragplatform.worker.service.VectorDocumentsListener;
+import com.erp.rag.supabase.vector.HnswIndex;
+import com.erp.rag.supabase.vector.VectorSearchDao;
+import com.erp.rag.supabase.vector.VectorSearchResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process HNSW indexes of the tenants with the most queries.
+ * <p>
+ * Story 1.5 – AC3: Unfiltered searches of a hot tenant are answered from an {@link HnswIndex}
+ * held in this JVM, without a database round-trip; every other search goes to Postgres as
+ * before. Queries are counted per company; every {@code rag.vector.cache.refresh-ms} the
+ * {@code rag.vector.cache.max-companies} companies with at least
+ * {@code rag.vector.cache.min-queries} recent queries (counts halve every period) are indexed
+ * from {@code vector_documents}, and companies that cooled down are dropped. The indexes hold
+ * at most {@code rag.vector.cache.max-vectors} vectors in total; a tenant that does not fit
+ * stays on Postgres.
+ * </p>
+ * <p>
+ * Indexes follow the table by paging through rows changed after the last
+ * {@code (updated_at, id)} seen (changelog 014): right after the embedding worker of this
+ * instance writes a tenant's documents ({@link #documentsWritten}), and every period for
+ * writes of other instances and soft deletes. Rows are re-read from a few seconds before the
+ * last position, since a transaction may commit after later ones. Hard deletes are only seen
+ * by the full rebuild every {@code rag.vector.cache.rebuild-ms}, or sooner when a fifth of the
+ * graph is deleted nodes. An embedding model cutover renames the vector column without touching
+ * {@code updated_at}, so it drops every index ({@link #embeddingModelChanged()}); a build that
+ * started before it discards its work, and hot tenants are rebuilt with the new vectors at the
+ * next refresh.
+ * </p>
+ * <p>
+ * Hits carry the same fields and cosine distances as the database path, so relevance scores
+ * and thresholds are unchanged; recall is that of HNSW with
+ * {@code rag.vector.cache.ef-search}. Outcomes are counted in
+ * {@code rag_vector_cache_searches_total{outcome}}. Disabled by default
+ * ({@code rag.vector.cache.enabled}).
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Service
+public class TenantVectorCacheService implements VectorDocumentsListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantVectorCacheService.class);
+    private static final int PAGE_SIZE = 500;
+    private static final long OVERLAP_SECONDS = 5;
+    private static final double MAX_DELETED_RATIO = 0.2;
+    private static final OffsetDateTime EPOCH = OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private final VectorSearchDao vectorSearchDao;
+    private final boolean enabled;
+    private final int maxCompanies;
+    private final long maxVectors;
+    private final long minQueries;
+    private final long rebuildMs;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Map<Long, LongAdder> queryCounts = new ConcurrentHashMap<>();
+    private final Map<Long, TenantIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<Long, Long> tooLargeUntil = new ConcurrentHashMap<>();
+    private final Set<Long> pendingSyncs = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generation = new AtomicLong();
+    private final ScheduledExecutorService refresher;
+
+    public TenantVectorCacheService(VectorSearchDao vectorSearchDao,
+            MeterRegistry meterRegistry,
+            @Value("${rag.vector.cache.enabled:false}") boolean enabled,
+            @Value("${rag.vector.cache.max-companies:20}") int maxCompanies,
+            @Value("${rag.vector.cache.max-vectors:500000}") long maxVectors,
+            @Value("${rag.vector.cache.min-queries:20}") long minQueries,
+            @Value("${rag.vector.cache.refresh-ms:30000}") long refreshMs,
+            @Value("${rag.vector.cache.rebuild-ms:3600000}") long rebuildMs,
+            @Value("${rag.vector.cache.m:16}") int m,
+            @Value("${rag.vector.cache.ef-construction:64}") int efConstruction,
+            @Value("${rag.vector.cache.ef-search:64}") int efSearch) {
+        this.vectorSearchDao = vectorSearchDao;
+        this.enabled = enabled;
+        this.maxCompanies = maxCompanies;
+        this.maxVectors = maxVectors;
+        this.minQueries = Math.max(1, minQueries);
+        this.rebuildMs = rebuildMs;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.hitCounter = Counter.builder("rag_vector_cache_searches_total")
+                .description("Unfiltered vector searches by in-process cache outcome")
+                .tag("outcome", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("rag_vector_cache_searches_total")
+                .description("Unfiltered vector searches by in-process cache outcome")
+                .tag("outcome", "miss")
+                .register(meterRegistry);
+        Gauge.builder("rag_vector_cache_vectors", indexes, TenantVectorCacheService::vectorCount)
+                .description("Vectors held by in-process tenant indexes")
+                .register(meterRegistry);
+        Gauge.builder("rag_vector_cache_companies", indexes, Map::size)
+                .description("Tenants with an in-process vector index")
+                .register(meterRegistry);
+        if (enabled) {
+            refresher = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("vector-cache-refresh").daemon().factory());
+            refresher.scheduleWithFixedDelay(this::refresh, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+            logger.info("In-process vector cache for up to {} tenants and {} vectors", maxCompanies, maxVectors);
+        } else {
+            refresher = null;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Nearest neighbours from the tenant's in-process index, if it has one.
+     *
+     * @param companyId      the company id
+     * @param queryEmbedding the query embedding
+     * @param limit          maximum number of results
+     * @return hits ordered by cosine distance, or empty if the search must go to Postgres
+     */
+    public Optional<List<VectorSearchResult>> search(Long companyId, float[] queryEmbedding, int limit) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        queryCounts.computeIfAbsent(companyId, id -> new LongAdder()).increment();
+        TenantIndex tenant = indexes.get(companyId);
+        if (tenant == null || queryEmbedding.length != tenant.index().dimensions()) {
+            missCounter.increment();
+            return Optional.empty();
+        }
+        List<HnswIndex.Neighbour> neighbours;
+        try {
+            neighbours = tenant.index().search(queryEmbedding, limit, efSearch);
+        } catch (IllegalArgumentException e) {
+            missCounter.increment();
+            return Optional.empty();
+        }
+        List<VectorSearchResult> hits = new ArrayList<>(limit);
+        for (HnswIndex.Neighbour neighbour : neighbours) {
+            CachedDocument cached = tenant.documents().get(neighbour.key());
+            if (cached != null) {
+                VectorSearchResult document = cached.document();
+                hits.add(new VectorSearchResult(document.id(), document.documentType(), document.module(),
+                        document.contentText(), neighbour.distance()));
+            }
+        }
+        hitCounter.increment();
+        return Optional.of(hits);
+    }
+
+    /**
+     * Pick up documents this instance has just written for a tenant.
+     *
+     * @param companyId the company id
+     */
+    @Override
+    public void documentsWritten(Long companyId) {
+        if (refresher != null && indexes.containsKey(companyId) && pendingSyncs.add(companyId)) {
+            refresher.execute(() -> {
+                pendingSyncs.remove(companyId);
+                TenantIndex tenant = indexes.get(companyId);
+                if (tenant != null) {
+                    sync(companyId, tenant);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drop every index: they hold vectors of the previous embedding model.
+     */
+    @Override
+    public void embeddingModelChanged() {
+        int dropped;
+        synchronized (generation) {
+            generation.incrementAndGet();
+            dropped = indexes.size();
+            indexes.clear();
+            tooLargeUntil.clear();
+        }
+        if (dropped > 0) {
+            logger.info("Embedding model changed; dropped {} in-process vector indexes", dropped);
+        }
+    }
+
+    /**
+     * Re-select the hot tenants, drop cold ones, then build or catch up their indexes.
+     */
+    void refresh() {
+        try {
+            List<Long> hot = queryCounts.entrySet().stream()
+                    .filter(entry -> entry.getValue().sum() >= minQueries)
+                    .sorted(Comparator.comparingLong((Map.Entry<Long, LongAdder> entry) -> entry.getValue().sum())
+                            .reversed())
+                    .limit(maxCompanies)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            queryCounts.forEach((companyId, count) -> {
+                long half = count.sumThenReset() / 2;
+                if (half > 0) {
+                    count.add(half);
+                } else {
+                    queryCounts.remove(companyId, count);
+                }
+            });
+            indexes.keySet().removeIf(companyId -> {
+                boolean cold = !hot.contains(companyId);
+                if (cold) {
+                    logger.info("Dropped in-process vector index of company {}", companyId);
+                }
+                return cold;
+            });
+
+            long now = System.currentTimeMillis();
+            for (Long companyId : hot) {
+                TenantIndex tenant = indexes.get(companyId);
+                if (tenant != null && !tenant.needsRebuild(now, rebuildMs)) {
+                    sync(companyId, tenant);
+                } else if (tooLargeUntil.getOrDefault(companyId, 0L) <= now) {
+                    build(companyId);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to refresh in-process vector indexes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Load all live rows of a tenant into a new index and swap it in.
+     */
+    void build(Long companyId) {
+        long start = System.currentTimeMillis();
+        long startGeneration = generation.get();
+        TenantIndex previous = indexes.get(companyId);
+        long budget = maxVectors - vectorCount(indexes) + (previous != null ? previous.index().size() : 0);
+        TenantIndex tenant = null;
+        OffsetDateTime since = EPOCH;
+        long afterId = Long.MIN_VALUE;
+        List<VectorSearchDao.ChangedVector> page;
+        do {
+            page = vectorSearchDao.findChangedSince(companyId, since, afterId, PAGE_SIZE);
+            for (VectorSearchDao.ChangedVector row : page) {
+                if (tenant == null) {
+                    tenant = new TenantIndex(new HnswIndex(row.embedding().length, m, efConstruction),
+                            new ConcurrentHashMap<>(), start);
+                }
+                apply(tenant, row);
+                since = row.updatedAt();
+                afterId = row.document().id();
+            }
+            if (tenant != null && tenant.index().size() > budget) {
+                tooLargeUntil.put(companyId, start + rebuildMs);
+                indexes.remove(companyId);
+                logger.info("Company {} has more than {} vectors left in the cache budget; searching Postgres",
+                        companyId, budget);
+                return;
+            }
+        } while (page.size() == PAGE_SIZE);
+        if (tenant == null) {
+            return;
+        }
+        tenant.setWatermark(since);
+        synchronized (generation) {
+            if (generation.get() != startGeneration) {
+                logger.info("Discarded in-process vector index of company {}: embedding model changed", companyId);
+                return;
+            }
+            indexes.put(companyId, tenant);
+        }
+        logger.info("Built in-process vector index of company {}: {} vectors in {} ms", companyId,
+                tenant.index().size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Apply rows changed since the index's watermark.
+     */
+    void sync(Long companyId, TenantIndex tenant) {
+        OffsetDateTime since = tenant.watermark().minusSeconds(OVERLAP_SECONDS);
+        long afterId = Long.MIN_VALUE;
+        OffsetDateTime watermark = tenant.watermark();
+        List<VectorSearchDao.ChangedVector> page;
+        do {
+            page = vectorSearchDao.findChangedSince(companyId, since, afterId, PAGE_SIZE);
+            for (VectorSearchDao.ChangedVector row : page) {
+                apply(tenant, row);
+                since = row.updatedAt();
+                afterId = row.document().id();
+                if (since.isAfter(watermark)) {
+                    watermark = since;
+                }
+            }
+        } while (page.size() == PAGE_SIZE);
+        tenant.setWatermark(watermark);
+    }
+
+    private static void apply(TenantIndex tenant, VectorSearchDao.ChangedVector row) {
+        long id = row.document().id();
+        if (row.deleted()) {
+            tenant.index().remove(id);
+            tenant.documents().remove(id);
+            return;
+        }
+        CachedDocument cached = tenant.documents().get(id);
+        if (cached != null && cached.updatedAt().isEqual(row.updatedAt())) {
+            return;
+        }
+        try {
+            tenant.index().add(id, row.embedding());
+            tenant.documents().put(id, new CachedDocument(row.document(), row.updatedAt()));
+        } catch (IllegalArgumentException e) {
+            logger.debug("Skipping vector document {}: {}", id, e.getMessage());
+        }
+    }
+
+    private static long vectorCount(Map<Long, TenantIndex> indexes) {
+        return indexes.values().stream().mapToLong(tenant -> tenant.index().size()).sum();
+    }
+
+    /**
+     * In-process index of one tenant with the documents it returns.
+     */
+    static final class TenantIndex {
+
+        private final HnswIndex index;
+        private final Map<Long, CachedDocument> documents;
+        private final long builtAt;
+        private volatile OffsetDateTime watermark = EPOCH;
+
+        TenantIndex(HnswIndex index, Map<Long, CachedDocument> documents, long builtAt) {
+            this.index = index;
+            this.documents = documents;
+            this.builtAt = builtAt;
+        }
+
+        HnswIndex index() {
+            return index;
+        }
+
+        Map<Long, CachedDocument> documents() {
+            return documents;
+        }
+
+        OffsetDateTime watermark() {
+            return watermark;
+        }
+
+        void setWatermark(OffsetDateTime watermark) {
+            this.watermark = watermark;
+        }
+
+        boolean needsRebuild(long now, long rebuildMs) {
+            int deleted = index.deletedCount();
+            return now - builtAt >= rebuildMs || deleted > MAX_DELETED_RATIO * (index.size() + deleted);
+        }
+    }
+
+    /**
+     * @param document  id, type, module and text
+     * @param updatedAt {@code updated_at} of the indexed version
+     */
+    record CachedDocument(VectorSearchResult document, OffsetDateTime updatedAt) {
+    }
+}
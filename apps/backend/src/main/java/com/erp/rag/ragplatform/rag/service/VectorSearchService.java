@@ -1,19 +1,32 @@
 package com.erp.rag.ragplatform.rag.service;
 
 import com.erp.rag.ragplatform.rag.dto.RetrievedDocumentDTO;
-import com.erp.rag.supabase.vector.VectorDocument;
-import com.erp.rag.supabase.vector.VectorDocumentRepository;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.erp.rag.supabase.vector.PgVector;
+import com.erp.rag.supabase.vector.ReciprocalRankFusion;
+import com.erp.rag.supabase.vector.VectorFilter;
+import com.erp.rag.supabase.vector.VectorFilterPlan;
+import com.erp.rag.supabase.vector.VectorQuantization;
+import com.erp.rag.supabase.vector.VectorSearchDao;
+import com.erp.rag.supabase.vector.VectorSearchResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Service for vector similarity search.
@@ -21,6 +34,45 @@ import java.util.UUID;
  * Story 1.5 – AC3, AC4, AC6: Execute pgvector cosine similarity search,
  * rank documents by relevance, apply metadata filtering.
  * </p>
+ * <p>
+ * Relevance scores are the cosine similarities computed by the database for the
+ * returned neighbours, so they are comparable across queries and usable as a threshold.
+ * Hits carry only id, type, module, text and distance; the response metadata is limited
+ * to the type and module.
+ * </p>
+ * <p>
+ * With {@code rag.vector.quantization} set to {@code halfvec} or {@code binary}, the top-k is
+ * re-ranked from {@code top-k * rag.vector.search.oversampling} candidates taken from the
+ * matching compact index (0 uses the mode's default factor). The index must exist, i.e. the
+ * same mode must have been applied by the Liquibase changelog.
+ * </p>
+ * <p>
+ * {@code rag.vector.search.dimensions} below 1536 compares candidates on that many leading
+ * dimensions only (Matryoshka truncation, index from changelog 009); the stored and query
+ * embeddings stay full width for the re-rank.
+ * </p>
+ * <p>
+ * Filters are parsed into typed predicates ({@link VectorFilter}) and searched with a
+ * {@link VectorFilterPlan} chosen per company and filter: a filter matching at most
+ * {@code rag.vector.filter.exact-max-rows} rows is ranked exactly over those rows; otherwise
+ * a partial HNSW index implied by the filter is used if one exists, else the regular index
+ * with {@code hnsw.iterative_scan} ({@code rag.vector.filter.iterative-scan}, {@code off} for
+ * pgvector &lt; 0.8) and candidates oversampled by the inverse of the sampled selectivity.
+ * Row counts, selectivities and the partial index list are cached for
+ * {@code rag.vector.filter.estimate-cache-ms}.
+ * </p>
+ * <p>
+ * {@code rag.vector.search.mode=hybrid} adds a full-text leg: the question is matched against
+ * {@code content_tsv} on a virtual thread while the vector search runs, each leg returns its
+ * top {@code rag.vector.hybrid.candidates}, and the two rankings are merged by reciprocal rank
+ * fusion ({@code rag.vector.hybrid.rrf-k}). Exact tokens such as invoice numbers, tax codes
+ * and account codes, which embeddings capture poorly, are found by the text leg. If the text
+ * leg fails, the vector hits are returned alone.
+ * </p>
+ * <p>
+ * Unfiltered vector searches of tenants held by {@link TenantVectorCacheService} are answered
+ * from its in-process index; the database serves every other tenant and all filtered searches.
+ * </p>
  *
  * @author dev-agent
  * @since 1.0.0
@@ -30,112 +82,244 @@ public class VectorSearchService {
 
     private static final Logger logger = LoggerFactory.getLogger(VectorSearchService.class);
     private static final int DEFAULT_TOP_K = 10;
+    private static final int MAX_CANDIDATES = 1000;
+    private static final int SELECTIVITY_SAMPLE = 1000;
+    private static final int MAX_CACHED_ESTIMATES = 1000;
 
-    private final VectorDocumentRepository vectorDocumentRepository;
-    private final ObjectMapper objectMapper;
+    private final VectorSearchDao vectorSearchDao;
+    private final TenantVectorCacheService vectorCache;
+    private final VectorQuantization quantization;
+    private final int dimensions;
+    private final int candidates;
+    private final int exactMaxRows;
+    private final String iterativeScan;
+    private final long estimateCacheMs;
+    private final Map<VectorFilterPlan.Strategy, Counter> strategyCounters =
+            new EnumMap<>(VectorFilterPlan.Strategy.class);
+    private final Map<String, FilterEstimate> estimates = new ConcurrentHashMap<>();
+    private volatile List<VectorFilterPlan.PartialIndex> partialIndexes;
+    private volatile long partialIndexesExpireAt;
+    private final boolean hybrid;
+    private final int hybridCandidates;
+    private final int rrfK;
+    private final ExecutorService lexicalExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public VectorSearchService(VectorDocumentRepository vectorDocumentRepository, ObjectMapper objectMapper) {
-        this.vectorDocumentRepository = vectorDocumentRepository;
-        this.objectMapper = objectMapper;
+    public VectorSearchService(VectorSearchDao vectorSearchDao,
+            TenantVectorCacheService vectorCache,
+            MeterRegistry meterRegistry,
+            @Value("${rag.vector.quantization:none}") String quantization,
+            @Value("${rag.vector.search.dimensions:1536}") int dimensions,
+            @Value("${rag.vector.search.oversampling:0}") int oversampling,
+            @Value("${rag.vector.filter.exact-max-rows:2000}") int exactMaxRows,
+            @Value("${rag.vector.filter.iterative-scan:relaxed_order}") String iterativeScan,
+            @Value("${rag.vector.filter.estimate-cache-ms:60000}") long estimateCacheMs,
+            @Value("${rag.vector.search.mode:vector}") String mode,
+            @Value("${rag.vector.hybrid.candidates:40}") int hybridCandidates,
+            @Value("${rag.vector.hybrid.rrf-k:60}") int rrfK) {
+        this.vectorSearchDao = vectorSearchDao;
+        this.vectorCache = vectorCache;
+        this.quantization = VectorQuantization.fromConfig(quantization);
+        if (dimensions < 1 || dimensions > VectorQuantization.FULL_DIMENSIONS) {
+            throw new IllegalArgumentException("rag.vector.search.dimensions must be between 1 and "
+                    + VectorQuantization.FULL_DIMENSIONS + ", got " + dimensions);
+        }
+        this.dimensions = dimensions;
+        this.candidates = DEFAULT_TOP_K
+                * (oversampling > 0 ? oversampling : this.quantization.defaultOversampling(dimensions));
+        if (this.quantization != VectorQuantization.NONE || dimensions < VectorQuantization.FULL_DIMENSIONS) {
+            logger.info("Vector search re-ranks {} {} candidates ({} dimensions) at full precision", candidates,
+                    this.quantization, dimensions);
+        }
+        this.exactMaxRows = Math.max(0, exactMaxRows);
+        String scanMode = iterativeScan == null ? "" : iterativeScan.trim().toLowerCase(Locale.ROOT);
+        this.iterativeScan = scanMode.isEmpty() || scanMode.equals("off") ? null : scanMode;
+        this.estimateCacheMs = Math.max(0, estimateCacheMs);
+        for (VectorFilterPlan.Strategy strategy : VectorFilterPlan.Strategy.values()) {
+            strategyCounters.put(strategy, Counter.builder("rag_vector_filtered_searches_total")
+                    .description("Filtered vector searches by strategy")
+                    .tag("strategy", strategy.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        String searchMode = mode == null ? "" : mode.trim().toLowerCase(Locale.ROOT);
+        if (!searchMode.isEmpty() && !searchMode.equals("vector") && !searchMode.equals("hybrid")) {
+            throw new IllegalArgumentException("rag.vector.search.mode must be vector or hybrid, got " + mode);
+        }
+        this.hybrid = searchMode.equals("hybrid");
+        this.hybridCandidates = Math.max(DEFAULT_TOP_K, hybridCandidates);
+        if (rrfK < 1) {
+            throw new IllegalArgumentException("rag.vector.hybrid.rrf-k must be at least 1, got " + rrfK);
+        }
+        this.rrfK = rrfK;
+        if (hybrid) {
+            logger.info("Hybrid search fuses the top {} full-text and vector hits (RRF k={})",
+                    this.hybridCandidates, rrfK);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lexicalExecutor.shutdownNow();
     }
 
     /**
      * Search for similar documents using vector similarity.
      *
      * @param companyId      the company UUID
-     * @param queryEmbedding the query embedding string format
+     * @param queryEmbedding the query embedding
      * @param filters        optional metadata filters
      * @return list of retrieved documents with relevance scores
      */
-    public List<RetrievedDocumentDTO> search(Long companyId, String queryEmbedding,
+    public List<RetrievedDocumentDTO> search(Long companyId, PgVector queryEmbedding,
+            Map<String, Object> filters) {
+        return search(companyId, null, queryEmbedding, filters);
+    }
+
+    /**
+     * Search for documents similar to a question; in hybrid mode the question text is also
+     * matched by full-text search and both rankings are fused.
+     *
+     * @param companyId      the company UUID
+     * @param queryText      question text, or null for vector search only
+     * @param queryEmbedding the query embedding
+     * @param filters        optional metadata filters
+     * @return list of retrieved documents with relevance scores, best first
+     */
+    public List<RetrievedDocumentDTO> search(Long companyId, String queryText, PgVector queryEmbedding,
             Map<String, Object> filters) {
         logger.debug("Executing vector search for company: {}, filters: {}", companyId, filters);
 
-        List<VectorDocument> documents;
+        VectorFilter filter = VectorFilter.of(filters);
+        List<VectorSearchResult> hits;
 
-        if (filters != null && !filters.isEmpty()) {
-            // TODO: Implement proper JSONB filtering - for MVP, using basic search
-            logger.warn("Metadata filtering not yet fully implemented, using basic search");
-            documents = vectorDocumentRepository.findSimilarVectors(companyId, queryEmbedding, DEFAULT_TOP_K);
+        if (hybrid && queryText != null && !queryText.isBlank()) {
+            // Full-text leg runs while this thread runs the vector leg
+            CompletableFuture<List<VectorSearchResult>> lexical = CompletableFuture.supplyAsync(
+                    () -> vectorSearchDao.findLexical(companyId, queryText, queryEmbedding, hybridCandidates, filter),
+                    lexicalExecutor);
+            List<VectorSearchResult> vectorHits = vectorHits(companyId, queryEmbedding, filter, hybridCandidates);
+            hits = ReciprocalRankFusion.fuse(List.of(vectorHits, lexicalHits(lexical)), rrfK, DEFAULT_TOP_K);
         } else {
-            documents = vectorDocumentRepository.findSimilarVectors(companyId, queryEmbedding, DEFAULT_TOP_K);
+            hits = vectorHits(companyId, queryEmbedding, filter, DEFAULT_TOP_K);
         }
 
-        List<RetrievedDocumentDTO> results = new ArrayList<>();
-        int rank = 0;
-
-        for (VectorDocument doc : documents) {
-            // Calculate relevance score from cosine distance
-            // Note: VectorDocumentRepository would need to be modified to return distance
-            // For MVP, using placeholder relevance score
-            double relevanceScore = 0.9 - (rank * 0.05); // Decreasing score by rank (0.9, 0.85, 0.80, ...)
+        List<RetrievedDocumentDTO> results = new ArrayList<>(hits.size());
 
-            RetrievedDocumentDTO dto = new RetrievedDocumentDTO();
-            dto.setId(doc.getId());
-            dto.setDocumentType(extractDocumentType(doc));
-            dto.setModule(extractModule(doc));
-            dto.setRelevanceScore(relevanceScore);
-            dto.setExcerpt(extractExcerpt(extractContentText(doc)));
-            dto.setMetadata(parseMetadata(doc.getMetadata()));
-
-            results.add(dto);
-            rank++;
+        for (VectorSearchResult hit : hits) {
+            if (filter.minSimilarity() != null && hit.similarity() < filter.minSimilarity()) {
+                continue;
+            }
+            results.add(toDto(hit));
         }
 
         logger.info("Vector search returned {} documents", results.size());
         return results;
     }
 
+    private List<VectorSearchResult> vectorHits(Long companyId, PgVector queryEmbedding, VectorFilter filter,
+            int limit) {
+        if (filter.isEmpty()) {
+            Optional<List<VectorSearchResult>> cached = vectorCache.search(companyId, queryEmbedding.toArray(), limit);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+            return vectorSearchDao.findSimilar(companyId, queryEmbedding, limit, quantization, dimensions,
+                    candidates);
+        }
+        VectorFilterPlan plan = plan(companyId, filter);
+        strategyCounters.get(plan.strategy()).increment();
+        logger.debug("Filtered search for company {} with {}: {}", companyId, filter, plan);
+        return vectorSearchDao.findSimilar(companyId, queryEmbedding, limit, filter, plan, quantization,
+                dimensions);
+    }
+
+    private List<VectorSearchResult> lexicalHits(CompletableFuture<List<VectorSearchResult>> lexical) {
+        try {
+            return lexical.join();
+        } catch (CompletionException e) {
+            logger.warn("Full-text search failed, using vector hits only: {}", e.getCause().getMessage());
+            return List.of();
+        }
+    }
+
     /**
-     * Extract content text from metadata JSON.
-     * Story 1.5 dependency: content_text stored in metadata by Story 1.4.
+     * Choose how to search a filter: exact when few rows match, else a covering partial
+     * index, else the regular index with iterative scan.
      */
-    private String extractContentText(VectorDocument doc) {
-        JsonNode metadata = doc.getMetadata();
-        if (metadata != null && metadata.has("content_text")) {
-            return metadata.get("content_text").asText();
+    VectorFilterPlan plan(Long companyId, VectorFilter filter) {
+        FilterEstimate estimate = estimate(companyId, filter);
+        if (estimate.matchingRows() <= exactMaxRows) {
+            return VectorFilterPlan.exact();
         }
-        logger.warn("No content_text found in metadata for document: {}", doc.getId());
-        return "";
+        double selectivity = Math.max(estimate.selectivity(), 1.0 / SELECTIVITY_SAMPLE);
+        int oversampled = (int) Math.min(MAX_CANDIDATES, Math.max(candidates, Math.ceil(candidates / selectivity)));
+        for (VectorFilterPlan.PartialIndex index : partialIndexes()) {
+            if (index.covers(filter)) {
+                return new VectorFilterPlan(VectorFilterPlan.Strategy.PARTIAL_INDEX, index, oversampled,
+                        iterativeScan);
+            }
+        }
+        return new VectorFilterPlan(VectorFilterPlan.Strategy.ITERATIVE, null, oversampled, iterativeScan);
     }
 
-    private String extractDocumentType(VectorDocument doc) {
-        JsonNode metadata = doc.getMetadata();
-        if (metadata != null && metadata.has("document_type")) {
-            return metadata.get("document_type").asText();
+    private FilterEstimate estimate(Long companyId, VectorFilter filter) {
+        String key = companyId + ":" + filter;
+        long now = System.currentTimeMillis();
+        FilterEstimate cached = estimates.get(key);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached;
+        }
+        // Count up to one row past the exact threshold; sample only when that is exceeded
+        long matching = vectorSearchDao.countMatching(companyId, filter, exactMaxRows + 1);
+        double selectivity = matching > exactMaxRows
+                ? vectorSearchDao.sampleSelectivity(companyId, filter, SELECTIVITY_SAMPLE)
+                : 0;
+        FilterEstimate estimate = new FilterEstimate(matching, selectivity, now + estimateCacheMs);
+        if (estimates.size() >= MAX_CACHED_ESTIMATES) {
+            estimates.clear();
         }
-        return "unknown";
+        estimates.put(key, estimate);
+        return estimate;
     }
 
-    private String extractModule(VectorDocument doc) {
-        JsonNode metadata = doc.getMetadata();
-        if (metadata != null && metadata.has("module")) {
-            return metadata.get("module").asText();
+    private List<VectorFilterPlan.PartialIndex> partialIndexes() {
+        long now = System.currentTimeMillis();
+        List<VectorFilterPlan.PartialIndex> indexes = partialIndexes;
+        if (indexes == null || partialIndexesExpireAt <= now) {
+            indexes = vectorSearchDao.findPartialIndexes();
+            partialIndexes = indexes;
+            partialIndexesExpireAt = now + estimateCacheMs;
         }
-        return "unknown";
+        return indexes;
     }
 
-    private String extractExcerpt(String fullText) {
-        if (fullText == null || fullText.isEmpty()) {
-            return "";
-        }
-        return fullText.length() <= 200 ? fullText : fullText.substring(0, 200) + "...";
+    /**
+     * Matching rows (capped just above the exact threshold) and sampled selectivity.
+     */
+    private record FilterEstimate(long matchingRows, double selectivity, long expiresAt) {
     }
 
     /**
-     * Convert JsonNode metadata to Map for API responses.
+     * Response form of a hit; metadata is limited to the type and module.
      */
-    private Map<String, Object> parseMetadata(JsonNode metadataNode) {
-        if (metadataNode == null || metadataNode.isNull()) {
-            return Map.of();
-        }
-        try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> metadata = objectMapper.convertValue(metadataNode, Map.class);
-            return metadata != null ? metadata : Map.of();
-        } catch (Exception e) {
-            logger.warn("Failed to parse metadata JSON: {}", e.getMessage());
-            return Map.of();
+    static RetrievedDocumentDTO toDto(VectorSearchResult hit) {
+        String documentType = hit.documentType() != null ? hit.documentType() : "unknown";
+        String module = hit.module() != null ? hit.module() : "unknown";
+
+        RetrievedDocumentDTO dto = new RetrievedDocumentDTO();
+        dto.setId(hit.id());
+        dto.setDocumentType(documentType);
+        dto.setModule(module);
+        dto.setRelevanceScore(hit.similarity());
+        dto.setExcerpt(extractExcerpt(hit.contentText()));
+        dto.setContentText(hit.contentText());
+        dto.setMetadata(Map.of("document_type", documentType, "module", module));
+        return dto;
+    }
+
+    private static String extractExcerpt(String fullText) {
+        if (fullText == null || fullText.isEmpty()) {
+            return "";
         }
+        return fullText.length() <= 200 ? fullText : fullText.substring(0, 200) + "...";
     }
 }
@@ -0,0 +1,362 @@
+package com.erp.rag.ragplatform.worker.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP client for the Azure OpenAI embeddings endpoint.
+ * <p>
+ * Story 1.4 – AC3: One shared {@link HttpClient} negotiates HTTP/2 and keeps connections
+ * alive across requests, so concurrent requests from {@code EmbeddingDispatcher} are
+ * multiplexed instead of paying a TLS handshake each. Request bodies are written with a
+ * streaming {@link JsonGenerator} and optionally gzip-compressed
+ * ({@code embedding.azure.gzip-requests}); responses are read token by token with a
+ * {@link JsonParser} straight into {@code float[]}, without building a JSON tree or boxing
+ * 1536 numbers per input.
+ * </p>
+ * <p>
+ * The client is unconfigured while {@code embedding.azure.endpoint} is empty; callers check
+ * {@link #isConfigured()}. Failures are reported as {@link EmbeddingClientException} with the
+ * HTTP status and {@code Retry-After} delay, and classification is left to the caller.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Component
+public class AzureOpenAiEmbeddingClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(AzureOpenAiEmbeddingClient.class);
+    private static final int MAX_ERROR_BODY_CHARS = 2_000;
+
+    private final JsonFactory jsonFactory;
+    private final URI uri;
+    private final String apiKey;
+    private final int dimensions;
+    private final boolean gzipRequests;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+
+    public AzureOpenAiEmbeddingClient(ObjectMapper objectMapper,
+            @Value("${embedding.azure.endpoint:}") String endpoint,
+            @Value("${embedding.azure.deployment:text-embedding-3-large}") String deployment,
+            @Value("${embedding.azure.api-version:2024-02-01}") String apiVersion,
+            @Value("${embedding.azure.api-key:}") String apiKey,
+            @Value("${embedding.azure.dimensions:1536}") int dimensions,
+            @Value("${embedding.azure.gzip-requests:true}") boolean gzipRequests,
+            @Value("${embedding.azure.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${embedding.azure.request-timeout-ms:30000}") long requestTimeoutMs) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.uri = endpoint == null || endpoint.isBlank() ? null : URI.create(stripTrailingSlash(endpoint)
+                + "/openai/deployments/" + URLEncoder.encode(deployment, StandardCharsets.UTF_8)
+                + "/embeddings?api-version=" + URLEncoder.encode(apiVersion, StandardCharsets.UTF_8));
+        this.apiKey = apiKey;
+        this.dimensions = dimensions;
+        this.gzipRequests = gzipRequests;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.httpClient = uri == null ? null : HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        if (uri != null) {
+            logger.info("Azure OpenAI embedding client targeting {} (dimensions={}, gzip={})",
+                    uri, dimensions, gzipRequests);
+        }
+    }
+
+    /**
+     * @return whether an endpoint is configured
+     */
+    public boolean isConfigured() {
+        return uri != null;
+    }
+
+    /**
+     * @return embedding length requested from the API ({@code embedding.azure.dimensions})
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Embed a batch of texts in one request.
+     *
+     * @param texts input texts
+     * @return embeddings, index-aligned with {@code texts}
+     * @throws EmbeddingClientException on I/O failure, non-2xx response or malformed body
+     */
+    public List<float[]> embed(List<String> texts) throws EmbeddingClientException {
+        if (uri == null) {
+            throw new EmbeddingClientException("Azure OpenAI endpoint is not configured", 0, null, null);
+        }
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .header("api-key", apiKey)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(writeRequest(texts)));
+        if (gzipRequests) {
+            request.header("Content-Encoding", "gzip");
+        }
+
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            throw new EmbeddingClientException("Embedding request failed: " + e.getMessage(), 0, null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmbeddingClientException("Interrupted during embedding request", 0, null, e);
+        }
+
+        try (InputStream body = decode(response)) {
+            if (response.statusCode() / 100 != 2) {
+                throw new EmbeddingClientException("Embedding request returned HTTP " + response.statusCode()
+                        + ": " + readError(body), response.statusCode(), retryAfter(response.headers()), null);
+            }
+            return readResponse(jsonFactory, body, texts.size(), dimensions);
+        } catch (IOException e) {
+            throw new EmbeddingClientException("Could not read embedding response: " + e.getMessage(),
+                    0, null, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * Serialize {@code {"input": [...], "dimensions": n, "encoding_format": "float"}},
+     * gzip-compressed if enabled.
+     */
+    byte[] writeRequest(List<String> texts) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(texts.size() * 512);
+        try (OutputStream out = gzipRequests ? new GZIPOutputStream(buffer) : buffer;
+                JsonGenerator json = jsonFactory.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("input");
+            for (String text : texts) {
+                json.writeString(text);
+            }
+            json.writeEndArray();
+            json.writeNumberField("dimensions", dimensions);
+            json.writeStringField("encoding_format", "float");
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize embedding request", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Stream-parse an embeddings response. Only {@code data[].index} and
+     * {@code data[].embedding} are read; every other field is skipped without materializing it.
+     *
+     * @param jsonFactory   JSON factory
+     * @param body          response body
+     * @param expectedCount number of inputs sent
+     * @param dimensions    expected vector length, used to size the read buffer
+     * @return embeddings ordered by {@code index}
+     * @throws IOException if the body is malformed or does not hold one embedding per input
+     */
+    static List<float[]> readResponse(JsonFactory jsonFactory, InputStream body, int expectedCount,
+            int dimensions) throws IOException {
+        float[][] embeddings = new float[expectedCount][];
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("data".equals(field)) {
+                    expect(parser, value, JsonToken.START_ARRAY);
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readItem(parser, embeddings, dimensions);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        for (int i = 0; i < expectedCount; i++) {
+            if (embeddings[i] == null) {
+                throw new IOException("Embedding response has no item for input " + i);
+            }
+        }
+        return Arrays.asList(embeddings);
+    }
+
+    private static void readItem(JsonParser parser, float[][] embeddings, int dimensions) throws IOException {
+        int index = -1;
+        float[] vector = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("index".equals(field)) {
+                index = parser.getIntValue();
+            } else if ("embedding".equals(field)) {
+                expect(parser, value, JsonToken.START_ARRAY);
+                vector = readFloats(parser, dimensions);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (index < 0 || index >= embeddings.length || vector == null) {
+            throw new IOException("Embedding response item has invalid index " + index);
+        }
+        embeddings[index] = vector;
+    }
+
+    private static float[] readFloats(JsonParser parser, int dimensions) throws IOException {
+        float[] values = new float[Math.max(16, dimensions)];
+        int size = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT) {
+                throw new IOException("Unexpected " + token + " in embedding array");
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = parser.getFloatValue();
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Expected " + expected + " but got " + actual
+                    + " at " + parser.currentLocation());
+        }
+    }
+
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(v -> v.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        // Closing the body before its end cancels the exchange, and the connection is not
+        // returned to the pool. The parser stops at the closing brace and GZIPInputStream at
+        // the gzip trailer, so the rest is drained on close.
+        InputStream body = new FilterInputStream(response.body()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    in.transferTo(OutputStream.nullOutputStream());
+                } finally {
+                    super.close();
+                }
+            }
+        };
+        return gzip ? new GZIPInputStream(body) : body;
+    }
+
+    private static String readError(InputStream body) {
+        try {
+            String text = new String(body.readNBytes(MAX_ERROR_BODY_CHARS), StandardCharsets.UTF_8);
+            return text.isBlank() ? "(empty body)" : text;
+        } catch (IOException e) {
+            return "(unreadable body)";
+        }
+    }
+
+    /**
+     * Azure sends {@code retry-after-ms}; standard {@code Retry-After} is seconds or an
+     * HTTP date.
+     */
+    static Duration retryAfter(HttpHeaders headers) {
+        Optional<String> millis = headers.firstValue("retry-after-ms");
+        if (millis.isPresent()) {
+            try {
+                return Duration.ofMillis(Long.parseLong(millis.get().trim()));
+            } catch (NumberFormatException ignored) {
+                // fall through to Retry-After
+            }
+        }
+        Optional<String> value = headers.firstValue("Retry-After");
+        if (value.isEmpty()) {
+            return null;
+        }
+        String retryAfter = value.get().trim();
+        try {
+            return Duration.ofSeconds(Long.parseLong(retryAfter));
+        } catch (NumberFormatException e) {
+            try {
+                Duration until = Duration.between(ZonedDateTime.now(),
+                        ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME));
+                return until.isNegative() ? Duration.ZERO : until;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static String stripTrailingSlash(String endpoint) {
+        return endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+    }
+
+    /**
+     * Failed embedding request.
+     */
+    public static class EmbeddingClientException extends Exception {
+
+        private final int statusCode;
+        private final Duration retryAfter;
+
+        public EmbeddingClientException(String message, int statusCode, Duration retryAfter, Throwable cause) {
+            super(message, cause);
+            this.statusCode = statusCode;
+            this.retryAfter = retryAfter;
+        }
+
+        /**
+         * @return HTTP status, or 0 if no response was received
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /**
+         * @return delay requested by the server, or {@code null}
+         */
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+}
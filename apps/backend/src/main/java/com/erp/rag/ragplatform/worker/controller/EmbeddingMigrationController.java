@@ -0,0 +1,104 @@
+package com.erp.rag.ragplatform.worker.controller;
+
+import com.erp.rag.ragplatform.worker.domain.EmbeddingModelMigration;
+import com.erp.rag.ragplatform.worker.service.EmbeddingMigrationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * REST controller for embedding model migrations.
+ * <p>
+ * Story 1.4 – AC3: Start, watch and cancel the re-embedding of all documents with another
+ * provider under /internal/rag/embedding-migrations. Searches keep using the current vectors
+ * until cutover.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@RestController
+@RequestMapping("/internal/rag/embedding-migrations")
+public class EmbeddingMigrationController {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingMigrationController.class);
+
+    private final EmbeddingMigrationService migrationService;
+
+    public EmbeddingMigrationController(EmbeddingMigrationService migrationService) {
+        this.migrationService = migrationService;
+    }
+
+    /**
+     * Start a migration to a provider, or resume the active migration to it.
+     *
+     * @param request target provider
+     * @return the migration
+     */
+    @PostMapping
+    public ResponseEntity<?> start(@RequestBody MigrationRequest request) {
+        if (request.targetProvider() == null || request.targetProvider().isBlank()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "targetProvider is required"));
+        }
+        try {
+            return ResponseEntity.accepted().body(toJson(migrationService.start(request.targetProvider())));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            logger.warn("Rejected embedding migration to {}: {}", request.targetProvider(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * @return the active migration, or else the last completed one
+     */
+    @GetMapping("/current")
+    public ResponseEntity<?> current() {
+        return migrationService.current()
+                .<ResponseEntity<?>>map(migration -> ResponseEntity.ok(toJson(migration)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Cancel the active migration.
+     *
+     * @return the cancelled migration
+     */
+    @DeleteMapping("/current")
+    public ResponseEntity<?> cancel() {
+        return migrationService.cancel()
+                .<ResponseEntity<?>>map(migration -> ResponseEntity.accepted().body(Map.of(
+                        "migration_id", migration.id().toString(),
+                        "status", "cancelling")))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static Map<String, Object> toJson(EmbeddingModelMigration migration) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("migration_id", migration.id().toString());
+        body.put("status", migration.status().value());
+        body.put("source_model", migration.sourceModel());
+        body.put("target_provider", migration.targetProvider());
+        body.put("target_model", migration.targetModel());
+        body.put("total_documents", migration.totalDocuments());
+        body.put("migrated_documents", migration.migratedDocuments());
+        body.put("coverage", migration.coverage());
+        body.put("error", migration.errorMessage());
+        body.put("started_at", migration.startedAt());
+        body.put("completed_at", migration.completedAt());
+        return body;
+    }
+
+    /**
+     * Embedding model migration request DTO.
+     */
+    public record MigrationRequest(String targetProvider) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.erp.rag.ragplatform.worker.controller;
+
+import com.erp.rag.ragplatform.worker.service.VectorPartitionService;
+import com.erp.rag.supabase.vector.VectorPartitionDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST controller for the tenant partitions of {@code vector_documents}.
+ * <p>
+ * Story 1.3 – AC2: List partitions and large tenants of the default partition, and move a
+ * tenant into a dedicated partition, under /internal/rag/vector-partitions.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@RestController
+@RequestMapping("/internal/rag/vector-partitions")
+public class VectorPartitionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorPartitionController.class);
+
+    private final VectorPartitionService partitionService;
+
+    public VectorPartitionController(VectorPartitionService partitionService) {
+        this.partitionService = partitionService;
+    }
+
+    /**
+     * @return partitions with their bounds and estimated row counts
+     */
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> partitions() {
+        return ResponseEntity.ok(partitionService.partitions().stream()
+                .map(VectorPartitionController::toJson)
+                .toList());
+    }
+
+    /**
+     * @return tenants of the default partition above the dedicated partition threshold
+     */
+    @GetMapping("/candidates")
+    public ResponseEntity<List<Map<String, Object>>> candidates() {
+        return ResponseEntity.ok(partitionService.candidates().stream()
+                .map(tenant -> Map.<String, Object>of(
+                        "company_id", tenant.companyId(),
+                        "live_documents", tenant.liveRows()))
+                .toList());
+    }
+
+    /**
+     * Move a tenant into a dedicated partition in the background.
+     *
+     * @param companyId vector company id
+     * @return the partition being created
+     */
+    @PostMapping("/{companyId}")
+    public ResponseEntity<?> move(@PathVariable long companyId) {
+        try {
+            return ResponseEntity.accepted().body(Map.of(
+                    "company_id", companyId,
+                    "partition", partitionService.move(companyId),
+                    "status", "moving"));
+        } catch (IllegalStateException e) {
+            logger.warn("Rejected partition move for company {}: {}", companyId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private static Map<String, Object> toJson(VectorPartitionDao.Partition partition) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("name", partition.name());
+        body.put("bound", partition.bound());
+        body.put("partitioned", partition.partitioned());
+        body.put("estimated_rows", partition.estimatedRows());
+        return body;
+    }
+}
@@ -1,17 +1,22 @@
 package com.erp.rag.ragplatform.worker.dao;
 
 import com.erp.rag.ragplatform.worker.domain.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * DAO for extracting ERP documents from Supabase PostgreSQL.
@@ -20,6 +25,10 @@ import java.util.UUID;
  * Uses NamedParameterJdbcTemplate with retry logic for transient failures.
  * All queries filter by company_id for multi-tenant isolation and exclude soft-deleted records.
  * </p>
+ * <p>
+ * Each table is available both as a {@code List} (small, ad-hoc extractions) and as a
+ * cursor-backed {@code stream*} variant used by the embedding worker for full reindexes.
+ * </p>
  *
  * @author dev-agent
  * @since 1.0.0
@@ -27,10 +36,196 @@ import java.util.UUID;
 @Repository
 public class DocumentExtractionDao {
 
+    // Source queries, shared by the list-returning and streaming variants
+
+    private static final String INVOICES_SQL = """
+            SELECT 
+                i.id::text::uuid as id,
+                i.company_id::text::uuid as company_id,
+                i.customer_id::text::uuid as customer_id,
+                c.name as customer_name,
+                i.invoice_number,
+                i.invoice_date,
+                i.due_date,
+                i.total_amount,
+                i.paid_amount,
+                i.status,
+                i.notes,
+                fp.year || '-' || LPAD(fp.period::text, 2, '0') as fiscal_period,
+                i.deleted_at,
+                STRING_AGG(il.description, '; ') as description
+            FROM accounting.invoices i
+            JOIN accounting.customers c ON i.customer_id = c.id
+            LEFT JOIN accounting.fiscal_periods fp ON i.fiscal_period_id = fp.id
+            LEFT JOIN accounting.invoice_lines il ON i.id = il.invoice_id
+            WHERE i.company_id = :companyId
+              AND i.deleted_at IS NULL
+              AND (:updatedAfter IS NULL OR i.updated_at > :updatedAfter)
+            GROUP BY i.id, i.company_id, i.customer_id, c.name, i.invoice_number, 
+                     i.invoice_date, i.due_date, i.total_amount, i.paid_amount, i.status, 
+                     i.notes, fp.year, fp.period, i.deleted_at
+            ORDER BY i.updated_at DESC
+            """;
+
+    private static final String BILLS_SQL = """
+            SELECT 
+                b.id::text::uuid as id,
+                b.company_id::text::uuid as company_id,
+                b.vendor_id::text::uuid as vendor_id,
+                v.name as vendor_name,
+                b.bill_number,
+                b.bill_date,
+                b.due_date,
+                b.total_amount,
+                b.paid_amount,
+                b.status,
+                b.notes,
+                fp.year || '-' || LPAD(fp.period::text, 2, '0') as fiscal_period,
+                b.deleted_at,
+                STRING_AGG(bl.description, '; ') as description
+            FROM accounting.bills b
+            JOIN accounting.vendors v ON b.vendor_id = v.id
+            LEFT JOIN accounting.fiscal_periods fp ON b.fiscal_period_id = fp.id
+            LEFT JOIN accounting.bill_lines bl ON b.id = bl.bill_id
+            WHERE b.company_id = :companyId
+              AND b.deleted_at IS NULL
+              AND (:updatedAfter IS NULL OR b.updated_at > :updatedAfter)
+            GROUP BY b.id, b.company_id, b.vendor_id, v.name, b.bill_number,
+                     b.bill_date, b.due_date, b.total_amount, b.paid_amount, b.status,
+                     b.notes, fp.year, fp.period, b.deleted_at
+            ORDER BY b.updated_at DESC
+            """;
+
+    private static final String JOURNAL_ENTRIES_SQL = """
+            SELECT 
+                je.id::text::uuid as id,
+                je.company_id::text::uuid as company_id,
+                je.entry_number,
+                je.entry_date,
+                je.entry_type,
+                je.description,
+                je.reference_no,
+                je.status,
+                fp.year || '-' || LPAD(fp.period::text, 2, '0') as fiscal_period,
+                je.deleted_at,
+                SUM(jel.debit) as total_debit,
+                SUM(jel.credit) as total_credit,
+                STRING_AGG(DISTINCT a.code, ', ') as account_codes
+            FROM accounting.journal_entries je
+            LEFT JOIN accounting.fiscal_periods fp ON je.fiscal_period_id = fp.id
+            LEFT JOIN accounting.journal_entry_lines jel ON je.id = jel.journal_entry_id
+            LEFT JOIN accounting.accounts a ON jel.account_id = a.id
+            WHERE je.company_id = :companyId
+              AND je.deleted_at IS NULL
+              AND (:updatedAfter IS NULL OR je.updated_at > :updatedAfter)
+            GROUP BY je.id, je.company_id, je.entry_number, je.entry_date, je.entry_type,
+                     je.description, je.reference_no, je.status, fp.year, fp.period, je.deleted_at
+            ORDER BY je.updated_at DESC
+            """;
+
+    private static final String CUSTOMERS_SQL = """
+            SELECT 
+                c.id::text::uuid as id,
+                c.company_id::text::uuid as company_id,
+                c.code,
+                c.name,
+                c.tax_code,
+                c.address,
+                c.phone,
+                c.email,
+                c.contact_person,
+                c.credit_limit,
+                c.payment_terms,
+                c.is_active,
+                c.deleted_at
+            FROM accounting.customers c
+            WHERE c.company_id = :companyId
+              AND c.deleted_at IS NULL
+              AND (:updatedAfter IS NULL OR c.updated_at > :updatedAfter)
+            ORDER BY c.updated_at DESC
+            """;
+
+    private static final String VENDORS_SQL = """
+            SELECT 
+                v.id::text::uuid as id,
+                v.company_id::text::uuid as company_id,
+                v.code,
+                v.name,
+                v.name_en,
+                v.tax_code,
+                v.address,
+                v.phone,
+                v.email,
+                v.contact_person,
+                v.payment_terms,
+                v.is_active,
+                v.deleted_at
+            FROM accounting.vendors v
+            WHERE v.company_id = :companyId
+              AND v.deleted_at IS NULL
+              AND (:updatedAfter IS NULL OR v.updated_at > :updatedAfter)
+            ORDER BY v.updated_at DESC
+            """;
+
+    private static final String PAYMENTS_SQL = """
+            SELECT 
+                p.id::text::uuid as id,
+                p.company_id::text::uuid as company_id,
+                p.customer_id::text::uuid as customer_id,
+                c.name as customer_name,
+                p.payment_number,
+                p.payment_date,
+                p.amount,
+                p.payment_method,
+                p.reference_no,
+                p.notes,
+                fp.year || '-' || LPAD(fp.period::text, 2, '0') as fiscal_period,
+                p.deleted_at
+            FROM accounting.payments p
+            JOIN accounting.customers c ON p.customer_id = c.id
+            LEFT JOIN accounting.fiscal_periods fp ON p.fiscal_period_id = fp.id
+            WHERE p.company_id = :companyId
+              AND p.deleted_at IS NULL
+              AND (:updatedAfter IS NULL OR p.updated_at > :updatedAfter)
+            ORDER BY p.updated_at DESC
+            """;
+
+    private static final String BANK_TRANSACTIONS_SQL = """
+            SELECT 
+                ct.id::text::uuid as id,
+                ct.company_id::text::uuid as company_id,
+                ct.bank_account_id::text::uuid as bank_account_id,
+                ba.account_name as bank_account_name,
+                ct.transaction_number,
+                ct.transaction_date,
+                ct.transaction_type,
+                ct.amount,
+                ct.description,
+                ct.reference_no,
+                fp.year || '-' || LPAD(fp.period::text, 2, '0') as fiscal_period,
+                ct.deleted_at
+            FROM accounting.cash_transactions ct
+            JOIN accounting.bank_accounts ba ON ct.bank_account_id = ba.id
+            LEFT JOIN accounting.fiscal_periods fp ON ct.fiscal_period_id = fp.id
+            WHERE ct.company_id = :companyId
+              AND ct.deleted_at IS NULL
+              AND (:updatedAfter IS NULL OR ct.updated_at > :updatedAfter)
+            ORDER BY ct.updated_at DESC
+            """;
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
 
-    public DocumentExtractionDao(NamedParameterJdbcTemplate jdbcTemplate) {
+    public DocumentExtractionDao(NamedParameterJdbcTemplate jdbcTemplate,
+            @Value("${embedding.worker.extraction.fetch-size:500}") int fetchSize) {
         this.jdbcTemplate = jdbcTemplate;
+
+        // Dedicated template so the fetch size only applies to streaming reads. PostgreSQL
+        // only honours it (server-side cursor) inside a transaction, hence @Transactional
+        // on the stream* methods.
+        JdbcTemplate cursorTemplate = new JdbcTemplate(jdbcTemplate.getJdbcTemplate().getDataSource());
+        cursorTemplate.setFetchSize(fetchSize);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(cursorTemplate);
     }
 
     /**
@@ -42,40 +237,26 @@ public class DocumentExtractionDao {
      */
     @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2.0))
     public List<InvoiceDocument> extractInvoices(UUID companyId, OffsetDateTime updatedAfter) {
-        String sql = """
-                SELECT 
-                    i.id::text::uuid as id,
-                    i.company_id::text::uuid as company_id,
-                    i.customer_id::text::uuid as customer_id,
-                    c.name as customer_name,
-                    i.invoice_number,
-                    i.invoice_date,
-                    i.due_date,
-                    i.total_amount,
-                    i.paid_amount,
-                    i.status,
-                    i.notes,
-                    fp.year || '-' || LPAD(fp.period::text, 2, '0') as fiscal_period,
-                    i.deleted_at,
-                    STRING_AGG(il.description, '; ') as description
-                FROM accounting.invoices i
-                JOIN accounting.customers c ON i.customer_id = c.id
-                LEFT JOIN accounting.fiscal_periods fp ON i.fiscal_period_id = fp.id
-                LEFT JOIN accounting.invoice_lines il ON i.id = il.invoice_id
-                WHERE i.company_id = :companyId
-                  AND i.deleted_at IS NULL
-                  AND (:updatedAfter IS NULL OR i.updated_at > :updatedAfter)
-                GROUP BY i.id, i.company_id, i.customer_id, c.name, i.invoice_number, 
-                         i.invoice_date, i.due_date, i.total_amount, i.paid_amount, i.status, 
-                         i.notes, fp.year, fp.period, i.deleted_at
-                ORDER BY i.updated_at DESC
-                """;
-
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("companyId", companyId.toString())
-                .addValue("updatedAfter", updatedAfter);
+        return jdbcTemplate.query(INVOICES_SQL, params(companyId, updatedAfter), this::mapInvoice);
+    }
 
-        return jdbcTemplate.query(sql, params, this::mapInvoice);
+    /**
+     * Stream invoices for a specific company through a server-side cursor.
+     * <p>
+     * Rows are fetched in chunks of {@code fetchSize} and handed to the consumer one at a time,
+     * so memory does not grow with the number of matching rows. Not retried: rows already
+     * handed to the consumer cannot be taken back.
+     * </p>
+     *
+     * @param companyId    company UUID
+     * @param updatedAfter optional timestamp for incremental extraction (null for full extraction)
+     * @param consumer     receives each mapped document in cursor order
+     */
+    @Transactional(readOnly = true)
+    public void streamInvoices(UUID companyId, OffsetDateTime updatedAfter,
+            Consumer<? super InvoiceDocument> consumer) {
+        streamingJdbcTemplate.query(INVOICES_SQL, params(companyId, updatedAfter),
+                (RowCallbackHandler) rs -> consumer.accept(mapInvoice(rs, rs.getRow())));
     }
 
     /**
@@ -83,40 +264,17 @@ public class DocumentExtractionDao {
      */
     @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2.0))
     public List<BillDocument> extractBills(UUID companyId, OffsetDateTime updatedAfter) {
-        String sql = """
-                SELECT 
-                    b.id::text::uuid as id,
-                    b.company_id::text::uuid as company_id,
-                    b.vendor_id::text::uuid as vendor_id,
-                    v.name as vendor_name,
-                    b.bill_number,
-                    b.bill_date,
-                    b.due_date,
-                    b.total_amount,
-                    b.paid_amount,
-                    b.status,
-                    b.notes,
-                    fp.year || '-' || LPAD(fp.period::text, 2, '0') as fiscal_period,
-                    b.deleted_at,
-                    STRING_AGG(bl.description, '; ') as description
-                FROM accounting.bills b
-                JOIN accounting.vendors v ON b.vendor_id = v.id
-                LEFT JOIN accounting.fiscal_periods fp ON b.fiscal_period_id = fp.id
-                LEFT JOIN accounting.bill_lines bl ON b.id = bl.bill_id
-                WHERE b.company_id = :companyId
-                  AND b.deleted_at IS NULL
-                  AND (:updatedAfter IS NULL OR b.updated_at > :updatedAfter)
-                GROUP BY b.id, b.company_id, b.vendor_id, v.name, b.bill_number,
-                         b.bill_date, b.due_date, b.total_amount, b.paid_amount, b.status,
-                         b.notes, fp.year, fp.period, b.deleted_at
-                ORDER BY b.updated_at DESC
-                """;
-
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("companyId", companyId.toString())
-                .addValue("updatedAfter", updatedAfter);
+        return jdbcTemplate.query(BILLS_SQL, params(companyId, updatedAfter), this::mapBill);
+    }
 
-        return jdbcTemplate.query(sql, params, this::mapBill);
+    /**
+     * Stream bills for a specific company through a server-side cursor.
+     */
+    @Transactional(readOnly = true)
+    public void streamBills(UUID companyId, OffsetDateTime updatedAfter,
+            Consumer<? super BillDocument> consumer) {
+        streamingJdbcTemplate.query(BILLS_SQL, params(companyId, updatedAfter),
+                (RowCallbackHandler) rs -> consumer.accept(mapBill(rs, rs.getRow())));
     }
 
     /**
@@ -124,38 +282,17 @@ public class DocumentExtractionDao {
      */
     @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2.0))
     public List<JournalEntryDocument> extractJournalEntries(UUID companyId, OffsetDateTime updatedAfter) {
-        String sql = """
-                SELECT 
-                    je.id::text::uuid as id,
-                    je.company_id::text::uuid as company_id,
-                    je.entry_number,
-                    je.entry_date,
-                    je.entry_type,
-                    je.description,
-                    je.reference_no,
-                    je.status,
-                    fp.year || '-' || LPAD(fp.period::text, 2, '0') as fiscal_period,
-                    je.deleted_at,
-                    SUM(jel.debit) as total_debit,
-                    SUM(jel.credit) as total_credit,
-                    STRING_AGG(DISTINCT a.code, ', ') as account_codes
-                FROM accounting.journal_entries je
-                LEFT JOIN accounting.fiscal_periods fp ON je.fiscal_period_id = fp.id
-                LEFT JOIN accounting.journal_entry_lines jel ON je.id = jel.journal_entry_id
-                LEFT JOIN accounting.accounts a ON jel.account_id = a.id
-                WHERE je.company_id = :companyId
-                  AND je.deleted_at IS NULL
-                  AND (:updatedAfter IS NULL OR je.updated_at > :updatedAfter)
-                GROUP BY je.id, je.company_id, je.entry_number, je.entry_date, je.entry_type,
-                         je.description, je.reference_no, je.status, fp.year, fp.period, je.deleted_at
-                ORDER BY je.updated_at DESC
-                """;
-
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("companyId", companyId.toString())
-                .addValue("updatedAfter", updatedAfter);
+        return jdbcTemplate.query(JOURNAL_ENTRIES_SQL, params(companyId, updatedAfter), this::mapJournalEntry);
+    }
 
-        return jdbcTemplate.query(sql, params, this::mapJournalEntry);
+    /**
+     * Stream journal entries for a specific company through a server-side cursor.
+     */
+    @Transactional(readOnly = true)
+    public void streamJournalEntries(UUID companyId, OffsetDateTime updatedAfter,
+            Consumer<? super JournalEntryDocument> consumer) {
+        streamingJdbcTemplate.query(JOURNAL_ENTRIES_SQL, params(companyId, updatedAfter),
+                (RowCallbackHandler) rs -> consumer.accept(mapJournalEntry(rs, rs.getRow())));
     }
 
     /**
@@ -163,33 +300,17 @@ public class DocumentExtractionDao {
      */
     @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2.0))
     public List<CustomerDocument> extractCustomers(UUID companyId, OffsetDateTime updatedAfter) {
-        String sql = """
-                SELECT 
-                    c.id::text::uuid as id,
-                    c.company_id::text::uuid as company_id,
-                    c.code,
-                    c.name,
-                    c.tax_code,
-                    c.address,
-                    c.phone,
-                    c.email,
-                    c.contact_person,
-                    c.credit_limit,
-                    c.payment_terms,
-                    c.is_active,
-                    c.deleted_at
-                FROM accounting.customers c
-                WHERE c.company_id = :companyId
-                  AND c.deleted_at IS NULL
-                  AND (:updatedAfter IS NULL OR c.updated_at > :updatedAfter)
-                ORDER BY c.updated_at DESC
-                """;
-
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("companyId", companyId.toString())
-                .addValue("updatedAfter", updatedAfter);
+        return jdbcTemplate.query(CUSTOMERS_SQL, params(companyId, updatedAfter), this::mapCustomer);
+    }
 
-        return jdbcTemplate.query(sql, params, this::mapCustomer);
+    /**
+     * Stream customers for a specific company through a server-side cursor.
+     */
+    @Transactional(readOnly = true)
+    public void streamCustomers(UUID companyId, OffsetDateTime updatedAfter,
+            Consumer<? super CustomerDocument> consumer) {
+        streamingJdbcTemplate.query(CUSTOMERS_SQL, params(companyId, updatedAfter),
+                (RowCallbackHandler) rs -> consumer.accept(mapCustomer(rs, rs.getRow())));
     }
 
     /**
@@ -197,33 +318,17 @@ public class DocumentExtractionDao {
      */
     @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2.0))
     public List<VendorDocument> extractVendors(UUID companyId, OffsetDateTime updatedAfter) {
-        String sql = """
-                SELECT 
-                    v.id::text::uuid as id,
-                    v.company_id::text::uuid as company_id,
-                    v.code,
-                    v.name,
-                    v.name_en,
-                    v.tax_code,
-                    v.address,
-                    v.phone,
-                    v.email,
-                    v.contact_person,
-                    v.payment_terms,
-                    v.is_active,
-                    v.deleted_at
-                FROM accounting.vendors v
-                WHERE v.company_id = :companyId
-                  AND v.deleted_at IS NULL
-                  AND (:updatedAfter IS NULL OR v.updated_at > :updatedAfter)
-                ORDER BY v.updated_at DESC
-                """;
-
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("companyId", companyId.toString())
-                .addValue("updatedAfter", updatedAfter);
+        return jdbcTemplate.query(VENDORS_SQL, params(companyId, updatedAfter), this::mapVendor);
+    }
 
-        return jdbcTemplate.query(sql, params, this::mapVendor);
+    /**
+     * Stream vendors for a specific company through a server-side cursor.
+     */
+    @Transactional(readOnly = true)
+    public void streamVendors(UUID companyId, OffsetDateTime updatedAfter,
+            Consumer<? super VendorDocument> consumer) {
+        streamingJdbcTemplate.query(VENDORS_SQL, params(companyId, updatedAfter),
+                (RowCallbackHandler) rs -> consumer.accept(mapVendor(rs, rs.getRow())));
     }
 
     /**
@@ -231,34 +336,17 @@ public class DocumentExtractionDao {
      */
     @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2.0))
     public List<PaymentDocument> extractPayments(UUID companyId, OffsetDateTime updatedAfter) {
-        String sql = """
-                SELECT 
-                    p.id::text::uuid as id,
-                    p.company_id::text::uuid as company_id,
-                    p.customer_id::text::uuid as customer_id,
-                    c.name as customer_name,
-                    p.payment_number,
-                    p.payment_date,
-                    p.amount,
-                    p.payment_method,
-                    p.reference_no,
-                    p.notes,
-                    fp.year || '-' || LPAD(fp.period::text, 2, '0') as fiscal_period,
-                    p.deleted_at
-                FROM accounting.payments p
-                JOIN accounting.customers c ON p.customer_id = c.id
-                LEFT JOIN accounting.fiscal_periods fp ON p.fiscal_period_id = fp.id
-                WHERE p.company_id = :companyId
-                  AND p.deleted_at IS NULL
-                  AND (:updatedAfter IS NULL OR p.updated_at > :updatedAfter)
-                ORDER BY p.updated_at DESC
-                """;
-
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("companyId", companyId.toString())
-                .addValue("updatedAfter", updatedAfter);
+        return jdbcTemplate.query(PAYMENTS_SQL, params(companyId, updatedAfter), this::mapPayment);
+    }
 
-        return jdbcTemplate.query(sql, params, this::mapPayment);
+    /**
+     * Stream payments for a specific company through a server-side cursor.
+     */
+    @Transactional(readOnly = true)
+    public void streamPayments(UUID companyId, OffsetDateTime updatedAfter,
+            Consumer<? super PaymentDocument> consumer) {
+        streamingJdbcTemplate.query(PAYMENTS_SQL, params(companyId, updatedAfter),
+                (RowCallbackHandler) rs -> consumer.accept(mapPayment(rs, rs.getRow())));
     }
 
     /**
@@ -266,34 +354,23 @@ public class DocumentExtractionDao {
      */
     @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2.0))
     public List<BankTransactionDocument> extractBankTransactions(UUID companyId, OffsetDateTime updatedAfter) {
-        String sql = """
-                SELECT 
-                    ct.id::text::uuid as id,
-                    ct.company_id::text::uuid as company_id,
-                    ct.bank_account_id::text::uuid as bank_account_id,
-                    ba.account_name as bank_account_name,
-                    ct.transaction_number,
-                    ct.transaction_date,
-                    ct.transaction_type,
-                    ct.amount,
-                    ct.description,
-                    ct.reference_no,
-                    fp.year || '-' || LPAD(fp.period::text, 2, '0') as fiscal_period,
-                    ct.deleted_at
-                FROM accounting.cash_transactions ct
-                JOIN accounting.bank_accounts ba ON ct.bank_account_id = ba.id
-                LEFT JOIN accounting.fiscal_periods fp ON ct.fiscal_period_id = fp.id
-                WHERE ct.company_id = :companyId
-                  AND ct.deleted_at IS NULL
-                  AND (:updatedAfter IS NULL OR ct.updated_at > :updatedAfter)
-                ORDER BY ct.updated_at DESC
-                """;
-
-        MapSqlParameterSource params = new MapSqlParameterSource()
+        return jdbcTemplate.query(BANK_TRANSACTIONS_SQL, params(companyId, updatedAfter), this::mapBankTransaction);
+    }
+
+    /**
+     * Stream bank/cash transactions for a specific company through a server-side cursor.
+     */
+    @Transactional(readOnly = true)
+    public void streamBankTransactions(UUID companyId, OffsetDateTime updatedAfter,
+            Consumer<? super BankTransactionDocument> consumer) {
+        streamingJdbcTemplate.query(BANK_TRANSACTIONS_SQL, params(companyId, updatedAfter),
+                (RowCallbackHandler) rs -> consumer.accept(mapBankTransaction(rs, rs.getRow())));
+    }
+
+    private MapSqlParameterSource params(UUID companyId, OffsetDateTime updatedAfter) {
+        return new MapSqlParameterSource()
                 .addValue("companyId", companyId.toString())
                 .addValue("updatedAfter", updatedAfter);
-
-        return jdbcTemplate.query(sql, params, this::mapBankTransaction);
     }
 
     // Row mappers
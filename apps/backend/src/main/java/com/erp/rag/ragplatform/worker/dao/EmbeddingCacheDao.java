@@ -0,0 +1,97 @@
+package com.erp.rag.ragplatform.worker.dao;
+
+import com.erp.rag.supabase.vector.PgVector;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DAO for the content-addressed embedding cache ({@code accounting.embedding_cache}).
+ * <p>
+ * Story 1.4 – AC3: Rows are keyed by the SHA-256 of the rendered, PII-masked text and the
+ * embedding model id. Lookups fetch a whole slice in one round-trip; embeddings are read
+ * through {@code vector_send} and decoded with {@link PgVector#fromBinary(byte[])}, so no
+ * 1536-float text literal is parsed.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Repository
+public class EmbeddingCacheDao {
+
+    static final String FIND_SQL = """
+            SELECT content_hash, vector_send(embedding) AS embedding
+            FROM accounting.embedding_cache
+            WHERE model_id = :modelId
+              AND content_hash = ANY(:hashes)
+            """;
+
+    static final String INSERT_SQL = """
+            INSERT INTO accounting.embedding_cache (content_hash, model_id, embedding)
+            VALUES (:hash, :modelId, CAST(:embedding AS vector))
+            ON CONFLICT (content_hash, model_id) DO NOTHING
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public EmbeddingCacheDao(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Fetch cached embeddings for a set of content hashes.
+     *
+     * @param modelId embedding model id
+     * @param hashes  SHA-256 digests of the rendered texts
+     * @return embeddings by hash; hashes without a cached row are absent
+     */
+    public Map<ByteBuffer, float[]> findByHashes(String modelId, Collection<byte[]> hashes) {
+        Map<ByteBuffer, float[]> found = new HashMap<>();
+        if (hashes.isEmpty()) {
+            return found;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("modelId", modelId)
+                .addValue("hashes", hashes.toArray(new byte[0][]));
+
+        jdbcTemplate.query(FIND_SQL, params, rs -> {
+            found.put(ByteBuffer.wrap(rs.getBytes("content_hash")),
+                    PgVector.fromBinary(rs.getBytes("embedding")).toArray());
+        });
+        return found;
+    }
+
+    /**
+     * Store embeddings; rows already cached (e.g. by a concurrent batch) are left untouched.
+     *
+     * @param modelId    embedding model id
+     * @param embeddings embeddings by SHA-256 digest of the rendered text
+     */
+    public void insertAll(String modelId, Map<ByteBuffer, float[]> embeddings) {
+        if (embeddings.isEmpty()) {
+            return;
+        }
+
+        List<MapSqlParameterSource> batch = embeddings.entrySet().stream()
+                .map(e -> new MapSqlParameterSource()
+                        .addValue("hash", toArray(e.getKey()))
+                        .addValue("modelId", modelId)
+                        .addValue("embedding", e.getValue()))
+                .toList();
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch.toArray(new MapSqlParameterSource[0]));
+    }
+
+    private static byte[] toArray(ByteBuffer hash) {
+        byte[] bytes = new byte[hash.remaining()];
+        hash.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,424 @@
+package com.erp.rag.ragplatform.worker.dao;
+
+import com.erp.rag.ragplatform.worker.domain.EmbeddingModelMigration;
+import com.erp.rag.supabase.vector.VectorPartitionDao;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * DAO for embedding model migrations: the state table, the shadow column
+ * {@code vector_documents.embedding_next} and the cutover DDL.
+ * <p>
+ * Story 1.4 – AC3: Backfill reads pending documents by id (keyset) through a partial index
+ * that only holds live rows still lacking a target vector, so it shrinks as the backfill
+ * progresses. Shadow HNSW indexes mirror every HNSW index on {@code embedding} (including
+ * the quantized and truncated ones) and are built {@code CONCURRENTLY}. Cutover swaps the
+ * columns and index names in one short transaction; readers see either the old or the new
+ * vectors, never a mix.
+ * </p>
+ * <p>
+ * Index DDL goes through {@link VectorPartitionDao}, which builds and renames the index of
+ * every partition once the table is partitioned (changelog 013).
+ * </p>
+ * <p>
+ * DDL statements must run outside a surrounding transaction ({@code CONCURRENTLY}); callers
+ * are not transactional.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Repository
+public class EmbeddingMigrationDao {
+
+    static final String TABLE = "accounting.vector_documents";
+    static final String PENDING_INDEX = "idx_vector_documents_embedding_next_pending";
+    static final String SHADOW_CONSTRAINT = "chk_vector_documents_embedding_next_not_null";
+
+    static final String SELECT_MIGRATION_SQL = """
+            SELECT id, source_model, target_provider, target_model, status, total_documents,
+                   migrated_documents, error_message, started_at, completed_at
+            FROM accounting.embedding_model_migrations
+            """;
+
+    static final String FIND_ACTIVE_SQL = SELECT_MIGRATION_SQL
+            + "WHERE status IN ('backfilling', 'indexing') ORDER BY started_at DESC LIMIT 1";
+
+    static final String FIND_LATEST_COMPLETE_SQL = SELECT_MIGRATION_SQL
+            + "WHERE status = 'complete' ORDER BY completed_at DESC LIMIT 1";
+
+    static final String INSERT_SQL = """
+            INSERT INTO accounting.embedding_model_migrations
+                (source_model, target_provider, target_model, status, total_documents)
+            VALUES (:sourceModel, :targetProvider, :targetModel, 'backfilling', :total)
+            RETURNING id, source_model, target_provider, target_model, status, total_documents,
+                      migrated_documents, error_message, started_at, completed_at
+            """;
+
+    static final String UPDATE_PROGRESS_SQL = """
+            UPDATE accounting.embedding_model_migrations
+            SET total_documents = :total, migrated_documents = :migrated, updated_at = now()
+            WHERE id = :id
+            """;
+
+    static final String UPDATE_STATUS_SQL = """
+            UPDATE accounting.embedding_model_migrations
+            SET status = :status, error_message = :error, updated_at = now(),
+                completed_at = CASE WHEN :terminal THEN now() ELSE completed_at END
+            WHERE id = :id
+            """;
+
+    static final String FIND_PENDING_SQL = """
+            SELECT id, COALESCE(NULLIF(content_text, ''), metadata->>'content_text') AS content_text
+            FROM accounting.vector_documents
+            WHERE embedding_next IS NULL AND deleted_at IS NULL AND id > :afterId
+            ORDER BY id
+            LIMIT :limit
+            """;
+
+    static final String WRITE_SHADOW_SQL = """
+            UPDATE accounting.vector_documents
+            SET embedding_next = COALESCE(CAST(:embedding AS vector), embedding)
+            WHERE id = :id AND embedding_next IS NULL
+            """;
+
+    static final String COVERAGE_SQL = """
+            SELECT count(*) AS total, count(embedding_next) AS migrated
+            FROM accounting.vector_documents
+            WHERE deleted_at IS NULL
+            """;
+
+    static final String HNSW_INDEXES_SQL = """
+            SELECT indexname, indexdef
+            FROM pg_indexes
+            WHERE schemaname = 'accounting' AND tablename = 'vector_documents'
+              AND indexdef LIKE '%USING hnsw%'
+            ORDER BY indexname
+            """;
+
+    private static final Pattern EMBEDDING_COLUMN = Pattern.compile("\\bembedding\\b");
+
+    private static final RowMapper<EmbeddingModelMigration> MIGRATION_MAPPER = (rs, rowNum) ->
+            new EmbeddingModelMigration(
+                    rs.getObject("id", UUID.class),
+                    rs.getString("source_model"),
+                    rs.getString("target_provider"),
+                    rs.getString("target_model"),
+                    EmbeddingModelMigration.Status.valueOf(rs.getString("status").toUpperCase(Locale.ROOT)),
+                    rs.getLong("total_documents"),
+                    rs.getLong("migrated_documents"),
+                    rs.getString("error_message"),
+                    rs.getObject("started_at", OffsetDateTime.class),
+                    rs.getObject("completed_at", OffsetDateTime.class));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VectorPartitionDao partitionDao;
+
+    public EmbeddingMigrationDao(NamedParameterJdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            VectorPartitionDao partitionDao) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.partitionDao = partitionDao;
+    }
+
+    /**
+     * @return the backfilling or indexing migration, if any
+     */
+    public Optional<EmbeddingModelMigration> findActive() {
+        return jdbcTemplate.query(FIND_ACTIVE_SQL, Map.of(), MIGRATION_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * @return the most recent completed migration, naming the model of {@code embedding}
+     */
+    public Optional<EmbeddingModelMigration> findLatestComplete() {
+        return jdbcTemplate.query(FIND_LATEST_COMPLETE_SQL, Map.of(), MIGRATION_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Record a new migration in state {@code backfilling}. A unique partial index rejects a
+     * second active migration.
+     *
+     * @param sourceModel    current model
+     * @param targetProvider target provider name
+     * @param targetModel    target model id
+     * @param total          live documents to migrate
+     * @return the stored migration
+     */
+    public EmbeddingModelMigration insert(String sourceModel, String targetProvider, String targetModel, long total) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("sourceModel", sourceModel)
+                .addValue("targetProvider", targetProvider)
+                .addValue("targetModel", targetModel)
+                .addValue("total", total);
+        return jdbcTemplate.queryForObject(INSERT_SQL, params, MIGRATION_MAPPER);
+    }
+
+    public void updateProgress(UUID id, long total, long migrated) {
+        jdbcTemplate.update(UPDATE_PROGRESS_SQL, new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("total", total)
+                .addValue("migrated", migrated));
+    }
+
+    public void updateStatus(UUID id, EmbeddingModelMigration.Status status, String errorMessage) {
+        jdbcTemplate.update(UPDATE_STATUS_SQL, new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("status", status.value())
+                .addValue("error", errorMessage)
+                .addValue("terminal", !status.isActive()));
+    }
+
+    /**
+     * Next live documents without a target vector, in id order.
+     *
+     * @param afterId keyset cursor (exclusive)
+     * @param limit   page size
+     * @return documents with the text they were embedded from
+     */
+    public List<PendingDocument> findPending(long afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query(FIND_PENDING_SQL, params,
+                (rs, rowNum) -> new PendingDocument(rs.getLong("id"), rs.getString("content_text")));
+    }
+
+    /**
+     * Store target vectors; rows already filled by a dual write are left untouched. A null
+     * vector (document without text) copies the current one.
+     *
+     * @param ids        document ids
+     * @param embeddings index-aligned target vectors, null entries allowed
+     * @return rows updated
+     */
+    public int writeShadow(List<Long> ids, List<float[]> embeddings) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            batch[i] = new MapSqlParameterSource()
+                    .addValue("id", ids.get(i))
+                    .addValue("embedding", embeddings.get(i));
+        }
+        int updated = 0;
+        for (int count : jdbcTemplate.batchUpdate(WRITE_SHADOW_SQL, batch)) {
+            updated += Math.max(0, count);
+        }
+        return updated;
+    }
+
+    /**
+     * Exact coverage of live documents (one scan of the table).
+     *
+     * @return live documents and those with a target vector
+     */
+    public Coverage coverage() {
+        return jdbcTemplate.queryForObject(COVERAGE_SQL, Map.of(),
+                (rs, rowNum) -> new Coverage(rs.getLong("total"), rs.getLong("migrated")));
+    }
+
+    /**
+     * Give soft-deleted rows their current vector as target vector, so the shadow column can
+     * become {@code NOT NULL}. Deleted rows are never searched.
+     *
+     * @return rows updated
+     */
+    public int copyDeletedVectors() {
+        return jdbcTemplate.getJdbcOperations().update("UPDATE " + TABLE + " SET embedding_next = embedding "
+                + "WHERE embedding_next IS NULL AND deleted_at IS NOT NULL");
+    }
+
+    /**
+     * Clear target vectors left by a cancelled or failed migration.
+     *
+     * @return rows updated
+     */
+    public int clearShadow() {
+        return jdbcTemplate.getJdbcOperations().update("UPDATE " + TABLE + " SET embedding_next = NULL "
+                + "WHERE embedding_next IS NOT NULL");
+    }
+
+    /**
+     * Build the partial index the backfill pages through.
+     */
+    public void createPendingIndex() {
+        partitionDao.createIndex(PENDING_INDEX, "(id) WHERE embedding_next IS NULL AND deleted_at IS NULL");
+    }
+
+    /**
+     * Require a target vector on every row written from now on. Added {@code NOT VALID}, so
+     * it is enforced for new rows without scanning existing ones.
+     */
+    public void addShadowConstraint() {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_constraint WHERE conname = :name", Map.of("name", SHADOW_CONSTRAINT),
+                Integer.class);
+        if (existing == null || existing == 0) {
+            execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + SHADOW_CONSTRAINT
+                    + " CHECK (embedding_next IS NOT NULL) NOT VALID");
+        }
+    }
+
+    /**
+     * Validate the shadow constraint; scans the table without blocking reads or writes, and
+     * lets cutover set {@code NOT NULL} without a second scan.
+     */
+    public void validateShadowConstraint() {
+        execute("ALTER TABLE " + TABLE + " VALIDATE CONSTRAINT " + SHADOW_CONSTRAINT);
+    }
+
+    /**
+     * Drop the shadow constraint and indexes again (cancelled or failed migration), so rows
+     * can be written without a target vector.
+     */
+    public void dropShadowObjects() {
+        execute("ALTER TABLE " + TABLE + " DROP CONSTRAINT IF EXISTS " + SHADOW_CONSTRAINT);
+        partitionDao.dropIndex(PENDING_INDEX);
+        List<String> shadowIndexes = new ArrayList<>();
+        jdbcTemplate.query(HNSW_INDEXES_SQL, Map.of(), rs -> {
+            if (rs.getString("indexname").endsWith("_next")) {
+                shadowIndexes.add(rs.getString("indexname"));
+            }
+        });
+        shadowIndexes.forEach(partitionDao::dropIndex);
+    }
+
+    /**
+     * Names of the HNSW indexes on {@code embedding}.
+     *
+     * @return index names
+     */
+    public List<String> findEmbeddingIndexes() {
+        List<String> names = new ArrayList<>();
+        jdbcTemplate.query(HNSW_INDEXES_SQL, Map.of(), rs -> {
+            if (isEmbeddingIndex(rs.getString("indexname"), rs.getString("indexdef"))) {
+                names.add(rs.getString("indexname"));
+            }
+        });
+        return names;
+    }
+
+    /**
+     * Build a {@code <name>_next} copy of every HNSW index on {@code embedding} over
+     * {@code embedding_next}, concurrently. An interrupted build resumes: invalid leftovers
+     * are dropped, valid ones are kept.
+     *
+     * @return names of the shadow indexes
+     */
+    public List<String> buildShadowIndexes() {
+        List<String[]> definitions = new ArrayList<>();
+        jdbcTemplate.query(HNSW_INDEXES_SQL, Map.of(), rs -> {
+            String name = rs.getString("indexname");
+            String definition = rs.getString("indexdef");
+            if (isEmbeddingIndex(name, definition)) {
+                definitions.add(new String[] {name + "_next", shadowIndexTail(definition)});
+            }
+        });
+        List<String> built = new ArrayList<>(definitions.size());
+        for (String[] definition : definitions) {
+            partitionDao.createIndex(definition[0], definition[1]);
+            built.add(definition[0]);
+        }
+        return built;
+    }
+
+    /**
+     * Swap {@code embedding_next} in as {@code embedding}, with its indexes, and mark the
+     * migration complete in one transaction; then drop the previous vectors and indexes.
+     *
+     * @param migrationId migration to complete
+     * @param indexNames  HNSW indexes on {@code embedding}, each with a {@code _next} copy
+     */
+    public void cutover(UUID migrationId, List<String> indexNames) {
+        List<String> indexRenames = new ArrayList<>();
+        for (String name : indexNames) {
+            indexRenames.addAll(partitionDao.renameIndexStatements(name, name + "_previous"));
+        }
+        for (String name : indexNames) {
+            indexRenames.addAll(partitionDao.renameIndexStatements(name + "_next", name));
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String statement : cutoverStatements(indexRenames)) {
+                jdbcTemplate.getJdbcOperations().execute(statement);
+            }
+            updateStatus(migrationId, EmbeddingModelMigration.Status.COMPLETE, null);
+        });
+        for (String name : indexNames) {
+            partitionDao.dropIndex(name + "_previous");
+        }
+        execute("ALTER TABLE " + TABLE + " DROP COLUMN IF EXISTS embedding_previous");
+    }
+
+    /**
+     * Cutover DDL. Renames only touch the catalog; {@code SET NOT NULL} relies on the
+     * validated shadow constraint instead of scanning.
+     *
+     * @param indexRenames statements renaming the indexes on {@code embedding} to
+     *                     {@code _previous} and their {@code _next} copies into place
+     */
+    static List<String> cutoverStatements(List<String> indexRenames) {
+        List<String> statements = new ArrayList<>();
+        statements.add("SET LOCAL lock_timeout = '10s'");
+        statements.add("ALTER TABLE " + TABLE + " ALTER COLUMN embedding_next SET NOT NULL");
+        statements.add("ALTER TABLE " + TABLE + " DROP CONSTRAINT " + SHADOW_CONSTRAINT);
+        statements.add("DROP INDEX IF EXISTS accounting." + PENDING_INDEX);
+        statements.add("ALTER TABLE " + TABLE + " RENAME COLUMN embedding TO embedding_previous");
+        statements.add("ALTER TABLE " + TABLE + " RENAME COLUMN embedding_next TO embedding");
+        statements.addAll(indexRenames);
+        statements.add("ALTER TABLE " + TABLE + " ADD COLUMN embedding_next vector(1536)");
+        return statements;
+    }
+
+    /**
+     * Definition of the shadow copy of an index after the table name, from its
+     * {@code pg_indexes.indexdef}.
+     */
+    static String shadowIndexTail(String definition) {
+        return EMBEDDING_COLUMN.matcher(VectorPartitionDao.indexTail(definition)).replaceAll("embedding_next");
+    }
+
+    private static boolean isEmbeddingIndex(String name, String definition) {
+        return !name.endsWith("_next") && !name.endsWith("_previous")
+                && EMBEDDING_COLUMN.matcher(definition).find();
+    }
+
+    private void execute(String sql) {
+        jdbcTemplate.getJdbcOperations().execute(sql);
+    }
+
+    /**
+     * Live document still lacking a target vector.
+     *
+     * @param id          vector document id
+     * @param contentText text the current vector was embedded from
+     */
+    public record PendingDocument(long id, String contentText) {
+    }
+
+    /**
+     * Live documents and how many of them have a target vector.
+     */
+    public record Coverage(long total, long migrated) {
+
+        public boolean isComplete() {
+            return migrated >= total;
+        }
+    }
+}
@@ -90,6 +90,11 @@ public class BankTransactionDocument implements ErpDocument {
         return "cash_bank";
     }
 
+    @Override
+    public String getDocumentNumber() {
+        return transactionNumber;
+    }
+
     @Override
     public String getRawText() {
         StringBuilder text = new StringBuilder();
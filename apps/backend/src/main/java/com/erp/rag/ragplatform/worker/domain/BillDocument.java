@@ -93,6 +93,11 @@ public class BillDocument implements ErpDocument {
         return "ap";
     }
 
+    @Override
+    public String getDocumentNumber() {
+        return billNumber;
+    }
+
     @Override
     public String getRawText() {
         StringBuilder text = new StringBuilder();
@@ -91,6 +91,11 @@ public class CustomerDocument implements ErpDocument {
         return "ar";
     }
 
+    @Override
+    public String getDocumentNumber() {
+        return code;
+    }
+
     @Override
     public String getRawText() {
         StringBuilder text = new StringBuilder();
@@ -95,11 +95,19 @@ public class EmbeddingBatch {
     // State machine transitions
 
     public void start(int totalDocuments) {
+        start();
+        this.totalDocuments = totalDocuments;
+    }
+
+    /**
+     * Start a batch whose size is not known up front (streaming extraction).
+     * The total is recorded via {@link #setTotalDocuments(Integer)} once the source is exhausted.
+     */
+    public void start() {
         if (this.status != Status.QUEUED) {
             throw new IllegalStateException("Can only start a queued batch");
         }
         this.status = Status.RUNNING;
-        this.totalDocuments = totalDocuments;
         this.startedAt = OffsetDateTime.now();
     }
 
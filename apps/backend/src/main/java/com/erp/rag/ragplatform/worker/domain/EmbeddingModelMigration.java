@@ -0,0 +1,57 @@
+package com.erp.rag.ragplatform.worker.domain;
+
+import java.time.OffsetDateTime;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * One row of {@code accounting.embedding_model_migrations}.
+ * <p>
+ * Story 1.4 – AC3: State machine of a zero-downtime model migration
+ * (backfilling→indexing→complete, or failed/cancelled). While a migration is backfilling or
+ * indexing, searches keep using {@code vector_documents.embedding} and new vectors are
+ * dual-written to {@code embedding_next}.
+ * </p>
+ *
+ * @param id                migration id
+ * @param sourceModel       model of {@code embedding} when the migration started
+ * @param targetProvider    provider name the documents are re-embedded with
+ * @param targetModel       model id of that provider
+ * @param status            current state
+ * @param totalDocuments    live documents at the last progress update
+ * @param migratedDocuments live documents with a target vector at the last progress update
+ * @param errorMessage      failure reason, if failed
+ * @param startedAt         start time
+ * @param completedAt       cutover (or failure/cancel) time
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public record EmbeddingModelMigration(UUID id, String sourceModel, String targetProvider, String targetModel,
+        Status status, long totalDocuments, long migratedDocuments, String errorMessage,
+        OffsetDateTime startedAt, OffsetDateTime completedAt) {
+
+    public enum Status {
+        BACKFILLING, INDEXING, COMPLETE, FAILED, CANCELLED;
+
+        /**
+         * @return column value ({@code backfilling}, ...)
+         */
+        public String value() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * @return true while searches still use the source model and writes are dual
+         */
+        public boolean isActive() {
+            return this == BACKFILLING || this == INDEXING;
+        }
+    }
+
+    /**
+     * @return share of live documents that have a target vector, 0..1
+     */
+    public double coverage() {
+        return totalDocuments > 0 ? Math.min(1.0, migratedDocuments / (double) totalDocuments) : 1.0;
+    }
+}
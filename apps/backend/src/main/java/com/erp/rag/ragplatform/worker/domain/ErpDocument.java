@@ -71,6 +71,14 @@ public interface ErpDocument {
      */
     String getModule();
 
+    /**
+     * Returns the business identifier users quote for this document (invoice, bill, payment,
+     * entry or transaction number; customer or vendor code).
+     *
+     * @return document number, or null if the document has none
+     */
+    String getDocumentNumber();
+
     /**
      * Returns the raw text representation of the document for embedding.
      * This method should return the document fields concatenated in a meaningful way,
@@ -93,6 +93,11 @@ public class InvoiceDocument implements ErpDocument {
         return "ar";
     }
 
+    @Override
+    public String getDocumentNumber() {
+        return invoiceNumber;
+    }
+
     @Override
     public String getRawText() {
         // Simplified MVP template per Dev Notes #4
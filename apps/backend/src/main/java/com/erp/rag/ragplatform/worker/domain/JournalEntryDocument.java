@@ -88,6 +88,11 @@ public class JournalEntryDocument implements ErpDocument {
         return "gl";
     }
 
+    @Override
+    public String getDocumentNumber() {
+        return entryNumber;
+    }
+
     @Override
     public String getRawText() {
         StringBuilder text = new StringBuilder();
@@ -90,6 +90,11 @@ public class PaymentDocument implements ErpDocument {
         return "ar";
     }
 
+    @Override
+    public String getDocumentNumber() {
+        return paymentNumber;
+    }
+
     @Override
     public String getRawText() {
         StringBuilder text = new StringBuilder();
@@ -0,0 +1,31 @@
+package com.erp.rag.ragplatform.worker.domain;
+
+import java.util.UUID;
+
+/**
+ * Company id under which the worker stores an ERP company's rows in {@code vector_documents}.
+ * <p>
+ * Story 1.4: the ERP identifies companies by UUID while {@code vector_documents.company_id} is
+ * a bigint. Until a real id mapping exists the worker derives the bigint from the UUID's hash.
+ * This is a placeholder, not a tenant identity: only worker code calls it. Tenant
+ * configuration is keyed by company UUID, and the query side works with the id it is given.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public final class VectorCompanyIds {
+
+    private VectorCompanyIds() {
+    }
+
+    /**
+     * @param companyId ERP company UUID
+     * @return {@code vector_documents.company_id} of that company's rows
+     */
+    public static Long of(UUID companyId) {
+        // TODO: Proper UUID to Long mapping needed for production
+        // For now, using hashCode as placeholder - should use a proper ID mapping service
+        return Math.abs((long) companyId.hashCode());
+    }
+}
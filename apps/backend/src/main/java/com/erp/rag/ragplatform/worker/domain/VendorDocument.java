@@ -90,6 +90,11 @@ public class VendorDocument implements ErpDocument {
         return "ap";
     }
 
+    @Override
+    public String getDocumentNumber() {
+        return code;
+    }
+
     @Override
     public String getRawText() {
         StringBuilder text = new StringBuilder();
@@ -0,0 +1,200 @@
+package com.erp.rag.ragplatform.worker.pipeline;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Coalesces concurrent single-item calls into batch calls.
+ * <p>
+ * Story 1.5 – AC2: Callers {@link #submit(Object)} one item each and get a future. The first
+ * item of a batch starts a {@code maxWait} timer; the batch is sent when the timer fires or
+ * as soon as it is full (item count or total weight, as in {@link TokenBudgetBatcher}),
+ * whichever comes first, so no caller waits more than {@code maxWait} before its batch is
+ * sent. Equal items submitted while a batch is open share one slot and one result.
+ * </p>
+ * <p>
+ * Batch calls run on virtual threads, several at once if needed, so a slow call does not hold
+ * back the next batch. A failed call fails every future of its batch. Thread-safe.
+ * </p>
+ *
+ * @param <I> item type; equal items are deduplicated within a batch
+ * @param <O> result type
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public final class MicroBatcher<I, O> implements AutoCloseable {
+
+    /**
+     * Processes one batch; results must be index-aligned with the items.
+     */
+    @FunctionalInterface
+    public interface BatchFunction<I, O> {
+        List<O> apply(List<I> items) throws Exception;
+    }
+
+    private final int maxItems;
+    private final int maxWeight;
+    private final ToIntFunction<I> weigher;
+    private final long maxWaitNanos;
+    private final BatchFunction<I, O> function;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private Batch<I, O> open;
+
+    /**
+     * @param name      thread name prefix
+     * @param maxItems  maximum distinct items per batch
+     * @param maxWeight maximum total weight per batch
+     * @param weigher   weight of an item (e.g. estimated tokens)
+     * @param maxWait   longest time the first item of a batch waits for others
+     * @param function  batch call
+     */
+    public MicroBatcher(String name, int maxItems, int maxWeight, ToIntFunction<I> weigher, Duration maxWait,
+            BatchFunction<I, O> function) {
+        if (maxItems < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("maxItems and maxWeight must be >= 1");
+        }
+        this.maxItems = maxItems;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.maxWaitNanos = Math.max(0, maxWait.toNanos());
+        this.function = function;
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name(name + "-timer").daemon().factory());
+    }
+
+    /**
+     * Add an item to the open batch.
+     *
+     * @param item item to process
+     * @return future completed with the item's result, or exceptionally with the batch
+     *         call's failure
+     */
+    public CompletableFuture<O> submit(I item) {
+        int weight = Math.max(0, weigher.applyAsInt(item));
+        CompletableFuture<O> result = new CompletableFuture<>();
+        Batch<I, O> ready = null;
+        Batch<I, O> overflow = null;
+        synchronized (this) {
+            // An item equal to one already waiting just shares its result
+            if (open == null || !open.add(item, result)) {
+                if (open != null && open.weight + weight > maxWeight) {
+                    overflow = open;
+                    open = null;
+                }
+                if (open == null) {
+                    open = new Batch<>();
+                    schedule(open);
+                }
+                open.addNew(item, weight, result);
+            }
+            if (open.items.size() >= maxItems || open.weight >= maxWeight) {
+                ready = open;
+                open = null;
+            }
+        }
+        if (overflow != null) {
+            send(overflow);
+        }
+        if (ready != null) {
+            send(ready);
+        }
+        return result;
+    }
+
+    /**
+     * Stop the timer; batches still open are sent at once.
+     */
+    @Override
+    public void close() {
+        Batch<I, O> remaining;
+        synchronized (this) {
+            remaining = open;
+            open = null;
+        }
+        if (remaining != null) {
+            send(remaining);
+        }
+        timer.shutdownNow();
+        executor.shutdown();
+    }
+
+    private void schedule(Batch<I, O> batch) {
+        try {
+            timer.schedule(() -> expire(batch), maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed: the batch is sent by close() or by the next full batch
+        }
+    }
+
+    private void expire(Batch<I, O> batch) {
+        synchronized (this) {
+            if (open != batch) {
+                return; // already sent because it filled up
+            }
+            open = null;
+        }
+        send(batch);
+    }
+
+    private void send(Batch<I, O> batch) {
+        try {
+            executor.execute(() -> run(batch));
+        } catch (RejectedExecutionException e) {
+            run(batch);
+        }
+    }
+
+    private void run(Batch<I, O> batch) {
+        List<I> items = new ArrayList<>(batch.items.keySet());
+        try {
+            List<O> results = function.apply(items);
+            if (results == null || results.size() != items.size()) {
+                throw new IllegalStateException("Batch result count mismatch: expected " + items.size()
+                        + ", got " + (results == null ? "null" : results.size()));
+            }
+            int i = 0;
+            for (List<CompletableFuture<O>> waiters : batch.items.values()) {
+                O value = results.get(i++);
+                waiters.forEach(waiter -> waiter.complete(value));
+            }
+        } catch (Throwable e) {
+            batch.items.values().forEach(waiters -> waiters.forEach(waiter -> waiter.completeExceptionally(e)));
+        }
+    }
+
+    /**
+     * Distinct items in submission order, each with the futures waiting for it.
+     */
+    private static final class Batch<I, O> {
+
+        private final Map<I, List<CompletableFuture<O>>> items = new LinkedHashMap<>();
+        private int weight;
+
+        boolean add(I item, CompletableFuture<O> result) {
+            List<CompletableFuture<O>> waiters = items.get(item);
+            if (waiters == null) {
+                return false;
+            }
+            waiters.add(result);
+            return true;
+        }
+
+        void addNew(I item, int itemWeight, CompletableFuture<O> result) {
+            List<CompletableFuture<O>> waiters = new ArrayList<>(1);
+            waiters.add(result);
+            items.put(item, waiters);
+            weight += itemWeight;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.erp.rag.ragplatform.worker.pipeline;
+
+import java.util.function.Consumer;
+
+/**
+ * One stage of a {@link StagedPipeline}.
+ * <p>
+ * A stage runs on its own thread, receives items from its bounded input queue in order and
+ * may emit zero or more items downstream per input. Emitting blocks while the downstream
+ * queue is full, which is how backpressure propagates towards the source.
+ * </p>
+ *
+ * @param <I> input item type
+ * @param <O> output item type
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public interface PipelineStage<I, O> {
+
+    /**
+     * Short stage name used for thread names, logs and statistics.
+     *
+     * @return stage name
+     */
+    String name();
+
+    /**
+     * Process one input item.
+     *
+     * @param item input item
+     * @param emit hands an output item to the next stage
+     * @throws Exception any failure aborts the whole pipeline
+     */
+    void accept(I item, Consumer<O> emit) throws Exception;
+
+    /**
+     * Called once after the last input item, before end-of-stream is forwarded downstream.
+     * Stages that buffer input should flush it here.
+     *
+     * @param emit hands an output item to the next stage
+     * @throws Exception any failure aborts the whole pipeline
+     */
+    default void finish(Consumer<O> emit) throws Exception {
+    }
+}
@@ -0,0 +1,295 @@
+package com.erp.rag.ragplatform.worker.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Linear pipeline of {@link PipelineStage}s connected by bounded queues.
+ * <p>
+ * Each stage runs on its own virtual thread, so consecutive stages overlap: while stage N
+ * works on item k, stage N-1 can already prepare item k+1 and stage N+1 finish item k-1.
+ * Queues are bounded, so a slow stage back-pressures everything upstream of it, including
+ * the source. The first failure in any stage or in the source aborts the run; remaining
+ * stages are interrupted and {@link #run(Consumer)} throws {@link PipelineException}.
+ * </p>
+ * <p>
+ * A pipeline instance holds no per-run state and may be run repeatedly.
+ * </p>
+ *
+ * @param <I> type of items submitted by the source
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public final class StagedPipeline<I> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StagedPipeline.class);
+    private static final Object END_OF_STREAM = new Object();
+    private static final long OFFER_POLL_MS = 50;
+
+    private final String name;
+    private final int queueCapacity;
+    private final List<PipelineStage<Object, Object>> stages;
+
+    private StagedPipeline(String name, int queueCapacity, List<PipelineStage<Object, Object>> stages) {
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        this.stages = List.copyOf(stages);
+    }
+
+    /**
+     * Start building a pipeline.
+     *
+     * @param name          pipeline name, used as thread name prefix
+     * @param queueCapacity capacity of each inter-stage queue
+     * @param <I>           type of items submitted by the source
+     * @return builder
+     */
+    public static <I> Builder<I, I> builder(String name, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be >= 1");
+        }
+        return new Builder<>(name, queueCapacity);
+    }
+
+    /**
+     * Run the pipeline to completion.
+     * <p>
+     * The source is invoked on the calling thread with a consumer that enqueues into the first
+     * stage; it blocks while that queue is full. The call returns once every stage has drained.
+     * </p>
+     *
+     * @param source pushes all input items into the given consumer
+     * @return per-stage statistics
+     * @throws PipelineException if the source or any stage fails
+     */
+    public PipelineStats run(Consumer<Consumer<I>> source) {
+        long startNanos = System.nanoTime();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        int stageCount = stages.size();
+        List<QueueHandle> queues = new ArrayList<>(stageCount);
+        for (int i = 0; i < stageCount; i++) {
+            queues.add(new QueueHandle(new ArrayBlockingQueue<>(queueCapacity), failure));
+        }
+
+        List<StageRunner> runners = new ArrayList<>(stageCount);
+        List<Thread> threads = new ArrayList<>(stageCount);
+        for (int i = 0; i < stageCount; i++) {
+            QueueHandle output = i + 1 < stageCount ? queues.get(i + 1) : null;
+            StageRunner runner = new StageRunner(stages.get(i), queues.get(i), output, failure, threads);
+            runners.add(runner);
+        }
+        for (StageRunner runner : runners) {
+            threads.add(Thread.ofVirtual().name(name + "-" + runner.stage.name()).unstarted(runner));
+        }
+        threads.forEach(Thread::start);
+
+        QueueHandle head = queues.get(0);
+        try {
+            source.accept(head::put);
+            head.put(END_OF_STREAM);
+        } catch (RuntimeException | Error e) {
+            abort(failure, e, threads);
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(failure, e, threads);
+        }
+
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new PipelineException("Pipeline '" + name + "' failed: " + cause.getMessage(), cause);
+        }
+
+        List<PipelineStats.StageStats> stageStats = new ArrayList<>(stageCount);
+        for (int i = 0; i < stageCount; i++) {
+            stageStats.add(runners.get(i).stats(queues.get(i)));
+        }
+        return new PipelineStats(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), stageStats);
+    }
+
+    private static void abort(AtomicReference<Throwable> failure, Throwable cause, List<Thread> threads) {
+        if (failure.compareAndSet(null, cause)) {
+            logger.error("Pipeline aborted: {}", cause.getMessage());
+            for (Thread thread : threads) {
+                if (thread != Thread.currentThread()) {
+                    thread.interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounded queue plus depth statistics. Each queue has exactly one writer (the source or the
+     * upstream stage), so the counters need no synchronisation; they are read after join().
+     */
+    private static final class QueueHandle {
+
+        private final BlockingQueue<Object> queue;
+        private final AtomicReference<Throwable> failure;
+        private int maxDepth;
+        private long depthSum;
+        private long samples;
+        private long blockedNanos;
+
+        QueueHandle(BlockingQueue<Object> queue, AtomicReference<Throwable> failure) {
+            this.queue = queue;
+            this.failure = failure;
+        }
+
+        void put(Object item) {
+            long waitStart = 0;
+            try {
+                while (!queue.offer(item, OFFER_POLL_MS, TimeUnit.MILLISECONDS)) {
+                    if (waitStart == 0) {
+                        waitStart = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(OFFER_POLL_MS);
+                    }
+                    if (failure.get() != null) {
+                        throw new PipelineException("Pipeline aborted", failure.get());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PipelineException("Interrupted while enqueueing", e);
+            }
+            if (waitStart != 0) {
+                blockedNanos += System.nanoTime() - waitStart;
+            }
+
+            int depth = queue.size();
+            maxDepth = Math.max(maxDepth, depth);
+            depthSum += depth;
+            samples++;
+        }
+
+        Object take() throws InterruptedException {
+            return queue.take();
+        }
+    }
+
+    private final class StageRunner implements Runnable {
+
+        private final PipelineStage<Object, Object> stage;
+        private final QueueHandle input;
+        private final QueueHandle output;
+        private final AtomicReference<Throwable> failure;
+        private final List<Thread> threads;
+        private final Consumer<Object> emit;
+        private long itemsIn;
+        private long itemsOut;
+        private long busyNanos;
+
+        StageRunner(PipelineStage<Object, Object> stage, QueueHandle input, QueueHandle output,
+                AtomicReference<Throwable> failure, List<Thread> threads) {
+            this.stage = stage;
+            this.input = input;
+            this.output = output;
+            this.failure = failure;
+            this.threads = threads;
+            this.emit = item -> {
+                itemsOut++;
+                if (output != null) {
+                    output.put(item);
+                }
+            };
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Object item = input.take();
+                    if (item == END_OF_STREAM) {
+                        break;
+                    }
+                    itemsIn++;
+                    long start = System.nanoTime();
+                    stage.accept(item, emit);
+                    busyNanos += System.nanoTime() - start;
+                }
+
+                long start = System.nanoTime();
+                stage.finish(emit);
+                busyNanos += System.nanoTime() - start;
+
+                if (output != null) {
+                    output.put(END_OF_STREAM);
+                }
+            } catch (Throwable t) {
+                abort(failure, t, threads);
+            }
+        }
+
+        PipelineStats.StageStats stats(QueueHandle inputQueue) {
+            long blockedNanos = output != null ? output.blockedNanos : 0;
+            return new PipelineStats.StageStats(
+                    stage.name(),
+                    itemsIn,
+                    itemsOut,
+                    TimeUnit.NANOSECONDS.toMillis(Math.max(0, busyNanos - blockedNanos)),
+                    TimeUnit.NANOSECONDS.toMillis(blockedNanos),
+                    inputQueue.maxDepth,
+                    inputQueue.samples > 0 ? inputQueue.depthSum / (double) inputQueue.samples : 0);
+        }
+    }
+
+    /**
+     * Builder that tracks the output type of the last added stage.
+     *
+     * @param <I> type of items submitted by the source
+     * @param <O> output type of the last stage added so far
+     */
+    public static final class Builder<I, O> {
+
+        private final String name;
+        private final int queueCapacity;
+        private final List<PipelineStage<Object, Object>> stages = new ArrayList<>();
+
+        private Builder(String name, int queueCapacity) {
+            this.name = name;
+            this.queueCapacity = queueCapacity;
+        }
+
+        /**
+         * Append a stage consuming the previous stage's output.
+         *
+         * @param stage stage to append
+         * @param <N>   output type of the appended stage
+         * @return this builder, retyped to the new output
+         */
+        @SuppressWarnings("unchecked")
+        public <N> Builder<I, N> stage(PipelineStage<? super O, N> stage) {
+            stages.add((PipelineStage<Object, Object>) (PipelineStage<?, ?>) stage);
+            return (Builder<I, N>) this;
+        }
+
+        public StagedPipeline<I> build() {
+            if (stages.isEmpty()) {
+                throw new IllegalStateException("Pipeline '" + name + "' has no stages");
+            }
+            return new StagedPipeline<>(name, queueCapacity, stages);
+        }
+    }
+
+    /**
+     * Thrown when the source or a stage fails; the cause is the first failure observed.
+     */
+    public static class PipelineException extends RuntimeException {
+        public PipelineException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
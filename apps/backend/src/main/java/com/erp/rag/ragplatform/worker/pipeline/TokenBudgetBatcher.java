@@ -0,0 +1,79 @@
+package com.erp.rag.ragplatform.worker.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Packs items into batches bounded by an item count and a token budget.
+ * <p>
+ * Story 1.4 – AC3: Embedding requests are limited both in number of inputs and in total
+ * tokens. Items are added in order; the current batch is emitted just before the next item
+ * would push it over either limit, so each batch is as full as the limits allow. An item
+ * whose own estimate exceeds the token budget is emitted alone rather than dropped.
+ * </p>
+ * <p>
+ * Not thread-safe; intended to be owned by a single pipeline stage.
+ * </p>
+ *
+ * @param <T> item type
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public final class TokenBudgetBatcher<T> {
+
+    private final int maxItems;
+    private final int maxTokens;
+    private final ToIntFunction<T> tokenEstimator;
+    private final Consumer<List<T>> downstream;
+    private List<T> batch;
+    private int batchTokens;
+
+    /**
+     * @param maxItems       maximum items per batch
+     * @param maxTokens      maximum estimated tokens per batch
+     * @param tokenEstimator estimated token count of an item
+     * @param downstream     receives each full batch
+     */
+    public TokenBudgetBatcher(int maxItems, int maxTokens, ToIntFunction<T> tokenEstimator,
+            Consumer<List<T>> downstream) {
+        if (maxItems < 1 || maxTokens < 1) {
+            throw new IllegalArgumentException("maxItems and maxTokens must be >= 1");
+        }
+        this.maxItems = maxItems;
+        this.maxTokens = maxTokens;
+        this.tokenEstimator = tokenEstimator;
+        this.downstream = downstream;
+        this.batch = new ArrayList<>();
+    }
+
+    /**
+     * Add an item, emitting the current batch first if the item does not fit, and emitting
+     * the batch right away once it is full.
+     *
+     * @param item item to add
+     */
+    public void add(T item) {
+        int tokens = Math.max(0, tokenEstimator.applyAsInt(item));
+        if (!batch.isEmpty() && batchTokens + tokens > maxTokens) {
+            flush();
+        }
+        batch.add(item);
+        batchTokens += tokens;
+        if (batch.size() >= maxItems || batchTokens >= maxTokens) {
+            flush();
+        }
+    }
+
+    /**
+     * Emit the current batch, if any.
+     */
+    public void flush() {
+        if (!batch.isEmpty()) {
+            downstream.accept(batch);
+            batch = new ArrayList<>();
+            batchTokens = 0;
+        }
+    }
+}
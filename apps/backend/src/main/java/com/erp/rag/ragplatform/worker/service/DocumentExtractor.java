@@ -2,20 +2,30 @@ package com.erp.rag.ragplatform.worker.service;
 
 import com.erp.rag.ragplatform.worker.dao.DocumentExtractionDao;
 import com.erp.rag.ragplatform.worker.domain.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 /**
  * Service for extracting ERP documents from all source tables.
  * <p>
  * Story 1.4 – AC1: Orchestrates document extraction across all 7 document types.
- * Supports both full and incremental extraction modes.
+ * Supports both full and incremental extraction modes, either materialised as a list or
+ * streamed row-by-row into a consumer for large reindexes.
+ * </p>
+ * <p>
+ * Tables are queried concurrently on a bounded executor (one connection per in-flight
+ * table), so wall-clock extraction time tracks the slowest table rather than the sum.
+ * Per-table latency is published as {@code document_extraction_latency_seconds{table}}.
  * </p>
  *
  * @author dev-agent
@@ -26,10 +36,39 @@ public class DocumentExtractor {
 
     private static final Logger logger = LoggerFactory.getLogger(DocumentExtractor.class);
 
+    /**
+     * Source tables in the order used for full extraction.
+     */
+    static final List<String> ALL_SOURCE_TABLES = List.of(
+            "invoices", "bills", "journal_entries", "customers", "vendors", "payments", "cash_transactions");
+
+    private static final int HANDOFF_CAPACITY = 1000; // Rows buffered between table cursors and the sink
+    private static final long HANDOFF_POLL_MS = 50;
+
     private final DocumentExtractionDao dao;
+    private final ExecutorService executor;
+    private final Map<String, Timer> tableTimers = new HashMap<>();
 
-    public DocumentExtractor(DocumentExtractionDao dao) {
+    public DocumentExtractor(DocumentExtractionDao dao,
+            MeterRegistry meterRegistry,
+            @Value("${embedding.worker.extraction.parallelism:4}") int parallelism) {
         this.dao = dao;
+
+        // Bounded so concurrent table queries cannot exhaust the Hikari pool
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+                Thread.ofVirtual().name("document-extractor-", 0).factory());
+
+        for (String table : ALL_SOURCE_TABLES) {
+            tableTimers.put(table, Timer.builder("document_extraction_latency_seconds")
+                    .description("Time to extract one source table")
+                    .tag("table", table)
+                    .register(meterRegistry));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
     }
 
     /**
@@ -55,49 +94,17 @@ public class DocumentExtractor {
                 updatedAfter == null ? "full" : "incremental",
                 updatedAfter);
 
-        List<ErpDocument> allDocuments = new ArrayList<>();
-
-        try {
-            // Extract from all 7 source tables
-            List<InvoiceDocument> invoices = dao.extractInvoices(companyId, updatedAfter);
-            logger.debug("Extracted {} invoices", invoices.size());
-            allDocuments.addAll(invoices);
-
-            List<BillDocument> bills = dao.extractBills(companyId, updatedAfter);
-            logger.debug("Extracted {} bills", bills.size());
-            allDocuments.addAll(bills);
-
-            List<JournalEntryDocument> journalEntries = dao.extractJournalEntries(companyId, updatedAfter);
-            logger.debug("Extracted {} journal entries", journalEntries.size());
-            allDocuments.addAll(journalEntries);
-
-            List<CustomerDocument> customers = dao.extractCustomers(companyId, updatedAfter);
-            logger.debug("Extracted {} customers", customers.size());
-            allDocuments.addAll(customers);
-
-            List<VendorDocument> vendors = dao.extractVendors(companyId, updatedAfter);
-            logger.debug("Extracted {} vendors", vendors.size());
-            allDocuments.addAll(vendors);
-
-            List<PaymentDocument> payments = dao.extractPayments(companyId, updatedAfter);
-            logger.debug("Extracted {} payments", payments.size());
-            allDocuments.addAll(payments);
+        List<ErpDocument> allDocuments = extractFrom(companyId, ALL_SOURCE_TABLES, updatedAfter);
 
-            List<BankTransactionDocument> bankTransactions = dao.extractBankTransactions(companyId, updatedAfter);
-            logger.debug("Extracted {} bank transactions", bankTransactions.size());
-            allDocuments.addAll(bankTransactions);
-
-            logger.info("Total documents extracted: {}", allDocuments.size());
-            return allDocuments;
-
-        } catch (Exception e) {
-            logger.error("Error extracting documents for company {}: {}", companyId, e.getMessage(), e);
-            throw new DocumentExtractionException("Failed to extract documents for company " + companyId, e);
-        }
+        logger.info("Total documents extracted: {}", allDocuments.size());
+        return allDocuments;
     }
 
     /**
      * Extract documents from specific source tables.
+     * <p>
+     * Tables are queried concurrently; results are concatenated in the order given.
+     * </p>
      *
      * @param companyId    company UUID
      * @param sourceTables list of table names to extract from
@@ -107,25 +114,169 @@ public class DocumentExtractor {
     public List<ErpDocument> extractFrom(UUID companyId, List<String> sourceTables, OffsetDateTime updatedAfter) {
         logger.info("Extracting from specific tables {} for company {}", sourceTables, companyId);
 
-        List<ErpDocument> documents = new ArrayList<>();
-
+        Map<String, Future<List<? extends ErpDocument>>> futures = new LinkedHashMap<>();
         for (String table : sourceTables) {
-            switch (table.toLowerCase()) {
-                case "invoices" -> documents.addAll(dao.extractInvoices(companyId, updatedAfter));
-                case "bills" -> documents.addAll(dao.extractBills(companyId, updatedAfter));
-                case "journal_entries" -> documents.addAll(dao.extractJournalEntries(companyId, updatedAfter));
-                case "customers" -> documents.addAll(dao.extractCustomers(companyId, updatedAfter));
-                case "vendors" -> documents.addAll(dao.extractVendors(companyId, updatedAfter));
-                case "payments" -> documents.addAll(dao.extractPayments(companyId, updatedAfter));
-                case "cash_transactions" -> documents.addAll(dao.extractBankTransactions(companyId, updatedAfter));
-                default -> logger.warn("Unknown source table: {}", table);
+            futures.put(table, executor.submit(() -> timed(table, () -> extractTable(table, companyId, updatedAfter))));
+        }
+
+        List<ErpDocument> documents = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Future<List<? extends ErpDocument>>> entry : futures.entrySet()) {
+                List<? extends ErpDocument> extracted = await(entry.getValue(), entry.getKey(), companyId);
+                logger.debug("Extracted {} documents from {}", extracted.size(), entry.getKey());
+                documents.addAll(extracted);
             }
+        } finally {
+            futures.values().forEach(f -> f.cancel(true));
         }
 
         logger.info("Extracted {} documents from specified tables", documents.size());
         return documents;
     }
 
+    /**
+     * Stream all documents for a company into the given sink.
+     * <p>
+     * Unlike {@link #extractAll(UUID, OffsetDateTime)} nothing is accumulated here: each row
+     * is mapped and handed to the sink while the server-side cursor is still open, so peak
+     * memory is bounded by the sink's own buffering rather than the tenant size.
+     * </p>
+     *
+     * @param companyId    company UUID
+     * @param updatedAfter optional timestamp for incremental sync (null for full extraction)
+     * @param sink         receives every extracted document
+     * @return number of documents streamed
+     */
+    public long streamAll(UUID companyId, OffsetDateTime updatedAfter, Consumer<? super ErpDocument> sink) {
+        return streamFrom(companyId, ALL_SOURCE_TABLES, updatedAfter, sink);
+    }
+
+    /**
+     * Stream documents from specific source tables into the given sink.
+     * <p>
+     * Each table is read by its own cursor on the extraction executor; rows are handed over
+     * through a bounded queue and the sink is always invoked on the calling thread, so it
+     * needs no synchronisation and keeps the caller's transaction. Rows from different
+     * tables interleave. Database failures are wrapped in {@link DocumentExtractionException};
+     * exceptions thrown by the sink itself propagate unchanged.
+     * </p>
+     *
+     * @param companyId    company UUID
+     * @param sourceTables list of table names to extract from
+     * @param updatedAfter optional timestamp for incremental sync
+     * @param sink         receives every extracted document
+     * @return number of documents streamed
+     */
+    public long streamFrom(UUID companyId, List<String> sourceTables, OffsetDateTime updatedAfter,
+            Consumer<? super ErpDocument> sink) {
+        logger.info("Streaming documents from tables {} for company {} (mode: {}, updatedAfter: {})",
+                sourceTables, companyId,
+                updatedAfter == null ? "full" : "incremental",
+                updatedAfter);
+
+        BlockingQueue<ErpDocument> handoff = new ArrayBlockingQueue<>(HANDOFF_CAPACITY);
+        Map<String, Future<Long>> producers = new LinkedHashMap<>();
+        for (String table : sourceTables) {
+            producers.put(table, executor.submit(() -> timed(table,
+                    () -> streamTable(table, companyId, updatedAfter, doc -> handOff(handoff, doc)))));
+        }
+
+        long total = 0;
+        try {
+            while (!producers.isEmpty() || !handoff.isEmpty()) {
+                ErpDocument doc = handoff.poll(HANDOFF_POLL_MS, TimeUnit.MILLISECONDS);
+                if (doc != null) {
+                    sink.accept(doc);
+                    continue;
+                }
+
+                Iterator<Map.Entry<String, Future<Long>>> it = producers.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Future<Long>> entry = it.next();
+                    if (entry.getValue().isDone()) {
+                        long streamed = await(entry.getValue(), entry.getKey(), companyId);
+                        logger.debug("Streamed {} documents from {}", streamed, entry.getKey());
+                        total += streamed;
+                        it.remove();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DocumentExtractionException("Interrupted while extracting documents for company " + companyId, e);
+        } finally {
+            // Unblocks producers stuck on a full handoff queue if we leave early
+            producers.values().forEach(f -> f.cancel(true));
+        }
+
+        logger.info("Total documents streamed: {}", total);
+        return total;
+    }
+
+    private List<? extends ErpDocument> extractTable(String table, UUID companyId, OffsetDateTime updatedAfter) {
+        return switch (table.toLowerCase()) {
+            case "invoices" -> dao.extractInvoices(companyId, updatedAfter);
+            case "bills" -> dao.extractBills(companyId, updatedAfter);
+            case "journal_entries" -> dao.extractJournalEntries(companyId, updatedAfter);
+            case "customers" -> dao.extractCustomers(companyId, updatedAfter);
+            case "vendors" -> dao.extractVendors(companyId, updatedAfter);
+            case "payments" -> dao.extractPayments(companyId, updatedAfter);
+            case "cash_transactions" -> dao.extractBankTransactions(companyId, updatedAfter);
+            default -> {
+                logger.warn("Unknown source table: {}", table);
+                yield List.of();
+            }
+        };
+    }
+
+    private long streamTable(String table, UUID companyId, OffsetDateTime updatedAfter,
+            Consumer<ErpDocument> consumer) {
+        long[] count = new long[1];
+        Consumer<ErpDocument> counting = doc -> {
+            consumer.accept(doc);
+            count[0]++;
+        };
+
+        switch (table.toLowerCase()) {
+            case "invoices" -> dao.streamInvoices(companyId, updatedAfter, counting);
+            case "bills" -> dao.streamBills(companyId, updatedAfter, counting);
+            case "journal_entries" -> dao.streamJournalEntries(companyId, updatedAfter, counting);
+            case "customers" -> dao.streamCustomers(companyId, updatedAfter, counting);
+            case "vendors" -> dao.streamVendors(companyId, updatedAfter, counting);
+            case "payments" -> dao.streamPayments(companyId, updatedAfter, counting);
+            case "cash_transactions" -> dao.streamBankTransactions(companyId, updatedAfter, counting);
+            default -> logger.warn("Unknown source table: {}", table);
+        }
+        return count[0];
+    }
+
+    private <T> T timed(String table, Callable<T> extraction) throws Exception {
+        Timer timer = tableTimers.get(table.toLowerCase());
+        return timer != null ? timer.recordCallable(extraction) : extraction.call();
+    }
+
+    private static void handOff(BlockingQueue<ErpDocument> handoff, ErpDocument doc) {
+        try {
+            handoff.put(doc);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Extraction cancelled");
+        }
+    }
+
+    private static <T> T await(Future<T> future, String table, UUID companyId) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            logger.error("Error extracting {} for company {}: {}", table, companyId, cause.getMessage(), cause);
+            throw new DocumentExtractionException("Failed to extract " + table + " for company " + companyId, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DocumentExtractionException("Interrupted while extracting " + table + " for company " + companyId, e);
+        }
+    }
+
     /**
      * Exception thrown when document extraction fails.
      */
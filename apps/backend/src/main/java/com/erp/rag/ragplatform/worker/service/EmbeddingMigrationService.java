@@ -0,0 +1,391 @@
+package com.erp.rag.ragplatform.worker.service;
+
+import com.erp.rag.ragplatform.worker.dao.EmbeddingMigrationDao;
+import com.erp.rag.ragplatform.worker.domain.EmbeddingModelMigration;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingCacheService;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingProviderResolver;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-embeds every stored document with another model without interrupting search.
+ * <p>
+ * Story 1.4 – AC3: A migration runs in the background while queries keep using
+ * {@code vector_documents.embedding} and its indexes:
+ * </p>
+ * <ol>
+ *   <li>backfill: live documents are re-embedded with the target provider into the shadow
+ *       column {@code embedding_next}, page by page in id order, at most
+ *       {@code embedding.migration.max-documents-per-second}; meanwhile every instance
+ *       dual-writes new vectors to both columns ({@link #shadowTarget()})</li>
+ *   <li>a {@code NOT VALID} check constraint makes the shadow vector mandatory for new rows,
+ *       a catch-up pass fills rows written before all instances dual-wrote, and validating
+ *       the constraint proves 100% coverage</li>
+ *   <li>indexing: every HNSW index on {@code embedding} gets a copy on {@code embedding_next},
+ *       built {@code CONCURRENTLY}</li>
+ *   <li>cutover: columns and indexes are renamed in one short transaction, so
+ *       {@code VectorDocumentRepository} and {@code VectorSearchDao} switch to the new
+ *       vectors atomically; then the target provider becomes the default for queries and the
+ *       {@link VectorDocumentsListener}s are told to drop copies of the old vectors</li>
+ * </ol>
+ * <p>
+ * State lives in {@code accounting.embedding_model_migrations}; other instances poll it every
+ * {@code embedding.migration.refresh-ms} to start dual-writing and to switch their query
+ * provider after cutover. A stopped instance leaves the migration active; starting it again
+ * with the same provider resumes where it stopped. Cancelled or failed migrations drop the
+ * shadow constraint and indexes; the shadow vectors are cleared by the next start.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Service
+public class EmbeddingMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingMigrationService.class);
+
+    private final EmbeddingMigrationDao migrationDao;
+    private final EmbeddingProviderResolver providerResolver;
+    private final EmbeddingCacheService embeddingCache;
+    private final List<VectorDocumentsListener> listeners;
+    private final int batchSize;
+    private final long nanosPerDocument;
+    private final long refreshMs;
+    private final Counter documentsCounter;
+    private final ScheduledExecutorService refresher;
+
+    private volatile EmbeddingModelMigration current;
+    private volatile EmbeddingService shadowTarget;
+    private volatile UUID appliedMigrationId;
+    private volatile boolean cancelRequested;
+    private volatile boolean stopped;
+    private volatile Thread runner;
+
+    public EmbeddingMigrationService(EmbeddingMigrationDao migrationDao,
+            EmbeddingProviderResolver providerResolver,
+            EmbeddingCacheService embeddingCache,
+            List<VectorDocumentsListener> listeners,
+            MeterRegistry meterRegistry,
+            @Value("${embedding.migration.batch-size:100}") int batchSize,
+            @Value("${embedding.migration.max-documents-per-second:50}") int maxDocumentsPerSecond,
+            @Value("${embedding.migration.refresh-ms:5000}") long refreshMs) {
+        this.migrationDao = migrationDao;
+        this.providerResolver = providerResolver;
+        this.embeddingCache = embeddingCache;
+        this.listeners = listeners;
+        this.batchSize = Math.max(1, batchSize);
+        this.nanosPerDocument = maxDocumentsPerSecond > 0 ? 1_000_000_000L / maxDocumentsPerSecond : 0;
+        this.refreshMs = Math.max(100, refreshMs);
+
+        Gauge.builder("embedding_migration_coverage_ratio", this,
+                        service -> service.current != null ? service.current.coverage() : 0)
+                .description("Share of live documents with a vector of the migration target model")
+                .register(meterRegistry);
+        this.documentsCounter = Counter.builder("embedding_migration_documents_total")
+                .description("Documents re-embedded by the migration backfill")
+                .register(meterRegistry);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("embedding-migration-refresh").daemon().factory());
+    }
+
+    /**
+     * Load the migration state once the schema is migrated, then keep polling it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRefresh() {
+        refresher.scheduleWithFixedDelay(this::refresh, 0, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start re-embedding all documents with a provider, or resume the active migration to it.
+     *
+     * @param targetProvider provider name ({@link EmbeddingService#getProviderName()})
+     * @return the started or resumed migration
+     * @throws IllegalArgumentException if the provider is unknown or already the default model
+     * @throws IllegalStateException    if a migration to another provider is active
+     */
+    public synchronized EmbeddingModelMigration start(String targetProvider) {
+        EmbeddingService target = providerResolver.byName(targetProvider);
+        Optional<EmbeddingModelMigration> active = migrationDao.findActive();
+        if (active.isPresent()) {
+            EmbeddingModelMigration migration = active.get();
+            if (!migration.targetProvider().equals(target.getProviderName())) {
+                throw new IllegalStateException("Migration " + migration.id() + " to "
+                        + migration.targetProvider() + " is already " + migration.status().value());
+            }
+            if (!isRunning()) {
+                logger.info("Resuming embedding migration {} to {} ({})", migration.id(),
+                        target.getProviderName(), migration.status().value());
+                launch(migration, target);
+            }
+            return migration;
+        }
+
+        EmbeddingService source = providerResolver.getDefaultProvider();
+        if (source.getModelId().equals(target.getModelId())) {
+            throw new IllegalArgumentException("Documents are already embedded with " + target.getModelId());
+        }
+        int cleared = migrationDao.clearShadow();
+        if (cleared > 0) {
+            logger.info("Cleared {} shadow vectors left by a previous migration", cleared);
+        }
+        EmbeddingModelMigration migration = migrationDao.insert(source.getModelId(), target.getProviderName(),
+                target.getModelId(), migrationDao.coverage().total());
+        logger.info("Starting embedding migration {}: {} -> {} ({} documents)", migration.id(),
+                source.getModelId(), target.getModelId(), migration.totalDocuments());
+        launch(migration, target);
+        return migration;
+    }
+
+    /**
+     * Cancel the active migration; searches and writes continue on the current model.
+     *
+     * @return the cancelled migration, if one was active
+     */
+    public synchronized Optional<EmbeddingModelMigration> cancel() {
+        Optional<EmbeddingModelMigration> active = migrationDao.findActive();
+        if (active.isEmpty()) {
+            return Optional.empty();
+        }
+        if (isRunning()) {
+            // The runner cleans up at its next checkpoint; interrupting it could break a
+            // pooled connection in the middle of a statement
+            cancelRequested = true;
+        } else {
+            finish(active.get().id(), EmbeddingModelMigration.Status.CANCELLED, null);
+        }
+        logger.info("Cancelling embedding migration {}", active.get().id());
+        return active;
+    }
+
+    /**
+     * @return the active migration, or else the most recent completed one
+     */
+    public Optional<EmbeddingModelMigration> current() {
+        Optional<EmbeddingModelMigration> active = migrationDao.findActive();
+        return active.isPresent() ? active : migrationDao.findLatestComplete();
+    }
+
+    /**
+     * Provider new vectors must also be embedded with, while a migration is active.
+     *
+     * @return migration target provider, or empty when no migration is active
+     */
+    public Optional<EmbeddingService> shadowTarget() {
+        return Optional.ofNullable(shadowTarget);
+    }
+
+    /**
+     * Stop polling and stop the backfill at its next checkpoint; the migration stays active
+     * and can be resumed.
+     */
+    @PreDestroy
+    public void close() {
+        stopped = true;
+        refresher.shutdownNow();
+    }
+
+    void refresh() {
+        try {
+            Optional<EmbeddingModelMigration> active = migrationDao.findActive();
+            current = active.orElse(null);
+            shadowTarget = active.isPresent() ? providerResolver.byName(active.get().targetProvider()) : null;
+            migrationDao.findLatestComplete().ifPresent(this::apply);
+        } catch (Exception e) {
+            logger.warn("Failed to refresh embedding migration state: {}", e.getMessage());
+        }
+    }
+
+    private synchronized boolean isRunning() {
+        return runner != null && runner.isAlive();
+    }
+
+    private void launch(EmbeddingModelMigration migration, EmbeddingService target) {
+        current = migration;
+        shadowTarget = target;
+        cancelRequested = false;
+        runner = Thread.ofVirtual().name("embedding-migration").start(() -> run(migration, target));
+    }
+
+    /**
+     * Run a migration to completion, from the step its status says it is at.
+     */
+    void run(EmbeddingModelMigration migration, EmbeddingService target) {
+        UUID id = migration.id();
+        current = migration;
+        try {
+            if (migration.status() == EmbeddingModelMigration.Status.BACKFILLING) {
+                migrationDao.createPendingIndex();
+                backfill(id, target);
+                checkpoint();
+
+                // From here on, rows written without a target vector are rejected; the catch-up
+                // pass fills those written before every instance was dual-writing
+                migrationDao.copyDeletedVectors();
+                migrationDao.addShadowConstraint();
+                backfill(id, target);
+                migrationDao.copyDeletedVectors();
+                checkpoint();
+                migrationDao.validateShadowConstraint();
+
+                EmbeddingMigrationDao.Coverage coverage = migrationDao.coverage();
+                migrationDao.updateProgress(id, coverage.total(), coverage.migrated());
+                if (!coverage.isComplete()) {
+                    throw new IllegalStateException("Coverage " + coverage.migrated() + "/" + coverage.total()
+                            + " after backfill");
+                }
+                migrationDao.updateStatus(id, EmbeddingModelMigration.Status.INDEXING, null);
+                current = withProgress(migration, EmbeddingModelMigration.Status.INDEXING, coverage);
+                logger.info("Embedding migration {} backfilled {} documents; building indexes", id, coverage.total());
+            }
+
+            checkpoint();
+            List<String> indexes = migrationDao.findEmbeddingIndexes();
+            List<String> built = migrationDao.buildShadowIndexes();
+            logger.info("Embedding migration {} built shadow indexes {}", id, built);
+            checkpoint();
+
+            migrationDao.cutover(id, indexes);
+            shadowTarget = null;
+            current = withProgress(migration, EmbeddingModelMigration.Status.COMPLETE, migrationDao.coverage());
+            apply(current);
+            logger.info("Embedding migration {} complete: searches now use {}", id, target.getModelId());
+        } catch (InterruptedException e) {
+            if (cancelRequested) {
+                finish(id, EmbeddingModelMigration.Status.CANCELLED, null);
+            } else {
+                logger.info("Embedding migration {} stopped; start it again to resume", id);
+            }
+        } catch (Exception e) {
+            logger.error("Embedding migration {} failed: {}", id, e.getMessage(), e);
+            finish(id, EmbeddingModelMigration.Status.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Re-embed pending documents until a pass over them finds none. Each pass pages from the
+     * lowest id, so rows committed behind the cursor of the previous pass are picked up.
+     */
+    private void backfill(UUID id, EmbeddingService target)
+            throws InterruptedException, EmbeddingService.EmbeddingGenerationException {
+        int pageSize = target.getMaxBatchSize() > 0 ? Math.min(batchSize, target.getMaxBatchSize()) : batchSize;
+        EmbeddingMigrationDao.Coverage coverage = migrationDao.coverage();
+        long total = coverage.total();
+        long migrated = coverage.migrated();
+        while (true) {
+            long afterId = 0;
+            int found = 0;
+            int written = 0;
+            List<EmbeddingMigrationDao.PendingDocument> page;
+            while (!(page = migrationDao.findPending(afterId, pageSize)).isEmpty()) {
+                checkpoint();
+                long pageStart = System.nanoTime();
+                List<Long> ids = page.stream().map(EmbeddingMigrationDao.PendingDocument::id).toList();
+                int updated = migrationDao.writeShadow(ids, embed(target, page));
+                found += page.size();
+                written += updated;
+                migrated += updated;
+                documentsCounter.increment(updated);
+                afterId = page.get(page.size() - 1).id();
+
+                migrationDao.updateProgress(id, total, migrated);
+                current = withProgress(current, EmbeddingModelMigration.Status.BACKFILLING,
+                        new EmbeddingMigrationDao.Coverage(total, migrated));
+                throttle(pageStart, page.size());
+            }
+            if (found == 0) {
+                return;
+            }
+            if (written == 0) {
+                throw new IllegalStateException(found + " documents are still pending after a pass without progress");
+            }
+            coverage = migrationDao.coverage();
+            total = coverage.total();
+            migrated = coverage.migrated();
+        }
+    }
+
+    /**
+     * Target vectors for a page, index-aligned; null for documents without text, which keep
+     * their current vector.
+     */
+    private List<float[]> embed(EmbeddingService target, List<EmbeddingMigrationDao.PendingDocument> page)
+            throws EmbeddingService.EmbeddingGenerationException {
+        List<String> texts = new ArrayList<>(page.size());
+        for (EmbeddingMigrationDao.PendingDocument document : page) {
+            if (document.contentText() != null && !document.contentText().isBlank()) {
+                texts.add(document.contentText());
+            }
+        }
+        List<float[]> embedded = texts.isEmpty() ? List.of()
+                : embeddingCache.generateEmbeddings(target, texts).embeddings();
+        List<float[]> embeddings = new ArrayList<>(page.size());
+        int next = 0;
+        for (EmbeddingMigrationDao.PendingDocument document : page) {
+            boolean hasText = document.contentText() != null && !document.contentText().isBlank();
+            embeddings.add(hasText ? embedded.get(next++) : null);
+        }
+        return embeddings;
+    }
+
+    private void throttle(long pageStart, int documents) throws InterruptedException {
+        long remaining = pageStart + documents * nanosPerDocument - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    private void checkpoint() throws InterruptedException {
+        if (cancelRequested || stopped) {
+            throw new InterruptedException();
+        }
+    }
+
+    private void finish(UUID id, EmbeddingModelMigration.Status status, String errorMessage) {
+        shadowTarget = null;
+        try {
+            migrationDao.updateStatus(id, status, errorMessage);
+            migrationDao.dropShadowObjects();
+        } catch (Exception e) {
+            logger.error("Failed to clean up embedding migration {}: {}", id, e.getMessage(), e);
+        }
+        current = null;
+    }
+
+    /**
+     * Make the target of a completed migration the query provider, once per migration, and
+     * tell the listeners the stored vectors changed model.
+     */
+    private void apply(EmbeddingModelMigration migration) {
+        if (migration.id().equals(appliedMigrationId)) {
+            return;
+        }
+        appliedMigrationId = migration.id();
+        providerResolver.switchDefault(providerResolver.byName(migration.targetProvider()));
+        listeners.forEach(VectorDocumentsListener::embeddingModelChanged);
+    }
+
+    private static EmbeddingModelMigration withProgress(EmbeddingModelMigration migration,
+            EmbeddingModelMigration.Status status, EmbeddingMigrationDao.Coverage coverage) {
+        return new EmbeddingModelMigration(migration.id(), migration.sourceModel(), migration.targetProvider(),
+                migration.targetModel(), status, coverage.total(), coverage.migrated(), migration.errorMessage(),
+                migration.startedAt(), migration.completedAt());
+    }
+}
@@ -2,21 +2,38 @@ package com.erp.rag.ragplatform.worker.service;
 
 import com.erp.rag.ragplatform.worker.domain.EmbeddingBatch;
 import com.erp.rag.ragplatform.worker.domain.ErpDocument;
+import com.erp.rag.ragplatform.worker.domain.VectorCompanyIds;
+import com.erp.rag.ragplatform.worker.pipeline.PipelineStage;
+import com.erp.rag.ragplatform.worker.pipeline.PipelineStats;
+import com.erp.rag.ragplatform.worker.pipeline.StagedPipeline;
+import com.erp.rag.ragplatform.worker.pipeline.TokenBudgetBatcher;
 import com.erp.rag.ragplatform.worker.repository.EmbeddingBatchRepository;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingCacheService;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingDispatcher;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingProviderResolver;
 import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingService;
-import com.erp.rag.supabase.vector.VectorDocument;
-import com.erp.rag.supabase.vector.VectorDocumentRepository;
+import com.erp.rag.supabase.vector.PgVector;
+import com.erp.rag.supabase.vector.VectorDocumentBulkWriter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Main service orchestrating the embedding generation pipeline.
@@ -30,6 +47,35 @@ import java.util.*;
  * - Batch tracking and state machine (AC9)
  * - Progress logging and telemetry (AC10)
  * </p>
+ * <p>
+ * Extraction, rendering, embedding and persistence run as a {@link StagedPipeline} so the
+ * CPU, the embedding API and the database work concurrently on different slices. Stage
+ * statistics are logged and stored under {@code pipeline_stages} in the batch metadata.
+ * Each write commits on its own; the batch record is the source of truth for progress.
+ * </p>
+ * <p>
+ * Rendered documents are re-packed into embedding requests by estimated token count
+ * ({@link TokenBudgetBatcher}), filling each request up to the provider's item and token
+ * limits instead of using a fixed document count. Requests run concurrently under the
+ * adaptive limit of {@link EmbeddingDispatcher}.
+ * Embeddings go through {@link EmbeddingCacheService}, so documents whose rendered text is
+ * unchanged reuse their previous vector; the hit rate and the API cost it saved are stored
+ * under {@code embedding_cache} in the batch metadata.
+ * </p>
+ * <p>
+ * The provider is chosen once per batch by {@link EmbeddingProviderResolver} (tenant or
+ * workload, e.g. full reindexes in-process), recorded as {@code embedding_provider} in the
+ * batch metadata and as {@code embedding_model} on every vector.
+ * </p>
+ * <p>
+ * While an embedding model migration is active ({@link EmbeddingMigrationService}), each
+ * request is also embedded with the migration target and both vectors are written in the same
+ * COPY, so new documents never need a second pass.
+ * </p>
+ * <p>
+ * Each written slice is reported to the {@link VectorDocumentsListener}s, e.g. the in-process
+ * vector cache.
+ * </p>
  *
  * @author dev-agent
  * @since 1.0.0
@@ -38,29 +84,44 @@ import java.util.*;
 public class EmbeddingWorkerService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmbeddingWorkerService.class);
-    private static final int BATCH_SIZE = 100; // Max batch size per AC3
+    private static final int SLICE_SIZE = 100; // Documents per extraction slice; requests are packed by tokens
     private static final int PROGRESS_LOG_INTERVAL = 1000; // Log progress every 1000 docs per AC4
 
     private final DocumentExtractor documentExtractor;
     private final TextTemplateRenderer textRenderer;
-    private final EmbeddingService embeddingService;
-    private final VectorDocumentRepository vectorRepository;
+    private final EmbeddingProviderResolver providerResolver;
+    private final EmbeddingCacheService embeddingCache;
+    private final EmbeddingDispatcher embeddingDispatcher;
+    private final EmbeddingMigrationService migrationService;
+    private final VectorDocumentBulkWriter bulkWriter;
+    private final List<VectorDocumentsListener> listeners;
     private final EmbeddingBatchRepository batchRepository;
     private final ObjectMapper objectMapper;
+    private final int pipelineQueueCapacity;
 
     public EmbeddingWorkerService(
             DocumentExtractor documentExtractor,
             TextTemplateRenderer textRenderer,
-            EmbeddingService embeddingService,
-            VectorDocumentRepository vectorRepository,
+            EmbeddingProviderResolver providerResolver,
+            EmbeddingCacheService embeddingCache,
+            EmbeddingDispatcher embeddingDispatcher,
+            EmbeddingMigrationService migrationService,
+            VectorDocumentBulkWriter bulkWriter,
+            List<VectorDocumentsListener> listeners,
             EmbeddingBatchRepository batchRepository,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            @Value("${embedding.worker.pipeline.queue-capacity:4}") int pipelineQueueCapacity) {
         this.documentExtractor = documentExtractor;
         this.textRenderer = textRenderer;
-        this.embeddingService = embeddingService;
-        this.vectorRepository = vectorRepository;
+        this.providerResolver = providerResolver;
+        this.embeddingCache = embeddingCache;
+        this.embeddingDispatcher = embeddingDispatcher;
+        this.migrationService = migrationService;
+        this.bulkWriter = bulkWriter;
+        this.listeners = listeners;
         this.batchRepository = batchRepository;
         this.objectMapper = objectMapper;
+        this.pipelineQueueCapacity = pipelineQueueCapacity;
     }
 
     /**
@@ -73,7 +134,6 @@ public class EmbeddingWorkerService {
      * @param updatedAfter optional timestamp for incremental sync
      * @return batch UUID
      */
-    @Transactional
     public UUID executeBatch(
             UUID companyId,
             EmbeddingBatch.BatchType batchType,
@@ -103,81 +163,73 @@ public class EmbeddingWorkerService {
         batch = batchRepository.save(batch);
 
         try {
-            // Step 1: Extract documents
-            List<ErpDocument> documents;
-            if (sourceTables != null && !sourceTables.isEmpty()) {
-                documents = documentExtractor.extractFrom(companyId, sourceTables, updatedAfter);
-            } else {
-                documents = documentExtractor.extractAll(companyId, updatedAfter);
-            }
-
-            logger.info("Extracted {} documents for batch {}", documents.size(), batch.getId());
-
-            // Start batch
-            batch.start(documents.size());
+            // Start batch; the total is only known once extraction has been drained
+            batch.start();
             batch = batchRepository.save(batch);
 
-            // Step 2: Process documents in batches
-            int processedCount = 0;
-            int failedCount = 0;
-            long startTime = System.currentTimeMillis();
+            // Steps 1-4 run as a pipeline: extraction (this thread) -> render -> pack -> embed -> persist,
+            // each stage on its own thread with bounded queues in between, so PII rendering of
+            // slice N+1 and persistence of slice N-1 overlap with the embedding call for slice N
+            EmbeddingService provider = providerResolver.forBatch(companyId, batchType);
+            logger.info("Batch {} embeds with {} ({})", batch.getId(), provider.getProviderName(), provider.getModelId());
+            BatchProgress progress = new BatchProgress(batch, provider);
+            StagedPipeline<List<ErpDocument>> pipeline = StagedPipeline
+                    .<List<ErpDocument>>builder("embedding-batch", pipelineQueueCapacity)
+                    .stage(new RenderStage(progress))
+                    .stage(new PackStage(progress))
+                    .stage(new EmbedStage(progress))
+                    .stage(new PersistStage(companyId, progress))
+                    .build();
+
+            long[] extracted = new long[1];
+            PipelineStats stats = pipeline.run(submit -> {
+                Slicer slicer = new Slicer(submit);
+                if (sourceTables != null && !sourceTables.isEmpty()) {
+                    extracted[0] = documentExtractor.streamFrom(companyId, sourceTables, updatedAfter, slicer);
+                } else {
+                    extracted[0] = documentExtractor.streamAll(companyId, updatedAfter, slicer);
+                }
+                slicer.flush();
+            });
 
-            for (int i = 0; i < documents.size(); i += BATCH_SIZE) {
-                int endIndex = Math.min(i + BATCH_SIZE, documents.size());
-                List<ErpDocument> batchDocs = documents.subList(i, endIndex);
+            logger.info("Extracted {} documents for batch {}", extracted[0], batch.getId());
+            logger.info("Pipeline stages for batch {}: {}", batch.getId(), stats.summary());
 
-                try {
-                    processBatch(batchDocs, companyId);
-                    processedCount += batchDocs.size();
-
-                    // Update batch progress
-                    batch.setProcessedDocuments(processedCount);
-                    batchRepository.save(batch);
-
-                    // Log progress every 1000 docs (AC4)
-                    if (processedCount % PROGRESS_LOG_INTERVAL == 0 || endIndex == documents.size()) {
-                        long elapsedMs = System.currentTimeMillis() - startTime;
-                        double throughput = (processedCount / (elapsedMs / 1000.0)) * 60; // docs/min
-                        long estimatedCompletionMs = (long) ((documents.size() - processedCount)
-                                / (processedCount / (double) elapsedMs) * 1000);
-
-                        logger.info(
-                                "Progress: {}/{} docs processed ({} failed) | Throughput: {:.1f} docs/min | Elapsed: {}s | ETA: {}s",
-                                processedCount, documents.size(), failedCount,
-                                throughput, elapsedMs / 1000, estimatedCompletionMs / 1000);
-                    }
-
-                } catch (Exception e) {
-                    logger.error("Failed to process batch of {} documents at index {}: {}",
-                            batchDocs.size(), i, e.getMessage(), e);
-                    failedCount += batchDocs.size();
-                    batch.setFailedDocuments(failedCount);
-                }
-            }
+            int processedCount = progress.processed.get();
+            int failedCount = progress.failed.get();
+            batch.setTotalDocuments((int) extracted[0]);
+            batch.setProcessedDocuments(processedCount);
+            batch.setFailedDocuments(failedCount);
 
             // Calculate final metrics
-            long totalElapsedMs = System.currentTimeMillis() - startTime;
-            double avgThroughput = (processedCount / (totalElapsedMs / 1000.0)) * 60;
+            long totalElapsedMs = System.currentTimeMillis() - progress.startTime;
+            double avgThroughput = totalElapsedMs > 0 ? (processedCount / (totalElapsedMs / 1000.0)) * 60 : 0;
 
             // Store metrics in metadata
             ObjectNode metadata = objectMapper.createObjectNode();
             metadata.put("total_elapsed_ms", totalElapsedMs);
             metadata.put("avg_throughput_docs_per_min", avgThroughput);
-            metadata.put("api_cost_usd", calculateCost(processedCount));
+            metadata.put("embedding_provider", provider.getProviderName());
+            metadata.put("embedding_model", provider.getModelId());
+            metadata.put("api_cost_usd", provider.isRemote() ? calculateCost(progress.embedded.get()) : 0);
+            metadata.set("embedding_cache", cacheJson(progress));
+            metadata.set("embedding_requests", requestsJson(progress));
+            metadata.set("pipeline_stages", toJson(stats));
             batch.setMetadata(metadata);
 
             // Complete batch
             batch.complete();
             batch = batchRepository.save(batch);
 
-            logger.info("Batch {} completed: {} processed, {} failed, {:.1f} docs/min, {}s elapsed",
-                    batch.getId(), processedCount, failedCount, avgThroughput, totalElapsedMs / 1000);
+            logger.info("Batch {} completed: {} processed, {} failed, {} docs/min, {}s elapsed",
+                    batch.getId(), processedCount, failedCount, String.format("%.1f", avgThroughput),
+                    totalElapsedMs / 1000);
 
             // Check error rate alert threshold (AC7)
-            double errorRate = failedCount / (double) documents.size();
+            double errorRate = extracted[0] > 0 ? failedCount / (double) extracted[0] : 0;
             if (errorRate > 0.05) {
-                logger.error("ERROR RATE ALERT: {:.1f}% failures exceeds 5% threshold for batch {}",
-                        errorRate * 100, batch.getId());
+                logger.error("ERROR RATE ALERT: {}% failures exceeds 5% threshold for batch {}",
+                        String.format("%.1f", errorRate * 100), batch.getId());
                 // TODO: Send Slack alert per AC10
             }
 
@@ -191,70 +243,401 @@ public class EmbeddingWorkerService {
         }
     }
 
+    private ObjectNode cacheJson(BatchProgress progress) {
+        int hits = progress.cacheHits.get();
+        int lookups = hits + progress.embedded.get();
+        ObjectNode cache = objectMapper.createObjectNode();
+        cache.put("hits", hits);
+        cache.put("misses", progress.embedded.get());
+        cache.put("hit_rate", lookups > 0 ? hits / (double) lookups : 0);
+        cache.put("saved_cost_usd", progress.provider.isRemote() ? calculateCost(hits) : 0);
+        return cache;
+    }
+
+    private ObjectNode requestsJson(BatchProgress progress) {
+        int requests = progress.requests.get();
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("count", requests);
+        node.put("max_items", progress.provider.getMaxBatchSize());
+        node.put("max_tokens", progress.provider.getMaxTokensPerRequest());
+        node.put("avg_items", requests > 0 ? progress.requestItems.get() / (double) requests : 0);
+        node.put("avg_estimated_tokens", requests > 0 ? progress.requestTokens.get() / (double) requests : 0);
+        return node;
+    }
+
+    private ArrayNode toJson(PipelineStats stats) {
+        ArrayNode stages = objectMapper.createArrayNode();
+        for (PipelineStats.StageStats stage : stats.stages()) {
+            ObjectNode node = stages.addObject();
+            node.put("stage", stage.name());
+            node.put("items_in", stage.itemsIn());
+            node.put("items_out", stage.itemsOut());
+            node.put("busy_ms", stage.busyMillis());
+            node.put("blocked_ms", stage.blockedMillis());
+            node.put("throughput_per_sec", stage.throughputPerSecond());
+            node.put("max_queue_depth", stage.maxQueueDepth());
+            node.put("avg_queue_depth", stage.avgQueueDepth());
+        }
+        return stages;
+    }
+
+    /**
+     * Slice rendered to text; {@code documents} and {@code texts} are index-aligned and only
+     * hold documents that rendered to non-blank text, {@code size} counts the whole slice.
+     */
+    private record RenderedSlice(int size, List<ErpDocument> documents, List<String> texts) {
+    }
+
+    /**
+     * One rendered document with its estimated token count, as packed into requests.
+     */
+    private record PackedText(ErpDocument document, String text, int tokens) {
+    }
+
+    /**
+     * Embedded slice; {@code shadowEmbeddings} holds the migration target's vectors, or is
+     * null when no migration is active.
+     */
+    private record EmbeddedSlice(RenderedSlice rendered, List<float[]> embeddings, List<float[]> shadowEmbeddings) {
+    }
+
+    /**
+     * Counters shared by the stages. Only the persist stage writes to the batch entity
+     * while the pipeline is running.
+     */
+    private static final class BatchProgress {
+
+        private final EmbeddingBatch batch;
+        private final EmbeddingService provider;
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger cacheHits = new AtomicInteger();
+        private final AtomicInteger embedded = new AtomicInteger();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger requestItems = new AtomicInteger();
+        private final AtomicLong requestTokens = new AtomicLong();
+        private final long startTime = System.currentTimeMillis();
+        private int nextProgressLog = PROGRESS_LOG_INTERVAL;
+
+        BatchProgress(EmbeddingBatch batch, EmbeddingService provider) {
+            this.batch = batch;
+            this.provider = provider;
+        }
+    }
+
     /**
-     * Process a batch of documents: render text, generate embeddings, persist
-     * vectors.
+     * Groups streamed documents into slices of SLICE_SIZE for the pipeline.
      */
-    private void processBatch(List<ErpDocument> documents, UUID companyId) throws Exception {
-        List<String> texts = new ArrayList<>();
-        List<ErpDocument> validDocs = new ArrayList<>();
+    private static final class Slicer implements Consumer<ErpDocument> {
+
+        private final Consumer<List<ErpDocument>> downstream;
+        private List<ErpDocument> slice = new ArrayList<>(SLICE_SIZE);
+
+        Slicer(Consumer<List<ErpDocument>> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void accept(ErpDocument document) {
+            slice.add(document);
+            if (slice.size() >= SLICE_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!slice.isEmpty()) {
+                downstream.accept(slice);
+                slice = new ArrayList<>(SLICE_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Render all documents of a slice to text with PII masking (AC2, AC5).
+     */
+    private final class RenderStage implements PipelineStage<List<ErpDocument>, RenderedSlice> {
+
+        private final BatchProgress progress;
+
+        RenderStage(BatchProgress progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        public String name() {
+            return "render";
+        }
+
+        @Override
+        public void accept(List<ErpDocument> documents, Consumer<RenderedSlice> emit) {
+            List<String> texts = new ArrayList<>();
+            List<ErpDocument> validDocs = new ArrayList<>();
+
+            for (ErpDocument doc : documents) {
+                try {
+                    String maskedText = textRenderer.renderDocument(doc);
+                    if (maskedText != null && !maskedText.isBlank()) {
+                        texts.add(maskedText);
+                        validDocs.add(doc);
+                    } else {
+                        logger.warn("Skipping document with empty text: {} id={}",
+                                doc.getDocumentType(), doc.getId());
+                    }
+                } catch (TextTemplateRenderer.TextRenderingException e) {
+                    // Critical PII masking failure - fail the whole slice
+                    logger.error("PII masking failed for slice of {} documents: {}",
+                            documents.size(), e.getMessage(), e);
+                    progress.failed.addAndGet(documents.size());
+                    return;
+                } catch (Exception e) {
+                    logger.error("Error rendering document {} id={}: {}",
+                            doc.getDocumentType(), doc.getId(), e.getMessage());
+                    // Skip malformed document per AC7
+                }
+            }
+
+            emit.accept(new RenderedSlice(documents.size(), validDocs, texts));
+        }
+    }
 
-        // Step 1: Render all documents to text with PII masking
-        for (ErpDocument doc : documents) {
+    /**
+     * Re-pack rendered documents into embedding requests by estimated tokens (AC3).
+     * <p>
+     * Documents carry over between input slices, so a request is emitted only when the next
+     * document would exceed {@link EmbeddingService#getMaxTokensPerRequest()} or the request
+     * reaches {@link EmbeddingService#getMaxBatchSize()}. Documents skipped by the render
+     * stage are counted into the next emitted request so progress totals stay exact.
+     * </p>
+     */
+    private final class PackStage implements PipelineStage<RenderedSlice, RenderedSlice> {
+
+        private final BatchProgress progress;
+        private final List<List<PackedText>> ready = new ArrayList<>();
+        private final TokenBudgetBatcher<PackedText> batcher;
+        private int skipped;
+
+        PackStage(BatchProgress progress) {
+            this.progress = progress;
+            this.batcher = new TokenBudgetBatcher<>(progress.provider.getMaxBatchSize(),
+                    progress.provider.getMaxTokensPerRequest(), PackedText::tokens, ready::add);
+        }
+
+        @Override
+        public String name() {
+            return "pack";
+        }
+
+        @Override
+        public void accept(RenderedSlice slice, Consumer<RenderedSlice> emit) {
+            skipped += slice.size() - slice.documents().size();
+            for (int i = 0; i < slice.documents().size(); i++) {
+                String text = slice.texts().get(i);
+                batcher.add(new PackedText(slice.documents().get(i), text, progress.provider.estimateTokens(text)));
+            }
+            emitReady(emit);
+        }
+
+        @Override
+        public void finish(Consumer<RenderedSlice> emit) {
+            batcher.flush();
+            emitReady(emit);
+            if (skipped > 0) {
+                emit.accept(new RenderedSlice(skipped, List.of(), List.of()));
+                skipped = 0;
+            }
+        }
+
+        private void emitReady(Consumer<RenderedSlice> emit) {
+            for (List<PackedText> request : ready) {
+                List<ErpDocument> documents = new ArrayList<>(request.size());
+                List<String> texts = new ArrayList<>(request.size());
+                long tokens = 0;
+                for (PackedText packed : request) {
+                    documents.add(packed.document());
+                    texts.add(packed.text());
+                    tokens += packed.tokens();
+                }
+                progress.requests.incrementAndGet();
+                progress.requestItems.addAndGet(request.size());
+                progress.requestTokens.addAndGet(tokens);
+
+                emit.accept(new RenderedSlice(request.size() + skipped, documents, texts));
+                skipped = 0;
+            }
+            ready.clear();
+        }
+    }
+
+    /**
+     * Generate embeddings for packed requests (AC3), calling the API only for cache misses.
+     * <p>
+     * Requests run concurrently on virtual threads, up to
+     * {@link EmbeddingDispatcher#getMaxConcurrency()} at a time (the dispatcher adapts the
+     * actual concurrency), and are emitted downstream in the order they arrived.
+     * </p>
+     */
+    private final class EmbedStage implements PipelineStage<RenderedSlice, EmbeddedSlice> {
+
+        private final BatchProgress progress;
+        private final Deque<InFlight> inFlight = new ArrayDeque<>();
+        private ExecutorService executor;
+
+        EmbedStage(BatchProgress progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        public String name() {
+            return "embed";
+        }
+
+        @Override
+        public void accept(RenderedSlice slice, Consumer<EmbeddedSlice> emit) throws InterruptedException {
+            if (slice.texts().isEmpty()) {
+                logger.warn("No valid texts to process in this batch");
+                inFlight.add(new InFlight(slice, CompletableFuture.completedFuture(new EmbeddedTexts(
+                        new EmbeddingCacheService.CachedEmbeddings(List.of(), 0, 0, 0), null))));
+            } else {
+                if (executor == null) {
+                    executor = Executors.newVirtualThreadPerTaskExecutor();
+                }
+                EmbeddingService shadow = migrationService.shadowTarget().orElse(null);
+                inFlight.add(new InFlight(slice, executor.submit(() -> embed(slice.texts(), shadow))));
+            }
+
+            // Emit finished requests in order; wait for the oldest once the window is full
+            while (!inFlight.isEmpty()
+                    && (inFlight.peek().result().isDone() || inFlight.size() > embeddingDispatcher.getMaxConcurrency())) {
+                emitOldest(emit);
+            }
+        }
+
+        @Override
+        public void finish(Consumer<EmbeddedSlice> emit) throws InterruptedException {
             try {
-                String maskedText = textRenderer.renderDocument(doc);
-                if (maskedText != null && !maskedText.isBlank()) {
-                    texts.add(maskedText);
-                    validDocs.add(doc);
-                } else {
-                    logger.warn("Skipping document with empty text: {} id={}",
-                            doc.getDocumentType(), doc.getId());
+                while (!inFlight.isEmpty()) {
+                    emitOldest(emit);
+                }
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
                 }
-            } catch (TextTemplateRenderer.TextRenderingException e) {
-                // Critical PII masking failure - re-throw to halt batch
-                throw e;
-            } catch (Exception e) {
-                logger.error("Error rendering document {} id={}: {}",
-                        doc.getDocumentType(), doc.getId(), e.getMessage());
-                // Skip malformed document per AC7
             }
         }
 
-        if (texts.isEmpty()) {
-            logger.warn("No valid texts to process in this batch");
-            return;
+        /**
+         * Embed with the batch provider and, during a migration, with the target model too.
+         */
+        private EmbeddedTexts embed(List<String> texts, EmbeddingService shadow)
+                throws EmbeddingService.EmbeddingGenerationException {
+            EmbeddingCacheService.CachedEmbeddings result = embeddingCache.generateEmbeddings(progress.provider, texts);
+            if (shadow == null) {
+                return new EmbeddedTexts(result, null);
+            }
+            if (shadow.getModelId().equals(progress.provider.getModelId())) {
+                return new EmbeddedTexts(result, result.embeddings());
+            }
+            return new EmbeddedTexts(result, embeddingCache.generateEmbeddings(shadow, texts).embeddings());
         }
 
-        // Step 2: Generate embeddings
-        List<float[]> embeddings = embeddingService.generateEmbeddings(texts);
+        private void emitOldest(Consumer<EmbeddedSlice> emit) throws InterruptedException {
+            InFlight request = inFlight.poll();
+            try {
+                EmbeddedTexts embedded = request.result().get();
+                EmbeddingCacheService.CachedEmbeddings result = embedded.result();
+                progress.cacheHits.addAndGet(result.hits());
+                progress.embedded.addAndGet(result.embedded());
+                emit.accept(new EmbeddedSlice(request.slice(), result.embeddings(), embedded.shadowEmbeddings()));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                logger.error("Failed to embed batch of {} documents: {}", request.slice().size(), cause.getMessage(), cause);
+                progress.failed.addAndGet(request.slice().size());
+            }
+        }
+    }
+
+    /**
+     * Embedding request submitted to the dispatcher, in pipeline order.
+     */
+    private record InFlight(RenderedSlice slice, Future<EmbeddedTexts> result) {
+    }
+
+    /**
+     * Vectors of one request; {@code shadowEmbeddings} is null when no migration is active.
+     */
+    private record EmbeddedTexts(EmbeddingCacheService.CachedEmbeddings result, List<float[]> shadowEmbeddings) {
+    }
+
+    /**
+     * Persist vectors with metadata (AC6) via binary COPY and record batch progress (AC4, AC9).
+     */
+    private final class PersistStage implements PipelineStage<EmbeddedSlice, Void> {
+
+        private final UUID companyId;
+        private final BatchProgress progress;
 
-        if (embeddings.size() != texts.size()) {
-            throw new IllegalStateException(
-                    "Embedding count mismatch: expected " + texts.size() + ", got " + embeddings.size());
+        PersistStage(UUID companyId, BatchProgress progress) {
+            this.companyId = companyId;
+            this.progress = progress;
         }
 
-        // Step 3: Persist vectors with metadata (AC6)
-        for (int i = 0; i < validDocs.size(); i++) {
-            ErpDocument doc = validDocs.get(i);
-            float[] embedding = embeddings.get(i);
-            String contentText = texts.get(i);
+        @Override
+        public String name() {
+            return "persist";
+        }
 
+        @Override
+        public void accept(EmbeddedSlice slice, Consumer<Void> emit) {
+            RenderedSlice rendered = slice.rendered();
+            List<VectorDocumentBulkWriter.Row> rows = new ArrayList<>(slice.embeddings().size());
+            for (int i = 0; i < slice.embeddings().size(); i++) {
+                float[] shadow = slice.shadowEmbeddings() != null ? slice.shadowEmbeddings().get(i) : null;
+                rows.add(toVectorRow(rendered.documents().get(i), slice.embeddings().get(i), shadow,
+                        rendered.texts().get(i), companyId, progress.provider.getModelId()));
+            }
+
+            // One COPY round-trip per slice; rows the database rejects fail one by one
+            VectorDocumentBulkWriter.WriteResult written;
             try {
-                persistVectorDocument(doc, embedding, contentText, companyId);
+                written = bulkWriter.write(rows);
+                Long vectorCompanyId = VectorCompanyIds.of(companyId);
+                listeners.forEach(listener -> listener.documentsWritten(vectorCompanyId));
             } catch (Exception e) {
-                logger.error("Failed to persist vector for document {} id={}: {}",
-                        doc.getDocumentType(), doc.getId(), e.getMessage(), e);
-                // Continue processing remaining documents
+                logger.error("Failed to persist {} vectors: {}", rows.size(), e.getMessage(), e);
+                progress.failed.addAndGet(rendered.size());
+                progress.batch.setFailedDocuments(progress.failed.get());
+                batchRepository.save(progress.batch);
+                return;
+            }
+
+            int rejected = written.failed().size();
+            int processedCount = progress.processed.addAndGet(rendered.size() - rejected);
+            int failedCount = progress.failed.addAndGet(rejected);
+
+            // Update batch progress
+            progress.batch.setProcessedDocuments(processedCount);
+            progress.batch.setFailedDocuments(failedCount);
+            batchRepository.save(progress.batch);
+
+            // Log progress every 1000 docs (AC4)
+            if (processedCount >= progress.nextProgressLog) {
+                progress.nextProgressLog += PROGRESS_LOG_INTERVAL;
+                long elapsedMs = System.currentTimeMillis() - progress.startTime;
+                double throughput = elapsedMs > 0 ? (processedCount / (elapsedMs / 1000.0)) * 60 : 0;
+
+                logger.info("Progress: {} docs processed ({} failed) | Throughput: {} docs/min | Elapsed: {}s",
+                        processedCount, failedCount, String.format("%.1f", throughput), elapsedMs / 1000);
             }
         }
     }
 
     /**
-     * Persist vector document with metadata to vector_documents table using ON
-     * CONFLICT upsert.
+     * Build the vector_documents row for a document with its metadata (AC6).
      * Story 1.5 dependency: Store content_text in metadata for grounded context generation.
      */
-    private void persistVectorDocument(ErpDocument doc, float[] embedding, String contentText, UUID companyId) {
+    private VectorDocumentBulkWriter.Row toVectorRow(ErpDocument doc, float[] embedding, float[] shadowEmbedding,
+            String contentText, UUID companyId, String modelId) {
         // Create metadata JSON (AC6)
         ObjectNode metadata = objectMapper.createObjectNode();
         metadata.put("document_type", doc.getDocumentType());
@@ -264,43 +647,24 @@ public class EmbeddingWorkerService {
         if (doc.getFiscalPeriod() != null) {
             metadata.put("fiscal_period", doc.getFiscalPeriod());
         }
+        if (doc.getDocumentNumber() != null) {
+            // Exact lookups by number (Story 1.5 identifier fast path)
+            metadata.put("document_number", doc.getDocumentNumber());
+        }
+        metadata.put("embedding_model", modelId);
 
-        // Convert embedding to string format for PostgreSQL vector type
-        String embeddingStr = floatArrayToVectorString(embedding);
-
-        // TODO: Proper UUID to Long mapping needed for production
-        // For now, using hashCode as placeholder - should use a proper ID mapping service
-        Long companyIdLong = Math.abs((long) companyId.hashCode());
+        Long companyIdLong = VectorCompanyIds.of(companyId);
         Long sourceIdLong = Math.abs((long) doc.getId().hashCode());
 
-        // Create VectorDocument entity
-        VectorDocument vectorDoc = new VectorDocument(
+        return new VectorDocumentBulkWriter.Row(
                 companyIdLong,
                 doc.getSourceTable(),
                 sourceIdLong,
                 doc.getDocumentType(), // content_type
                 contentText, // content_text
-                embeddingStr,
-                metadata);
-
-        // Save (JPA will handle ON CONFLICT via merge)
-        vectorRepository.save(vectorDoc);
-
-        logger.debug("Persisted vector for document: {} id={}", doc.getDocumentType(), doc.getId());
-    }
-
-    /**
-     * Convert float array to PostgreSQL vector string format: "[0.1,0.2,...]".
-     */
-    private String floatArrayToVectorString(float[] embedding) {
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < embedding.length; i++) {
-            if (i > 0)
-                sb.append(",");
-            sb.append(embedding[i]);
-        }
-        sb.append("]");
-        return sb.toString();
+                new PgVector(embedding),
+                metadata,
+                shadowEmbedding != null ? new PgVector(shadowEmbedding) : null);
     }
 
     /**
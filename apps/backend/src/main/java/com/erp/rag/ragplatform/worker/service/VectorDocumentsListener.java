@@ -0,0 +1,29 @@
+package com.erp.rag.ragplatform.worker.service;
+
+/**
+ * Notified of changes the worker makes to {@code vector_documents}.
+ * <p>
+ * Story 1.5 – AC3: lets components that mirror the table, such as the in-process vector cache
+ * of the query side, catch up right away instead of waiting for their next poll. The worker
+ * only knows this interface, so it does not depend on the query side.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public interface VectorDocumentsListener {
+
+    /**
+     * A tenant's documents have just been written by this instance. Must not block.
+     *
+     * @param companyId {@code vector_documents.company_id} of the rows
+     */
+    void documentsWritten(Long companyId);
+
+    /**
+     * An embedding model migration has cut over: every stored vector may now be of another
+     * model, although no row's {@code updated_at} changed. Must not block.
+     */
+    default void embeddingModelChanged() {
+    }
+}
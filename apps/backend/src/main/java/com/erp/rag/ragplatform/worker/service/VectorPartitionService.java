@@ -0,0 +1,117 @@
+package com.erp.rag.ragplatform.worker.service;
+
+import com.erp.rag.supabase.vector.VectorPartitionDao;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves large tenants into dedicated partitions of {@code vector_documents}.
+ * <p>
+ * Story 1.3 – AC2: Tenants start in the hash-partitioned default partition (changelog 013),
+ * where they share HNSW graphs with the other tenants of their bucket. A tenant with at least
+ * {@code rag.vector.partition.dedicated-min-rows} live documents is a candidate for its own
+ * list partition, so its searches walk a graph of its own documents only and small tenants
+ * stop sharing a bucket with it.
+ * </p>
+ * <p>
+ * A move copies and indexes the tenant's rows in the background (the tenant stays searchable
+ * in the default partition meanwhile) and attaches the partition in one short transaction;
+ * one move runs at a time. Outcomes are counted in
+ * {@code rag_vector_partition_moves_total{outcome}}.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Service
+public class VectorPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorPartitionService.class);
+
+    private final VectorPartitionDao partitionDao;
+    private final long dedicatedMinRows;
+    private final Counter movedCounter;
+    private final Counter failedCounter;
+
+    private Thread runner;
+
+    public VectorPartitionService(VectorPartitionDao partitionDao,
+            MeterRegistry meterRegistry,
+            @Value("${rag.vector.partition.dedicated-min-rows:100000}") long dedicatedMinRows) {
+        this.partitionDao = partitionDao;
+        this.dedicatedMinRows = dedicatedMinRows;
+        this.movedCounter = Counter.builder("rag_vector_partition_moves_total")
+                .description("Tenant moves into dedicated vector partitions by outcome")
+                .tag("outcome", "moved")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("rag_vector_partition_moves_total")
+                .description("Tenant moves into dedicated vector partitions by outcome")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the list partitions of {@code vector_documents} and the hash partitions of the
+     *         default partition
+     */
+    public List<VectorPartitionDao.Partition> partitions() {
+        List<VectorPartitionDao.Partition> partitions = new ArrayList<>();
+        for (VectorPartitionDao.Partition partition : partitionDao.findPartitions("vector_documents")) {
+            partitions.add(partition);
+            if (partition.partitioned()) {
+                partitions.addAll(partitionDao.findPartitions(partition.name()));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * @return tenants of the default partition large enough for a dedicated partition
+     */
+    public List<VectorPartitionDao.TenantSize> candidates() {
+        return partitionDao.findDefaultPartitionTenants(dedicatedMinRows);
+    }
+
+    /**
+     * Start moving a tenant into a dedicated partition.
+     *
+     * @param companyId vector company id
+     * @return name the partition will have
+     * @throws IllegalStateException if the table is not partitioned, the tenant already has a
+     *                               partition or another move is running
+     */
+    public synchronized String move(long companyId) {
+        if (runner != null && runner.isAlive()) {
+            throw new IllegalStateException("A partition move is already running");
+        }
+        if (!partitionDao.isPartitioned()) {
+            throw new IllegalStateException("accounting.vector_documents is not partitioned");
+        }
+        String partition = VectorPartitionDao.tenantPartitionName(companyId);
+        if (partitionDao.findPartitions("vector_documents").stream().anyMatch(p -> p.name().equals(partition))) {
+            throw new IllegalStateException("Company " + companyId + " already has partition " + partition);
+        }
+        runner = Thread.ofVirtual().name("vector-partition-move").start(() -> run(companyId));
+        return partition;
+    }
+
+    void run(long companyId) {
+        long start = System.nanoTime();
+        try {
+            String partition = partitionDao.createTenantPartition(companyId);
+            movedCounter.increment();
+            logger.info("Moved company {} into partition {} in {} ms", companyId, partition,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            logger.error("Failed to move company {} into a dedicated partition: {}", companyId, e.getMessage(), e);
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.erp.rag.ragplatform.worker.service.embedding;
 
+import com.erp.rag.ragplatform.worker.client.AzureOpenAiEmbeddingClient;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -17,29 +18,57 @@ import java.util.Random;
  * Azure OpenAI implementation of embedding service using text-embedding-3-large
  * model.
  * <p>
- * Story 1.4 – AC3: Embedding generation with batched API calls (≤100 docs),
- * retry logic (3x exponential backoff), and cost tracking.
+ * Story 1.4 – AC3: Embedding generation with batched API calls (bounded by
+ * {@code embedding.request.max-items} and {@code embedding.request.max-tokens})
+ * and cost tracking. Each call is a single attempt; failures are classified through
+ * {@link EmbeddingGenerationException} and retried by {@link EmbeddingDispatcher}.
  * </p>
  * <p>
- * NOTE: This is a STUB implementation for development/testing.
- * Production implementation should integrate with actual Azure OpenAI API.
+ * Requests go through {@link AzureOpenAiEmbeddingClient} (pooled HTTP/2, streaming JSON).
+ * Without {@code embedding.azure.endpoint} the service refuses to start, unless
+ * {@code embedding.azure.stub-enabled} is set: then deterministic stub embeddings are returned
+ * so development runs without the API. Stub vectors carry no meaning and must never be stored
+ * next to real ones.
+ * </p>
+ * <p>
+ * Primary provider: injected wherever a single {@link EmbeddingService} is expected. Other
+ * providers are chosen per tenant or workload through {@link EmbeddingProviderResolver}.
  * </p>
  *
  * @author dev-agent
  * @since 1.0.0
  */
 @Service
+@Primary
 public class AzureOpenAiEmbeddingService implements EmbeddingService {
 
     private static final Logger logger = LoggerFactory.getLogger(AzureOpenAiEmbeddingService.class);
-    private static final int EMBEDDING_DIMENSION = 1536;
-    private static final int MAX_BATCH_SIZE = 100;
+    private static final String MODEL_ID = "text-embedding-3-large";
 
+    private final AzureOpenAiEmbeddingClient client;
+    private final int maxBatchSize;
+    private final int maxTokensPerRequest;
     private final Counter embeddingsGeneratedCounter;
     private final Counter embeddingErrorsCounter;
     private final Timer embeddingLatencyTimer;
 
-    public AzureOpenAiEmbeddingService(MeterRegistry meterRegistry) {
+    public AzureOpenAiEmbeddingService(AzureOpenAiEmbeddingClient client,
+            MeterRegistry meterRegistry,
+            @Value("${embedding.request.max-items:100}") int maxBatchSize,
+            @Value("${embedding.request.max-tokens:50000}") int maxTokensPerRequest,
+            @Value("${embedding.azure.stub-enabled:false}") boolean stubEnabled) {
+        this.client = client;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        if (!client.isConfigured()) {
+            if (!stubEnabled) {
+                throw new IllegalStateException("embedding.azure.endpoint is not set; "
+                        + "set embedding.azure.stub-enabled=true to generate stub embeddings in development");
+            }
+            logger.warn("embedding.azure.endpoint is not set; generating STUB embeddings "
+                    + "(embedding.azure.stub-enabled)");
+        }
+        this.maxTokensPerRequest = Math.max(1, maxTokensPerRequest);
+
         this.embeddingsGeneratedCounter = Counter.builder("embeddings_generated_total")
                 .description("Total number of embeddings generated")
                 .register(meterRegistry);
@@ -54,43 +83,52 @@ public class AzureOpenAiEmbeddingService implements EmbeddingService {
     }
 
     @Override
-    @Retryable(retryFor = {
-            Exception.class }, maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2.0, maxDelay = 10000))
     public List<float[]> generateEmbeddings(List<String> texts) throws EmbeddingGenerationException {
         if (texts == null || texts.isEmpty()) {
             return List.of();
         }
 
-        if (texts.size() > MAX_BATCH_SIZE) {
+        if (texts.size() > maxBatchSize) {
             throw new IllegalArgumentException(
-                    "Batch size " + texts.size() + " exceeds maximum of " + MAX_BATCH_SIZE);
+                    "Batch size " + texts.size() + " exceeds maximum of " + maxBatchSize);
+        }
+
+        // A single over-long input is left to the API; batches must fit the ceiling
+        if (texts.size() > 1) {
+            int tokens = texts.stream().mapToInt(this::estimateTokens).sum();
+            if (tokens > maxTokensPerRequest) {
+                throw new IllegalArgumentException(
+                        "Batch of ~" + tokens + " tokens exceeds maximum of " + maxTokensPerRequest);
+            }
         }
 
-        try {
-            return embeddingLatencyTimer.record(() -> {
-                logger.debug("Generating embeddings for batch of {} documents", texts.size());
-
-                List<float[]> embeddings = new ArrayList<>(texts.size());
-
-                // STUB: Generate random embeddings for MVP
-                // TODO: Replace with actual Azure OpenAI API call
-                for (String text : texts) {
-                    float[] embedding = generateStubEmbedding(text);
-                    embeddings.add(embedding);
-                }
-
-                embeddingsGeneratedCounter.increment(texts.size());
-                logger.info("Successfully generated {} embeddings", embeddings.size());
-
-                return embeddings;
-            });
-        } catch (Exception e) {
-            embeddingErrorsCounter.increment();
-            logger.error("Failed to generate embeddings for batch of {} documents: {}",
-                    texts.size(), e.getMessage(), e);
-            throw new EmbeddingGenerationException(
-                    "Failed to generate embeddings for batch", e);
+        Timer.Sample sample = Timer.start();
+        List<float[]> embeddings;
+        if (client.isConfigured()) {
+            try {
+                embeddings = client.embed(texts);
+            } catch (AzureOpenAiEmbeddingClient.EmbeddingClientException e) {
+                embeddingErrorsCounter.increment();
+                logger.error("Failed to generate embeddings for batch of {} documents: {}",
+                        texts.size(), e.getMessage());
+                throw e.getStatusCode() > 0
+                        ? new EmbeddingGenerationException(e.getMessage(), e.getStatusCode(), e.getRetryAfter())
+                        : new EmbeddingGenerationException(e.getMessage(), e.getCause());
+            } finally {
+                sample.stop(embeddingLatencyTimer);
+            }
+        } else {
+            // STUB: deterministic embeddings, enabled by embedding.azure.stub-enabled (dev/test)
+            embeddings = new ArrayList<>(texts.size());
+            for (String text : texts) {
+                embeddings.add(generateStubEmbedding(text));
+            }
+            sample.stop(embeddingLatencyTimer);
         }
+
+        embeddingsGeneratedCounter.increment(texts.size());
+        logger.debug("Generated {} embeddings", embeddings.size());
+        return embeddings;
     }
 
     @Override
@@ -101,36 +139,44 @@ public class AzureOpenAiEmbeddingService implements EmbeddingService {
 
     @Override
     public int getEmbeddingDimension() {
-        return EMBEDDING_DIMENSION;
+        return client.getDimensions();
+    }
+
+    @Override
+    public String getModelId() {
+        return MODEL_ID;
+    }
+
+    @Override
+    public String getProviderName() {
+        return "azure";
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public int getMaxTokensPerRequest() {
+        return maxTokensPerRequest;
     }
 
     /**
      * STUB: Generates a deterministic random embedding based on text hash.
-     * This is for development/testing only.
-     * <p>
-     * Production implementation should call Azure OpenAI API:
-     * POST
-     * https://{resource}.openai.azure.com/openai/deployments/{deployment}/embeddings?api-version=2024-04-01-preview
-     * Headers:
-     * - api-key: {AZURE_OPENAI_API_KEY}
-     * - Content-Type: application/json
-     * Body:
-     * {
-     * "input": ["text1", "text2", ...],
-     * "model": "text-embedding-3-large"
-     * }
-     * </p>
+     * Used only while no Azure OpenAI endpoint is configured and {@code embedding.azure.stub-enabled}
+     * is set (development/testing).
      *
      * @param text input text
-     * @return stub embedding (1536 dimensions)
+     * @return stub embedding ({@code embedding.azure.dimensions} long)
      */
     private float[] generateStubEmbedding(String text) {
         // Use text hash as seed for deterministic embeddings
         long seed = text.hashCode();
         Random rng = new Random(seed);
 
-        float[] embedding = new float[EMBEDDING_DIMENSION];
-        for (int i = 0; i < EMBEDDING_DIMENSION; i++) {
+        float[] embedding = new float[client.getDimensions()];
+        for (int i = 0; i < embedding.length; i++) {
             embedding[i] = (rng.nextFloat() - 0.5f) * 2.0f; // Range: [-1, 1]
         }
 
@@ -0,0 +1,243 @@
+package com.erp.rag.ragplatform.worker.service.embedding;
+
+import com.erp.rag.ragplatform.worker.dao.EmbeddingCacheDao;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed cache in front of {@link EmbeddingService}.
+ * <p>
+ * Story 1.4 – AC3: A document whose rendered, PII-masked text has not changed since the last
+ * run gets the same embedding back without an API call. Entries are keyed by the SHA-256 of
+ * the text plus {@link EmbeddingService#getModelId()}; a bounded in-process LRU sits in
+ * front of the persistent {@code accounting.embedding_cache} table. Only the misses of a
+ * slice (deduplicated) are sent to the embedding API through {@link EmbeddingDispatcher},
+ * and their vectors are stored for the next run. Safe to call from concurrent threads.
+ * </p>
+ * <p>
+ * The cache is an optimisation only: lookup or store failures are logged and the texts are
+ * embedded as if they were not cached.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Service
+public class EmbeddingCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingCacheService.class);
+
+    private final EmbeddingService embeddingService;
+    private final EmbeddingDispatcher dispatcher;
+    private final EmbeddingCacheDao cacheDao;
+    private final boolean enabled;
+    private final Map<CacheKey, float[]> lru;
+    private final Counter memoryHitCounter;
+    private final Counter databaseHitCounter;
+    private final Counter missCounter;
+
+    public EmbeddingCacheService(EmbeddingService embeddingService,
+            EmbeddingDispatcher dispatcher,
+            EmbeddingCacheDao cacheDao,
+            MeterRegistry meterRegistry,
+            @Value("${embedding.cache.enabled:true}") boolean enabled,
+            @Value("${embedding.cache.lru-capacity:2000}") int lruCapacity) {
+        this.embeddingService = embeddingService;
+        this.dispatcher = dispatcher;
+        this.cacheDao = cacheDao;
+        this.enabled = enabled;
+        int capacity = Math.max(0, lruCapacity);
+        this.lru = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, float[]> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        this.memoryHitCounter = Counter.builder("embedding_cache_hits_total")
+                .description("Embeddings served from the cache")
+                .tag("level", "memory")
+                .register(meterRegistry);
+        this.databaseHitCounter = Counter.builder("embedding_cache_hits_total")
+                .description("Embeddings served from the cache")
+                .tag("level", "database")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("embedding_cache_misses_total")
+                .description("Embeddings not found in the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Embed a slice of texts, reusing cached embeddings where the text is unchanged.
+     *
+     * @param texts rendered, PII-masked texts (max 100 items)
+     * @return embeddings index-aligned with {@code texts}, plus hit/miss counts
+     * @throws EmbeddingService.EmbeddingGenerationException if the API call for the misses fails
+     */
+    public CachedEmbeddings generateEmbeddings(List<String> texts)
+            throws EmbeddingService.EmbeddingGenerationException {
+        return generateEmbeddings(embeddingService, texts);
+    }
+
+    /**
+     * Embed a slice of texts with a specific provider, reusing cached embeddings of the same
+     * model.
+     *
+     * @param provider provider chosen by {@link EmbeddingProviderResolver}
+     * @param texts    rendered, PII-masked texts (max {@link EmbeddingService#getMaxBatchSize()} items)
+     * @return embeddings index-aligned with {@code texts}, plus hit/miss counts
+     * @throws EmbeddingService.EmbeddingGenerationException if the provider call for the misses fails
+     */
+    public CachedEmbeddings generateEmbeddings(EmbeddingService provider, List<String> texts)
+            throws EmbeddingService.EmbeddingGenerationException {
+        if (!enabled || texts.isEmpty()) {
+            return new CachedEmbeddings(dispatcher.embed(provider, texts), 0, 0, texts.size());
+        }
+
+        String modelId = provider.getModelId();
+        float[][] result = new float[texts.size()][];
+        ByteBuffer[] hashes = new ByteBuffer[texts.size()];
+
+        // 1. In-process LRU
+        Map<ByteBuffer, List<Integer>> pending = new LinkedHashMap<>();
+        int memoryHits = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            hashes[i] = ByteBuffer.wrap(sha256(texts.get(i)));
+            float[] cached = lruGet(new CacheKey(modelId, hashes[i]));
+            if (cached != null) {
+                result[i] = cached;
+                memoryHits++;
+            } else {
+                pending.computeIfAbsent(hashes[i], h -> new ArrayList<>()).add(i);
+            }
+        }
+
+        // 2. Persistent cache, one round-trip for the remaining hashes
+        int databaseHits = 0;
+        if (!pending.isEmpty()) {
+            Map<ByteBuffer, float[]> stored = findStored(modelId, pending);
+            for (Map.Entry<ByteBuffer, float[]> hit : stored.entrySet()) {
+                List<Integer> indices = pending.remove(hit.getKey());
+                if (indices == null) {
+                    continue;
+                }
+                lruPut(new CacheKey(modelId, hit.getKey()), hit.getValue());
+                for (int i : indices) {
+                    result[i] = hit.getValue();
+                }
+                databaseHits += indices.size();
+            }
+        }
+
+        // 3. Embedding API for the misses, each distinct text once
+        int embedded = 0;
+        if (!pending.isEmpty()) {
+            List<String> missTexts = new ArrayList<>(pending.size());
+            for (List<Integer> indices : pending.values()) {
+                missTexts.add(texts.get(indices.get(0)));
+            }
+            List<float[]> fresh = dispatcher.embed(provider, missTexts);
+            if (fresh.size() != missTexts.size()) {
+                throw new IllegalStateException("Embedding count mismatch: expected "
+                        + missTexts.size() + ", got " + fresh.size());
+            }
+
+            Map<ByteBuffer, float[]> toStore = new HashMap<>();
+            int j = 0;
+            for (Map.Entry<ByteBuffer, List<Integer>> miss : pending.entrySet()) {
+                float[] embedding = fresh.get(j++);
+                toStore.put(miss.getKey(), embedding);
+                lruPut(new CacheKey(modelId, miss.getKey()), embedding);
+                for (int i : miss.getValue()) {
+                    result[i] = embedding;
+                }
+                // Repeats of the same text within the slice reuse the fresh embedding
+                memoryHits += miss.getValue().size() - 1;
+            }
+            embedded = missTexts.size();
+            store(modelId, toStore);
+        }
+
+        memoryHitCounter.increment(memoryHits);
+        databaseHitCounter.increment(databaseHits);
+        missCounter.increment(embedded);
+        return new CachedEmbeddings(Arrays.asList(result), memoryHits, databaseHits, embedded);
+    }
+
+    private Map<ByteBuffer, float[]> findStored(String modelId, Map<ByteBuffer, List<Integer>> pending) {
+        List<byte[]> keys = new ArrayList<>(pending.size());
+        for (ByteBuffer hash : pending.keySet()) {
+            keys.add(hash.array());
+        }
+        try {
+            return cacheDao.findByHashes(modelId, keys);
+        } catch (RuntimeException e) {
+            logger.warn("Embedding cache lookup failed, embedding {} texts: {}", keys.size(), e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private void store(String modelId, Map<ByteBuffer, float[]> embeddings) {
+        try {
+            cacheDao.insertAll(modelId, embeddings);
+        } catch (RuntimeException e) {
+            logger.warn("Could not store {} embeddings in cache: {}", embeddings.size(), e.getMessage());
+        }
+    }
+
+    private float[] lruGet(CacheKey key) {
+        synchronized (lru) {
+            return lru.get(key);
+        }
+    }
+
+    private void lruPut(CacheKey key, float[] embedding) {
+        synchronized (lru) {
+            lru.put(key, embedding);
+        }
+    }
+
+    /**
+     * SHA-256 digest of the UTF-8 text.
+     */
+    public static byte[] sha256(String text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record CacheKey(String modelId, ByteBuffer hash) {
+    }
+
+    /**
+     * Embeddings for a slice and where they came from.
+     *
+     * @param embeddings   embeddings, index-aligned with the input texts
+     * @param memoryHits   texts served from the in-process LRU or repeated within the slice
+     * @param databaseHits texts served from {@code accounting.embedding_cache}
+     * @param embedded     distinct texts sent to the embedding API
+     */
+    public record CachedEmbeddings(List<float[]> embeddings, int memoryHits, int databaseHits, int embedded) {
+
+        public int hits() {
+            return memoryHits + databaseHits;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.erp.rag.ragplatform.worker.service.embedding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends embedding requests with adaptive concurrency and selective retries.
+ * <p>
+ * Story 1.4 – AC3, AC7: Worker throughput is bounded by request round-trip time, not by
+ * provider quota, so several requests run at once (callers are expected to be virtual
+ * threads). The number of requests in flight follows AIMD: it grows by one per window of
+ * successful requests whose latency stays under {@code embedding.dispatch.latency-target-ms},
+ * and is halved, at most once per latency window, when the provider answers 429 or 5xx.
+ * </p>
+ * <p>
+ * Only failures that can succeed on a second attempt are retried
+ * ({@link EmbeddingService.EmbeddingGenerationException#isRetryable()}); invalid requests fail
+ * at once. A {@code Retry-After} delay pauses all requests, not just the one that was
+ * throttled. Other retries use exponential backoff with jitter.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Service
+public class EmbeddingDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingDispatcher.class);
+
+    private final EmbeddingService embeddingService;
+    private final AdaptiveLimit limit;
+    private final int maxConcurrency;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    private final Counter retryCounter;
+    private final Counter overloadCounter;
+
+    public EmbeddingDispatcher(EmbeddingService embeddingService,
+            MeterRegistry meterRegistry,
+            @Value("${embedding.dispatch.initial-concurrency:2}") int initialConcurrency,
+            @Value("${embedding.dispatch.min-concurrency:1}") int minConcurrency,
+            @Value("${embedding.dispatch.max-concurrency:8}") int maxConcurrency,
+            @Value("${embedding.dispatch.latency-target-ms:3000}") long latencyTargetMs,
+            @Value("${embedding.dispatch.max-attempts:4}") int maxAttempts,
+            @Value("${embedding.dispatch.backoff-ms:500}") long backoffMs,
+            @Value("${embedding.dispatch.max-backoff-ms:30000}") long maxBackoffMs) {
+        this.embeddingService = embeddingService;
+        int min = Math.max(1, minConcurrency);
+        this.maxConcurrency = Math.max(min, maxConcurrency);
+        this.limit = new AdaptiveLimit(Math.min(this.maxConcurrency, Math.max(min, initialConcurrency)),
+                min, this.maxConcurrency, TimeUnit.MILLISECONDS.toNanos(Math.max(1, latencyTargetMs)));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = Math.max(1, backoffMs);
+        this.maxBackoffMs = Math.max(this.backoffMs, maxBackoffMs);
+
+        Gauge.builder("embedding_dispatch_concurrency_limit", limit, AdaptiveLimit::current)
+                .description("Embedding requests allowed in flight")
+                .register(meterRegistry);
+        Gauge.builder("embedding_dispatch_in_flight", limit, AdaptiveLimit::inFlight)
+                .description("Embedding requests in flight")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("embedding_dispatch_retries_total")
+                .description("Embedding requests sent again after a retryable failure")
+                .register(meterRegistry);
+        this.overloadCounter = Counter.builder("embedding_dispatch_overload_total")
+                .description("Embedding requests rejected with 429 or 5xx")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Embed a batch, waiting for a concurrency slot and retrying transient failures. Blocks
+     * the calling thread; run concurrent requests on virtual threads.
+     *
+     * @param texts texts within the provider's item and token limits
+     * @return embeddings, index-aligned with {@code texts}
+     * @throws EmbeddingService.EmbeddingGenerationException if the failure is not retryable or
+     *                                                       attempts are exhausted
+     */
+    public List<float[]> embed(List<String> texts) throws EmbeddingService.EmbeddingGenerationException {
+        return embed(embeddingService, texts);
+    }
+
+    /**
+     * Embed a batch with a specific provider. In-process providers
+     * ({@link EmbeddingService#isRemote()} false) are called directly, outside the
+     * concurrency limit and without retries.
+     *
+     * @param provider provider chosen by {@link EmbeddingProviderResolver}
+     * @param texts    texts within the provider's item and token limits
+     * @return embeddings, index-aligned with {@code texts}
+     * @throws EmbeddingService.EmbeddingGenerationException if the failure is not retryable or
+     *                                                       attempts are exhausted
+     */
+    public List<float[]> embed(EmbeddingService provider, List<String> texts)
+            throws EmbeddingService.EmbeddingGenerationException {
+        if (!provider.isRemote()) {
+            return provider.generateEmbeddings(texts);
+        }
+        for (int attempt = 1; ; attempt++) {
+            EmbeddingService.EmbeddingGenerationException failure;
+            acquire();
+            long start = System.nanoTime();
+            try {
+                List<float[]> embeddings = provider.generateEmbeddings(texts);
+                limit.onSuccess(System.nanoTime() - start);
+                return embeddings;
+            } catch (EmbeddingService.EmbeddingGenerationException e) {
+                failure = e;
+            } finally {
+                limit.release();
+            }
+
+            Duration retryAfter = failure.getRetryAfter().orElse(null);
+            if (failure.isOverload()) {
+                overloadCounter.increment();
+                limit.onOverload(retryAfter);
+            }
+            if (!failure.isRetryable() || attempt >= maxAttempts) {
+                throw failure;
+            }
+
+            retryCounter.increment();
+            if (retryAfter != null) {
+                // The limit is paused until then; acquire() waits
+                logger.warn("Embedding request of {} texts throttled (HTTP {}), retrying after {}ms (attempt {}/{})",
+                        texts.size(), failure.getStatusCode(), retryAfter.toMillis(), attempt + 1, maxAttempts);
+            } else {
+                long delay = backoff(attempt);
+                logger.warn("Embedding request of {} texts failed: {}; retrying in {}ms (attempt {}/{})",
+                        texts.size(), failure.getMessage(), delay, attempt + 1, maxAttempts);
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * @return upper bound for requests in flight
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return current concurrency limit
+     */
+    int currentLimit() {
+        return limit.current();
+    }
+
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private void acquire() throws EmbeddingService.EmbeddingGenerationException {
+        try {
+            limit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmbeddingService.EmbeddingGenerationException("Interrupted waiting for an embedding slot", e);
+        }
+    }
+
+    private static void sleep(long millis) throws EmbeddingService.EmbeddingGenerationException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmbeddingService.EmbeddingGenerationException("Interrupted during embedding retry backoff", e);
+        }
+    }
+
+    /**
+     * AIMD concurrency limit with a shared pause for {@code Retry-After}.
+     */
+    static final class AdaptiveLimit {
+
+        private final int min;
+        private final int max;
+        private final long latencyTargetNanos;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private int limit;
+        private int windowSuccesses;
+        private int inFlight;
+        private long pausedUntilNanos;
+        private long lastDecreaseNanos;
+
+        AdaptiveLimit(int initial, int min, int max, long latencyTargetNanos) {
+            this.limit = initial;
+            this.min = min;
+            this.max = max;
+            this.latencyTargetNanos = latencyTargetNanos;
+            long now = System.nanoTime();
+            this.pausedUntilNanos = now;
+            this.lastDecreaseNanos = now - latencyTargetNanos;
+        }
+
+        void acquire() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (true) {
+                    long pause = pausedUntilNanos - System.nanoTime();
+                    if (pause > 0) {
+                        changed.awaitNanos(pause);
+                    } else if (inFlight < limit) {
+                        inFlight++;
+                        return;
+                    } else {
+                        changed.await();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release() {
+            lock.lock();
+            try {
+                inFlight--;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Additive increase: +1 after a full window of healthy requests.
+         */
+        void onSuccess(long latencyNanos) {
+            if (latencyNanos > latencyTargetNanos) {
+                return;
+            }
+            lock.lock();
+            try {
+                if (++windowSuccesses >= limit && limit < max) {
+                    limit++;
+                    windowSuccesses = 0;
+                    changed.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Multiplicative decrease, once per latency window so a burst of rejections from the
+         * same window does not collapse the limit; pause everyone for {@code retryAfter}.
+         */
+        void onOverload(Duration retryAfter) {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                if (now - lastDecreaseNanos >= latencyTargetNanos) {
+                    limit = Math.max(min, limit / 2);
+                    windowSuccesses = 0;
+                    lastDecreaseNanos = now;
+                }
+                if (retryAfter != null && !retryAfter.isNegative()) {
+                    long until = now + retryAfter.toNanos();
+                    if (until - pausedUntilNanos > 0) {
+                        pausedUntilNanos = until;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int current() {
+            lock.lock();
+            try {
+                return limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int inFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.erp.rag.ragplatform.worker.service.embedding;
+
+import com.erp.rag.ragplatform.worker.domain.EmbeddingBatch;
+import com.erp.rag.ragplatform.worker.domain.VectorCompanyIds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Chooses the {@link EmbeddingService} used for a tenant or a batch workload.
+ * <p>
+ * Story 1.4 – AC3: {@code embedding.provider.default} applies unless
+ * {@code embedding.provider.tenants} ({@code companyUuid:provider,...}, keyed by the ERP
+ * company UUID) names another provider for the tenant. The worker resolves batches by company
+ * UUID ({@link #forBatch}); queries, which carry the company id stored in
+ * {@code vector_documents}, are resolved through the worker's mapping of those UUIDs
+ * ({@link #forQuery}). Batches may
+ * additionally be routed by type through {@code embedding.provider.workloads}
+ * ({@code full:local,...}), e.g. to run full reindexes on the in-process provider.
+ * </p>
+ * <p>
+ * Embeddings are only comparable within one model: a tenant's documents and its queries must
+ * come from the same provider. A workload override embeds every tenant's batches of that type,
+ * so startup fails when its model differs from the default or from any tenant override, unless
+ * {@code embedding.provider.allow-mixed-models=true} accepts that the affected tenants' queries
+ * stop matching those vectors (e.g. while a model migration is prepared). Unknown provider
+ * names fail at startup.
+ * </p>
+ * <p>
+ * A completed embedding model migration re-embeds every document with one provider;
+ * {@link #switchDefault(EmbeddingService)} then makes it the default and drops the tenant
+ * and workload overrides, which no longer match the stored vectors.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Service
+public class EmbeddingProviderResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingProviderResolver.class);
+
+    private final Map<String, EmbeddingService> providers = new HashMap<>();
+    private volatile EmbeddingService defaultProvider;
+    private volatile Map<UUID, EmbeddingService> tenantProviders;
+    private volatile Map<Long, EmbeddingService> queryProviders;
+    private volatile Map<EmbeddingBatch.BatchType, EmbeddingService> workloadProviders;
+
+    public EmbeddingProviderResolver(List<EmbeddingService> embeddingServices,
+            @Value("${embedding.provider.default:azure}") String defaultProvider,
+            @Value("${embedding.provider.tenants:}") String tenants,
+            @Value("${embedding.provider.workloads:}") String workloads,
+            @Value("${embedding.provider.allow-mixed-models:false}") boolean allowMixedModels) {
+        for (EmbeddingService service : embeddingServices) {
+            providers.put(service.getProviderName(), service);
+        }
+        this.defaultProvider = provider(defaultProvider, "embedding.provider.default");
+
+        Map<UUID, EmbeddingService> tenantProviders = new HashMap<>();
+        Map<Long, EmbeddingService> queryProviders = new HashMap<>();
+        Map<EmbeddingBatch.BatchType, EmbeddingService> workloadProviders = new EnumMap<>(EmbeddingBatch.BatchType.class);
+        for (Map.Entry<String, String> entry : parse(tenants, "embedding.provider.tenants").entrySet()) {
+            UUID companyId = companyId(entry.getKey());
+            EmbeddingService provider = provider(entry.getValue(), "embedding.provider.tenants");
+            tenantProviders.put(companyId, provider);
+            queryProviders.put(VectorCompanyIds.of(companyId), provider);
+        }
+        for (Map.Entry<String, String> entry : parse(workloads, "embedding.provider.workloads").entrySet()) {
+            EmbeddingService provider = provider(entry.getValue(), "embedding.provider.workloads");
+            workloadProviders.put(EmbeddingBatch.BatchType.valueOf(entry.getKey().toUpperCase(Locale.ROOT)), provider);
+            for (EmbeddingService queryProvider : queryProviders(tenantProviders)) {
+                if (provider.getModelId().equals(queryProvider.getModelId())) {
+                    continue;
+                }
+                String mismatch = entry.getKey() + " batches embed with " + provider.getModelId()
+                        + " but some tenants are queried with " + queryProvider.getModelId();
+                if (!allowMixedModels) {
+                    throw new IllegalArgumentException(mismatch + "; their queries would not match those vectors "
+                            + "(set embedding.provider.allow-mixed-models=true to accept this)");
+                }
+                logger.warn("{}; only tenants queried through {} will match those vectors", mismatch,
+                        provider.getProviderName());
+            }
+        }
+        this.tenantProviders = tenantProviders;
+        this.queryProviders = queryProviders;
+        this.workloadProviders = workloadProviders;
+        logger.info("Embedding providers: {} (default {})", providers.keySet(), this.defaultProvider.getProviderName());
+    }
+
+    /**
+     * Provider for a tenant's queries: the one its documents are indexed with.
+     *
+     * @param companyId company id as stored in {@code vector_documents}, or null
+     * @return configured provider, or the default
+     */
+    public EmbeddingService forQuery(Long companyId) {
+        EmbeddingService provider = companyId != null ? queryProviders.get(companyId) : null;
+        return provider != null ? provider : defaultProvider;
+    }
+
+    /**
+     * Provider for an embedding batch: the workload override if one is configured for the
+     * batch type, otherwise the tenant's provider.
+     *
+     * @param companyId ERP company UUID
+     * @param batchType batch type
+     * @return provider to embed the batch with
+     */
+    public EmbeddingService forBatch(UUID companyId, EmbeddingBatch.BatchType batchType) {
+        EmbeddingService provider = batchType != null ? workloadProviders.get(batchType) : null;
+        if (provider == null && companyId != null) {
+            provider = tenantProviders.get(companyId);
+        }
+        return provider != null ? provider : defaultProvider;
+    }
+
+    /**
+     * Provider registered under a name.
+     *
+     * @param name provider name ({@link EmbeddingService#getProviderName()})
+     * @return the provider
+     * @throws IllegalArgumentException if no such provider is configured
+     */
+    public EmbeddingService byName(String name) {
+        return provider(name, "provider name");
+    }
+
+    /**
+     * @return the provider used when no override applies
+     */
+    public EmbeddingService getDefaultProvider() {
+        return defaultProvider;
+    }
+
+    /**
+     * Make a provider the default for all tenants and workloads, after every stored vector
+     * has been re-embedded with it.
+     *
+     * @param provider new default provider
+     */
+    public synchronized void switchDefault(EmbeddingService provider) {
+        if (provider == defaultProvider && tenantProviders.isEmpty() && workloadProviders.isEmpty()) {
+            return;
+        }
+        if (!tenantProviders.isEmpty() || !workloadProviders.isEmpty()) {
+            logger.warn("Dropping tenant overrides {} and workload overrides {}: all vectors now use {}",
+                    tenantProviders.keySet(), workloadProviders.keySet(), provider.getModelId());
+        }
+        tenantProviders = Map.of();
+        queryProviders = Map.of();
+        workloadProviders = Map.of();
+        defaultProvider = provider;
+        logger.info("Default embedding provider is now {} ({})", provider.getProviderName(), provider.getModelId());
+    }
+
+    private List<EmbeddingService> queryProviders(Map<?, EmbeddingService> tenantProviders) {
+        List<EmbeddingService> queryProviders = new ArrayList<>();
+        queryProviders.add(defaultProvider);
+        for (EmbeddingService provider : tenantProviders.values()) {
+            if (!queryProviders.contains(provider)) {
+                queryProviders.add(provider);
+            }
+        }
+        return queryProviders;
+    }
+
+    private EmbeddingService provider(String name, String property) {
+        EmbeddingService provider = providers.get(name.trim());
+        if (provider == null) {
+            throw new IllegalArgumentException("Unknown embedding provider '" + name.trim() + "' in " + property
+                    + " (available: " + providers.keySet() + ")");
+        }
+        return provider;
+    }
+
+    private static UUID companyId(String key) {
+        try {
+            return UUID.fromString(key);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid company UUID '" + key + "' in embedding.provider.tenants", e);
+        }
+    }
+
+    private static Map<String, String> parse(String spec, String property) {
+        Map<String, String> entries = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return entries;
+        }
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split(":", 2);
+            if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+                throw new IllegalArgumentException("Invalid " + property + " entry: '" + entry.trim()
+                        + "' (expected key:provider)");
+            }
+            entries.put(parts[0].trim(), parts[1].trim());
+        }
+        return entries;
+    }
+}
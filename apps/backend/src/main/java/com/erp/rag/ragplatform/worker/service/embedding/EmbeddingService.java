@@ -1,14 +1,17 @@
 package com.erp.rag.ragplatform.worker.service.embedding;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Service interface for generating vector embeddings from text.
  * <p>
  * Story 1.4 – AC3: Embedding generation using Azure OpenAI
  * text-embedding-3-large
- * with batched API calls (≤100 docs per batch) to control costs and respect
- * rate limits.
+ * with batched API calls, bounded by item count and estimated tokens, to control costs and
+ * respect rate limits.
  * </p>
  *
  * @author dev-agent
@@ -19,17 +22,19 @@ public interface EmbeddingService {
     /**
      * Generate embeddings for a batch of text documents.
      * <p>
-     * Batch size must be ≤100 documents per call.
+     * Batch size must be ≤{@link #getMaxBatchSize()} documents and
+     * ≤{@link #getMaxTokensPerRequest()} estimated tokens per call.
      * Model: Azure OpenAI text-embedding-3-large (1536 dimensions).
      * Rate limits: Azure OpenAI 3000 RPM → batch size 100 allows ~5 RPS with retry
      * safety.
      * </p>
      *
-     * @param texts list of text documents (max 100 items)
+     * @param texts list of text documents (max {@link #getMaxBatchSize()} items)
      * @return list of embeddings (each embedding is a float array of 1536
      *         dimensions)
-     * @throws EmbeddingGenerationException if API call fails after retries
-     * @throws IllegalArgumentException     if batch size exceeds 100
+     * @throws EmbeddingGenerationException if the API call fails; retries are left to the
+     *                                      caller (see {@link EmbeddingDispatcher})
+     * @throws IllegalArgumentException     if the batch exceeds the item or token limit
      */
     List<float[]> generateEmbeddings(List<String> texts) throws EmbeddingGenerationException;
 
@@ -38,7 +43,7 @@ public interface EmbeddingService {
      *
      * @param text single text document
      * @return embedding as float array (1536 dimensions)
-     * @throws EmbeddingGenerationException if API call fails after retries
+     * @throws EmbeddingGenerationException if the API call fails
      */
     float[] generateEmbedding(String text) throws EmbeddingGenerationException;
 
@@ -49,16 +54,139 @@ public interface EmbeddingService {
      */
     int getEmbeddingDimension();
 
+    /**
+     * Identifier of the model producing the embeddings. Embeddings from different models
+     * are not comparable, so it is part of every cache key.
+     *
+     * @return model id (e.g. text-embedding-3-large)
+     */
+    String getModelId();
+
+    /**
+     * Name under which this provider is selected in {@code embedding.provider.*}
+     * (see {@link EmbeddingProviderResolver}).
+     *
+     * @return provider name (e.g. azure, local)
+     */
+    String getProviderName();
+
+    /**
+     * Whether calls go over the network and are billed per token. Remote providers are
+     * called through {@link EmbeddingDispatcher}'s concurrency limit and retries; in-process
+     * providers are called directly.
+     *
+     * @return true for remote API providers
+     */
+    default boolean isRemote() {
+        return true;
+    }
+
+    /**
+     * Maximum number of inputs accepted in one {@link #generateEmbeddings(List)} call.
+     *
+     * @return max inputs per request
+     */
+    int getMaxBatchSize();
+
+    /**
+     * Maximum estimated tokens (see {@link #estimateTokens(String)}) accepted in one
+     * {@link #generateEmbeddings(List)} call.
+     *
+     * @return token ceiling per request
+     */
+    int getMaxTokensPerRequest();
+
+    /**
+     * Conservative token estimate for a text, used to pack requests without calling a
+     * tokenizer.
+     * <p>
+     * cl100k averages about four ASCII characters per token, but accented Vietnamese
+     * characters often cost a token each, so ASCII is counted at 1/4 and everything else at 1.
+     * </p>
+     *
+     * @param text input text
+     * @return estimated token count
+     */
+    default int estimateTokens(String text) {
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ascii++;
+            } else if (!Character.isLowSurrogate(c)) {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
     /**
      * Exception thrown when embedding generation fails.
+     * <p>
+     * Carries what a caller needs to decide on a retry: the HTTP status of the provider
+     * response (0 when there was none) and its {@code Retry-After} delay, if any. Only
+     * throttling (429), timeouts (408), server errors (5xx) and I/O failures are retryable;
+     * everything else fails the same way on every attempt.
+     * </p>
      */
     class EmbeddingGenerationException extends Exception {
+
+        private final int statusCode;
+        private final Duration retryAfter;
+        private final boolean retryable;
+
         public EmbeddingGenerationException(String message) {
             super(message);
+            this.statusCode = 0;
+            this.retryAfter = null;
+            this.retryable = false;
         }
 
         public EmbeddingGenerationException(String message, Throwable cause) {
             super(message, cause);
+            this.statusCode = 0;
+            this.retryAfter = null;
+            this.retryable = cause instanceof IOException;
+        }
+
+        /**
+         * @param statusCode HTTP status returned by the provider
+         * @param retryAfter parsed {@code Retry-After} header, or {@code null}
+         */
+        public EmbeddingGenerationException(String message, int statusCode, Duration retryAfter) {
+            super(message);
+            this.statusCode = statusCode;
+            this.retryAfter = retryAfter;
+            this.retryable = statusCode == 408 || statusCode == 429 || statusCode >= 500;
+        }
+
+        /**
+         * @return HTTP status of the failed response, or 0 if no response was received
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /**
+         * @return delay requested by the provider before the next attempt
+         */
+        public Optional<Duration> getRetryAfter() {
+            return Optional.ofNullable(retryAfter);
+        }
+
+        /**
+         * @return whether the same request can succeed when sent again
+         */
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        /**
+         * @return whether the provider signalled overload (429 or 5xx)
+         */
+        public boolean isOverload() {
+            return statusCode == 429 || statusCode >= 500;
         }
     }
 }
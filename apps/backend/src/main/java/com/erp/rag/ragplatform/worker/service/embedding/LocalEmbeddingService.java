@@ -0,0 +1,296 @@
+package com.erp.rag.ragplatform.worker.service.embedding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process embedding provider running on CPU, with no network calls and no per-token cost.
+ * <p>
+ * Story 1.4 – AC3: Loads a compact word-vector model from {@code embedding.local.model-path}
+ * (fastText/word2vec text format: a {@code "<words> <dimensions>"} header, then one
+ * {@code "<word> <v1> ... <vn>"} line per word; {@code .gz} files are read compressed). A
+ * text is embedded as the mean of the vectors of its words, L2-normalised. Words typed without
+ * Vietnamese diacritics ("hoa don") fall back to the accented vocabulary entry ("hóa đơn");
+ * texts with no known word at all get a hashed character-trigram vector so they are still
+ * distinct from each other.
+ * </p>
+ * <p>
+ * Vectors are zero-padded to {@code embedding.local.output-dimensions} (1536, the width of
+ * {@code vector_documents.embedding}); padding does not change cosine similarity. They are not
+ * comparable with vectors from any other model, so {@link #getModelId()} includes the model
+ * file name and cache entries are kept apart. Selected per tenant or workload through
+ * {@link EmbeddingProviderResolver}; only created when a model path is configured.
+ * </p>
+ * <p>
+ * Batches are split across a dedicated pool of {@code embedding.local.parallelism} threads
+ * (0 = one per core) so inference does not compete with the common pool.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Service
+@ConditionalOnProperty(name = "embedding.local.model-path")
+public class LocalEmbeddingService implements EmbeddingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalEmbeddingService.class);
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    /** Below this many texts a batch is embedded on the calling thread. */
+    private static final int PARALLEL_THRESHOLD = 8;
+
+    private final String modelId;
+    private final int modelDimension;
+    private final int outputDimension;
+    private final int maxBatchSize;
+    private final int maxTokensPerRequest;
+    private final float[] vectors;
+    private final Map<String, Integer> vocabulary;
+    private final Map<String, Integer> unaccentedVocabulary;
+    private final ForkJoinPool pool;
+    private final Counter embeddingsGeneratedCounter;
+    private final Timer embeddingLatencyTimer;
+
+    public LocalEmbeddingService(MeterRegistry meterRegistry,
+            @Value("${embedding.local.model-path}") String modelPath,
+            @Value("${embedding.local.model-id:}") String modelId,
+            @Value("${embedding.local.output-dimensions:1536}") int outputDimension,
+            @Value("${embedding.local.parallelism:0}") int parallelism,
+            @Value("${embedding.local.max-items:256}") int maxBatchSize,
+            @Value("${embedding.local.max-tokens:1000000}") int maxTokensPerRequest) {
+        Path path = Path.of(modelPath);
+        long start = System.currentTimeMillis();
+        Model model = load(path);
+        if (model.dimension() > outputDimension) {
+            throw new IllegalStateException("Model " + path + " has " + model.dimension()
+                    + " dimensions, more than embedding.local.output-dimensions=" + outputDimension);
+        }
+
+        this.modelId = modelId.isBlank() ? "local/" + path.getFileName() : modelId;
+        this.modelDimension = model.dimension();
+        this.outputDimension = outputDimension;
+        this.vectors = model.vectors();
+        this.vocabulary = model.vocabulary();
+        this.unaccentedVocabulary = new HashMap<>();
+        model.vocabulary().forEach((word, row) -> unaccentedVocabulary.merge(unaccent(word), row, Math::min));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxTokensPerRequest = Math.max(1, maxTokensPerRequest);
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+
+        this.embeddingsGeneratedCounter = Counter.builder("embedding_local_generated_total")
+                .description("Total number of embeddings generated in-process")
+                .register(meterRegistry);
+        this.embeddingLatencyTimer = Timer.builder("embedding_local_latency_seconds")
+                .description("In-process embedding latency per batch")
+                .register(meterRegistry);
+
+        logger.info("Loaded local embedding model {} ({} words, {} dimensions) in {}ms, {} threads",
+                this.modelId, vocabulary.size(), modelDimension, System.currentTimeMillis() - start,
+                pool.getParallelism());
+    }
+
+    @Override
+    public List<float[]> generateEmbeddings(List<String> texts) throws EmbeddingGenerationException {
+        if (texts == null || texts.isEmpty()) {
+            return List.of();
+        }
+        if (texts.size() > maxBatchSize) {
+            throw new IllegalArgumentException(
+                    "Batch size " + texts.size() + " exceeds maximum of " + maxBatchSize);
+        }
+
+        Timer.Sample sample = Timer.start();
+        float[][] result = new float[texts.size()][];
+        try {
+            if (texts.size() < PARALLEL_THRESHOLD) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = embed(texts.get(i));
+                }
+            } else {
+                pool.submit(() -> IntStream.range(0, result.length).parallel()
+                        .forEach(i -> result[i] = embed(texts.get(i)))).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmbeddingGenerationException("Interrupted during local embedding", e);
+        } catch (ExecutionException e) {
+            throw new EmbeddingGenerationException("Local embedding failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            sample.stop(embeddingLatencyTimer);
+        }
+
+        embeddingsGeneratedCounter.increment(texts.size());
+        return Arrays.asList(result);
+    }
+
+    @Override
+    public float[] generateEmbedding(String text) throws EmbeddingGenerationException {
+        return generateEmbeddings(List.of(text)).get(0);
+    }
+
+    @Override
+    public int getEmbeddingDimension() {
+        return outputDimension;
+    }
+
+    @Override
+    public String getModelId() {
+        return modelId;
+    }
+
+    @Override
+    public String getProviderName() {
+        return "local";
+    }
+
+    @Override
+    public boolean isRemote() {
+        return false;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public int getMaxTokensPerRequest() {
+        return maxTokensPerRequest;
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Mean of the known word vectors, or a trigram vector if no word is known; unit length,
+     * padded to the output dimension.
+     */
+    float[] embed(String text) {
+        String[] words = NON_WORD.split(Normalizer.normalize(text, Normalizer.Form.NFC).toLowerCase(Locale.ROOT));
+        float[] sum = new float[outputDimension];
+        int known = 0;
+        for (String word : words) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            Integer row = vocabulary.get(word);
+            if (row == null) {
+                row = unaccentedVocabulary.get(unaccent(word));
+            }
+            if (row != null) {
+                int offset = row * modelDimension;
+                for (int d = 0; d < modelDimension; d++) {
+                    sum[d] += vectors[offset + d];
+                }
+                known++;
+            }
+        }
+        if (known == 0) {
+            for (String word : words) {
+                addTrigrams(word, sum);
+            }
+        }
+
+        double norm = 0;
+        for (int d = 0; d < modelDimension; d++) {
+            norm += sum[d] * sum[d];
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int d = 0; d < modelDimension; d++) {
+                sum[d] *= scale;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Feature-hash the character trigrams of {@code <word>} into the model dimensions.
+     */
+    private void addTrigrams(String word, float[] sum) {
+        if (word.isEmpty()) {
+            return;
+        }
+        String padded = "<" + word + ">";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            int hash = padded.substring(i, i + 3).hashCode() * 0x9E3779B9;
+            sum[Math.floorMod(hash >>> 1, modelDimension)] += (hash & 1) == 0 ? 1f : -1f;
+        }
+    }
+
+    /**
+     * Lower-case word without diacritics ({@code đ} becomes {@code d}).
+     */
+    static String unaccent(String word) {
+        return MARKS.matcher(Normalizer.normalize(word, Normalizer.Form.NFD)).replaceAll("").replace('đ', 'd');
+    }
+
+    private static Model load(Path path) {
+        try (InputStream raw = Files.newInputStream(path);
+                InputStream in = path.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(raw, 1 << 16) : raw;
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+            String header = reader.readLine();
+            String[] counts = header == null ? new String[0] : header.trim().split("\\s+");
+            if (counts.length != 2) {
+                throw new IllegalStateException("Model " + path + " must start with a '<words> <dimensions>' header");
+            }
+            int words = Integer.parseInt(counts[0]);
+            int dimension = Integer.parseInt(counts[1]);
+
+            float[] vectors = new float[Math.multiplyExact(words, dimension)];
+            Map<String, Integer> vocabulary = new HashMap<>(words * 2);
+            int row = 0;
+            String line;
+            while (row < words && (line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length != dimension + 1) {
+                    throw new IllegalStateException("Model " + path + " line " + (row + 2) + " has "
+                            + (parts.length - 1) + " values, expected " + dimension);
+                }
+                String word = Normalizer.normalize(parts[0], Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+                if (vocabulary.putIfAbsent(word, row) == null) {
+                    int offset = row * dimension;
+                    for (int d = 0; d < dimension; d++) {
+                        vectors[offset + d] = Float.parseFloat(parts[d + 1]);
+                    }
+                    row++;
+                }
+            }
+            return new Model(dimension, row < words ? Arrays.copyOf(vectors, row * dimension) : vectors, vocabulary);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read embedding model " + path, e);
+        }
+    }
+
+    private record Model(int dimension, float[] vectors, Map<String, Integer> vocabulary) {
+    }
+}
@@ -1,6 +1,11 @@
 package com.erp.rag.supabase.entity;
 
+import com.erp.rag.supabase.vector.PgVector;
+import com.erp.rag.supabase.vector.PgVectorType;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnTransformer;
+import org.hibernate.annotations.Type;
+
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
@@ -39,8 +44,10 @@ public class RagQuery {
     @Column(name = "query_text", columnDefinition = "text", nullable = false)
     private String queryText;
 
-    @Column(name = "query_embedding", columnDefinition = "vector(1536)", insertable = false, updatable = false)
-    private String queryEmbedding;
+    @Type(PgVectorType.class)
+    @ColumnTransformer(read = "vector_send(query_embedding)", write = "CAST(? AS vector)")
+    @Column(name = "query_embedding", columnDefinition = "vector(1536)")
+    private PgVector queryEmbedding;
 
     @Column(name = "language", nullable = false, length = 10)
     private String language;
@@ -106,11 +113,11 @@ public class RagQuery {
         this.queryText = queryText;
     }
 
-    public String getQueryEmbedding() {
+    public PgVector getQueryEmbedding() {
         return queryEmbedding;
     }
 
-    public void setQueryEmbedding(String queryEmbedding) {
+    public void setQueryEmbedding(PgVector queryEmbedding) {
         this.queryEmbedding = queryEmbedding;
     }
 
@@ -1,6 +1,7 @@
 package com.erp.rag.supabase.repository;
 
 import com.erp.rag.supabase.entity.RagQuery;
+import com.erp.rag.supabase.vector.PgVector;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -71,12 +72,14 @@ public interface RagQueryRepository extends JpaRepository<RagQuery, Long> {
 
     /**
      * Update query_embedding using native SQL with proper vector casting.
+     * QueryLoggerService now writes the embedding with the initial insert; this remains
+     * for back-filling existing rows.
      *
      * @param queryId query ID
-     * @param queryEmbedding embedding string in format "[0.1,0.2,...]"
+     * @param queryEmbedding query embedding
      * @return number of rows updated
      */
     @Modifying
     @Query(value = "UPDATE accounting.rag_queries SET query_embedding = CAST(:queryEmbedding AS vector) WHERE id = :queryId", nativeQuery = true)
-    int updateQueryEmbedding(@Param("queryId") Long queryId, @Param("queryEmbedding") String queryEmbedding);
+    int updateQueryEmbedding(@Param("queryId") Long queryId, @Param("queryEmbedding") PgVector queryEmbedding);
 }
\ No newline at end of file
@@ -0,0 +1,222 @@
+package com.erp.rag.ragplatform.rag.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for QueryAuditLog.
+ * <p>
+ * Story 1.5 – AC7: Write-behind audit trail that batches writes, keeps event order and
+ * loses nothing across database failures and shutdown.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@DisplayName("Story 1.5 – AC7: Query Audit Log")
+class QueryAuditLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private QueryAuditWriter writer;
+    private ObjectMapper objectMapper;
+    private List<QueryAuditEvent> written;
+    private SimpleMeterRegistry meterRegistry;
+    private QueryAuditLog auditLog;
+
+    @BeforeEach
+    void setUp() {
+        writer = mock(QueryAuditWriter.class);
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        written = Collections.synchronizedList(new ArrayList<>());
+        meterRegistry = new SimpleMeterRegistry();
+        doAnswer(inv -> written.addAll(inv.getArgument(0))).when(writer).write(anyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (auditLog != null) {
+            auditLog.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Should write queued events in submission order and drain on close")
+    void submit_WritesAllEventsInOrder() {
+        auditLog = newAuditLog(null);
+        List<QueryAuditEvent> events = events(25);
+
+        events.forEach(auditLog::submit);
+        auditLog.close();
+
+        assertThat(written).containsExactlyElementsOf(events);
+        assertThat(auditLog.pendingEvents()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should spill a failed batch and replay everything in order")
+    void failedBatch_IsSpilledAndReplayed() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(inv -> {
+            if (calls.getAndIncrement() == 0) {
+                throw new IllegalStateException("database unavailable");
+            }
+            return written.addAll(inv.getArgument(0));
+        }).when(writer).write(anyList());
+        Path spill = tempDir.resolve("audit").resolve("spill.jsonl");
+        auditLog = newAuditLog(spill);
+        List<QueryAuditEvent> events = events(10);
+
+        events.forEach(auditLog::submit);
+        auditLog.close();
+
+        assertThat(written).containsExactlyElementsOf(events);
+        assertThat(Files.exists(spill)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should keep unwritten events in the spill file when the database stays down")
+    void unwritableEvents_StayInSpillFile() {
+        doThrow(new IllegalStateException("database unavailable")).when(writer).write(anyList());
+        Path spill = tempDir.resolve("spill.jsonl");
+        auditLog = newAuditLog(spill);
+
+        events(3).forEach(auditLog::submit);
+        auditLog.close();
+
+        assertThat(spill).exists();
+        assertThat(spill.toFile()).content().hasLineCount(6).contains("\"type\":\"started\"");
+    }
+
+    @Test
+    @DisplayName("Should quarantine a permanently rejected event and write the rest of its batch")
+    void rejectedEvent_IsQuarantined() {
+        QueryAuditEvent bad = new QueryAuditEvent.QueryFailed(3L, "x".repeat(10), OffsetDateTime.now());
+        doAnswer(inv -> {
+            List<QueryAuditEvent> batch = inv.getArgument(0);
+            if (batch.contains(bad)) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            return written.addAll(batch);
+        }).when(writer).write(anyList());
+        Path quarantine = tempDir.resolve("quarantine.jsonl");
+        auditLog = newAuditLog(null, quarantine, 100);
+        List<QueryAuditEvent> events = new ArrayList<>(events(3));
+        events.add(3, bad);
+
+        events.forEach(auditLog::submit);
+        auditLog.close();
+
+        List<QueryAuditEvent> expected = new ArrayList<>(events);
+        expected.remove(bad);
+        assertThat(written).containsExactlyElementsOf(expected);
+        assertThat(quarantine.toFile()).content().hasLineCount(1).contains("\"queryId\":3");
+        assertThat(meterRegistry.get("rag_audit_events_quarantined_total").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should quarantine spill file lines that no longer parse and replay the rest")
+    void unparseableSpillLine_IsQuarantined() throws Exception {
+        Path spill = tempDir.resolve("spill.jsonl");
+        List<QueryAuditEvent> events = events(2);
+        List<String> lines = new ArrayList<>();
+        for (QueryAuditEvent event : events) {
+            lines.add(objectMapper.writeValueAsString(event));
+        }
+        lines.add(1, "{\"type\":\"unknown\"}");
+        Files.write(spill, lines);
+        Path quarantine = tempDir.resolve("quarantine.jsonl");
+
+        auditLog = newAuditLog(spill, quarantine, 100);
+        auditLog.close();
+
+        assertThat(written).containsExactlyElementsOf(events);
+        assertThat(spill).doesNotExist();
+        assertThat(quarantine.toFile()).content().isEqualToIgnoringNewLines("{\"type\":\"unknown\"}");
+    }
+
+    @Test
+    @DisplayName("Should fail a submit after the timeout instead of blocking on a full queue")
+    void submit_FullQueueTimesOut() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            writing.countDown();
+            release.await();
+            return written.addAll(inv.getArgument(0));
+        }).when(writer).write(anyList());
+        auditLog = newAuditLog(null, null, 2);
+        List<QueryAuditEvent> events = events(2);
+
+        auditLog.submit(events.get(0));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        auditLog.submit(events.get(1));
+        auditLog.submit(events.get(2));
+
+        assertThatThrownBy(() -> auditLog.submit(events.get(3)))
+                .isInstanceOf(QueryAuditLog.AuditUnavailableException.class);
+        assertThat(meterRegistry.get("rag_audit_events_rejected_total").counter().count()).isEqualTo(1.0);
+        release.countDown();
+        auditLog.close();
+        assertThat(written).containsExactlyElementsOf(events.subList(0, 3));
+    }
+
+    @Test
+    @DisplayName("Should reserve query ids in blocks")
+    void nextQueryId_AllocatesBlocks() {
+        when(writer.allocateIds(anyInt())).thenReturn(List.of(10L, 11L), List.of(12L, 13L));
+        auditLog = newAuditLog(null);
+
+        assertThat(List.of(auditLog.nextQueryId(), auditLog.nextQueryId(), auditLog.nextQueryId()))
+                .containsExactly(10L, 11L, 12L);
+        verify(writer, times(2)).allocateIds(2);
+    }
+
+    private QueryAuditLog newAuditLog(Path spill) {
+        return newAuditLog(spill, null, 100);
+    }
+
+    private QueryAuditLog newAuditLog(Path spill, Path quarantine, int queueCapacity) {
+        return new QueryAuditLog(writer, objectMapper, meterRegistry, queueCapacity, 4, 10, 2, 10_000,
+                spill != null ? spill.toString() : "", quarantine != null ? quarantine.toString() : "", 100);
+    }
+
+    private static List<QueryAuditEvent> events(int queries) {
+        List<QueryAuditEvent> events = new ArrayList<>();
+        OffsetDateTime now = OffsetDateTime.parse("2025-01-15T10:00:00Z");
+        for (long id = 1; id <= queries; id++) {
+            events.add(new QueryAuditEvent.QueryStarted(id, 1L, new UUID(0, id), "query " + id,
+                    null, "vi", now));
+            if (id % 2 == 0) {
+                events.add(new QueryAuditEvent.QueryCompleted(id, 12, 40, now, List.of(
+                        new QueryAuditEvent.RetrievedDocument(100 + id, 1, 0.9, 25, "excerpt"))));
+            } else {
+                events.add(new QueryAuditEvent.QueryFailed(id, "boom", now));
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,64 @@
+package com.erp.rag.ragplatform.rag.metrics;
+
+import com.erp.rag.ragplatform.rag.metrics.RagStageMetrics.Stage;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for RagStageMetrics.
+ * <p>
+ * Story 1.5 – AC8: Per-stage latency timers tagged by stage and tenant tier.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@DisplayName("Story 1.5 – AC8: RAG Stage Metrics")
+class RagStageMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Should record stage latency tagged by stage and tier")
+    void recordSince_RecordsTaggedTimer() {
+        RagStageMetrics metrics = new RagStageMetrics(registry, "7:enterprise", "standard");
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(25);
+
+        int elapsedMs = metrics.recordSince(Stage.SEARCH, metrics.tierOf(7L), start);
+        metrics.recordSince(Stage.SEARCH, metrics.tierOf(7L), System.nanoTime());
+
+        Timer timer = registry.get(RagStageMetrics.STAGE_LATENCY)
+                .tag("stage", "search")
+                .tag("tier", "enterprise")
+                .timer();
+        assertThat(timer.count()).isEqualTo(2);
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(25);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(25);
+    }
+
+    @Test
+    @DisplayName("Should map configured companies to tiers and default the rest")
+    void tierOf_UsesConfiguredTiers() {
+        RagStageMetrics metrics = new RagStageMetrics(registry, " 1:enterprise, 2:premium ", "standard");
+
+        assertThat(metrics.tierOf(1L)).isEqualTo("enterprise");
+        assertThat(metrics.tierOf(2L)).isEqualTo("premium");
+        assertThat(metrics.tierOf(3L)).isEqualTo("standard");
+        assertThat(metrics.tierOf(null)).isEqualTo("standard");
+    }
+
+    @Test
+    @DisplayName("Should reject malformed tier configuration")
+    void parseTiers_RejectsMalformedEntries() {
+        assertThat(RagStageMetrics.parseTiers("")).isEmpty();
+        assertThatThrownBy(() -> RagStageMetrics.parseTiers("1=enterprise"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("companyId:tier");
+    }
+}
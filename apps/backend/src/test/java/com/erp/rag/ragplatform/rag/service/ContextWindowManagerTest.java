@@ -1,11 +1,7 @@
 package com.erp.rag.ragplatform.rag.service;
 
 import com.erp.rag.ragplatform.rag.dto.RetrievedDocumentDTO;
-import com.erp.rag.supabase.vector.VectorDocument;
-import com.erp.rag.supabase.vector.VectorDocumentRepository;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.junit.jupiter.api.BeforeEach;
+import com.erp.rag.supabase.vector.VectorSearchDao;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,7 +13,7 @@ import java.util.*;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 /**
@@ -26,43 +22,36 @@ import static org.mockito.Mockito.*;
  * Story 1.5-UNIT-004 – Context window management with 8K token budget.
  * Priority: P0 (Critical - affects LLM input)
  * </p>
+ * <p>
+ * Content text normally arrives with the search results; {@link VectorSearchDao#findContentText}
+ * is only called, once, for results without it.
+ * </p>
  *
  * @author dev-agent
  * @since 1.0.0
  */
 @ExtendWith(MockitoExtension.class)
 @DisplayName("Story 1.5-UNIT-004: Context Window Manager")
+@SuppressWarnings("deprecation")
 class ContextWindowManagerTest {
 
+    private static final Long COMPANY_ID = 42L;
+
     @Mock
-    private VectorDocumentRepository vectorDocumentRepository;
+    private VectorSearchDao vectorSearchDao;
 
     @InjectMocks
     private ContextWindowManager contextWindowManager;
 
-    private ObjectMapper objectMapper;
-    private UUID companyId;
-
-    @BeforeEach
-    void setUp() {
-        objectMapper = new ObjectMapper();
-        companyId = UUID.randomUUID();
-    }
-
     @Test
     @DisplayName("Should estimate tokens using chars/4 formula")
     void testTokenEstimation() {
         // Given
-        String text400Chars = "a".repeat(400);
-        UUID docId = UUID.randomUUID();
-        VectorDocument doc = createVectorDocument(docId, text400Chars);
-        
-        when(vectorDocumentRepository.findByIdAndCompanyId(docId, companyId))
-                .thenReturn(Optional.of(doc));
+        when(vectorSearchDao.findContentText(COMPANY_ID, List.of(1L)))
+                .thenReturn(Map.of(1L, "a".repeat(400)));
 
         // When
-        List<Integer> tokens = contextWindowManager.calculateTokensPerDocument(
-                List.of(docId), companyId);
+        List<Integer> tokens = contextWindowManager.calculateTokensPerDocument(List.of(1L), COMPANY_ID);
 
         // Then
         assertThat(tokens).hasSize(1);
@@ -73,57 +62,37 @@ class ContextWindowManagerTest {
     @DisplayName("Should build grounded context from single document")
     void testBuildGroundedContext_SingleDocument() {
         // Given
-        UUID docId = UUID.randomUUID();
         String contentText = "Invoice INV-001 from Customer ABC. Amount: 1000 USD.";
-        VectorDocument doc = createVectorDocument(docId, contentText);
-        
-        RetrievedDocumentDTO dto = new RetrievedDocumentDTO();
-        dto.setId(docId);
-        
-        when(vectorDocumentRepository.findByIdAndCompanyId(docId, companyId))
-                .thenReturn(Optional.of(doc));
+        when(vectorSearchDao.findContentText(COMPANY_ID, List.of(1L)))
+                .thenReturn(Map.of(1L, contentText));
 
         // When
         String context = contextWindowManager.buildGroundedContext(
-                List.of(dto), List.of(docId), companyId);
+                List.of(createDTO(1L)), List.of(1L), COMPANY_ID);
 
         // Then
         assertThat(context).isEqualTo(contentText);
-        verify(vectorDocumentRepository).findByIdAndCompanyId(docId, companyId);
+        verify(vectorSearchDao).findContentText(COMPANY_ID, List.of(1L));
     }
 
     @Test
     @DisplayName("Should concatenate multiple documents with separator")
     void testBuildGroundedContext_MultipleDocuments() {
         // Given
-        UUID doc1Id = UUID.randomUUID();
-        UUID doc2Id = UUID.randomUUID();
-        UUID doc3Id = UUID.randomUUID();
-        
-        VectorDocument doc1 = createVectorDocument(doc1Id, "Document 1 content");
-        VectorDocument doc2 = createVectorDocument(doc2Id, "Document 2 content");
-        VectorDocument doc3 = createVectorDocument(doc3Id, "Document 3 content");
-        
         List<RetrievedDocumentDTO> dtos = List.of(
-                createDTO(doc1Id), createDTO(doc2Id), createDTO(doc3Id));
-        List<UUID> docIds = List.of(doc1Id, doc2Id, doc3Id);
-        
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc1Id, companyId))
-                .thenReturn(Optional.of(doc1));
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc2Id, companyId))
-                .thenReturn(Optional.of(doc2));
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc3Id, companyId))
-                .thenReturn(Optional.of(doc3));
+                createDTO(1L, "Document 1 content"),
+                createDTO(2L, "Document 2 content"),
+                createDTO(3L, "Document 3 content"));
 
         // When
-        String context = contextWindowManager.buildGroundedContext(dtos, docIds, companyId);
+        String context = contextWindowManager.buildGroundedContext(dtos, List.of(1L, 2L, 3L), COMPANY_ID);
 
         // Then
         assertThat(context).contains("Document 1 content");
         assertThat(context).contains("Document 2 content");
         assertThat(context).contains("Document 3 content");
         assertThat(context).contains("\n\n---\n\n"); // Separator
-        
+
         String[] parts = context.split("\n\n---\n\n");
         assertThat(parts).hasSize(3);
     }
@@ -131,33 +100,15 @@ class ContextWindowManagerTest {
     @Test
     @DisplayName("Should prune documents exceeding 8K token budget")
     void testBuildGroundedContext_TokenBudgetExceeded() {
-        // Given
-        UUID doc1Id = UUID.randomUUID();
-        UUID doc2Id = UUID.randomUUID();
-        UUID doc3Id = UUID.randomUUID();
-        
-        // Create documents: 7000 + 1500 + 1500 tokens (total 10000 > 8000 budget)
+        // Given: 7000 + 1500 + 1500 tokens (total 10000 > 8000 budget)
         String text7000Tokens = "a".repeat(28000); // 7000 tokens
         String text1500Tokens = "b".repeat(6000);  // 1500 tokens
-        
-        VectorDocument doc1 = createVectorDocument(doc1Id, text7000Tokens);
-        VectorDocument doc2 = createVectorDocument(doc2Id, text1500Tokens);
-        VectorDocument doc3 = createVectorDocument(doc3Id, text1500Tokens);
-        
+
         List<RetrievedDocumentDTO> dtos = List.of(
-                createDTO(doc1Id), createDTO(doc2Id), createDTO(doc3Id));
-        List<UUID> docIds = List.of(doc1Id, doc2Id, doc3Id);
-        
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc1Id, companyId))
-                .thenReturn(Optional.of(doc1));
-        // Lenient: doc2 and doc3 may not be fetched if budget exceeded after doc1
-        lenient().when(vectorDocumentRepository.findByIdAndCompanyId(doc2Id, companyId))
-                .thenReturn(Optional.of(doc2));
-        lenient().when(vectorDocumentRepository.findByIdAndCompanyId(doc3Id, companyId))
-                .thenReturn(Optional.of(doc3));
+                createDTO(1L, text7000Tokens), createDTO(2L, text1500Tokens), createDTO(3L, text1500Tokens));
 
         // When
-        String context = contextWindowManager.buildGroundedContext(dtos, docIds, companyId);
+        String context = contextWindowManager.buildGroundedContext(dtos, List.of(1L, 2L, 3L), COMPANY_ID);
 
         // Then - should only include first document (7000 tokens, adding doc2 would exceed 8K budget)
         assertThat(context).contains(text7000Tokens);
@@ -170,33 +121,23 @@ class ContextWindowManagerTest {
     @DisplayName("Should handle empty document list")
     void testBuildGroundedContext_EmptyList() {
         // When
-        String context = contextWindowManager.buildGroundedContext(
-                List.of(), List.of(), companyId);
+        String context = contextWindowManager.buildGroundedContext(List.of(), List.of(), COMPANY_ID);
 
         // Then
         assertThat(context).isEmpty();
-        verifyNoInteractions(vectorDocumentRepository);
+        verifyNoInteractions(vectorSearchDao);
     }
 
     @Test
     @DisplayName("Should handle missing documents gracefully")
     void testBuildGroundedContext_MissingDocuments() {
-        // Given
-        UUID doc1Id = UUID.randomUUID();
-        UUID doc2Id = UUID.randomUUID();
-        
-        VectorDocument doc1 = createVectorDocument(doc1Id, "Document 1 content");
-        
-        List<RetrievedDocumentDTO> dtos = List.of(createDTO(doc1Id), createDTO(doc2Id));
-        List<UUID> docIds = List.of(doc1Id, doc2Id);
-        
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc1Id, companyId))
-                .thenReturn(Optional.of(doc1));
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc2Id, companyId))
-                .thenReturn(Optional.empty()); // Missing document
+        // Given: doc2 no longer exists
+        when(vectorSearchDao.findContentText(COMPANY_ID, List.of(1L, 2L)))
+                .thenReturn(Map.of(1L, "Document 1 content"));
 
         // When
-        String context = contextWindowManager.buildGroundedContext(dtos, docIds, companyId);
+        String context = contextWindowManager.buildGroundedContext(
+                List.of(createDTO(1L), createDTO(2L)), List.of(1L, 2L), COMPANY_ID);
 
         // Then
         assertThat(context).isEqualTo("Document 1 content");
@@ -207,49 +148,27 @@ class ContextWindowManagerTest {
     @DisplayName("Should handle documents with empty content")
     void testBuildGroundedContext_EmptyContent() {
         // Given
-        UUID doc1Id = UUID.randomUUID();
-        UUID doc2Id = UUID.randomUUID();
-        
-        VectorDocument doc1 = createVectorDocument(doc1Id, "Valid content");
-        VectorDocument doc2 = createVectorDocument(doc2Id, ""); // Empty content
-        
-        List<RetrievedDocumentDTO> dtos = List.of(createDTO(doc1Id), createDTO(doc2Id));
-        List<UUID> docIds = List.of(doc1Id, doc2Id);
-        
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc1Id, companyId))
-                .thenReturn(Optional.of(doc1));
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc2Id, companyId))
-                .thenReturn(Optional.of(doc2));
+        List<RetrievedDocumentDTO> dtos = List.of(createDTO(1L, "Valid content"), createDTO(2L, ""));
 
         // When
-        String context = contextWindowManager.buildGroundedContext(dtos, docIds, companyId);
+        String context = contextWindowManager.buildGroundedContext(dtos, List.of(1L, 2L), COMPANY_ID);
 
         // Then
         assertThat(context).isEqualTo("Valid content");
+        verifyNoInteractions(vectorSearchDao);
     }
 
     @Test
     @DisplayName("Should calculate tokens for multiple documents")
     void testCalculateTokensPerDocument_MultipleDocuments() {
         // Given
-        UUID doc1Id = UUID.randomUUID();
-        UUID doc2Id = UUID.randomUUID();
-        UUID doc3Id = UUID.randomUUID();
-        
-        VectorDocument doc1 = createVectorDocument(doc1Id, "a".repeat(400));  // 100 tokens
-        VectorDocument doc2 = createVectorDocument(doc2Id, "b".repeat(800));  // 200 tokens
-        VectorDocument doc3 = createVectorDocument(doc3Id, "c".repeat(1200)); // 300 tokens
-        
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc1Id, companyId))
-                .thenReturn(Optional.of(doc1));
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc2Id, companyId))
-                .thenReturn(Optional.of(doc2));
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc3Id, companyId))
-                .thenReturn(Optional.of(doc3));
+        when(vectorSearchDao.findContentText(COMPANY_ID, List.of(1L, 2L, 3L))).thenReturn(Map.of(
+                1L, "a".repeat(400),   // 100 tokens
+                2L, "b".repeat(800),   // 200 tokens
+                3L, "c".repeat(1200))); // 300 tokens
 
         // When
-        List<Integer> tokens = contextWindowManager.calculateTokensPerDocument(
-                List.of(doc1Id, doc2Id, doc3Id), companyId);
+        List<Integer> tokens = contextWindowManager.calculateTokensPerDocument(List.of(1L, 2L, 3L), COMPANY_ID);
 
         // Then
         assertThat(tokens).containsExactly(100, 200, 300);
@@ -259,19 +178,11 @@ class ContextWindowManagerTest {
     @DisplayName("Should return zero tokens for missing documents")
     void testCalculateTokensPerDocument_MissingDocuments() {
         // Given
-        UUID doc1Id = UUID.randomUUID();
-        UUID doc2Id = UUID.randomUUID();
-        
-        VectorDocument doc1 = createVectorDocument(doc1Id, "a".repeat(400));
-        
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc1Id, companyId))
-                .thenReturn(Optional.of(doc1));
-        when(vectorDocumentRepository.findByIdAndCompanyId(doc2Id, companyId))
-                .thenReturn(Optional.empty());
+        when(vectorSearchDao.findContentText(COMPANY_ID, List.of(1L, 2L)))
+                .thenReturn(Map.of(1L, "a".repeat(400)));
 
         // When
-        List<Integer> tokens = contextWindowManager.calculateTokensPerDocument(
-                List.of(doc1Id, doc2Id), companyId);
+        List<Integer> tokens = contextWindowManager.calculateTokensPerDocument(List.of(1L, 2L), COMPANY_ID);
 
         // Then
         assertThat(tokens).containsExactly(100, 0);
@@ -281,43 +192,26 @@ class ContextWindowManagerTest {
     @DisplayName("Should handle Vietnamese text in token calculation")
     void testBuildGroundedContext_VietnameseText() {
         // Given
-        UUID docId = UUID.randomUUID();
         String vietnameseText = "Khách hàng ABC có số dư nợ là 5.000.000 VNĐ.";
-        VectorDocument doc = createVectorDocument(docId, vietnameseText);
-        
-        RetrievedDocumentDTO dto = createDTO(docId);
-        
-        when(vectorDocumentRepository.findByIdAndCompanyId(docId, companyId))
-                .thenReturn(Optional.of(doc));
 
         // When
-        String context = contextWindowManager.buildGroundedContext(
-                List.of(dto), List.of(docId), companyId);
+        ContextWindowManager.GroundedContext grounded =
+                contextWindowManager.build(List.of(createDTO(1L, vietnameseText)), COMPANY_ID);
 
         // Then
-        assertThat(context).isEqualTo(vietnameseText);
-        
-        List<Integer> tokens = contextWindowManager.calculateTokensPerDocument(
-                List.of(docId), companyId);
-        assertThat(tokens.get(0)).isGreaterThan(0);
+        assertThat(grounded.context()).isEqualTo(vietnameseText);
+        assertThat(grounded.tokensPerDocument().get(0)).isGreaterThan(0);
     }
 
     @Test
     @DisplayName("Should handle exactly 8K token budget")
     void testBuildGroundedContext_ExactBudget() {
-        // Given - create document with exactly 8000 tokens (32000 chars)
-        UUID docId = UUID.randomUUID();
+        // Given - document with exactly 8000 tokens (32000 chars)
         String text8000Tokens = "a".repeat(32000);
-        VectorDocument doc = createVectorDocument(docId, text8000Tokens);
-        
-        RetrievedDocumentDTO dto = createDTO(docId);
-        
-        when(vectorDocumentRepository.findByIdAndCompanyId(docId, companyId))
-                .thenReturn(Optional.of(doc));
 
         // When
         String context = contextWindowManager.buildGroundedContext(
-                List.of(dto), List.of(docId), companyId);
+                List.of(createDTO(1L, text8000Tokens)), List.of(1L), COMPANY_ID);
 
         // Then
         assertThat(context).hasSize(32000);
@@ -325,30 +219,66 @@ class ContextWindowManagerTest {
         assertThat(estimatedTokens).isEqualTo(8000);
     }
 
+    @Test
+    @DisplayName("Should count tokens of every document, including pruned ones, in one pass")
+    void testBuild_CountsTokensOfPrunedDocuments() {
+        // Given: 6000 + 3000 + 500 tokens
+        List<RetrievedDocumentDTO> dtos = List.of(
+                createDTO(1L, "a".repeat(24000)), createDTO(2L, "b".repeat(12000)), createDTO(3L, "c".repeat(2000)));
+
+        // When
+        ContextWindowManager.GroundedContext grounded = contextWindowManager.build(dtos, COMPANY_ID);
+
+        // Then: doc2 overflows the budget, and doc3 is pruned with it although it would fit
+        assertThat(grounded.context()).isEqualTo("a".repeat(24000));
+        assertThat(grounded.tokensPerDocument()).containsExactly(6000, 3000, 500);
+        verifyNoInteractions(vectorSearchDao);
+    }
+
+    @Test
+    @DisplayName("Should fill the budget exactly across documents")
+    void testBuild_FillsBudgetExactly() {
+        // Given: 5000 + 3000 tokens, exactly the budget; separators are not counted
+        List<RetrievedDocumentDTO> dtos = List.of(createDTO(1L, "a".repeat(20000)), createDTO(2L, "b".repeat(12000)));
+
+        // When
+        ContextWindowManager.GroundedContext grounded = contextWindowManager.build(dtos, COMPANY_ID);
+
+        // Then
+        assertThat(grounded.context()).isEqualTo("a".repeat(20000) + "\n\n---\n\n" + "b".repeat(12000));
+        assertThat(grounded.tokensPerDocument()).containsExactly(5000, 3000);
+    }
+
+    @Test
+    @DisplayName("Should fetch only documents without content text, in a single query")
+    void testBuild_FetchesMissingContentOnce() {
+        // Given: doc2 and doc4 arrive without text
+        when(vectorSearchDao.findContentText(COMPANY_ID, List.of(2L, 4L)))
+                .thenReturn(Map.of(2L, "fetched 2", 4L, "fetched 4"));
+        List<RetrievedDocumentDTO> dtos = List.of(
+                createDTO(1L, "carried 1"), createDTO(2L), createDTO(3L, "carried 3"), createDTO(4L));
+
+        // When
+        ContextWindowManager.GroundedContext grounded = contextWindowManager.build(dtos, COMPANY_ID);
+
+        // Then
+        assertThat(grounded.context().split("\n\n---\n\n"))
+                .containsExactly("carried 1", "fetched 2", "carried 3", "fetched 4");
+        assertThat(grounded.tokensPerDocument()).containsExactly(2, 2, 2, 2);
+        verify(vectorSearchDao, times(1)).findContentText(anyLong(), any());
+    }
+
     // Helper methods
 
-    private VectorDocument createVectorDocument(UUID id, String contentText) {
-        VectorDocument doc = new VectorDocument();
-        doc.setId(id);
-        doc.setCompanyId(companyId);
-        
-        try {
-            JsonNode metadata = objectMapper.createObjectNode()
-                    .put("content_text", contentText)
-                    .put("document_type", "invoice")
-                    .put("module", "ar");
-            doc.setMetadata(metadata);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-        
-        return doc;
+    private RetrievedDocumentDTO createDTO(Long id) {
+        return createDTO(id, null);
     }
 
-    private RetrievedDocumentDTO createDTO(UUID id) {
+    private RetrievedDocumentDTO createDTO(Long id, String contentText) {
         RetrievedDocumentDTO dto = new RetrievedDocumentDTO();
         dto.setId(id);
         dto.setRelevanceScore(0.9);
+        dto.setContentText(contentText);
         return dto;
     }
 }
@@ -0,0 +1,131 @@
+package com.erp.rag.ragplatform.rag.service;
+
+import com.erp.rag.ragplatform.rag.dao.PartnerLookupDao;
+import com.erp.rag.ragplatform.rag.dto.RetrievedDocumentDTO;
+import com.erp.rag.supabase.vector.VectorFilter;
+import com.erp.rag.supabase.vector.VectorSearchDao;
+import com.erp.rag.supabase.vector.VectorSearchResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for IdentifierLookupService.
+ * <p>
+ * Story 1.5 – AC1: short questions quoting a document number are answered by index lookup,
+ * without embedding or vector search; other identifier hits are merged into the search results.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@DisplayName("Story 1.5: Identifier fast path")
+class IdentifierLookupServiceTest {
+
+    private static final Long COMPANY_ID = 42L;
+
+    private VectorSearchDao vectorSearchDao;
+    private PartnerLookupDao partnerLookupDao;
+    private IdentifierLookupService service;
+
+    @BeforeEach
+    void setUp() {
+        vectorSearchDao = mock(VectorSearchDao.class);
+        partnerLookupDao = mock(PartnerLookupDao.class);
+        service = new IdentifierLookupService(vectorSearchDao, partnerLookupDao, new SimpleMeterRegistry(), true, 4);
+    }
+
+    @Test
+    @DisplayName("Should detect document numbers and tax codes and count the other words")
+    void testDetect_DocumentNumbersAndTaxCodes() {
+        IdentifierLookupService.Identifiers identifiers =
+                IdentifierLookupService.detect("Hóa đơn inv-2024-0042 và BILL-001 của MST 0312345678-001?");
+
+        assertThat(identifiers.documentNumbers()).containsExactly("INV-2024-0042", "BILL-001");
+        assertThat(identifiers.taxCodes()).containsExactly("0312345678-001");
+        assertThat(identifiers.otherWords()).isEqualTo(5);
+
+        assertThat(IdentifierLookupService.detect("doanh thu tháng 3 so với tháng 2").isEmpty()).isTrue();
+        assertThat(IdentifierLookupService.detect("số 12345678901").taxCodes()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should return exact hits for a quoted invoice number")
+    void testLookup_DocumentNumberHit() {
+        when(vectorSearchDao.findByDocumentNumbers(eq(COMPANY_ID), eq(List.of("INV-2024-0042")), isNull(),
+                eq(VectorFilter.NONE), anyInt()))
+                .thenReturn(List.of(new VectorSearchResult(9L, "invoice", "ar", "invoice INV-2024-0042: ...", 0.0)));
+
+        IdentifierLookupService.Lookup result = service.lookup(COMPANY_ID, "show invoice INV-2024-0042", null);
+
+        assertThat(result.answersQuery()).isTrue();
+        assertThat(result.documents()).singleElement().satisfies(doc -> {
+            assertThat(doc.getId()).isEqualTo(9L);
+            assertThat(doc.getRelevanceScore()).isEqualTo(1.0);
+        });
+        verifyNoInteractions(partnerLookupDao);
+    }
+
+    @Test
+    @DisplayName("Should resolve tax codes to the company's partners and leave the question to search")
+    void testLookup_TaxCodeResolvesPartnerOfSameCompany() {
+        when(vectorSearchDao.findByDocumentNumbers(anyLong(), eq(List.of()), any(), any(), anyInt()))
+                .thenReturn(List.of());
+        when(partnerLookupDao.findByTaxCode(COMPANY_ID, "0312345678")).thenReturn(List.of(
+                new PartnerLookupDao.PartnerCode("customer", "C001")));
+        when(vectorSearchDao.findByDocumentNumbers(COMPANY_ID, List.of("C001"), "customer", VectorFilter.NONE, 10))
+                .thenReturn(List.of(new VectorSearchResult(3L, "customer", "ar", "customer C001: ...", 0.0)));
+
+        IdentifierLookupService.Lookup result =
+                service.lookup(COMPANY_ID, "payments for tax code 0312345678", Map.of());
+
+        // The partner record is not the payments asked for
+        assertThat(result.answersQuery()).isFalse();
+        assertThat(result.documents()).extracting(RetrievedDocumentDTO::getId).containsExactly(3L);
+    }
+
+    @Test
+    @DisplayName("Should merge hits of long questions into the search results")
+    void testLookup_LongQuestionMerged() {
+        when(vectorSearchDao.findByDocumentNumbers(eq(COMPANY_ID), eq(List.of("INV-1")), isNull(),
+                eq(VectorFilter.NONE), anyInt()))
+                .thenReturn(List.of(new VectorSearchResult(9L, "invoice", "ar", "invoice INV-1: ...", 0.0)));
+
+        IdentifierLookupService.Lookup result = service.lookup(COMPANY_ID,
+                "why was INV-1 booked to a different account than last year", null);
+
+        assertThat(result.answersQuery()).isFalse();
+        assertThat(result.mergeInto(List.of(document(5L), document(9L), document(7L))))
+                .extracting(RetrievedDocumentDTO::getId).containsExactly(9L, 5L, 7L);
+        assertThat(result.mergeInto(List.of())).extracting(RetrievedDocumentDTO::getId).containsExactly(9L);
+    }
+
+    @Test
+    @DisplayName("Should fall through for misses and questions without identifiers")
+    void testLookup_FallsThrough() {
+        when(vectorSearchDao.findByDocumentNumbers(anyLong(), anyCollection(), any(), any(), anyInt()))
+                .thenReturn(List.of());
+
+        IdentifierLookupService.Lookup miss = service.lookup(COMPANY_ID, "show invoice INV-404", null);
+        assertThat(miss.answersQuery()).isFalse();
+        assertThat(miss.documents()).isEmpty();
+        assertThat(service.lookup(COMPANY_ID, "what were the main cost drivers last quarter", null).documents())
+                .isEmpty();
+        verify(vectorSearchDao, times(1)).findByDocumentNumbers(anyLong(), anyCollection(), any(), any(),
+                anyInt());
+    }
+
+    private static RetrievedDocumentDTO document(Long id) {
+        RetrievedDocumentDTO dto = new RetrievedDocumentDTO();
+        dto.setId(id);
+        return dto;
+    }
+}
@@ -1,18 +1,28 @@
 package com.erp.rag.ragplatform.rag.service;
 
+import com.erp.rag.ragplatform.rag.dao.QueryEmbeddingCacheDao;
 import com.erp.rag.ragplatform.worker.service.embedding.AzureOpenAiEmbeddingService;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingCacheService;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingProviderResolver;
 import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingService.EmbeddingGenerationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
@@ -33,13 +43,21 @@ class QueryEmbeddingServiceTest {
     @Mock
     private AzureOpenAiEmbeddingService azureOpenAiEmbeddingService;
 
-    @InjectMocks
+    @Mock
+    private EmbeddingProviderResolver providerResolver;
+
+    @Mock
+    private QueryEmbeddingCacheDao cacheDao;
+
     private QueryEmbeddingService queryEmbeddingService;
 
     private float[] validEmbedding;
 
     @BeforeEach
     void setUp() {
+        lenient().when(providerResolver.forQuery(any())).thenReturn(azureOpenAiEmbeddingService);
+        queryEmbeddingService = service(5, 3_600_000);
+
         // Create valid 1536-dimension embedding
         validEmbedding = new float[1536];
         for (int i = 0; i < 1536; i++) {
@@ -47,6 +65,127 @@ class QueryEmbeddingServiceTest {
         }
     }
 
+    @AfterEach
+    void tearDown() {
+        queryEmbeddingService.close();
+    }
+
+    @Test
+    @DisplayName("Should coalesce concurrent queries into one batch request")
+    void testGenerateQueryEmbedding_CoalescesConcurrentQueries() throws Exception {
+        // Given: a long window so all eight queries land in the same batch
+        queryEmbeddingService = new QueryEmbeddingService(providerResolver, cacheDao, new SimpleMeterRegistry(),
+                8, 10_000, true, 100, 3_600_000, true, 30);
+        when(azureOpenAiEmbeddingService.getMaxBatchSize()).thenReturn(100);
+        when(azureOpenAiEmbeddingService.getMaxTokensPerRequest()).thenReturn(50_000);
+        when(azureOpenAiEmbeddingService.estimateTokens(anyString())).thenReturn(10);
+        when(azureOpenAiEmbeddingService.generateEmbeddings(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(t -> validEmbedding).toList();
+        });
+
+        // When
+        List<Future<float[]>> results = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                String query = "Doanh thu quý " + i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return queryEmbeddingService.generateQueryEmbedding(query, 42L);
+                }));
+            }
+            start.countDown();
+        }
+
+        // Then
+        for (Future<float[]> result : results) {
+            assertThat(result.get()).hasSize(1536);
+        }
+        verify(azureOpenAiEmbeddingService, times(1)).generateEmbeddings(anyList());
+        verify(azureOpenAiEmbeddingService, never()).generateEmbedding(anyString());
+    }
+
+    @Test
+    @DisplayName("Should reuse the embedding of a query repeated with different case and spacing")
+    void testGenerateQueryEmbedding_ReusesEmbeddingForNormalizedQuery() throws EmbeddingGenerationException {
+        // Given
+        when(azureOpenAiEmbeddingService.generateEmbedding(anyString())).thenReturn(validEmbedding);
+
+        // When
+        float[] first = queryEmbeddingService.generateQueryEmbedding("Công nợ quá hạn tháng này", 42L);
+        float[] second = queryEmbeddingService.generateQueryEmbedding("  CÔNG NỢ   quá hạn\ttháng này ", 42L);
+
+        // Then
+        assertThat(second).isSameAs(first);
+        verify(azureOpenAiEmbeddingService, times(1)).generateEmbedding(anyString());
+        verify(cacheDao, times(1)).upsert(eq(42L), any(), any(), same(validEmbedding));
+    }
+
+    @Test
+    @DisplayName("Should serve a query embedding stored by a previous run")
+    void testGenerateQueryEmbedding_UsesPersistentCache() throws EmbeddingGenerationException {
+        // Given
+        byte[] hash = EmbeddingCacheService.sha256("overdue invoices this month");
+        when(cacheDao.find(eq(42L), any(), aryEq(hash), eq(30))).thenReturn(validEmbedding);
+
+        // When
+        float[] result = queryEmbeddingService.generateQueryEmbedding("Overdue invoices this month", 42L);
+
+        // Then
+        assertThat(result).isSameAs(validEmbedding);
+        verify(azureOpenAiEmbeddingService, never()).generateEmbedding(anyString());
+    }
+
+    @Test
+    @DisplayName("Should not persist embeddings of queries without a company")
+    void testGenerateQueryEmbedding_NoCompanyNotPersisted() throws EmbeddingGenerationException {
+        // Given
+        when(azureOpenAiEmbeddingService.generateEmbedding(anyString())).thenReturn(validEmbedding);
+
+        // When
+        queryEmbeddingService.generateQueryEmbedding("Overdue invoices this month");
+
+        // Then
+        verifyNoInteractions(cacheDao);
+    }
+
+    @Test
+    @DisplayName("Should purge stored query embeddings past the retention period")
+    void testPurgeExpired() {
+        // Given
+        when(cacheDao.purgeOlderThan(30)).thenThrow(new RuntimeException("connection reset")).thenReturn(3);
+
+        // When / Then: a failed purge is retried on the next run
+        assertThatCode(queryEmbeddingService::purgeExpired).doesNotThrowAnyException();
+        queryEmbeddingService.purgeExpired();
+        verify(cacheDao, times(2)).purgeOlderThan(30);
+    }
+
+    @Test
+    @DisplayName("Should embed again once the cached entry has expired")
+    void testGenerateQueryEmbedding_ExpiresAfterTtl() throws Exception {
+        // Given
+        queryEmbeddingService = service(0, 1);
+        when(azureOpenAiEmbeddingService.generateEmbedding(anyString())).thenReturn(validEmbedding);
+
+        // When
+        queryEmbeddingService.generateQueryEmbedding("Doanh thu tháng 9");
+        Thread.sleep(5);
+        queryEmbeddingService.generateQueryEmbedding("Doanh thu tháng 9");
+
+        // Then
+        verify(azureOpenAiEmbeddingService, times(2)).generateEmbedding("Doanh thu tháng 9");
+    }
+
+    @Test
+    @DisplayName("Should normalize Unicode form, case and whitespace")
+    void testNormalize() {
+        // Decomposed "ô" + combining hook, non-breaking space
+        assertThat(QueryEmbeddingService.normalize("Co\u0302ng  NO\u031B\u0323\u00A0qua\u0301 ha\u0323n "))
+                .isEqualTo("công nợ quá hạn");
+    }
+
     @Test
     @DisplayName("Should generate query embedding with correct dimensions")
     void testGenerateQueryEmbedding_ValidDimensions() throws EmbeddingGenerationException {
@@ -221,4 +360,9 @@ class QueryEmbeddingServiceTest {
         assertThat(result).endsWith("]");
         assertThat(result.split(",")).hasSize(6);
     }
+
+    private QueryEmbeddingService service(long maxWaitMs, long cacheTtlMs) {
+        return new QueryEmbeddingService(providerResolver, cacheDao, new SimpleMeterRegistry(),
+                64, maxWaitMs, true, 100, cacheTtlMs, true, 30);
+    }
 }
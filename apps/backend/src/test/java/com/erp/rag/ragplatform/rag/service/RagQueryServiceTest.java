@@ -1,24 +1,22 @@
 package com.erp.rag.ragplatform.rag.service;
 
+import com.erp.rag.ragplatform.rag.audit.QueryAuditLog;
 import com.erp.rag.ragplatform.rag.dto.QueryRequest;
 import com.erp.rag.ragplatform.rag.dto.QueryResponse;
 import com.erp.rag.ragplatform.rag.dto.RetrievedDocumentDTO;
+import com.erp.rag.ragplatform.rag.metrics.RagStageMetrics;
 import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingService.EmbeddingGenerationException;
 import com.erp.rag.supabase.entity.RagQuery;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
+import com.erp.rag.supabase.vector.PgVector;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.Spy;
-import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.InOrder;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -34,378 +32,212 @@ import static org.mockito.Mockito.*;
  * @author dev-agent
  * @since 1.0.0
  */
-@ExtendWith(MockitoExtension.class)
 @DisplayName("Story 1.5-UNIT-006: RAG Query Service Orchestration")
 class RagQueryServiceTest {
 
-    @Mock
-    private QueryEmbeddingService queryEmbeddingService;
+    private static final Long COMPANY_ID = 42L;
+    private static final Long QUERY_ID = 1001L;
 
-    @Mock
+    private QueryEmbeddingService queryEmbeddingService;
+    private IdentifierLookupService identifierLookupService;
     private VectorSearchService vectorSearchService;
-
-    @Mock
     private ContextWindowManager contextWindowManager;
-
-    @Mock
     private QueryLoggerService queryLoggerService;
-
-    @Spy
-    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
-
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
     private RagQueryService ragQueryService;
 
-    private UUID companyId;
     private UUID userId;
     private QueryRequest validRequest;
-    private float[] mockEmbedding;
+    private float[] embedding;
 
     @BeforeEach
     void setUp() {
-        companyId = UUID.randomUUID();
+        queryEmbeddingService = mock(QueryEmbeddingService.class);
+        identifierLookupService = mock(IdentifierLookupService.class);
+        when(identifierLookupService.lookup(any(), any(), any()))
+                .thenReturn(new IdentifierLookupService.Lookup(List.of(), false));
+        vectorSearchService = mock(VectorSearchService.class);
+        contextWindowManager = mock(ContextWindowManager.class);
+        queryLoggerService = mock(QueryLoggerService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        ragQueryService = new RagQueryService(queryEmbeddingService, identifierLookupService, vectorSearchService,
+                contextWindowManager, queryLoggerService, new RagStageMetrics(meterRegistry, "", "standard"),
+                meterRegistry);
+
         userId = UUID.randomUUID();
-        
-        validRequest = new QueryRequest();
-        validRequest.setCompanyId(companyId);
-        validRequest.setQuery("What is the current AR balance?");
-        validRequest.setLanguage("en");
-        
-        mockEmbedding = new float[1536];
-        for (int i = 0; i < 1536; i++) {
-            mockEmbedding[i] = (float) (Math.random() * 2 - 1);
-        }
+        validRequest = new QueryRequest(COMPANY_ID, "What is the current AR balance?", "en");
+        embedding = new float[]{0.1f, 0.2f, 0.3f};
     }
 
     @Test
     @DisplayName("Should orchestrate complete query pipeline successfully")
     void testProcessQuery_SuccessfulOrchestration() throws EmbeddingGenerationException {
-        // Given
-        String embeddingStr = "[0.1,0.2,0.3]";
-        UUID queryId = UUID.randomUUID();
-        
-        RagQuery ragQuery = new RagQuery();
-        ragQuery.setId(queryId);
-        
-        List<RetrievedDocumentDTO> documents = createMockDocuments(5);
-        String groundedContext = "Sample context from 5 documents";
-        
-        when(queryEmbeddingService.generateQueryEmbedding(anyString()))
-                .thenReturn(mockEmbedding);
-        when(queryEmbeddingService.formatEmbeddingForPostgres(any()))
-                .thenReturn(embeddingStr);
-        when(queryLoggerService.logQueryStart(any(), any(), anyString(), anyString(), anyString()))
-                .thenReturn(ragQuery);
-        when(vectorSearchService.search(any(), anyString(), any()))
-                .thenReturn(documents);
-        when(contextWindowManager.buildGroundedContext(any(), any(), any()))
-                .thenReturn(groundedContext);
-
-        // When
+        List<RetrievedDocumentDTO> documents = documents(5);
+        stubPipeline(documents);
+
+        QueryResponse response = ragQueryService.processQuery(validRequest, userId);
+
+        assertThat(response.getQueryId()).isEqualTo(QUERY_ID);
+        assertThat(response.getRetrievedDocuments()).isEqualTo(documents);
+        assertThat(response.getGroundedContext()).isEqualTo("Sample grounded context");
+        assertThat(response.getLatencyMs().getTotal()).isGreaterThanOrEqualTo(0);
+
+        InOrder order = inOrder(identifierLookupService, queryEmbeddingService, queryLoggerService,
+                vectorSearchService, contextWindowManager);
+        order.verify(identifierLookupService).lookup(COMPANY_ID, validRequest.getQuery(), null);
+        order.verify(queryEmbeddingService).generateQueryEmbedding(validRequest.getQuery(), COMPANY_ID);
+        order.verify(queryLoggerService).logQueryStart(COMPANY_ID, userId, validRequest.getQuery(),
+                new PgVector(embedding), "en");
+        order.verify(vectorSearchService).search(COMPANY_ID, validRequest.getQuery(), new PgVector(embedding), null);
+        order.verify(contextWindowManager).build(documents, COMPANY_ID);
+        order.verify(queryLoggerService).logQueryComplete(eq(QUERY_ID), anyInt(), anyInt(), eq(documents),
+                eq(List.of(10, 10, 10, 10, 10)));
+        assertThat(meterRegistry.get("rag_query_total").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("rag_query_latency_seconds").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should skip embedding and vector search when identifiers resolve the query")
+    void testProcessQuery_IdentifierHit() throws EmbeddingGenerationException {
+        List<RetrievedDocumentDTO> documents = documents(1);
+        validRequest.setQuery("Hóa đơn HD-2024-0042");
+        when(identifierLookupService.lookup(COMPANY_ID, "Hóa đơn HD-2024-0042", null))
+                .thenReturn(new IdentifierLookupService.Lookup(documents, true));
+        when(queryLoggerService.logQueryStart(any(), any(), anyString(), any(), anyString())).thenReturn(ragQuery());
+        when(contextWindowManager.build(documents, COMPANY_ID))
+                .thenReturn(new ContextWindowManager.GroundedContext("Invoice HD-2024-0042", List.of(10)));
+
         QueryResponse response = ragQueryService.processQuery(validRequest, userId);
 
-        // Then
-        assertThat(response).isNotNull();
-        assertThat(response.getQueryId()).isEqualTo(queryId);
-        assertThat(response.getRetrievedDocuments()).hasSize(5);
-        assertThat(response.getGroundedContext()).isEqualTo(groundedContext);
-        assertThat(response.getLatencyMs()).isNotNull();
-        assertThat(response.getLatencyMs().getTotal()).isGreaterThan(0);
-        
-        // Verify orchestration order
-        verify(queryEmbeddingService).generateQueryEmbedding(validRequest.getQuery());
-        verify(queryLoggerService).logQueryStart(companyId, userId, validRequest.getQuery(), 
-                embeddingStr, "en");
-        verify(vectorSearchService).search(eq(companyId), eq(embeddingStr), any());
-        verify(contextWindowManager).buildGroundedContext(any(), any(), eq(companyId));
-        verify(queryLoggerService).logQueryComplete(eq(queryId), anyInt(), anyInt(), eq(documents), anyList());
+        assertThat(response.getRetrievedDocuments()).isEqualTo(documents);
+        assertThat(response.getLatencyMs().getEmbedding()).isZero();
+        verify(queryLoggerService).logQueryStart(COMPANY_ID, userId, "Hóa đơn HD-2024-0042", null, "en");
+        verify(queryEmbeddingService, never()).generateQueryEmbedding(anyString(), any());
+        verifyNoInteractions(vectorSearchService);
+    }
+
+    @Test
+    @DisplayName("Should rank identifier hits ahead of vector search results when they do not answer the query")
+    void testProcessQuery_IdentifierHitsMerged() throws EmbeddingGenerationException {
+        RetrievedDocumentDTO partner = new RetrievedDocumentDTO();
+        partner.setId(99L);
+        partner.setDocumentType("customer");
+        List<RetrievedDocumentDTO> searched = documents(3);
+        stubPipeline(searched);
+        when(identifierLookupService.lookup(any(), anyString(), any()))
+                .thenReturn(new IdentifierLookupService.Lookup(List.of(partner), false));
+
+        QueryResponse response = ragQueryService.processQuery(validRequest, userId);
+
+        assertThat(response.getRetrievedDocuments()).extracting(RetrievedDocumentDTO::getId)
+                .containsExactly(99L, 1L, 2L);
+        verify(vectorSearchService).search(COMPANY_ID, validRequest.getQuery(), new PgVector(embedding), null);
     }
 
     @Test
     @DisplayName("Should handle embedding generation failure")
     void testProcessQuery_EmbeddingFailure() throws EmbeddingGenerationException {
-        // Given
-        when(queryEmbeddingService.generateQueryEmbedding(anyString()))
+        when(queryEmbeddingService.generateQueryEmbedding(anyString(), any()))
                 .thenThrow(new EmbeddingGenerationException("Azure OpenAI API error"));
 
-        // When/Then
         assertThatThrownBy(() -> ragQueryService.processQuery(validRequest, userId))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("Failed to process query");
 
-        verify(queryEmbeddingService).generateQueryEmbedding(anyString());
-        verifyNoInteractions(vectorSearchService);
-        verifyNoInteractions(contextWindowManager);
+        verifyNoInteractions(vectorSearchService, contextWindowManager, queryLoggerService);
+        assertThat(meterRegistry.get("rag_query_errors_total").counter().count()).isEqualTo(1.0);
     }
 
     @Test
-    @DisplayName("Should handle vector search failure")
+    @DisplayName("Should log the error when vector search fails")
     void testProcessQuery_SearchFailure() throws EmbeddingGenerationException {
-        // Given
-        String embeddingStr = "[0.1,0.2,0.3]";
-        UUID queryId = UUID.randomUUID();
-        RagQuery ragQuery = new RagQuery();
-        ragQuery.setId(queryId);
-        
-        when(queryEmbeddingService.generateQueryEmbedding(anyString()))
-                .thenReturn(mockEmbedding);
-        when(queryEmbeddingService.formatEmbeddingForPostgres(any()))
-                .thenReturn(embeddingStr);
-        when(queryLoggerService.logQueryStart(any(), any(), anyString(), anyString(), anyString()))
-                .thenReturn(ragQuery);
-        when(vectorSearchService.search(any(), anyString(), any()))
+        stubPipeline(documents(5));
+        when(vectorSearchService.search(any(), anyString(), any(), any()))
                 .thenThrow(new RuntimeException("Database timeout"));
 
-        // When/Then
         assertThatThrownBy(() -> ragQueryService.processQuery(validRequest, userId))
                 .isInstanceOf(RuntimeException.class);
 
-        verify(queryLoggerService).logQueryError(eq(queryId), contains("Database timeout"));
+        verify(queryLoggerService).logQueryError(eq(QUERY_ID), contains("Database timeout"));
+        verify(queryLoggerService, never()).logQueryComplete(any(), any(), any(), any(), any());
     }
 
     @Test
-    @DisplayName("Should increment Prometheus metrics on success")
-    void testProcessQuery_MetricsIncremented() throws EmbeddingGenerationException {
-        // Given
-        setupSuccessfulMocks();
-        
-        Counter queryCounter = meterRegistry.counter("rag_query_total");
-        double initialCount = queryCounter.count();
-
-        // When
-        ragQueryService.processQuery(validRequest, userId);
-
-        // Then
-        assertThat(queryCounter.count()).isEqualTo(initialCount + 1);
-    }
+    @DisplayName("Should log the error when context building fails")
+    void testProcessQuery_ContextBuildingFailure() throws EmbeddingGenerationException {
+        stubPipeline(documents(5));
+        when(contextWindowManager.build(any(), any())).thenThrow(new RuntimeException("Context building error"));
 
-    @Test
-    @DisplayName("Should increment error counter on failure")
-    void testProcessQuery_ErrorMetricsIncremented() throws EmbeddingGenerationException {
-        // Given
-        when(queryEmbeddingService.generateQueryEmbedding(anyString()))
-                .thenThrow(new EmbeddingGenerationException("Error"));
-        
-        Counter errorCounter = meterRegistry.counter("rag_query_errors_total");
-        double initialCount = errorCounter.count();
-
-        // When/Then
         assertThatThrownBy(() -> ragQueryService.processQuery(validRequest, userId))
                 .isInstanceOf(RuntimeException.class);
 
-        assertThat(errorCounter.count()).isGreaterThan(initialCount);
+        verify(queryLoggerService).logQueryError(eq(QUERY_ID), contains("Context building error"));
     }
 
     @Test
-    @DisplayName("Should calculate latency metrics correctly")
-    void testProcessQuery_LatencyMetrics() throws EmbeddingGenerationException {
-        // Given
-        setupSuccessfulMocks();
+    @DisplayName("Should fail the query without searching when the audit log refuses it")
+    void testProcessQuery_AuditUnavailable() throws EmbeddingGenerationException {
+        when(queryEmbeddingService.generateQueryEmbedding(anyString(), any())).thenReturn(embedding);
+        when(queryLoggerService.logQueryStart(any(), any(), anyString(), any(), anyString()))
+                .thenThrow(new QueryAuditLog.AuditUnavailableException("queue full"));
 
-        // When
-        QueryResponse response = ragQueryService.processQuery(validRequest, userId);
+        assertThatThrownBy(() -> ragQueryService.processQuery(validRequest, userId))
+                .isInstanceOf(RuntimeException.class)
+                .hasRootCauseInstanceOf(QueryAuditLog.AuditUnavailableException.class);
 
-        // Then
-        assertThat(response.getLatencyMs()).isNotNull();
-        // Note: With mocks, operations may complete in <1ms, so latency can be 0
-        assertThat(response.getLatencyMs().getEmbedding()).isGreaterThanOrEqualTo(0);
-        assertThat(response.getLatencyMs().getSearch()).isGreaterThanOrEqualTo(0);
-        assertThat(response.getLatencyMs().getContextPrep()).isGreaterThanOrEqualTo(0);
-        assertThat(response.getLatencyMs().getTotal()).isGreaterThanOrEqualTo(0);
-        
-        // Total should be sum of components (approximately, due to timing)
-        int sum = response.getLatencyMs().getEmbedding() 
-                + response.getLatencyMs().getSearch() 
-                + response.getLatencyMs().getContextPrep();
-        assertThat(response.getLatencyMs().getTotal()).isGreaterThanOrEqualTo(sum);
+        verifyNoInteractions(vectorSearchService, contextWindowManager);
     }
 
     @Test
-    @DisplayName("Should handle null userId gracefully")
-    void testProcessQuery_NullUserId() throws EmbeddingGenerationException {
-        // Given
-        setupSuccessfulMocks();
-
-        // When
-        QueryResponse response = ragQueryService.processQuery(validRequest, null);
-
-        // Then
-        assertThat(response).isNotNull();
-        verify(queryLoggerService).logQueryStart(eq(companyId), isNull(), anyString(), 
-                anyString(), anyString());
-    }
+    @DisplayName("Should pass a null userId and Vietnamese text through")
+    void testProcessQuery_VietnameseAnonymous() throws EmbeddingGenerationException {
+        QueryRequest vnRequest = new QueryRequest(COMPANY_ID, "Khách hàng nào còn nợ?", "vi");
+        stubPipeline(documents(5));
 
-    @Test
-    @DisplayName("Should handle Vietnamese query")
-    void testProcessQuery_VietnameseQuery() throws EmbeddingGenerationException {
-        // Given
-        QueryRequest vnRequest = new QueryRequest();
-        vnRequest.setCompanyId(companyId);
-        vnRequest.setQuery("Khách hàng nào còn nợ?");
-        vnRequest.setLanguage("vi");
-        
-        setupSuccessfulMocks();
-
-        // When
-        QueryResponse response = ragQueryService.processQuery(vnRequest, userId);
-
-        // Then
-        assertThat(response).isNotNull();
-        verify(queryEmbeddingService).generateQueryEmbedding("Khách hàng nào còn nợ?");
-        verify(queryLoggerService).logQueryStart(any(), any(), eq("Khách hàng nào còn nợ?"), 
-                anyString(), eq("vi"));
+        assertThat(ragQueryService.processQuery(vnRequest, null)).isNotNull();
+
+        verify(queryEmbeddingService).generateQueryEmbedding("Khách hàng nào còn nợ?", COMPANY_ID);
+        verify(queryLoggerService).logQueryStart(eq(COMPANY_ID), isNull(), eq("Khách hàng nào còn nợ?"), any(),
+                eq("vi"));
     }
 
     @Test
     @DisplayName("Should handle empty search results")
     void testProcessQuery_EmptyResults() throws EmbeddingGenerationException {
-        // Given
-        String embeddingStr = "[0.1,0.2,0.3]";
-        UUID queryId = UUID.randomUUID();
-        RagQuery ragQuery = new RagQuery();
-        ragQuery.setId(queryId);
-        
-        when(queryEmbeddingService.generateQueryEmbedding(anyString()))
-                .thenReturn(mockEmbedding);
-        when(queryEmbeddingService.formatEmbeddingForPostgres(any()))
-                .thenReturn(embeddingStr);
-        when(queryLoggerService.logQueryStart(any(), any(), anyString(), anyString(), anyString()))
-                .thenReturn(ragQuery);
-        when(vectorSearchService.search(any(), anyString(), any()))
-                .thenReturn(List.of());
-        when(contextWindowManager.buildGroundedContext(any(), any(), any()))
-                .thenReturn("");
-
-        // When
-        QueryResponse response = ragQueryService.processQuery(validRequest, userId);
-
-        // Then
-        assertThat(response.getRetrievedDocuments()).isEmpty();
-        assertThat(response.getGroundedContext()).isEmpty();
-        verify(queryLoggerService).logQueryComplete(eq(queryId), anyInt(), anyInt(), eq(List.of()), anyList());
-    }
+        stubPipeline(List.of());
 
-    @Test
-    @DisplayName("Should extract document IDs for context building")
-    void testProcessQuery_DocumentIdsExtracted() throws EmbeddingGenerationException {
-        // Given
-        UUID doc1Id = UUID.randomUUID();
-        UUID doc2Id = UUID.randomUUID();
-        
-        List<RetrievedDocumentDTO> documents = List.of(
-                createDTO(doc1Id, 0.95),
-                createDTO(doc2Id, 0.90)
-        );
-        
-        setupSuccessfulMocksWithDocuments(documents);
-
-        // When
         QueryResponse response = ragQueryService.processQuery(validRequest, userId);
 
-        // Then
-        verify(contextWindowManager).buildGroundedContext(
-                eq(documents), 
-                argThat(ids -> ids.contains(doc1Id) && ids.contains(doc2Id)),
-                eq(companyId));
-    }
-
-    @Test
-    @DisplayName("Should record query latency histogram")
-    void testProcessQuery_LatencyHistogram() throws EmbeddingGenerationException {
-        // Given
-        setupSuccessfulMocks();
-        
-        Timer latencyTimer = meterRegistry.timer("rag_query_latency_seconds");
-        long initialCount = latencyTimer.count();
-
-        // When
-        ragQueryService.processQuery(validRequest, userId);
-
-        // Then
-        assertThat(latencyTimer.count()).isGreaterThan(initialCount);
-    }
-
-    @Test
-    @DisplayName("Should handle context building failure gracefully")
-    void testProcessQuery_ContextBuildingFailure() throws EmbeddingGenerationException {
-        // Given
-        String embeddingStr = "[0.1,0.2,0.3]";
-        UUID queryId = UUID.randomUUID();
-        RagQuery ragQuery = new RagQuery();
-        ragQuery.setId(queryId);
-        
-        when(queryEmbeddingService.generateQueryEmbedding(anyString()))
-                .thenReturn(mockEmbedding);
-        when(queryEmbeddingService.formatEmbeddingForPostgres(any()))
-                .thenReturn(embeddingStr);
-        when(queryLoggerService.logQueryStart(any(), any(), anyString(), anyString(), anyString()))
-                .thenReturn(ragQuery);
-        when(vectorSearchService.search(any(), anyString(), any()))
-                .thenReturn(createMockDocuments(5));
-        when(contextWindowManager.buildGroundedContext(any(), any(), any()))
-                .thenThrow(new RuntimeException("Context building error"));
-
-        // When/Then
-        assertThatThrownBy(() -> ragQueryService.processQuery(validRequest, userId))
-                .isInstanceOf(RuntimeException.class);
-
-        verify(queryLoggerService).logQueryError(eq(queryId), contains("Context building error"));
+        assertThat(response.getRetrievedDocuments()).isEmpty();
+        verify(queryLoggerService).logQueryComplete(eq(QUERY_ID), anyInt(), anyInt(), eq(List.of()), eq(List.of()));
     }
 
-    // Helper methods
-
-    private void setupSuccessfulMocks() throws EmbeddingGenerationException {
-        String embeddingStr = "[0.1,0.2,0.3]";
-        UUID queryId = UUID.randomUUID();
-        RagQuery ragQuery = new RagQuery();
-        ragQuery.setId(queryId);
-        
-        when(queryEmbeddingService.generateQueryEmbedding(anyString()))
-                .thenReturn(mockEmbedding);
-        when(queryEmbeddingService.formatEmbeddingForPostgres(any()))
-                .thenReturn(embeddingStr);
-        when(queryLoggerService.logQueryStart(any(), any(), anyString(), anyString(), anyString()))
-                .thenReturn(ragQuery);
-        when(vectorSearchService.search(any(), anyString(), any()))
-                .thenReturn(createMockDocuments(5));
-        when(contextWindowManager.buildGroundedContext(any(), any(), any()))
-                .thenReturn("Sample grounded context");
+    private void stubPipeline(List<RetrievedDocumentDTO> documents) throws EmbeddingGenerationException {
+        when(queryEmbeddingService.generateQueryEmbedding(anyString(), any())).thenReturn(embedding);
+        when(queryLoggerService.logQueryStart(any(), any(), anyString(), any(), anyString())).thenReturn(ragQuery());
+        when(vectorSearchService.search(any(), anyString(), any(), any())).thenReturn(documents);
+        when(contextWindowManager.build(any(), any())).thenReturn(new ContextWindowManager.GroundedContext(
+                documents.isEmpty() ? "" : "Sample grounded context",
+                documents.stream().map(doc -> 10).toList()));
     }
 
-    private void setupSuccessfulMocksWithDocuments(List<RetrievedDocumentDTO> documents) 
-            throws EmbeddingGenerationException {
-        String embeddingStr = "[0.1,0.2,0.3]";
-        UUID queryId = UUID.randomUUID();
+    private static RagQuery ragQuery() {
         RagQuery ragQuery = new RagQuery();
-        ragQuery.setId(queryId);
-        
-        when(queryEmbeddingService.generateQueryEmbedding(anyString()))
-                .thenReturn(mockEmbedding);
-        when(queryEmbeddingService.formatEmbeddingForPostgres(any()))
-                .thenReturn(embeddingStr);
-        when(queryLoggerService.logQueryStart(any(), any(), anyString(), anyString(), anyString()))
-                .thenReturn(ragQuery);
-        when(vectorSearchService.search(any(), anyString(), any()))
-                .thenReturn(documents);
-        when(contextWindowManager.buildGroundedContext(any(), any(), any()))
-                .thenReturn("Sample grounded context");
+        ragQuery.setId(QUERY_ID);
+        return ragQuery;
     }
 
-    private List<RetrievedDocumentDTO> createMockDocuments(int count) {
+    private static List<RetrievedDocumentDTO> documents(int count) {
         List<RetrievedDocumentDTO> documents = new ArrayList<>();
         for (int i = 0; i < count; i++) {
-            documents.add(createDTO(UUID.randomUUID(), 0.9 - (i * 0.05)));
+            RetrievedDocumentDTO dto = new RetrievedDocumentDTO();
+            dto.setId((long) i + 1);
+            dto.setDocumentType("invoice");
+            dto.setModule("ar");
+            dto.setRelevanceScore(0.9 - i * 0.05);
+            dto.setExcerpt("Sample excerpt");
+            documents.add(dto);
         }
         return documents;
     }
-
-    private RetrievedDocumentDTO createDTO(UUID id, double relevanceScore) {
-        RetrievedDocumentDTO dto = new RetrievedDocumentDTO();
-        dto.setId(id);
-        dto.setDocumentType("invoice");
-        dto.setModule("ar");
-        dto.setRelevanceScore(relevanceScore);
-        dto.setExcerpt("Sample excerpt");
-        return dto;
-    }
 }
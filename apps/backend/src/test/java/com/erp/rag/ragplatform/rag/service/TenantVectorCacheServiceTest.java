@@ -0,0 +1,150 @@
+package com.erp.rag.ragplatform.rag.service;
+
+import com.erp.rag.supabase.vector.VectorSearchDao;
+import com.erp.rag.supabase.vector.VectorSearchResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for TenantVectorCacheService.
+ * <p>
+ * Story 1.5 – AC3: unfiltered searches of hot tenants are answered from an in-process index
+ * that follows vector_documents.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@DisplayName("Story 1.5: In-process vector cache")
+class TenantVectorCacheServiceTest {
+
+    private static final Long COMPANY_ID = 42L;
+    private static final OffsetDateTime T0 = OffsetDateTime.of(2026, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private VectorSearchDao vectorSearchDao;
+    private SimpleMeterRegistry meterRegistry;
+    private TenantVectorCacheService service;
+
+    @BeforeEach
+    void setUp() {
+        vectorSearchDao = mock(VectorSearchDao.class);
+        meterRegistry = new SimpleMeterRegistry();
+        // Hourly schedule: refreshes are driven by the tests
+        service = new TenantVectorCacheService(vectorSearchDao, meterRegistry, true, 5, 1000, 2,
+                3_600_000, 3_600_000, 8, 40, 40);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    @DisplayName("Should index hot tenants only and answer their searches in process")
+    void testSearch_HotTenantServedFromCache() {
+        when(vectorSearchDao.findChangedSince(eq(COMPANY_ID), any(), anyLong(), anyInt())).thenReturn(
+                List.of(row(1, new float[]{1, 0, 0}, T0, false), row(2, new float[]{0, 1, 0}, T0, false),
+                        row(3, new float[]{0, 0, 1}, T0.plusSeconds(1), false)),
+                List.of());
+
+        assertThat(service.search(COMPANY_ID, new float[]{1, 0, 0}, 2)).isEmpty();
+        service.refresh();
+        verify(vectorSearchDao, never()).findChangedSince(any(), any(), anyLong(), anyInt());
+
+        service.search(COMPANY_ID, new float[]{1, 0, 0}, 2);
+        service.search(COMPANY_ID, new float[]{1, 0, 0}, 2);
+        service.refresh();
+
+        List<VectorSearchResult> hits = service.search(COMPANY_ID, new float[]{0.9f, 0.1f, 0}, 2).orElseThrow();
+        assertThat(hits).extracting(VectorSearchResult::id).containsExactly(1L, 2L);
+        assertThat(hits.get(0).contentText()).isEqualTo("text 1");
+        assertThat(hits.get(0).distance()).isLessThan(hits.get(1).distance());
+        assertThat(meterRegistry.get("rag_vector_cache_searches_total").tag("outcome", "hit").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("rag_vector_cache_vectors").gauge().value()).isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("Should apply changed and soft-deleted rows, and drop tenants that cool down")
+    void testRefresh_SyncsChangesAndEvicts() {
+        when(vectorSearchDao.findChangedSince(eq(COMPANY_ID), any(), anyLong(), anyInt())).thenReturn(
+                List.of(row(1, new float[]{1, 0, 0}, T0, false), row(2, new float[]{0, 1, 0}, T0, false)),
+                List.of(row(1, new float[]{1, 0, 0}, T0.plusSeconds(5), true),
+                        row(3, new float[]{0.9f, 0.1f, 0}, T0.plusSeconds(5), false)),
+                List.of());
+        for (int i = 0; i < 4; i++) {
+            service.search(COMPANY_ID, new float[]{1, 0, 0}, 2);
+        }
+        service.refresh();
+        service.refresh();
+
+        assertThat(service.search(COMPANY_ID, new float[]{1, 0, 0}, 2).orElseThrow())
+                .extracting(VectorSearchResult::id).containsExactly(3L, 2L);
+        // Re-read from a few seconds before the last row seen
+        verify(vectorSearchDao).findChangedSince(COMPANY_ID, T0.minusSeconds(5), Long.MIN_VALUE, 500);
+
+        // Query counts halve every refresh: 2 -> 1, below min-queries
+        service.refresh();
+        service.refresh();
+        assertThat(service.search(COMPANY_ID, new float[]{1, 0, 0}, 2)).isEmpty();
+        assertThat(meterRegistry.get("rag_vector_cache_companies").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should drop all indexes on an embedding model cutover and rebuild them from scratch")
+    void testEmbeddingModelChanged_DropsAndRebuilds() {
+        when(vectorSearchDao.findChangedSince(eq(COMPANY_ID), any(), anyLong(), anyInt())).thenReturn(
+                List.of(row(1, new float[]{1, 0, 0}, T0, false), row(2, new float[]{0, 1, 0}, T0, false)),
+                List.of(row(1, new float[]{0, 1, 0}, T0, false), row(2, new float[]{1, 0, 0}, T0, false)),
+                List.of());
+        for (int i = 0; i < 4; i++) {
+            service.search(COMPANY_ID, new float[]{1, 0, 0}, 2);
+        }
+        service.refresh();
+        assertThat(service.search(COMPANY_ID, new float[]{1, 0, 0}, 1).orElseThrow())
+                .extracting(VectorSearchResult::id).containsExactly(1L);
+
+        // The cutover renames the column; updated_at stays T0
+        service.embeddingModelChanged();
+        assertThat(service.search(COMPANY_ID, new float[]{1, 0, 0}, 1)).isEmpty();
+
+        service.refresh();
+        assertThat(service.search(COMPANY_ID, new float[]{1, 0, 0}, 1).orElseThrow())
+                .extracting(VectorSearchResult::id).containsExactly(2L);
+        verify(vectorSearchDao, times(2)).findChangedSince(COMPANY_ID, OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0,
+                ZoneOffset.UTC), Long.MIN_VALUE, 500);
+    }
+
+    @Test
+    @DisplayName("Should discard an index whose build overlapped an embedding model cutover")
+    void testBuild_DiscardedWhenModelChangesMidway() {
+        when(vectorSearchDao.findChangedSince(eq(COMPANY_ID), any(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            service.embeddingModelChanged();
+            return List.of(row(1, new float[]{1, 0, 0}, T0, false));
+        });
+        for (int i = 0; i < 4; i++) {
+            service.search(COMPANY_ID, new float[]{1, 0, 0}, 2);
+        }
+
+        service.build(COMPANY_ID);
+
+        assertThat(meterRegistry.get("rag_vector_cache_companies").gauge().value()).isZero();
+    }
+
+    private static VectorSearchDao.ChangedVector row(long id, float[] embedding, OffsetDateTime updatedAt,
+            boolean deleted) {
+        return new VectorSearchDao.ChangedVector(new VectorSearchResult(id, "invoice", "ar", "text " + id, 0),
+                embedding, updatedAt, deleted);
+    }
+}
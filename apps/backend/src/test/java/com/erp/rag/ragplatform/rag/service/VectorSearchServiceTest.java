@@ -1,23 +1,25 @@
 package com.erp.rag.ragplatform.rag.service;
 
 import com.erp.rag.ragplatform.rag.dto.RetrievedDocumentDTO;
-import com.erp.rag.supabase.vector.VectorDocument;
-import com.erp.rag.supabase.vector.VectorDocumentRepository;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.erp.rag.supabase.vector.PgVector;
+import com.erp.rag.supabase.vector.VectorFilter;
+import com.erp.rag.supabase.vector.VectorFilterPlan;
+import com.erp.rag.supabase.vector.VectorQuantization;
+import com.erp.rag.supabase.vector.VectorSearchDao;
+import com.erp.rag.supabase.vector.VectorSearchResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.Spy;
-import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.*;
-import static org.assertj.core.data.Percentage.withPercentage;
 import static org.assertj.core.data.Offset.offset;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -32,331 +34,206 @@ import static org.mockito.Mockito.*;
  * @author dev-agent
  * @since 1.0.0
  */
-@ExtendWith(MockitoExtension.class)
 @DisplayName("Story 1.5-UNIT-003: Vector Search Service")
 class VectorSearchServiceTest {
 
-    @Mock
-    private VectorDocumentRepository vectorDocumentRepository;
+    private static final Long COMPANY_ID = 42L;
+    private static final int CANDIDATES = 10 * VectorQuantization.NONE.defaultOversampling(1536);
 
-    @Spy
-    private ObjectMapper objectMapper = new ObjectMapper();
-
-    @InjectMocks
+    private VectorSearchDao vectorSearchDao;
+    private TenantVectorCacheService vectorCache;
+    private SimpleMeterRegistry meterRegistry;
     private VectorSearchService vectorSearchService;
-
-    private UUID companyId;
-    private String queryEmbedding;
+    private PgVector queryEmbedding;
 
     @BeforeEach
     void setUp() {
-        companyId = UUID.randomUUID();
-        queryEmbedding = "[0.1,0.2,0.3]"; // Simplified embedding
+        vectorSearchDao = mock(VectorSearchDao.class);
+        vectorCache = mock(TenantVectorCacheService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        vectorSearchService = service("vector");
+        queryEmbedding = new PgVector(new float[]{0.1f, 0.2f, 0.3f});
+    }
+
+    @AfterEach
+    void tearDown() {
+        vectorSearchService.close();
     }
 
     @Test
-    @DisplayName("Should execute top-10 similarity search")
+    @DisplayName("Should execute top-10 similarity search and map relevance from distance")
     void testSearch_Top10Results() {
-        // Given
-        List<VectorDocument> mockDocuments = createMockDocuments(10);
-        when(vectorDocumentRepository.findSimilarVectors(eq(companyId), eq(queryEmbedding), eq(10)))
-                .thenReturn(mockDocuments);
+        when(vectorSearchDao.findSimilar(COMPANY_ID, queryEmbedding, 10, VectorQuantization.NONE, 1536, CANDIDATES))
+                .thenReturn(hits(10));
 
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
+        List<RetrievedDocumentDTO> results = vectorSearchService.search(COMPANY_ID, queryEmbedding, null);
 
-        // Then
         assertThat(results).hasSize(10);
-        verify(vectorDocumentRepository).findSimilarVectors(companyId, queryEmbedding, 10);
+        assertThat(results).extracting(RetrievedDocumentDTO::getRelevanceScore)
+                .isSortedAccordingTo((a, b) -> Double.compare(b, a));
+        assertThat(results.get(0).getRelevanceScore()).isCloseTo(1.0, offset(1e-9));
+        assertThat(results.get(3).getRelevanceScore()).isCloseTo(0.85, offset(1e-9));
+        verify(vectorCache).search(eq(COMPANY_ID), any(float[].class), eq(10));
+        verify(vectorSearchDao).findSimilar(COMPANY_ID, queryEmbedding, 10, VectorQuantization.NONE, 1536, CANDIDATES);
+        verifyNoMoreInteractions(vectorSearchDao);
     }
 
     @Test
-    @DisplayName("Should calculate relevance scores in descending order")
-    void testSearch_RelevanceScores() {
-        // Given
-        List<VectorDocument> mockDocuments = createMockDocuments(5);
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(mockDocuments);
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results).hasSize(5);
-        // Verify scores are in descending order (placeholder algorithm: 0.9 - rank*0.05)
-        assertThat(results.get(0).getRelevanceScore()).isCloseTo(0.9, offset(0.01));
-        assertThat(results.get(1).getRelevanceScore()).isCloseTo(0.85, offset(0.01));
-        assertThat(results.get(2).getRelevanceScore()).isCloseTo(0.80, offset(0.01));
-        assertThat(results.get(3).getRelevanceScore()).isCloseTo(0.75, offset(0.01));
-        assertThat(results.get(4).getRelevanceScore()).isCloseTo(0.70, offset(0.01));
-        // Verify descending order
-        for (int i = 0; i < results.size() - 1; i++) {
-            assertThat(results.get(i).getRelevanceScore())
-                    .isGreaterThanOrEqualTo(results.get(i + 1).getRelevanceScore());
-        }
-    }
+    @DisplayName("Should answer unfiltered searches of cached tenants without the database")
+    void testSearch_CacheHit() {
+        when(vectorCache.search(eq(COMPANY_ID), any(float[].class), eq(10))).thenReturn(Optional.of(hits(2)));
 
-    @Test
-    @DisplayName("Should extract document type from metadata")
-    void testSearch_ExtractDocumentType() {
-        // Given
-        List<VectorDocument> mockDocuments = List.of(
-                createVectorDocument(UUID.randomUUID(), "invoice", "ar", "Invoice content"),
-                createVectorDocument(UUID.randomUUID(), "bill", "ap", "Bill content")
-        );
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(mockDocuments);
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results).hasSize(2);
-        assertThat(results.get(0).getDocumentType()).isEqualTo("invoice");
-        assertThat(results.get(1).getDocumentType()).isEqualTo("bill");
-    }
+        List<RetrievedDocumentDTO> results = vectorSearchService.search(COMPANY_ID, queryEmbedding, Map.of());
 
-    @Test
-    @DisplayName("Should extract module from metadata")
-    void testSearch_ExtractModule() {
-        // Given
-        List<VectorDocument> mockDocuments = List.of(
-                createVectorDocument(UUID.randomUUID(), "invoice", "ar", "Content"),
-                createVectorDocument(UUID.randomUUID(), "bill", "ap", "Content"),
-                createVectorDocument(UUID.randomUUID(), "journal", "gl", "Content")
-        );
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(mockDocuments);
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results.get(0).getModule()).isEqualTo("ar");
-        assertThat(results.get(1).getModule()).isEqualTo("ap");
-        assertThat(results.get(2).getModule()).isEqualTo("gl");
+        assertThat(results).extracting(RetrievedDocumentDTO::getId).containsExactly(1L, 2L);
+        verifyNoInteractions(vectorSearchDao);
     }
 
     @Test
-    @DisplayName("Should extract excerpts (first 200 chars)")
-    void testSearch_ExtractExcerpts() {
-        // Given
-        String longText = "a".repeat(300);
-        VectorDocument doc = createVectorDocument(UUID.randomUUID(), "invoice", "ar", longText);
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(List.of(doc));
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results).hasSize(1);
-        assertThat(results.get(0).getExcerpt()).hasSize(203); // 200 chars + "..."
-        assertThat(results.get(0).getExcerpt()).endsWith("...");
-    }
+    @DisplayName("Should drop hits below minConfidence without treating it as a row filter")
+    void testSearch_MinConfidence() {
+        when(vectorSearchDao.findSimilar(eq(COMPANY_ID), eq(queryEmbedding), eq(10), eq(VectorQuantization.NONE),
+                eq(1536), anyInt())).thenReturn(hits(10));
 
-    @Test
-    @DisplayName("Should not truncate short content")
-    void testSearch_ShortExcerpt() {
-        // Given
-        String shortText = "Short invoice content.";
-        VectorDocument doc = createVectorDocument(UUID.randomUUID(), "invoice", "ar", shortText);
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(List.of(doc));
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results.get(0).getExcerpt()).isEqualTo(shortText);
-        assertThat(results.get(0).getExcerpt()).doesNotEndWith("...");
+        List<RetrievedDocumentDTO> results = vectorSearchService.search(COMPANY_ID, queryEmbedding,
+                Map.of("minConfidence", 0.8));
+
+        assertThat(results).hasSize(5);
+        assertThat(results).allSatisfy(dto -> assertThat(dto.getRelevanceScore()).isGreaterThanOrEqualTo(0.8));
+        verify(vectorSearchDao, never()).countMatching(any(), any(), anyInt());
     }
 
     @Test
-    @DisplayName("Should parse metadata into Map")
-    void testSearch_ParseMetadata() {
-        // Given
-        VectorDocument doc = createVectorDocument(UUID.randomUUID(), "invoice", "ar", "Content");
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(List.of(doc));
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results.get(0).getMetadata()).isNotNull();
-        assertThat(results.get(0).getMetadata()).isInstanceOf(Map.class);
-        
-        @SuppressWarnings("unchecked")
-        Map<String, Object> metadata = (Map<String, Object>) results.get(0).getMetadata();
-        assertThat(metadata).containsKeys("content_text", "document_type", "module");
+    @DisplayName("Should rank small filtered sets exactly and cache the estimate")
+    void testSearch_FilterExactPlan() {
+        VectorFilter filter = VectorFilter.of(Map.of("module", "ar"));
+        when(vectorSearchDao.countMatching(COMPANY_ID, filter, 2001)).thenReturn(150L);
+        when(vectorSearchDao.findSimilar(eq(COMPANY_ID), eq(queryEmbedding), eq(10), eq(filter), any(),
+                eq(VectorQuantization.NONE), eq(1536))).thenReturn(hits(3));
+
+        assertThat(vectorSearchService.search(COMPANY_ID, queryEmbedding, Map.of("module", "ar"))).hasSize(3);
+        vectorSearchService.search(COMPANY_ID, queryEmbedding, Map.of("module", "ar"));
+
+        verify(vectorSearchDao, times(2)).findSimilar(COMPANY_ID, queryEmbedding, 10, filter,
+                VectorFilterPlan.exact(), VectorQuantization.NONE, 1536);
+        verify(vectorSearchDao).countMatching(COMPANY_ID, filter, 2001);
+        verify(vectorSearchDao, never()).sampleSelectivity(any(), any(), anyInt());
+        verifyNoInteractions(vectorCache);
+        assertThat(meterRegistry.get("rag_vector_filtered_searches_total").tag("strategy", "exact")
+                .counter().count()).isEqualTo(2.0);
     }
 
     @Test
-    @DisplayName("Should handle empty results")
-    void testSearch_EmptyResults() {
-        // Given
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(List.of());
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results).isEmpty();
+    @DisplayName("Should use a covering partial index with candidates oversampled by selectivity")
+    void testPlan_PartialIndex() {
+        VectorFilter filter = VectorFilter.of(Map.of("module", "ar", "status", "posted"));
+        VectorFilterPlan.PartialIndex arIndex = new VectorFilterPlan.PartialIndex("idx_vector_documents_ar",
+                Map.of("module", "ar"), "metadata @> '{\"module\": \"ar\"}'");
+        when(vectorSearchDao.countMatching(COMPANY_ID, filter, 2001)).thenReturn(2001L);
+        when(vectorSearchDao.sampleSelectivity(COMPANY_ID, filter, 1000)).thenReturn(0.5);
+        when(vectorSearchDao.findPartialIndexes()).thenReturn(List.of(arIndex));
+
+        VectorFilterPlan plan = vectorSearchService.plan(COMPANY_ID, filter);
+
+        assertThat(plan.strategy()).isEqualTo(VectorFilterPlan.Strategy.PARTIAL_INDEX);
+        assertThat(plan.partialIndex()).isEqualTo(arIndex);
+        assertThat(plan.candidates()).isEqualTo(Math.min(1000, CANDIDATES * 2));
+        assertThat(plan.iterativeScan()).isEqualTo("relaxed_order");
     }
 
     @Test
-    @DisplayName("Should handle missing content_text in metadata")
-    void testSearch_MissingContentText() {
-        // Given
-        VectorDocument doc = new VectorDocument();
-        doc.setId(UUID.randomUUID());
-        JsonNode metadata = objectMapper.createObjectNode()
-                .put("document_type", "invoice")
-                .put("module", "ar");
-        doc.setMetadata(metadata);
-        
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(List.of(doc));
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results).hasSize(1);
-        assertThat(results.get(0).getExcerpt()).isEmpty();
+    @DisplayName("Should fall back to iterative scan when no partial index covers the filter")
+    void testPlan_Iterative() {
+        VectorFilter filter = VectorFilter.of(Map.of("module", "ap"));
+        when(vectorSearchDao.countMatching(COMPANY_ID, filter, 2001)).thenReturn(2001L);
+        when(vectorSearchDao.sampleSelectivity(COMPANY_ID, filter, 1000)).thenReturn(0.0);
+        when(vectorSearchDao.findPartialIndexes()).thenReturn(List.of(new VectorFilterPlan.PartialIndex(
+                "idx_vector_documents_ar", Map.of("module", "ar"), "metadata @> '{\"module\": \"ar\"}'")));
+
+        VectorFilterPlan plan = vectorSearchService.plan(COMPANY_ID, filter);
+
+        assertThat(plan.strategy()).isEqualTo(VectorFilterPlan.Strategy.ITERATIVE);
+        assertThat(plan.partialIndex()).isNull();
+        // Nothing matched in the sample: candidates capped
+        assertThat(plan.candidates()).isEqualTo(1000);
     }
 
     @Test
-    @DisplayName("Should handle null metadata gracefully")
-    void testSearch_NullMetadata() {
-        // Given
-        VectorDocument doc = new VectorDocument();
-        doc.setId(UUID.randomUUID());
-        doc.setMetadata(null);
-        
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(List.of(doc));
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results).hasSize(1);
-        assertThat(results.get(0).getDocumentType()).isEqualTo("unknown");
-        assertThat(results.get(0).getModule()).isEqualTo("unknown");
-        assertThat(results.get(0).getExcerpt()).isEmpty();
+    @DisplayName("Should fuse full-text and vector rankings in hybrid mode")
+    void testSearch_HybridFusion() {
+        vectorSearchService.close();
+        vectorSearchService = service("hybrid");
+        when(vectorSearchDao.findSimilar(eq(COMPANY_ID), eq(queryEmbedding), eq(40), eq(VectorQuantization.NONE),
+                eq(1536), anyInt())).thenReturn(List.of(hit(1, 0.1), hit(2, 0.2), hit(3, 0.3)));
+        when(vectorSearchDao.findLexical(COMPANY_ID, "HD-0042", queryEmbedding, 40, VectorFilter.NONE))
+                .thenReturn(List.of(hit(3, 0.3), hit(4, 0.4)));
+
+        List<RetrievedDocumentDTO> results = vectorSearchService.search(COMPANY_ID, "HD-0042", queryEmbedding, null);
+
+        // Document 3 is in both rankings and wins; lexical-only document 4 is kept
+        assertThat(results).extracting(RetrievedDocumentDTO::getId).containsExactly(3L, 1L, 2L, 4L);
     }
 
     @Test
-    @DisplayName("Should handle Vietnamese content")
-    void testSearch_VietnameseContent() {
-        // Given
-        String vietnameseText = "Hóa đơn INV-001 từ khách hàng ABC. Số tiền: 5.000.000 VNĐ.";
-        VectorDocument doc = createVectorDocument(UUID.randomUUID(), "invoice", "ar", vietnameseText);
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(List.of(doc));
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results).hasSize(1);
-        assertThat(results.get(0).getExcerpt()).contains("Hóa đơn");
-        assertThat(results.get(0).getExcerpt()).contains("VNĐ");
+    @DisplayName("Should return vector hits alone when the full-text leg fails")
+    void testSearch_HybridLexicalFailure() {
+        vectorSearchService.close();
+        vectorSearchService = service("hybrid");
+        when(vectorSearchDao.findSimilar(eq(COMPANY_ID), eq(queryEmbedding), eq(40), eq(VectorQuantization.NONE),
+                eq(1536), anyInt())).thenReturn(hits(12));
+        when(vectorSearchDao.findLexical(any(), any(), any(), anyInt(), any()))
+                .thenThrow(new RuntimeException("tsquery syntax error"));
+
+        List<RetrievedDocumentDTO> results = vectorSearchService.search(COMPANY_ID, "HD-0042", queryEmbedding, null);
+
+        assertThat(results).extracting(RetrievedDocumentDTO::getId)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, 10).boxed().toList());
     }
 
     @Test
-    @DisplayName("Should handle filters parameter (basic validation)")
-    void testSearch_WithFilters() {
-        // Given
-        Map<String, Object> filters = Map.of("module", "ar", "fiscal_period", "2024-10");
-        List<VectorDocument> mockDocuments = createMockDocuments(5);
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(mockDocuments);
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, filters);
-
-        // Then
-        assertThat(results).hasSize(5);
-        // Note: Metadata filtering not fully implemented in MVP, but should not crash
-        verify(vectorDocumentRepository).findSimilarVectors(companyId, queryEmbedding, 10);
+    @DisplayName("Should expose only type and module metadata and truncate excerpts")
+    void testToDto_MetadataAndExcerpt() {
+        RetrievedDocumentDTO dto = VectorSearchService.toDto(
+                new VectorSearchResult(7L, null, "gl", "x".repeat(250), 0.25));
+
+        assertThat(dto.getDocumentType()).isEqualTo("unknown");
+        assertThat(dto.getModule()).isEqualTo("gl");
+        assertThat(dto.getMetadata()).containsOnlyKeys("document_type", "module");
+        assertThat(dto.getExcerpt()).hasSize(203).endsWith("...");
+        assertThat(dto.getContentText()).hasSize(250);
+        assertThat(dto.getRelevanceScore()).isCloseTo(0.75, offset(1e-9));
+        assertThat(VectorSearchService.toDto(new VectorSearchResult(8L, "invoice", "ar", "Hóa đơn", 0))
+                .getExcerpt()).isEqualTo("Hóa đơn");
     }
 
     @Test
-    @DisplayName("Should handle repository exception gracefully")
-    void testSearch_RepositoryException() {
-        // Given
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenThrow(new RuntimeException("Database connection error"));
-
-        // When/Then
-        assertThatThrownBy(() -> vectorSearchService.search(companyId, queryEmbedding, null))
+    @DisplayName("Should propagate database errors")
+    void testSearch_DatabaseError() {
+        when(vectorSearchDao.findSimilar(any(), any(), anyInt(), any(VectorQuantization.class), anyInt(), anyInt()))
+                .thenThrow(new RuntimeException("Database connection failed"));
+
+        assertThatThrownBy(() -> vectorSearchService.search(COMPANY_ID, queryEmbedding, null))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("Database connection error");
+                .hasMessageContaining("Database connection failed");
     }
 
-    @Test
-    @DisplayName("Should assign correct IDs to results")
-    void testSearch_ResultIds() {
-        // Given
-        UUID doc1Id = UUID.randomUUID();
-        UUID doc2Id = UUID.randomUUID();
-        List<VectorDocument> mockDocuments = List.of(
-                createVectorDocument(doc1Id, "invoice", "ar", "Content 1"),
-                createVectorDocument(doc2Id, "bill", "ap", "Content 2")
-        );
-        when(vectorDocumentRepository.findSimilarVectors(any(), any(), anyInt()))
-                .thenReturn(mockDocuments);
-
-        // When
-        List<RetrievedDocumentDTO> results = vectorSearchService.search(
-                companyId, queryEmbedding, null);
-
-        // Then
-        assertThat(results.get(0).getId()).isEqualTo(doc1Id);
-        assertThat(results.get(1).getId()).isEqualTo(doc2Id);
+    private VectorSearchService service(String mode) {
+        return new VectorSearchService(vectorSearchDao, vectorCache, meterRegistry, "none", 1536, 0, 2000,
+                "relaxed_order", 60_000, mode, 40, 60);
     }
 
-    // Helper methods
-
-    private List<VectorDocument> createMockDocuments(int count) {
-        List<VectorDocument> documents = new ArrayList<>();
-        for (int i = 0; i < count; i++) {
-            UUID id = UUID.randomUUID();
-            documents.add(createVectorDocument(id, "invoice", "ar", "Content " + i));
+    /**
+     * Hits 1..count with distances 0.00, 0.05, 0.10, ...
+     */
+    private static List<VectorSearchResult> hits(int count) {
+        List<VectorSearchResult> hits = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            hits.add(hit(i, (i - 1) * 0.05));
         }
-        return documents;
+        return hits;
     }
 
-    private VectorDocument createVectorDocument(UUID id, String documentType, 
-                                                String module, String contentText) {
-        VectorDocument doc = new VectorDocument();
-        doc.setId(id);
-        doc.setCompanyId(companyId);
-        
-        JsonNode metadata = objectMapper.createObjectNode()
-                .put("content_text", contentText)
-                .put("document_type", documentType)
-                .put("module", module)
-                .put("fiscal_period", "2024-10")
-                .put("status", "active");
-        doc.setMetadata(metadata);
-        
-        return doc;
+    private static VectorSearchResult hit(long id, double distance) {
+        return new VectorSearchResult(id, "invoice", "ar", "Document " + id, distance);
     }
 }
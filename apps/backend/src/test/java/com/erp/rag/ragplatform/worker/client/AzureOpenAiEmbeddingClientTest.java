@@ -0,0 +1,148 @@
+package com.erp.rag.ragplatform.worker.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for AzureOpenAiEmbeddingClient against {@link MockEmbeddingServer}.
+ * <p>
+ * Story 1.4 – AC3: gzip request bodies, streaming response parsing, connection reuse and
+ * error/Retry-After reporting.
+ * </p>
+ * <p>
+ * The mock server speaks HTTP/1.1 only, so connection reuse is tested as keep-alive of
+ * sequential requests. HTTP/2 (h2c or TLS ALPN) and the multiplexing of concurrent requests
+ * are not exercised here.
+ * </p>
+ */
+class AzureOpenAiEmbeddingClientTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MockEmbeddingServer server;
+    private AzureOpenAiEmbeddingClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = MockEmbeddingServer.start();
+        client = new AzureOpenAiEmbeddingClient(objectMapper, server.endpoint(), "text-embedding-3-large",
+                "2024-02-01", "test-key", 1536, true, 2_000, 5_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void testEmbed_ReturnsProviderVectorsInInputOrder() throws Exception {
+        // Act
+        List<float[]> embeddings = client.embed(List.of("Hóa đơn HD-001", "Phiếu chi PC-002"));
+
+        // Assert
+        assertThat(embeddings).hasSize(2);
+        assertThat(embeddings.get(0)).containsExactly(MockEmbeddingServer.embeddingFor("Hóa đơn HD-001", 1536));
+        assertThat(embeddings.get(1)).containsExactly(MockEmbeddingServer.embeddingFor("Phiếu chi PC-002", 1536));
+        assertThat(server.gzipRequests()).isEqualTo(1);
+        assertThat(server.inputs()).isEqualTo(2);
+    }
+
+    @Test
+    void testEmbed_ReusesConnectionAcrossRequests() throws Exception {
+        // Act: each call returns only after its response body was read to the end
+        for (int i = 0; i < 10; i++) {
+            client.embed(List.of("text " + i));
+        }
+
+        // Assert: sequential requests keep-alive on one HTTP/1.1 connection
+        assertThat(server.requests()).isEqualTo(10);
+        assertThat(server.connections()).isEqualTo(1);
+    }
+
+    @Test
+    void testEmbed_ReportsStatusAndRetryAfter() {
+        // Arrange
+        server.failNext(429, 1_500L);
+
+        // Act & Assert
+        assertThatThrownBy(() -> client.embed(List.of("x")))
+                .isInstanceOfSatisfying(AzureOpenAiEmbeddingClient.EmbeddingClientException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(429);
+                    assertThat(e.getRetryAfter()).isEqualTo(Duration.ofMillis(1_500));
+                    assertThat(e.getMessage()).contains("injected");
+                });
+    }
+
+    @Test
+    void testEmbed_ConnectionFailureHasNoStatus() {
+        // Arrange
+        String endpoint = server.endpoint();
+        server.close();
+        AzureOpenAiEmbeddingClient unreachable = new AzureOpenAiEmbeddingClient(objectMapper, endpoint,
+                "text-embedding-3-large", "2024-02-01", "test-key", 1536, true, 500, 1_000);
+
+        // Act & Assert
+        assertThatThrownBy(() -> unreachable.embed(List.of("x")))
+                .isInstanceOfSatisfying(AzureOpenAiEmbeddingClient.EmbeddingClientException.class, e -> {
+                    assertThat(e.getStatusCode()).isZero();
+                    assertThat(e.getCause()).isInstanceOf(IOException.class);
+                });
+        unreachable.close();
+    }
+
+    @Test
+    void testReadResponse_SkipsUnknownFieldsAndOrdersByIndex() throws Exception {
+        // Arrange: items out of order, index after embedding, nested unknown fields
+        String json = """
+                {"object":"list","usage":{"prompt_tokens":4,"details":[1,2]},
+                 "data":[{"embedding":[0.5,-1],"object":"embedding","index":1},
+                         {"index":0,"extra":{"a":[1]},"embedding":[1,2.25]}],
+                 "model":"text-embedding-3-large"}
+                """;
+
+        // Act
+        List<float[]> embeddings = AzureOpenAiEmbeddingClient.readResponse(objectMapper.getFactory(),
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), 2, 2);
+
+        // Assert
+        assertThat(embeddings.get(0)).containsExactly(1f, 2.25f);
+        assertThat(embeddings.get(1)).containsExactly(0.5f, -1f);
+    }
+
+    @Test
+    void testReadResponse_RejectsMissingItem() {
+        String json = "{\"data\":[{\"index\":0,\"embedding\":[1]}]}";
+
+        assertThatThrownBy(() -> AzureOpenAiEmbeddingClient.readResponse(objectMapper.getFactory(),
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), 2, 1))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("input 1");
+    }
+
+    @Test
+    void testRetryAfter_ParsesSecondsAndMilliseconds() {
+        assertThat(AzureOpenAiEmbeddingClient.retryAfter(headers(Map.of("Retry-After", List.of("7")))))
+                .isEqualTo(Duration.ofSeconds(7));
+        assertThat(AzureOpenAiEmbeddingClient.retryAfter(headers(Map.of(
+                "Retry-After", List.of("7"), "retry-after-ms", List.of("250")))))
+                .isEqualTo(Duration.ofMillis(250));
+        assertThat(AzureOpenAiEmbeddingClient.retryAfter(headers(Map.of()))).isNull();
+    }
+
+    private static HttpHeaders headers(Map<String, List<String>> values) {
+        return HttpHeaders.of(values, (k, v) -> true);
+    }
+}
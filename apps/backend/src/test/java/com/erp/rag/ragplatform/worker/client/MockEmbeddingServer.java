@@ -0,0 +1,256 @@
+package com.erp.rag.ragplatform.worker.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the Azure OpenAI embeddings endpoint.
+ * <p>
+ * Speaks the same wire format as the real service (gzip request bodies, gzip responses,
+ * {@code data[].index}/{@code data[].embedding}, {@code retry-after-ms} on throttling) and
+ * returns deterministic unit vectors per input text, so integration and load tests exercise
+ * real serialization, compression and connection reuse without network access. Latency and
+ * failures can be injected. It speaks HTTP/1.1 only: reuse is keep-alive, and HTTP/2
+ * multiplexing is not exercised.
+ * </p>
+ * <p>
+ * Usage: {@code try (MockEmbeddingServer server = MockEmbeddingServer.start()) { ... }} and
+ * point {@code embedding.azure.endpoint} at {@link #endpoint()}.
+ * </p>
+ */
+public final class MockEmbeddingServer implements AutoCloseable {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final HttpServer server;
+    private final Deque<Failure> failures = new ArrayDeque<>();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger gzipRequests = new AtomicInteger();
+    private final AtomicLong inputs = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private volatile Duration latency = Duration.ZERO;
+
+    private MockEmbeddingServer(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Start on an ephemeral loopback port.
+     *
+     * @return running server
+     * @throws IOException if the port cannot be bound
+     */
+    public static MockEmbeddingServer start() throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        MockEmbeddingServer mock = new MockEmbeddingServer(http);
+        http.createContext("/openai/deployments/", mock::handle);
+        http.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        http.start();
+        return mock;
+    }
+
+    /**
+     * @return base URL for {@code embedding.azure.endpoint}
+     */
+    public String endpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Delay every response by {@code latency}.
+     */
+    public MockEmbeddingServer withLatency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Answer the next request with an error.
+     *
+     * @param status       HTTP status
+     * @param retryAfterMs value for {@code retry-after-ms}, or {@code null} to omit it
+     */
+    public MockEmbeddingServer failNext(int status, Long retryAfterMs) {
+        synchronized (failures) {
+            failures.add(new Failure(status, retryAfterMs));
+        }
+        return this;
+    }
+
+    /**
+     * The deterministic embedding returned for {@code text}.
+     */
+    public static float[] embeddingFor(String text, int dimensions) {
+        Random rng = new Random(text.hashCode());
+        float[] vector = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = rng.nextFloat() * 2 - 1;
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    public int requests() {
+        return requests.get();
+    }
+
+    public int gzipRequests() {
+        return gzipRequests.get();
+    }
+
+    public long inputs() {
+        return inputs.get();
+    }
+
+    public long requestBytes() {
+        return requestBytes.get();
+    }
+
+    /**
+     * @return distinct client ports seen, i.e. TCP connections opened by the client
+     */
+    public int connections() {
+        return clientPorts.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+
+            byte[] raw = exchange.getRequestBody().readAllBytes();
+            requestBytes.addAndGet(raw.length);
+            InputStream body = new ByteArrayInputStream(raw);
+            if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                gzipRequests.incrementAndGet();
+                body = new GZIPInputStream(body);
+            }
+            Request request = readRequest(body);
+            inputs.addAndGet(request.inputs().size());
+
+            if (!latency.isZero()) {
+                Thread.sleep(latency.toMillis());
+            }
+
+            Failure failure;
+            synchronized (failures) {
+                failure = failures.poll();
+            }
+            if (failure != null) {
+                if (failure.retryAfterMs() != null) {
+                    exchange.getResponseHeaders().add("retry-after-ms", failure.retryAfterMs().toString());
+                }
+                byte[] error = ("{\"error\":{\"code\":\"" + failure.status() + "\",\"message\":\"injected\"}}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(failure.status(), error.length);
+                exchange.getResponseBody().write(error);
+                return;
+            }
+
+            boolean gzip = String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")).contains("gzip");
+            byte[] response = writeResponse(request, gzip);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            if (gzip) {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Request readRequest(InputStream body) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        int dimensions = 1536;
+        try (JsonParser parser = JSON.createParser(body)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("input".equals(field)) {
+                    while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                        inputs.add(parser.getText());
+                    }
+                } else if ("dimensions".equals(field)) {
+                    dimensions = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new Request(inputs, dimensions);
+    }
+
+    private static byte[] writeResponse(Request request, boolean gzip) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = gzip ? new GZIPOutputStream(buffer) : buffer;
+                JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("object", "list");
+            json.writeArrayFieldStart("data");
+            for (int i = 0; i < request.inputs().size(); i++) {
+                json.writeStartObject();
+                json.writeStringField("object", "embedding");
+                json.writeNumberField("index", i);
+                json.writeArrayFieldStart("embedding");
+                for (float value : embeddingFor(request.inputs().get(i), request.dimensions())) {
+                    json.writeNumber(value);
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeStringField("model", "text-embedding-3-large");
+            json.writeObjectFieldStart("usage");
+            json.writeNumberField("prompt_tokens", request.inputs().size());
+            json.writeNumberField("total_tokens", request.inputs().size());
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+
+    private record Request(List<String> inputs, int dimensions) {
+    }
+
+    private record Failure(int status, Long retryAfterMs) {
+    }
+}
@@ -0,0 +1,121 @@
+package com.erp.rag.ragplatform.worker.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for MicroBatcher.
+ * <p>
+ * Story 1.5 – AC2: Concurrent query embeddings are coalesced by size, weight and max wait.
+ * </p>
+ */
+class MicroBatcherTest {
+
+    private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+
+    @Test
+    void testSubmit_SendsFullBatchWithoutWaiting() throws Exception {
+        // Arrange: a wait far longer than the test
+        try (MicroBatcher<String, Integer> batcher = batcher(3, 1_000, Duration.ofMinutes(1))) {
+            // Act
+            CompletableFuture<Integer> a = batcher.submit("a");
+            CompletableFuture<Integer> bb = batcher.submit("bb");
+            CompletableFuture<Integer> ccc = batcher.submit("ccc");
+
+            // Assert
+            assertThat(ccc.get(5, TimeUnit.SECONDS)).isEqualTo(3);
+            assertThat(a.get()).isEqualTo(1);
+            assertThat(bb.get()).isEqualTo(2);
+            assertThat(calls).containsExactly(List.of("a", "bb", "ccc"));
+        }
+    }
+
+    @Test
+    void testSubmit_SendsPartialBatchAfterMaxWait() throws Exception {
+        try (MicroBatcher<String, Integer> batcher = batcher(100, 1_000, Duration.ofMillis(20))) {
+            // Act
+            long start = System.nanoTime();
+            CompletableFuture<Integer> first = batcher.submit("x");
+            CompletableFuture<Integer> second = batcher.submit("yy");
+            int result = first.get(5, TimeUnit.SECONDS);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            // Assert
+            assertThat(result).isEqualTo(1);
+            assertThat(second.get()).isEqualTo(2);
+            assertThat(elapsedMs).isGreaterThanOrEqualTo(15);
+            assertThat(calls).containsExactly(List.of("x", "yy"));
+        }
+    }
+
+    @Test
+    void testSubmit_StartsNewBatchBeforeWeightIsExceeded() throws Exception {
+        // Arrange: weight is the string length
+        try (MicroBatcher<String, Integer> batcher = batcher(100, 5, Duration.ofMinutes(1))) {
+            // Act
+            CompletableFuture<Integer> first = batcher.submit("aaa");
+            CompletableFuture<Integer> second = batcher.submit("bbb");
+
+            // Assert: the first batch went out as soon as the second item did not fit
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(3);
+            assertThat(second).isNotDone();
+            assertThat(calls).containsExactly(List.of("aaa"));
+
+            // Closing sends the open batch
+            batcher.close();
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(3);
+            assertThat(calls).containsExactly(List.of("aaa"), List.of("bbb"));
+        }
+    }
+
+    @Test
+    void testSubmit_DeduplicatesEqualItems() throws Exception {
+        try (MicroBatcher<String, Integer> batcher = batcher(2, 1_000, Duration.ofMinutes(1))) {
+            // Act
+            CompletableFuture<Integer> first = batcher.submit("same");
+            CompletableFuture<Integer> again = batcher.submit("same");
+            CompletableFuture<Integer> other = batcher.submit("other");
+
+            // Assert
+            assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo(5);
+            assertThat(first.get()).isEqualTo(4);
+            assertThat(again.get()).isEqualTo(4);
+            assertThat(calls).containsExactly(List.of("same", "other"));
+        }
+    }
+
+    @Test
+    void testSubmit_FailsEveryCallerOfFailedBatch() {
+        try (MicroBatcher<String, Integer> batcher = new MicroBatcher<>("test", 2, 1_000, String::length,
+                Duration.ofMinutes(1), items -> {
+                    throw new IllegalStateException("provider down");
+                })) {
+            // Act
+            CompletableFuture<Integer> first = batcher.submit("a");
+            CompletableFuture<Integer> second = batcher.submit("b");
+
+            // Assert
+            for (CompletableFuture<Integer> future : List.of(first, second)) {
+                assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                        .isInstanceOf(ExecutionException.class)
+                        .hasRootCauseMessage("provider down");
+            }
+        }
+    }
+
+    private MicroBatcher<String, Integer> batcher(int maxItems, int maxWeight, Duration maxWait) {
+        return new MicroBatcher<>("test", maxItems, maxWeight, String::length, maxWait, items -> {
+            calls.add(List.copyOf(items));
+            return items.stream().map(String::length).toList();
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package com.erp.rag.ragplatform.worker.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for StagedPipeline.
+ * <p>
+ * Story 1.4 – AC3, AC4: Verifies ordering, stage overlap, failure propagation and statistics
+ * of the pipelined embedding worker engine.
+ * </p>
+ */
+class StagedPipelineTest {
+
+    @Test
+    void testRun_PassesItemsThroughStagesInOrder() {
+        // Arrange
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        StagedPipeline<Integer> pipeline = StagedPipeline.<Integer>builder("test", 2)
+                .stage(stage("double", (Integer i, Consumer<Integer> emit) -> emit.accept(i * 2)))
+                .stage(stage("format", (Integer i, Consumer<String> emit) -> emit.accept("#" + i)))
+                .stage(stage("collect", (String s, Consumer<Void> emit) -> received.add(s)))
+                .build();
+
+        // Act
+        PipelineStats stats = pipeline.run(submit -> {
+            for (int i = 1; i <= 5; i++) {
+                submit.accept(i);
+            }
+        });
+
+        // Assert
+        assertThat(received).containsExactly("#2", "#4", "#6", "#8", "#10");
+        assertThat(stats.stages()).extracting(PipelineStats.StageStats::name)
+                .containsExactly("double", "format", "collect");
+        assertThat(stats.stages()).allSatisfy(s -> assertThat(s.itemsIn()).isEqualTo(5));
+        assertThat(stats.stages().get(0).maxQueueDepth()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void testRun_FinishFlushesBufferedItems() {
+        // Arrange: first stage buffers everything and only emits on finish
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        PipelineStage<Integer, List<Integer>> buffering = new PipelineStage<>() {
+            private final List<Integer> buffer = new ArrayList<>();
+
+            @Override
+            public String name() {
+                return "buffer";
+            }
+
+            @Override
+            public void accept(Integer item, Consumer<List<Integer>> emit) {
+                buffer.add(item);
+            }
+
+            @Override
+            public void finish(Consumer<List<Integer>> emit) {
+                emit.accept(List.copyOf(buffer));
+            }
+        };
+        StagedPipeline<Integer> pipeline = StagedPipeline.<Integer>builder("test", 1)
+                .stage(buffering)
+                .stage(stage("collect", (List<Integer> batch, Consumer<Void> emit) -> received.addAll(batch)))
+                .build();
+
+        // Act
+        pipeline.run(submit -> List.of(1, 2, 3).forEach(submit));
+
+        // Assert
+        assertThat(received).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void testRun_StagesOverlap() {
+        // Arrange: the first item cannot leave the last stage until the second item reached the
+        // first stage, which only works if stages run concurrently
+        CountDownLatch secondItemStarted = new CountDownLatch(1);
+        StagedPipeline<Integer> pipeline = StagedPipeline.<Integer>builder("test", 1)
+                .stage(stage("first", (Integer i, Consumer<Integer> emit) -> {
+                    if (i == 2) {
+                        secondItemStarted.countDown();
+                    }
+                    emit.accept(i);
+                }))
+                .stage(stage("last", (Integer i, Consumer<Void> emit) -> {
+                    if (i == 1) {
+                        assertThat(secondItemStarted.await(5, TimeUnit.SECONDS)).isTrue();
+                    }
+                }))
+                .build();
+
+        // Act
+        PipelineStats stats = pipeline.run(submit -> {
+            submit.accept(1);
+            submit.accept(2);
+        });
+
+        // Assert
+        assertThat(stats.stages().get(1).itemsIn()).isEqualTo(2);
+    }
+
+    @Test
+    void testRun_StageFailureAbortsPipeline() {
+        // Arrange
+        StagedPipeline<Integer> pipeline = StagedPipeline.<Integer>builder("test", 1)
+                .stage(stage("explode", (Integer i, Consumer<Void> emit) -> {
+                    throw new IllegalStateException("boom");
+                }))
+                .build();
+
+        // Act & Assert: the source keeps submitting, so it must be unblocked by the failure
+        assertThatThrownBy(() -> pipeline.run(submit -> {
+            for (int i = 0; i < 1000; i++) {
+                submit.accept(i);
+            }
+        }))
+                .isInstanceOf(StagedPipeline.PipelineException.class)
+                .hasRootCauseMessage("boom");
+    }
+
+    @Test
+    void testRun_SourceFailureAbortsPipeline() {
+        // Arrange
+        StagedPipeline<Integer> pipeline = StagedPipeline.<Integer>builder("test", 1)
+                .stage(stage("noop", (Integer i, Consumer<Void> emit) -> {
+                }))
+                .build();
+
+        // Act & Assert
+        assertThatThrownBy(() -> pipeline.run(submit -> {
+            submit.accept(1);
+            throw new IllegalArgumentException("extraction failed");
+        }))
+                .isInstanceOf(StagedPipeline.PipelineException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    private interface StageBody<I, O> {
+        void accept(I item, Consumer<O> emit) throws Exception;
+    }
+
+    private static <I, O> PipelineStage<I, O> stage(String name, StageBody<I, O> body) {
+        return new PipelineStage<>() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public void accept(I item, Consumer<O> emit) throws Exception {
+                body.accept(item, emit);
+            }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package com.erp.rag.ragplatform.worker.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for TokenBudgetBatcher.
+ * <p>
+ * Story 1.4 – AC3: Embedding requests are packed up to the token ceiling and item cap.
+ * </p>
+ */
+class TokenBudgetBatcherTest {
+
+    @Test
+    void testAdd_EmitsBeforeTokenCeilingIsExceeded() {
+        // Arrange: item value is its token count
+        List<List<Integer>> batches = new ArrayList<>();
+        TokenBudgetBatcher<Integer> batcher = new TokenBudgetBatcher<>(100, 10, Integer::intValue, batches::add);
+
+        // Act
+        for (int tokens : new int[] {4, 4, 3, 2, 6, 1}) {
+            batcher.add(tokens);
+        }
+        batcher.flush();
+
+        // Assert
+        assertThat(batches).containsExactly(List.of(4, 4), List.of(3, 2), List.of(6, 1));
+    }
+
+    @Test
+    void testAdd_EmitsFullBatchAtItemCap() {
+        // Arrange
+        List<List<Integer>> batches = new ArrayList<>();
+        TokenBudgetBatcher<Integer> batcher = new TokenBudgetBatcher<>(3, 1_000, Integer::intValue, batches::add);
+
+        // Act
+        for (int i = 1; i <= 7; i++) {
+            batcher.add(1);
+        }
+
+        // Assert: full batches go out without waiting for flush
+        assertThat(batches).hasSize(2).allSatisfy(b -> assertThat(b).hasSize(3));
+        batcher.flush();
+        assertThat(batches).hasSize(3);
+        assertThat(batches.get(2)).containsExactly(1);
+    }
+
+    @Test
+    void testAdd_OversizedItemIsEmittedAlone() {
+        // Arrange
+        List<List<Integer>> batches = new ArrayList<>();
+        TokenBudgetBatcher<Integer> batcher = new TokenBudgetBatcher<>(100, 10, Integer::intValue, batches::add);
+
+        // Act
+        batcher.add(2);
+        batcher.add(25);
+        batcher.add(3);
+        batcher.flush();
+
+        // Assert
+        assertThat(batches).containsExactly(List.of(2), List.of(25), List.of(3));
+    }
+
+    @Test
+    void testFlush_EmptyBatcherEmitsNothing() {
+        List<List<Integer>> batches = new ArrayList<>();
+        TokenBudgetBatcher<Integer> batcher = new TokenBudgetBatcher<>(10, 10, Integer::intValue, batches::add);
+
+        batcher.flush();
+
+        assertThat(batches).isEmpty();
+    }
+
+    @Test
+    void testConstructor_RejectsNonPositiveLimits() {
+        assertThatThrownBy(() -> new TokenBudgetBatcher<Integer>(0, 10, Integer::intValue, b -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBudgetBatcher<Integer>(10, 0, Integer::intValue, b -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -2,21 +2,33 @@ package com.erp.rag.ragplatform.worker.service;
 
 import com.erp.rag.ragplatform.worker.dao.DocumentExtractionDao;
 import com.erp.rag.ragplatform.worker.domain.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -35,12 +47,20 @@ class DocumentExtractorTest {
 
     private UUID companyId;
 
+    private SimpleMeterRegistry meterRegistry;
+
     @BeforeEach
     void setUp() {
-        extractor = new DocumentExtractor(dao);
+        meterRegistry = new SimpleMeterRegistry();
+        extractor = new DocumentExtractor(dao, meterRegistry, 4);
         companyId = UUID.randomUUID();
     }
 
+    @AfterEach
+    void tearDown() {
+        extractor.shutdown();
+    }
+
     @Test
     void testExtractAll_ReturnsAllDocumentTypes() {
         // Arrange
@@ -85,6 +105,70 @@ class DocumentExtractorTest {
         assertThat(documents.get(0)).isInstanceOf(InvoiceDocument.class);
     }
 
+    @Test
+    void testExtractFrom_TablesRunConcurrently() {
+        // Arrange: invoices only returns once bills has started, which deadlocks if sequential
+        CountDownLatch billsStarted = new CountDownLatch(1);
+        List<InvoiceDocument> invoices = List.of(createTestInvoice());
+        List<BillDocument> bills = List.of(createTestBill());
+        when(dao.extractInvoices(eq(companyId), any())).thenAnswer(inv -> {
+            assertThat(billsStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            return invoices;
+        });
+        when(dao.extractBills(eq(companyId), any())).thenAnswer(inv -> {
+            billsStarted.countDown();
+            return bills;
+        });
+
+        // Act
+        List<ErpDocument> documents = extractor.extractFrom(companyId, List.of("invoices", "bills"), null);
+
+        // Assert: results keep table order and each table is timed
+        assertThat(documents).containsExactly(invoices.get(0), bills.get(0));
+        assertThat(meterRegistry.get("document_extraction_latency_seconds").tag("table", "invoices").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void testStreamFrom_PushesEachRowToSink() {
+        // Arrange
+        InvoiceDocument invoice = createTestInvoice();
+        BillDocument bill = createTestBill();
+        doAnswer(inv -> {
+            Consumer<InvoiceDocument> consumer = inv.getArgument(2);
+            consumer.accept(invoice);
+            return null;
+        }).when(dao).streamInvoices(eq(companyId), any(), any());
+        doAnswer(inv -> {
+            Consumer<BillDocument> consumer = inv.getArgument(2);
+            consumer.accept(bill);
+            return null;
+        }).when(dao).streamBills(eq(companyId), any(), any());
+
+        List<ErpDocument> received = new ArrayList<>();
+
+        // Act
+        long count = extractor.streamFrom(companyId, List.of("invoices", "bills"), null, received::add);
+
+        // Assert: tables interleave, so only membership is deterministic
+        assertThat(count).isEqualTo(2);
+        assertThat(received).containsExactlyInAnyOrder(invoice, bill);
+        verify(dao, never()).extractInvoices(any(), any());
+    }
+
+    @Test
+    void testStreamFrom_WrapsDataAccessFailures() {
+        // Arrange
+        doThrow(new DataAccessResourceFailureException("connection reset"))
+                .when(dao).streamInvoices(eq(companyId), any(), any());
+
+        // Act & Assert
+        assertThatThrownBy(() -> extractor.streamFrom(companyId, List.of("invoices"), null, doc -> {
+        }))
+                .isInstanceOf(DocumentExtractor.DocumentExtractionException.class)
+                .hasCauseInstanceOf(DataAccessResourceFailureException.class);
+    }
+
     @Test
     void testInvoiceDocument_RawTextGeneration() {
         // Arrange
@@ -0,0 +1,195 @@
+package com.erp.rag.ragplatform.worker.service;
+
+import com.erp.rag.ragplatform.worker.dao.EmbeddingMigrationDao;
+import com.erp.rag.ragplatform.worker.domain.EmbeddingModelMigration;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingCacheService;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingProviderResolver;
+import com.erp.rag.ragplatform.worker.service.embedding.EmbeddingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for EmbeddingMigrationService.
+ * <p>
+ * Story 1.4 – AC3: backfill, coverage check and cutover of an embedding model migration.
+ * </p>
+ */
+class EmbeddingMigrationServiceTest {
+
+    private EmbeddingMigrationDao dao;
+    private EmbeddingProviderResolver resolver;
+    private EmbeddingCacheService cache;
+    private EmbeddingService azure;
+    private EmbeddingService local;
+    private VectorDocumentsListener listener;
+    private EmbeddingMigrationService service;
+
+    @BeforeEach
+    void setUp() {
+        dao = mock(EmbeddingMigrationDao.class);
+        resolver = mock(EmbeddingProviderResolver.class);
+        cache = mock(EmbeddingCacheService.class);
+        listener = mock(VectorDocumentsListener.class);
+        azure = provider("azure", "text-embedding-3-large");
+        local = provider("local", "local/vi.vec");
+        when(resolver.byName("azure")).thenReturn(azure);
+        when(resolver.byName("local")).thenReturn(local);
+        when(resolver.getDefaultProvider()).thenReturn(azure);
+        service = new EmbeddingMigrationService(dao, resolver, cache, List.of(listener), new SimpleMeterRegistry(),
+                2, 0, 5000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRun_BackfillsValidatesIndexesAndCutsOver() throws Exception {
+        // Arrange: three pending documents, one without text
+        EmbeddingModelMigration migration = migration(EmbeddingModelMigration.Status.BACKFILLING);
+        when(dao.coverage()).thenReturn(new EmbeddingMigrationDao.Coverage(3, 0),
+                new EmbeddingMigrationDao.Coverage(3, 3));
+        when(dao.findPending(0, 2)).thenReturn(
+                List.of(pending(1, "Invoice INV-1"), pending(2, "")),
+                List.of());
+        when(dao.findPending(2, 2)).thenReturn(List.of(pending(3, "Bill B-7")));
+        when(dao.findPending(3, 2)).thenReturn(List.of());
+        when(dao.writeShadow(anyList(), anyList()))
+                .thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        when(cache.generateEmbeddings(eq(local), anyList()))
+                .thenAnswer(invocation -> embeddings(invocation.getArgument(1)));
+        when(dao.findEmbeddingIndexes()).thenReturn(List.of("idx_vector_documents_embedding_hnsw"));
+
+        // Act
+        service.run(migration, local);
+
+        // Assert: the document without text keeps its current vector
+        ArgumentCaptor<List<float[]>> firstPage = ArgumentCaptor.forClass(List.class);
+        verify(cache).generateEmbeddings(local, List.of("Invoice INV-1"));
+        verify(dao).writeShadow(eq(List.of(1L, 2L)), firstPage.capture());
+        assertThat(firstPage.getValue().get(0)).containsExactly(13f);
+        assertThat(firstPage.getValue().get(1)).isNull();
+        verify(dao).writeShadow(eq(List.of(3L)), any());
+
+        InOrder order = inOrder(dao, resolver, listener);
+        order.verify(dao).createPendingIndex();
+        order.verify(dao).addShadowConstraint();
+        order.verify(dao).validateShadowConstraint();
+        order.verify(dao).updateStatus(migration.id(), EmbeddingModelMigration.Status.INDEXING, null);
+        order.verify(dao).buildShadowIndexes();
+        order.verify(dao).cutover(migration.id(), List.of("idx_vector_documents_embedding_hnsw"));
+        order.verify(resolver).switchDefault(local);
+        order.verify(listener).embeddingModelChanged();
+        assertThat(service.shadowTarget()).isEmpty();
+    }
+
+    @Test
+    void testRun_IncompleteCoverageFailsWithoutCutover() {
+        // Arrange: a row is still missing a target vector after the catch-up pass
+        EmbeddingModelMigration migration = migration(EmbeddingModelMigration.Status.BACKFILLING);
+        when(dao.coverage()).thenReturn(new EmbeddingMigrationDao.Coverage(3, 2));
+        when(dao.findPending(anyLong(), anyInt())).thenReturn(List.of());
+
+        // Act
+        service.run(migration, local);
+
+        // Assert
+        verify(dao).updateStatus(eq(migration.id()), eq(EmbeddingModelMigration.Status.FAILED), any());
+        verify(dao).dropShadowObjects();
+        verify(dao, never()).cutover(any(), anyList());
+        verify(resolver, never()).switchDefault(any());
+        verify(listener, never()).embeddingModelChanged();
+    }
+
+    @Test
+    void testRefresh_AppliesCutoverOfAnotherInstanceOnce() {
+        // Arrange: another instance completed the migration
+        EmbeddingModelMigration complete = migration(EmbeddingModelMigration.Status.COMPLETE);
+        when(dao.findActive()).thenReturn(Optional.empty());
+        when(dao.findLatestComplete()).thenReturn(Optional.of(complete));
+
+        // Act
+        service.refresh();
+        service.refresh();
+
+        // Assert
+        verify(resolver, times(1)).switchDefault(local);
+        verify(listener, times(1)).embeddingModelChanged();
+    }
+
+    @Test
+    void testRun_ResumesIndexingMigrationWithoutBackfill() {
+        EmbeddingModelMigration migration = migration(EmbeddingModelMigration.Status.INDEXING);
+        when(dao.findEmbeddingIndexes()).thenReturn(List.of("idx_vector_documents_embedding_hnsw"));
+        when(dao.coverage()).thenReturn(new EmbeddingMigrationDao.Coverage(3, 3));
+
+        service.run(migration, local);
+
+        verify(dao, never()).findPending(anyLong(), anyInt());
+        verify(dao).cutover(migration.id(), List.of("idx_vector_documents_embedding_hnsw"));
+    }
+
+    @Test
+    void testStart_RejectsCurrentModelAndOtherActiveTarget() {
+        // Same model as the stored vectors
+        assertThatThrownBy(() -> service.start("azure"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("text-embedding-3-large");
+
+        // A migration to another provider is already running
+        EmbeddingModelMigration active = new EmbeddingModelMigration(UUID.randomUUID(), "local/vi.vec", "azure",
+                "text-embedding-3-large", EmbeddingModelMigration.Status.BACKFILLING, 3, 1, null,
+                OffsetDateTime.now(), null);
+        when(dao.findActive()).thenReturn(Optional.of(active));
+        assertThatThrownBy(() -> service.start("local"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("already backfilling");
+        verify(dao, never()).insert(any(), any(), any(), anyLong());
+    }
+
+    private static EmbeddingModelMigration migration(EmbeddingModelMigration.Status status) {
+        return new EmbeddingModelMigration(UUID.randomUUID(), "text-embedding-3-large", "local", "local/vi.vec",
+                status, 3, 0, null, OffsetDateTime.now(), null);
+    }
+
+    private static EmbeddingMigrationDao.PendingDocument pending(long id, String text) {
+        return new EmbeddingMigrationDao.PendingDocument(id, text);
+    }
+
+    private static EmbeddingCacheService.CachedEmbeddings embeddings(List<String> texts) {
+        List<float[]> vectors = texts.stream().map(text -> new float[] {text.length()}).toList();
+        return new EmbeddingCacheService.CachedEmbeddings(vectors, 0, 0, texts.size());
+    }
+
+    private static EmbeddingService provider(String name, String modelId) {
+        EmbeddingService service = mock(EmbeddingService.class);
+        when(service.getProviderName()).thenReturn(name);
+        when(service.getModelId()).thenReturn(modelId);
+        return service;
+    }
+}
@@ -0,0 +1,76 @@
+package com.erp.rag.ragplatform.worker.service;
+
+import com.erp.rag.supabase.vector.VectorPartitionDao;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for VectorPartitionService.
+ * <p>
+ * Story 1.3 – AC2: large tenants are moved out of the shared default partition into a
+ * dedicated partition.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@DisplayName("Story 1.3: Tenant vector partitions")
+class VectorPartitionServiceTest {
+
+    private VectorPartitionDao partitionDao;
+    private SimpleMeterRegistry meterRegistry;
+    private VectorPartitionService service;
+
+    @BeforeEach
+    void setUp() {
+        partitionDao = mock(VectorPartitionDao.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new VectorPartitionService(partitionDao, meterRegistry, 1000);
+    }
+
+    @Test
+    @DisplayName("Should reject moves before partitioning and for tenants already moved")
+    void testMove_Rejected() {
+        when(partitionDao.isPartitioned()).thenReturn(false);
+        assertThatThrownBy(() -> service.move(42L)).isInstanceOf(IllegalStateException.class);
+
+        when(partitionDao.isPartitioned()).thenReturn(true);
+        when(partitionDao.findPartitions("vector_documents")).thenReturn(List.of(
+                new VectorPartitionDao.Partition("vector_documents_c42", "FOR VALUES IN ('42')", false, 0)));
+        assertThatThrownBy(() -> service.move(42L)).hasMessageContaining("vector_documents_c42");
+        verify(partitionDao, never()).createTenantPartition(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should list hash partitions under the default partition and count outcomes")
+    void testPartitionsAndRun() {
+        when(partitionDao.findPartitions("vector_documents")).thenReturn(List.of(
+                new VectorPartitionDao.Partition("vector_documents_c42", "FOR VALUES IN ('42')", false, 500_000),
+                new VectorPartitionDao.Partition("vector_documents_default", "DEFAULT", true, 0)));
+        when(partitionDao.findPartitions("vector_documents_default")).thenReturn(List.of(
+                new VectorPartitionDao.Partition("vector_documents_h00", "FOR VALUES WITH (modulus 2, remainder 0)",
+                        false, 900),
+                new VectorPartitionDao.Partition("vector_documents_h01", "FOR VALUES WITH (modulus 2, remainder 1)",
+                        false, 700)));
+
+        assertThat(service.partitions()).extracting(VectorPartitionDao.Partition::name).containsExactly(
+                "vector_documents_c42", "vector_documents_default", "vector_documents_h00", "vector_documents_h01");
+
+        when(partitionDao.createTenantPartition(7L)).thenReturn("vector_documents_c7");
+        when(partitionDao.createTenantPartition(8L)).thenThrow(new IllegalStateException("lock timeout"));
+        service.run(7L);
+        service.run(8L);
+
+        assertThat(meterRegistry.get("rag_vector_partition_moves_total").tag("outcome", "moved").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("rag_vector_partition_moves_total").tag("outcome", "failed").counter().count())
+                .isEqualTo(1.0);
+    }
+}
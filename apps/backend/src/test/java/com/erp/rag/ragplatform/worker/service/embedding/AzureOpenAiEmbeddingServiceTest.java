@@ -0,0 +1,62 @@
+package com.erp.rag.ragplatform.worker.service.embedding;
+
+import com.erp.rag.ragplatform.worker.client.AzureOpenAiEmbeddingClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for AzureOpenAiEmbeddingService without an endpoint.
+ * <p>
+ * Story 1.4 – AC3: a missing endpoint fails startup unless stub embeddings are explicitly
+ * enabled; the reported dimension follows {@code embedding.azure.dimensions}.
+ * </p>
+ */
+class AzureOpenAiEmbeddingServiceTest {
+
+    @Test
+    void testConstructor_RejectsMissingEndpointWithoutStubFlag() {
+        AzureOpenAiEmbeddingClient client = client("", 1536);
+
+        assertThatThrownBy(() -> new AzureOpenAiEmbeddingService(client, new SimpleMeterRegistry(), 100, 50_000,
+                false))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("embedding.azure.stub-enabled");
+    }
+
+    @Test
+    void testGenerateEmbeddings_ReturnsDeterministicStubsWhenEnabled() throws Exception {
+        // Arrange
+        AzureOpenAiEmbeddingService service = new AzureOpenAiEmbeddingService(client("", 1536),
+                new SimpleMeterRegistry(), 100, 50_000, true);
+
+        // Act
+        List<float[]> embeddings = service.generateEmbeddings(List.of("Hóa đơn HD-001", "Hóa đơn HD-001"));
+
+        // Assert
+        assertThat(embeddings).hasSize(2);
+        assertThat(embeddings.get(0)).hasSize(service.getEmbeddingDimension());
+        assertThat(embeddings.get(0)).containsExactly(embeddings.get(1));
+    }
+
+    @Test
+    void testGetEmbeddingDimension_FollowsConfiguredDimensions() throws Exception {
+        // Arrange
+        AzureOpenAiEmbeddingService service = new AzureOpenAiEmbeddingService(client("", 512),
+                new SimpleMeterRegistry(), 100, 50_000, true);
+
+        // Act & Assert
+        assertThat(service.getEmbeddingDimension()).isEqualTo(512);
+        assertThat(service.generateEmbedding("Phiếu chi PC-002")).hasSize(512);
+    }
+
+    private static AzureOpenAiEmbeddingClient client(String endpoint, int dimensions) {
+        return new AzureOpenAiEmbeddingClient(new ObjectMapper(), endpoint, "text-embedding-3-large",
+                "2024-02-01", "", dimensions, true, 2_000, 5_000);
+    }
+}
@@ -0,0 +1,127 @@
+package com.erp.rag.ragplatform.worker.service.embedding;
+
+import com.erp.rag.ragplatform.worker.dao.EmbeddingCacheDao;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for EmbeddingCacheService.
+ * <p>
+ * Story 1.4 – AC3: unchanged texts reuse cached embeddings instead of calling the API.
+ * </p>
+ */
+@ExtendWith(MockitoExtension.class)
+class EmbeddingCacheServiceTest {
+
+    private static final String MODEL = "text-embedding-3-large";
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    @Mock
+    private EmbeddingDispatcher dispatcher;
+
+    @Mock
+    private EmbeddingCacheDao cacheDao;
+
+    private EmbeddingCacheService cache;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(embeddingService.getModelId()).thenReturn(MODEL);
+        cache = new EmbeddingCacheService(embeddingService, dispatcher, cacheDao, new SimpleMeterRegistry(), true, 100);
+    }
+
+    @Test
+    void generateEmbeddings_DatabaseHitSkipsApiCall() throws Exception {
+        float[] stored = {0.1f, 0.2f};
+        when(cacheDao.findByHashes(eq(MODEL), anyCollection()))
+                .thenReturn(Map.of(hash("Hóa đơn 1"), stored));
+        when(dispatcher.embed(embeddingService, List.of("Hóa đơn 2")))
+                .thenReturn(List.of(new float[] {0.3f, 0.4f}));
+
+        EmbeddingCacheService.CachedEmbeddings result = cache.generateEmbeddings(List.of("Hóa đơn 1", "Hóa đơn 2"));
+
+        assertThat(result.embeddings()).hasSize(2);
+        assertThat(result.embeddings().get(0)).isSameAs(stored);
+        assertThat(result.embeddings().get(1)).containsExactly(0.3f, 0.4f);
+        assertThat(result.databaseHits()).isEqualTo(1);
+        assertThat(result.embedded()).isEqualTo(1);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<ByteBuffer, float[]>> saved = ArgumentCaptor.forClass(Map.class);
+        verify(cacheDao).insertAll(eq(MODEL), saved.capture());
+        assertThat(saved.getValue()).containsOnlyKeys(hash("Hóa đơn 2"));
+    }
+
+    @Test
+    void generateEmbeddings_SecondCallIsServedFromMemory() throws Exception {
+        when(cacheDao.findByHashes(eq(MODEL), anyCollection())).thenReturn(Map.of());
+        when(dispatcher.embed(eq(embeddingService), anyList())).thenReturn(List.of(new float[] {1f}));
+
+        cache.generateEmbeddings(List.of("Phiếu chi 7"));
+        EmbeddingCacheService.CachedEmbeddings second = cache.generateEmbeddings(List.of("Phiếu chi 7"));
+
+        assertThat(second.memoryHits()).isEqualTo(1);
+        assertThat(second.embedded()).isZero();
+        verify(dispatcher, times(1)).embed(eq(embeddingService), anyList());
+        verify(cacheDao, times(1)).findByHashes(any(), anyCollection());
+    }
+
+    @Test
+    void generateEmbeddings_RepeatedTextIsEmbeddedOnce() throws Exception {
+        when(cacheDao.findByHashes(eq(MODEL), anyCollection())).thenReturn(Map.of());
+        when(dispatcher.embed(embeddingService, List.of("A", "B"))).thenReturn(List.of(new float[] {1f}, new float[] {2f}));
+
+        EmbeddingCacheService.CachedEmbeddings result = cache.generateEmbeddings(List.of("A", "B", "A"));
+
+        assertThat(result.embeddings().get(2)).isSameAs(result.embeddings().get(0));
+        assertThat(result.embedded()).isEqualTo(2);
+        assertThat(result.hits()).isEqualTo(1);
+    }
+
+    @Test
+    void generateEmbeddings_CacheFailureFallsBackToApi() throws Exception {
+        when(cacheDao.findByHashes(eq(MODEL), anyCollection())).thenThrow(new RuntimeException("connection refused"));
+        doThrow(new RuntimeException("connection refused")).when(cacheDao).insertAll(eq(MODEL), anyMap());
+        when(dispatcher.embed(embeddingService, List.of("A"))).thenReturn(List.of(new float[] {1f}));
+
+        EmbeddingCacheService.CachedEmbeddings result = cache.generateEmbeddings(List.of("A"));
+
+        assertThat(result.embeddings()).hasSize(1);
+        assertThat(result.embedded()).isEqualTo(1);
+    }
+
+    @Test
+    void generateEmbeddings_DisabledBypassesCache() throws Exception {
+        EmbeddingCacheService disabled = new EmbeddingCacheService(
+                embeddingService, dispatcher, cacheDao, new SimpleMeterRegistry(), false, 100);
+        when(dispatcher.embed(embeddingService, List.of("A"))).thenReturn(List.of(new float[] {1f}));
+
+        EmbeddingCacheService.CachedEmbeddings result = disabled.generateEmbeddings(List.of("A"));
+
+        assertThat(result.embedded()).isEqualTo(1);
+        verifyNoInteractions(cacheDao);
+    }
+
+    private static ByteBuffer hash(String text) {
+        return ByteBuffer.wrap(EmbeddingCacheService.sha256(text));
+    }
+}
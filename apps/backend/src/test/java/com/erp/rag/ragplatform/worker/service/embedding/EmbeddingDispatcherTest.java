@@ -0,0 +1,201 @@
+package com.erp.rag.ragplatform.worker.service.embedding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for EmbeddingDispatcher.
+ * <p>
+ * Story 1.4 – AC3, AC7: adaptive request concurrency, Retry-After handling and retries
+ * limited to transient failures.
+ * </p>
+ */
+class EmbeddingDispatcherTest {
+
+    @Test
+    void testEmbed_RetriesTransientFailure() throws Exception {
+        // Arrange
+        ScriptedEmbeddingService service = new ScriptedEmbeddingService();
+        service.failures.add(new EmbeddingService.EmbeddingGenerationException("reset", new IOException("reset")));
+        service.failures.add(new EmbeddingService.EmbeddingGenerationException("bad gateway", 502, null));
+        EmbeddingDispatcher dispatcher = dispatcher(service, 2, 8);
+
+        // Act
+        List<float[]> result = dispatcher.embed(List.of("Hóa đơn"));
+
+        // Assert
+        assertThat(result).hasSize(1);
+        assertThat(service.calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    void testEmbed_DoesNotRetryPermanentFailure() {
+        // Arrange
+        ScriptedEmbeddingService service = new ScriptedEmbeddingService();
+        service.failures.add(new EmbeddingService.EmbeddingGenerationException("bad request", 400, null));
+        EmbeddingDispatcher dispatcher = dispatcher(service, 2, 8);
+
+        // Act & Assert
+        assertThatThrownBy(() -> dispatcher.embed(List.of("x")))
+                .isInstanceOf(EmbeddingService.EmbeddingGenerationException.class)
+                .hasMessage("bad request");
+        assertThat(service.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testEmbed_DoesNotRetryInvalidArgument() {
+        // Arrange
+        ScriptedEmbeddingService service = new ScriptedEmbeddingService();
+        service.invalid = true;
+        EmbeddingDispatcher dispatcher = dispatcher(service, 2, 8);
+
+        // Act & Assert
+        assertThatThrownBy(() -> dispatcher.embed(List.of("x"))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(service.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testEmbed_HonorsRetryAfterAndHalvesLimit() throws Exception {
+        // Arrange
+        ScriptedEmbeddingService service = new ScriptedEmbeddingService();
+        service.failures.add(new EmbeddingService.EmbeddingGenerationException("throttled", 429, Duration.ofMillis(200)));
+        EmbeddingDispatcher dispatcher = dispatcher(service, 4, 8);
+
+        // Act
+        long start = System.nanoTime();
+        dispatcher.embed(List.of("x"));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(200);
+        assertThat(service.calls.get()).isEqualTo(2);
+        assertThat(dispatcher.currentLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void testEmbed_GrowsLimitAdditivelyWhileHealthy() throws Exception {
+        // Arrange
+        EmbeddingDispatcher dispatcher = dispatcher(new ScriptedEmbeddingService(), 2, 4);
+
+        // Act: one window of 2 successes adds 1, the next window of 3 adds 1 more
+        for (int i = 0; i < 5; i++) {
+            dispatcher.embed(List.of("x"));
+        }
+
+        // Assert
+        assertThat(dispatcher.currentLimit()).isEqualTo(4);
+        for (int i = 0; i < 10; i++) {
+            dispatcher.embed(List.of("x"));
+        }
+        assertThat(dispatcher.currentLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void testEmbed_NeverExceedsLimitInFlight() throws Exception {
+        // Arrange
+        ScriptedEmbeddingService service = new ScriptedEmbeddingService();
+        service.latencyMs = 20;
+        EmbeddingDispatcher dispatcher = dispatcher(service, 3, 3);
+
+        // Act
+        List<Future<List<float[]>>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 20; i++) {
+                results.add(executor.submit(() -> dispatcher.embed(List.of("x"))));
+            }
+        }
+
+        // Assert
+        for (Future<List<float[]>> result : results) {
+            assertThat(result.get()).hasSize(1);
+        }
+        assertThat(service.maxConcurrent.get()).isBetween(2, 3);
+    }
+
+    private static EmbeddingDispatcher dispatcher(EmbeddingService service, int initial, int max) {
+        return new EmbeddingDispatcher(service, new SimpleMeterRegistry(), initial, 1, max, 5_000, 4, 1, 10);
+    }
+
+    /**
+     * Returns queued failures first, then one unit embedding per text.
+     */
+    private static final class ScriptedEmbeddingService implements EmbeddingService {
+
+        private final Deque<EmbeddingGenerationException> failures = new ArrayDeque<>();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        private volatile boolean invalid;
+        private volatile long latencyMs;
+
+        @Override
+        public List<float[]> generateEmbeddings(List<String> texts) throws EmbeddingGenerationException {
+            calls.incrementAndGet();
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                if (invalid) {
+                    throw new IllegalArgumentException("Batch too large");
+                }
+                EmbeddingGenerationException failure;
+                synchronized (failures) {
+                    failure = failures.poll();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                if (latencyMs > 0) {
+                    Thread.sleep(latencyMs);
+                }
+                return texts.stream().map(t -> new float[] {1f}).toList();
+            } catch (InterruptedException e) {
+                throw new EmbeddingGenerationException("interrupted", e);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+
+        @Override
+        public float[] generateEmbedding(String text) throws EmbeddingGenerationException {
+            return generateEmbeddings(List.of(text)).get(0);
+        }
+
+        @Override
+        public int getEmbeddingDimension() {
+            return 1;
+        }
+
+        @Override
+        public String getModelId() {
+            return "test";
+        }
+
+        @Override
+        public String getProviderName() {
+            return "test";
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return 100;
+        }
+
+        @Override
+        public int getMaxTokensPerRequest() {
+            return 10_000;
+        }
+    }
+}
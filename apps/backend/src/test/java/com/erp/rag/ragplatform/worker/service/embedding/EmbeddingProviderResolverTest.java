@@ -0,0 +1,108 @@
+package com.erp.rag.ragplatform.worker.service.embedding;
+
+import com.erp.rag.ragplatform.worker.domain.EmbeddingBatch;
+import com.erp.rag.ragplatform.worker.domain.VectorCompanyIds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for EmbeddingProviderResolver.
+ * <p>
+ * Story 1.4 – AC3: provider selection per tenant and per batch type.
+ * </p>
+ */
+class EmbeddingProviderResolverTest {
+
+    private static final UUID TENANT_LOCAL = UUID.fromString("00000000-0000-0000-0000-000000000042");
+    private static final UUID TENANT_AZURE = UUID.fromString("00000000-0000-0000-0000-000000000007");
+    private static final UUID OTHER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    private EmbeddingService azure;
+    private EmbeddingService local;
+
+    @BeforeEach
+    void setUp() {
+        azure = provider("azure", "text-embedding-3-large");
+        local = provider("local", "local/vi.vec");
+    }
+
+    @Test
+    void testForQuery_UsesTenantOverrideOrDefault() {
+        EmbeddingProviderResolver resolver = new EmbeddingProviderResolver(List.of(azure, local),
+                "azure", TENANT_LOCAL + ":local, " + TENANT_AZURE + ":azure", "", false);
+
+        assertThat(resolver.forQuery(VectorCompanyIds.of(TENANT_LOCAL))).isSameAs(local);
+        assertThat(resolver.forQuery(VectorCompanyIds.of(TENANT_AZURE))).isSameAs(azure);
+        assertThat(resolver.forQuery(VectorCompanyIds.of(OTHER))).isSameAs(azure);
+        assertThat(resolver.forQuery(null)).isSameAs(azure);
+        assertThat(resolver.forBatch(TENANT_LOCAL, null)).isSameAs(local);
+    }
+
+    @Test
+    void testForBatch_WorkloadOverridesTenant() {
+        EmbeddingProviderResolver resolver = new EmbeddingProviderResolver(List.of(azure, local),
+                "azure", TENANT_LOCAL + ":local", "full:local", true);
+
+        assertThat(resolver.forBatch(OTHER, EmbeddingBatch.BatchType.FULL)).isSameAs(local);
+        assertThat(resolver.forBatch(OTHER, EmbeddingBatch.BatchType.INCREMENTAL)).isSameAs(azure);
+        assertThat(resolver.forBatch(TENANT_LOCAL, EmbeddingBatch.BatchType.INCREMENTAL)).isSameAs(local);
+    }
+
+    @Test
+    void testConstructor_RejectsUnknownProviderAndMalformedEntry() {
+        assertThatThrownBy(() -> new EmbeddingProviderResolver(List.of(azure), "azure", TENANT_LOCAL + ":local",
+                "", false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown embedding provider 'local'");
+        assertThatThrownBy(() -> new EmbeddingProviderResolver(List.of(azure), "azure", "42:azure", "", false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid company UUID '42'");
+        assertThatThrownBy(() -> new EmbeddingProviderResolver(List.of(azure), "azure", "", "full", false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("embedding.provider.workloads");
+    }
+
+    @Test
+    void testConstructor_RejectsWorkloadModelMismatchUnlessAllowed() {
+        assertThatThrownBy(() -> new EmbeddingProviderResolver(List.of(azure, local), "azure", "", "full:local", false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("full batches embed with local/vi.vec")
+                .hasMessageContaining("embedding.provider.allow-mixed-models");
+        // Matches the default but not a tenant override
+        assertThatThrownBy(() -> new EmbeddingProviderResolver(List.of(azure, local), "azure",
+                TENANT_LOCAL + ":local", "full:azure", false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("queried with local/vi.vec");
+
+        EmbeddingProviderResolver resolver = new EmbeddingProviderResolver(List.of(azure, local), "local", "",
+                "full:local", false);
+        assertThat(resolver.forBatch(OTHER, EmbeddingBatch.BatchType.FULL)).isSameAs(local);
+    }
+
+    @Test
+    void testSwitchDefault_ReplacesDefaultAndDropsOverrides() {
+        EmbeddingProviderResolver resolver = new EmbeddingProviderResolver(List.of(azure, local),
+                "azure", TENANT_AZURE + ":azure", "full:azure", false);
+
+        resolver.switchDefault(resolver.byName("local"));
+
+        assertThat(resolver.getDefaultProvider()).isSameAs(local);
+        assertThat(resolver.forQuery(VectorCompanyIds.of(TENANT_AZURE))).isSameAs(local);
+        assertThat(resolver.forBatch(TENANT_AZURE, EmbeddingBatch.BatchType.FULL)).isSameAs(local);
+    }
+
+    private static EmbeddingService provider(String name, String modelId) {
+        EmbeddingService service = mock(EmbeddingService.class);
+        when(service.getProviderName()).thenReturn(name);
+        when(service.getModelId()).thenReturn(modelId);
+        return service;
+    }
+}
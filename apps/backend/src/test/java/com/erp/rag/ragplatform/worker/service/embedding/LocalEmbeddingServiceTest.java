@@ -0,0 +1,167 @@
+package com.erp.rag.ragplatform.worker.service.embedding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Unit tests for LocalEmbeddingService with a tiny word-vector model.
+ * <p>
+ * Story 1.4 – AC3: in-process embeddings, unaccented fallback, padding to the vector column
+ * width and parallel batches.
+ * </p>
+ */
+class LocalEmbeddingServiceTest {
+
+    private static final String MODEL = """
+            6 4
+            hóa 1 0 0 0
+            đơn 0.9 0.1 0 0
+            invoice 0.95 0.05 0 0
+            phiếu 0 0 1 0
+            chi 0 0 0.9 0.1
+            lương 0 0 0 1
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private LocalEmbeddingService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        service = service(write("vi-test.vec", MODEL.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void testGenerateEmbedding_PadsUnitVectorToOutputDimension() throws Exception {
+        // Act
+        float[] embedding = service.generateEmbedding("Hóa đơn HD-001");
+
+        // Assert
+        assertThat(embedding).hasSize(1536);
+        assertThat(norm(embedding)).isCloseTo(1.0, within(1e-5));
+        for (int d = 4; d < embedding.length; d++) {
+            assertThat(embedding[d]).isZero();
+        }
+        assertThat(service.getModelId()).isEqualTo("local/vi-test.vec");
+        assertThat(service.isRemote()).isFalse();
+    }
+
+    @Test
+    void testGenerateEmbedding_RelatedTextsAreCloser() throws Exception {
+        // Act
+        float[] invoice = service.generateEmbedding("Hóa đơn bán hàng");
+        float[] invoiceEn = service.generateEmbedding("Invoice");
+        float[] payment = service.generateEmbedding("Phiếu chi");
+
+        // Assert
+        assertThat(cosine(invoice, invoiceEn)).isGreaterThan(cosine(invoice, payment));
+    }
+
+    @Test
+    void testGenerateEmbedding_UnaccentedWordsMatchVocabulary() throws Exception {
+        assertThat(service.generateEmbedding("hoa don")).containsExactly(service.generateEmbedding("Hóa đơn"));
+    }
+
+    @Test
+    void testGenerateEmbedding_UnknownWordsUseTrigrams() throws Exception {
+        // Act
+        float[] first = service.generateEmbedding("XYZ-42");
+        float[] second = service.generateEmbedding("QRS-17");
+
+        // Assert
+        assertThat(norm(first)).isCloseTo(1.0, within(1e-5));
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    void testGenerateEmbeddings_ParallelBatchMatchesSingleCalls() throws Exception {
+        // Arrange
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            texts.add(i % 2 == 0 ? "Hóa đơn " + i : "Phiếu chi lương " + i);
+        }
+
+        // Act
+        List<float[]> batch = service.generateEmbeddings(texts);
+
+        // Assert
+        assertThat(batch).hasSize(100);
+        for (int i = 0; i < texts.size(); i++) {
+            assertThat(batch.get(i)).containsExactly(service.generateEmbedding(texts.get(i)));
+        }
+    }
+
+    @Test
+    void testLoad_ReadsGzipModel() throws Exception {
+        // Arrange
+        Path gz = tempDir.resolve("vi-test.vec.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+            out.write(MODEL.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Act
+        LocalEmbeddingService gzipped = service(gz);
+
+        // Assert
+        assertThat(gzipped.generateEmbedding("phiếu chi")).containsExactly(service.generateEmbedding("phiếu chi"));
+        gzipped.close();
+    }
+
+    @Test
+    void testLoad_RejectsMissingOrMalformedModel() throws IOException {
+        assertThatThrownBy(() -> service(tempDir.resolve("missing.vec")))
+                .isInstanceOf(UncheckedIOException.class);
+
+        Path malformed = write("bad.vec", "2 3\nhóa 1 0\n".getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> service(malformed))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("line 2");
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    private static LocalEmbeddingService service(Path model) {
+        return new LocalEmbeddingService(new SimpleMeterRegistry(), model.toString(), "", 1536, 4, 256, 1_000_000);
+    }
+
+    private static double norm(float[] v) {
+        double sum = 0;
+        for (float x : v) {
+            sum += x * x;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot / (norm(a) * norm(b));
+    }
+}
@@ -69,6 +69,7 @@ class SupabaseGatewayIntegrationTest {
         registry.add("spring.datasource.hikari.connection-init-sql",
                 () -> "SET search_path TO public,extensions,accounting; SET SESSION CHARACTERISTICS AS TRANSACTION READ ONLY");
         registry.add("spring.liquibase.enabled", () -> "false");
+        registry.add("embedding.azure.stub-enabled", () -> "true");
     }
 
     @Test
@@ -1,5 +1,6 @@
 package com.erp.rag.supabase.performance;
 
+import com.erp.rag.supabase.vector.VectorQuantization;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import liquibase.Contexts;
@@ -30,6 +31,8 @@ import static org.assertj.core.api.Assertions.assertThat;
  * Story 1.3 – AC3: Validate P95 latency ≤ 1500ms for top-10 retrieval across
  * 10K, 50K, 100K vectors.
  * Story 1.3 – AC7: Record metrics for index tuning and regression tracking.
+ * Story 1.3 – AC3: Compare index size, build time and recall of the quantized
+ * (halfvec / binary) candidate indexes with full-precision re-ranking.
  * 
  * HNSW Parameters:
  * - m: number of connections in the graph (default: 16, range: 2-100)
@@ -67,6 +70,36 @@ class VectorPerformanceBenchmarkTest {
     private static final int DATASET_50K = 50_000;
     private static final int DATASET_100K = 100_000;
 
+    private static final String HNSW_INDEX = "idx_vector_documents_embedding_hnsw";
+
+    // Same shape as VectorSearchDao#findSimilar: order by the operator
+    // expression so it matches the vector_cosine_ops index
+    private static final String COSINE_TOP_K_SQL = "SELECT id, " +
+            "embedding <=> ?::vector AS distance, " +
+            "1 - (embedding <=> ?::vector) AS similarity " +
+            "FROM accounting.vector_documents " +
+            "WHERE company_id = ? AND deleted_at IS NULL " +
+            "ORDER BY embedding <=> ?::vector LIMIT ?";
+
+    // VectorSearchDao re-rank shape with positional parameters: candidates from
+    // the quantized index, exact cosine distance on the stored vectors
+    private static final String RERANK_SQL = "WITH candidates AS (" +
+            "SELECT id, embedding FROM accounting.vector_documents " +
+            "WHERE company_id = ? AND deleted_at IS NULL " +
+            "ORDER BY %s LIMIT ?) " +
+            "SELECT id FROM candidates ORDER BY embedding <=> CAST(? AS vector) LIMIT ?";
+
+    private static final String FULL_TOP_K_SQL = "SELECT id FROM accounting.vector_documents " +
+            "WHERE company_id = ? AND deleted_at IS NULL " +
+            "ORDER BY embedding <=> ?::vector LIMIT ?";
+
+    // Adding zero keeps the planner off every index: exact top-K ground truth
+    private static final String EXACT_TOP_K_SQL = "SELECT id FROM accounting.vector_documents " +
+            "WHERE company_id = ? AND deleted_at IS NULL " +
+            "ORDER BY (embedding <=> ?::vector) + 0 LIMIT ?";
+
+    private static final int RECALL_QUERIES = 20;
+
     // Performance targets (milliseconds)
     private static final long TARGET_P95_MS = 1500;
     private static final long TARGET_P99_MS = 3000;
@@ -274,6 +307,223 @@ class VectorPerformanceBenchmarkTest {
         }
     }
 
+    @Test
+    @Order(6)
+    @DisplayName("Query plan: cosine top-K is served by the HNSW index at 100K vectors")
+    void shouldUseHnswIndexForCosineSearch() throws SQLException {
+        System.out.println("\n=== Query Plan: Cosine Top-K ===");
+
+        try (Connection conn = dataSource.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE accounting.vector_documents");
+        }
+
+        String queryVector = generateTestEmbedding(999);
+
+        List<String> cosinePlan = explain(COSINE_TOP_K_SQL, queryVector);
+        cosinePlan.forEach(line -> System.out.println("  " + line));
+        assertThat(String.join("\n", cosinePlan))
+                .as("<=> ordering should use the vector_cosine_ops HNSW index")
+                .contains("Index Scan using " + HNSW_INDEX)
+                .doesNotContain("Seq Scan");
+
+        // The L2 operator does not match the index opclass and cannot use it
+        List<String> l2Plan = explain(COSINE_TOP_K_SQL.replace("<=>", "<->"), queryVector);
+        assertThat(String.join("\n", l2Plan))
+                .as("<-> ordering cannot use a vector_cosine_ops index")
+                .doesNotContain(HNSW_INDEX);
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("Quantized indexes: size, build time and recall@10 with full-precision re-ranking")
+    void shouldShrinkIndexWithQuantizedCandidatesAndReranking() throws SQLException {
+        System.out.println("\n=== Quantized Candidate Search (100K vectors) ===");
+
+        List<String> queries = new ArrayList<>();
+        for (int q = 0; q < RECALL_QUERIES; q++) {
+            queries.add(generateTestEmbedding(DATASET_100K + 7919 * q));
+        }
+        List<Set<UUID>> exact = new ArrayList<>();
+        for (String query : queries) {
+            exact.add(new HashSet<>(queryIds(EXACT_TOP_K_SQL, query, null, 0)));
+        }
+
+        long fullBuildMs = timed("REINDEX INDEX accounting." + HNSW_INDEX);
+        long fullSize = indexSize(HNSW_INDEX);
+        double fullRecall = recall(queries, exact, null, 0);
+        System.out.printf("%-8s index=%,d bytes build=%,d ms recall@10=%.3f%n", "none", fullSize, fullBuildMs,
+                fullRecall);
+
+        Map<VectorQuantization, Long> sizes = new EnumMap<>(VectorQuantization.class);
+        Map<VectorQuantization, Double> recalls = new EnumMap<>(VectorQuantization.class);
+        for (VectorQuantization mode : List.of(VectorQuantization.HALFVEC, VectorQuantization.BINARY)) {
+            String expression = mode == VectorQuantization.HALFVEC
+                    ? "(embedding::halfvec(1536)) halfvec_cosine_ops"
+                    : "(binary_quantize(embedding)::bit(1536)) bit_hamming_ops";
+            long buildMs = timed("CREATE INDEX " + mode.indexName() + " ON accounting.vector_documents " +
+                    "USING hnsw (" + expression + ") WITH (m = 16, ef_construction = 64) " +
+                    "WHERE deleted_at IS NULL");
+            int candidates = TOP_K * mode.defaultOversampling();
+
+            List<Long> latencies = new ArrayList<>();
+            for (String query : queries) {
+                long start = System.currentTimeMillis();
+                queryIds(RERANK_SQL, query, mode.candidateOrder(), candidates);
+                latencies.add(System.currentTimeMillis() - start);
+            }
+            sizes.put(mode, indexSize(mode.indexName()));
+            recalls.put(mode, recall(queries, exact, mode.candidateOrder(), candidates));
+            System.out.printf("%-8s index=%,d bytes (%.0f%%) build=%,d ms recall@10=%.3f candidates=%d P95=%d ms%n",
+                    mode.name().toLowerCase(Locale.ROOT), sizes.get(mode), 100.0 * sizes.get(mode) / fullSize,
+                    buildMs, recalls.get(mode), candidates, calculatePercentile(latencies, 95));
+
+            timed("DROP INDEX accounting." + mode.indexName());
+        }
+
+        assertThat(sizes.get(VectorQuantization.HALFVEC))
+                .as("halfvec index should be well under the full-precision index")
+                .isLessThan(fullSize * 6 / 10);
+        assertThat(sizes.get(VectorQuantization.BINARY))
+                .as("binary index should be a fraction of the full-precision index")
+                .isLessThan(fullSize / 5);
+        assertThat(recalls.get(VectorQuantization.HALFVEC))
+                .as("halfvec candidates re-ranked at full precision should keep recall")
+                .isGreaterThanOrEqualTo(fullRecall - 0.05);
+    }
+
+    @Test
+    @Order(8)
+    @DisplayName("Matryoshka truncation: 512-dimension prefix index re-ranked at full width")
+    void shouldShrinkIndexWithTruncatedCandidates() throws SQLException {
+        System.out.println("\n=== Matryoshka Truncated Candidate Search (100K vectors) ===");
+
+        List<String> queries = new ArrayList<>();
+        List<Set<UUID>> exact = new ArrayList<>();
+        for (int q = 0; q < RECALL_QUERIES; q++) {
+            queries.add(generateTestEmbedding(DATASET_100K + 7919 * q));
+            exact.add(new HashSet<>(queryIds(EXACT_TOP_K_SQL, queries.get(q), null, 0)));
+        }
+        long fullSize = indexSize(HNSW_INDEX);
+        double fullRecall = recall(queries, exact, null, 0);
+
+        int dimensions = 512;
+        VectorQuantization mode = VectorQuantization.NONE;
+        long buildMs = timed("CREATE INDEX " + mode.indexName(dimensions) + " ON accounting.vector_documents " +
+                "USING hnsw ((subvector(embedding, 1, " + dimensions + ")::vector(" + dimensions + ")) " +
+                "vector_cosine_ops) WITH (m = 16, ef_construction = 64) WHERE deleted_at IS NULL");
+        int candidates = TOP_K * mode.defaultOversampling(dimensions);
+        long size = indexSize(mode.indexName(dimensions));
+        double truncatedRecall = recall(queries, exact, mode.candidateOrder(dimensions), candidates);
+        System.out.printf("d%-7d index=%,d bytes (%.0f%%) build=%,d ms recall@10=%.3f (full %.3f) candidates=%d%n",
+                dimensions, size, 100.0 * size / fullSize, buildMs, truncatedRecall, fullRecall, candidates);
+        timed("DROP INDEX accounting." + mode.indexName(dimensions));
+
+        assertThat(size)
+                .as("512-dimension prefix index should be about a third of the full-width index")
+                .isLessThan(fullSize / 2);
+        assertThat(truncatedRecall)
+                .as("truncated candidates re-ranked at full width should keep most of the recall")
+                .isGreaterThanOrEqualTo(fullRecall - 0.1);
+    }
+
+    /**
+     * Mean recall@10 of a candidate ordering re-ranked at full precision against the exact
+     * top-K; a null ordering searches the full-precision index.
+     */
+    private double recall(List<String> queries, List<Set<UUID>> exact, String candidateOrder, int candidates)
+            throws SQLException {
+        double total = 0;
+        for (int q = 0; q < queries.size(); q++) {
+            List<UUID> ids = candidateOrder == null
+                    ? queryIds(FULL_TOP_K_SQL, queries.get(q), null, 0)
+                    : queryIds(RERANK_SQL, queries.get(q), candidateOrder, candidates);
+            total += ids.stream().filter(exact.get(q)::contains).count() / (double) TOP_K;
+        }
+        return total / queries.size();
+    }
+
+    /**
+     * Ids returned by a top-K query; ef_search is raised to the candidate count for re-rank
+     * queries, as VectorSearchDao does.
+     */
+    private List<UUID> queryIds(String sql, String queryVector, String candidateOrder, int candidates)
+            throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            String statementSql = sql;
+            if (candidateOrder != null) {
+                statementSql = String.format(sql, candidateOrder.replace(":queryEmbedding", "?"));
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SET hnsw.ef_search = " + Math.max(40, candidates));
+                }
+            }
+            List<UUID> ids = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(statementSql)) {
+                int i = 1;
+                stmt.setObject(i++, testCompanyId);
+                stmt.setString(i++, queryVector);
+                if (candidateOrder != null) {
+                    stmt.setInt(i++, candidates);
+                    stmt.setString(i++, queryVector);
+                }
+                stmt.setInt(i, TOP_K);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getObject(1, UUID.class));
+                    }
+                }
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("RESET hnsw.ef_search");
+                }
+            }
+            return ids;
+        }
+    }
+
+    private long timed(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+                Statement stmt = conn.createStatement()) {
+            long start = System.currentTimeMillis();
+            stmt.execute(sql);
+            return System.currentTimeMillis() - start;
+        }
+    }
+
+    private long indexSize(String indexName) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT pg_relation_size(to_regclass(?))")) {
+            stmt.setString(1, "accounting." + indexName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * EXPLAIN a top-K query with the query vector bound to each vector parameter.
+     */
+    private List<String> explain(String sql, String queryVector) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            stmt.setString(1, queryVector);
+            stmt.setString(2, queryVector);
+            stmt.setObject(3, testCompanyId);
+            stmt.setString(4, queryVector);
+            stmt.setInt(5, TOP_K);
+
+            List<String> plan = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.add(rs.getString(1));
+                }
+            }
+            return plan;
+        }
+    }
+
     /**
      * Run performance benchmark with warm-up and measurement phases
      */
@@ -308,16 +558,13 @@ class VectorPerformanceBenchmarkTest {
      * Execute vector similarity query and return result count
      */
     private int executeVectorQuery(String queryVector, int limit) throws SQLException {
-        String sql = "SELECT id, embedding <-> ?::vector AS distance " +
-                "FROM accounting.vector_documents " +
-                "WHERE company_id = ? AND deleted_at IS NULL " +
-                "ORDER BY distance ASC LIMIT ?";
-
         try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
+                PreparedStatement stmt = conn.prepareStatement(COSINE_TOP_K_SQL)) {
             stmt.setString(1, queryVector);
-            stmt.setObject(2, testCompanyId);
-            stmt.setInt(3, limit);
+            stmt.setString(2, queryVector);
+            stmt.setObject(3, testCompanyId);
+            stmt.setString(4, queryVector);
+            stmt.setInt(5, limit);
 
             ResultSet rs = stmt.executeQuery();
             int count = 0;
@@ -309,7 +309,7 @@ class VectorMetadataFilteringTest {
                 doc.setSourceId(rs.getObject("source_id", UUID.class));
                 doc.setFiscalPeriod(rs.getString("fiscal_period"));
                 doc.setContentTsv(rs.getString("content_tsv"));
-                doc.setEmbedding(rs.getString("embedding"));
+                doc.setEmbedding(PgVector.parse(rs.getString("embedding")));
                 try {
                     doc.setMetadata(objectMapper.readTree(rs.getString("metadata")));
                 } catch (Exception e) {
@@ -52,6 +52,7 @@ public abstract class IntegrationTest {
         registry.add("spring.datasource.url", postgres::getJdbcUrl);
         registry.add("spring.datasource.username", postgres::getUsername);
         registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("embedding.azure.stub-enabled", () -> "true");
         
         // Disable Liquibase auto-migration in tests (optional)
         // registry.add("spring.liquibase.enabled", () -> "false");
@@ -0,0 +1,412 @@
+package com.erp.rag.supabase.vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process HNSW index for cosine distance, with vectors stored off-heap.
+ * <p>
+ * Story 1.5 – AC3: Same graph as pgvector's HNSW (Malkov &amp; Yashunin): nodes get a random
+ * top layer, each layer links a node to at most {@code m} neighbours ({@code 2m} on layer 0)
+ * chosen by the neighbour-diversity heuristic, and a search descends greedily through the upper
+ * layers before a best-first search of width {@code ef} on layer 0. Distances are
+ * {@code 1 - cos}, as for pgvector's {@code <=>}.
+ * </p>
+ * <p>
+ * Vectors are normalised on insert and kept in direct buffers of {@value #CHUNK_ROWS} rows, so
+ * a large index adds little to the Java heap and nothing to garbage collection; the graph and
+ * keys are on-heap arrays. Removal marks a node deleted: it is still traversed but never
+ * returned, and the index should be rebuilt once deletions pile up ({@link #deletedCount()}).
+ * Searches run concurrently; inserts and removals are serialised.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public final class HnswIndex {
+
+    static final int CHUNK_ROWS = 4096;
+
+    private static final Comparator<Scored> NEAREST_FIRST = Comparator.comparingDouble(Scored::distance);
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<FloatBuffer> chunks = new ArrayList<>();
+    private final List<int[][]> links = new ArrayList<>();
+    private final Map<Long, Integer> nodesByKey = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private long[] keys = new long[CHUNK_ROWS];
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * @param dimensions     vector dimensions
+     * @param m              links per node and layer (layer 0: {@code 2m})
+     * @param efConstruction search width while inserting
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction) {
+        if (dimensions < 1 || m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("Invalid HNSW parameters: dimensions=" + dimensions + ", m=" + m
+                    + ", ef_construction=" + efConstruction);
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    /**
+     * Insert a vector, replacing the vector previously stored under the same key.
+     *
+     * @param key    document id
+     * @param vector vector with {@link #dimensions()} components
+     * @throws IllegalArgumentException for a vector of another dimension or a zero vector
+     */
+    public void add(long key, float[] vector) {
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            Integer previous = nodesByKey.remove(key);
+            if (previous != null) {
+                deleted.set(previous);
+            }
+            int node = allocate(key, normalized);
+            nodesByKey.put(key, node);
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            int[][] nodeLinks = new int[level + 1][];
+            for (int layer = 0; layer <= level; layer++) {
+                nodeLinks[layer] = new int[(layer == 0 ? maxM0 : m) + 1];
+            }
+            links.add(nodeLinks);
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+
+            int current = entryPoint;
+            for (int layer = maxLevel; layer > level; layer--) {
+                current = greedyClosest(normalized, current, layer);
+            }
+            for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+                List<Scored> nearest = searchLayer(normalized, current, efConstruction, layer);
+                int maxLinks = layer == 0 ? maxM0 : m;
+                for (Scored neighbour : selectNeighbours(nearest, maxLinks)) {
+                    link(node, neighbour.node(), layer, maxLinks);
+                    link(neighbour.node(), node, layer, maxLinks);
+                }
+                current = nearest.get(0).node();
+            }
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param key document id
+     * @return whether the key was present
+     */
+    public boolean remove(long key) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodesByKey.remove(key);
+            if (node == null) {
+                return false;
+            }
+            deleted.set(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate k nearest neighbours.
+     *
+     * @param query query vector
+     * @param k     number of neighbours
+     * @param ef    search width (raised to {@code k})
+     * @return neighbours ordered by cosine distance, nearest first
+     */
+    public List<Neighbour> search(float[] query, int k, int ef) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k < 1) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int layer = maxLevel; layer > 0; layer--) {
+                current = greedyClosest(normalized, current, layer);
+            }
+            int live = nodesByKey.size();
+            int width = Math.max(ef, k);
+            List<Neighbour> found;
+            do {
+                found = new ArrayList<>(k);
+                for (Scored scored : searchLayer(normalized, current, width, 0)) {
+                    if (!deleted.get(scored.node())) {
+                        found.add(new Neighbour(keys[scored.node()], scored.distance()));
+                        if (found.size() == k) {
+                            break;
+                        }
+                    }
+                }
+                // Deleted nodes take up room in the candidate list; widen until k live ones fit
+                width *= 2;
+            } while (found.size() < Math.min(k, live) && width <= 2 * size);
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return whether a key is present
+     */
+    public boolean contains(long key) {
+        lock.readLock().lock();
+        try {
+            return nodesByKey.containsKey(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return live vectors
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodesByKey.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return nodes removed or replaced but still in the graph
+     */
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return off-heap bytes held by the vector store
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) chunks.size() * CHUNK_ROWS * dimensions * Float.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocate(long key, float[] vector) {
+        int node = size++;
+        if (node / CHUNK_ROWS == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_ROWS * dimensions * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer());
+        }
+        if (node == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        keys[node] = key;
+        chunks.get(node / CHUNK_ROWS).put((node % CHUNK_ROWS) * dimensions, vector);
+        return node;
+    }
+
+    private float distance(float[] query, int node) {
+        FloatBuffer chunk = chunks.get(node / CHUNK_ROWS);
+        int offset = (node % CHUNK_ROWS) * dimensions;
+        float dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * chunk.get(offset + i);
+        }
+        return 1 - dot;
+    }
+
+    private float[] vector(int node) {
+        float[] vector = new float[dimensions];
+        chunks.get(node / CHUNK_ROWS).get((node % CHUNK_ROWS) * dimensions, vector);
+        return vector;
+    }
+
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        float best = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links.get(current)[layer];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float distance = distance(query, neighbours[i]);
+                if (distance < best) {
+                    best = distance;
+                    current = neighbours[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer.
+     *
+     * @return up to {@code ef} nodes, nearest first
+     */
+    private List<Scored> searchLayer(float[] query, int entry, int ef, int layer) {
+        BitSet visited = new BitSet(size);
+        visited.set(entry);
+        Scored start = new Scored(entry, distance(query, entry));
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Scored> results = new PriorityQueue<>(NEAREST_FIRST.reversed());
+        candidates.add(start);
+        results.add(start);
+        while (!candidates.isEmpty()) {
+            Scored candidate = candidates.poll();
+            if (results.size() >= ef && candidate.distance() > results.peek().distance()) {
+                break;
+            }
+            int[][] nodeLinks = links.get(candidate.node());
+            if (layer >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbours = nodeLinks[layer];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float distance = distance(query, neighbour);
+                if (results.size() < ef || distance < results.peek().distance()) {
+                    Scored scored = new Scored(neighbour, distance);
+                    candidates.add(scored);
+                    results.add(scored);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Scored> ordered = new ArrayList<>(results);
+        ordered.sort(NEAREST_FIRST);
+        return ordered;
+    }
+
+    /**
+     * Neighbour-diversity heuristic: keep a candidate only if it is closer to the base node
+     * than to every neighbour kept so far.
+     *
+     * @param candidates candidates with their distance to the base node, nearest first
+     */
+    private List<Scored> selectNeighbours(List<Scored> candidates, int max) {
+        List<Scored> selected = new ArrayList<>(max);
+        List<float[]> selectedVectors = new ArrayList<>(max);
+        for (Scored candidate : candidates) {
+            if (selected.size() == max) {
+                break;
+            }
+            boolean diverse = true;
+            for (float[] kept : selectedVectors) {
+                if (distance(kept, candidate.node()) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+                selectedVectors.add(vector(candidate.node()));
+            }
+        }
+        return selected;
+    }
+
+    private void link(int from, int to, int layer, int maxLinks) {
+        int[] neighbours = links.get(from)[layer];
+        int count = neighbours[0];
+        if (count < maxLinks) {
+            neighbours[count + 1] = to;
+            neighbours[0] = count + 1;
+            return;
+        }
+        float[] base = vector(from);
+        List<Scored> candidates = new ArrayList<>(count + 1);
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Scored(neighbours[i], distance(base, neighbours[i])));
+        }
+        candidates.add(new Scored(to, distance(base, to)));
+        candidates.sort(NEAREST_FIRST);
+        List<Scored> kept = selectNeighbours(candidates, maxLinks);
+        neighbours[0] = kept.size();
+        for (int i = 0; i < kept.size(); i++) {
+            neighbours[i + 1] = kept.get(i).node();
+        }
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            throw new IllegalArgumentException("Cannot index a zero vector");
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        float[] normalized = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * @param key      document id
+     * @param distance cosine distance to the query
+     */
+    public record Neighbour(long key, double distance) {
+    }
+
+    private record Scored(int node, float distance) {
+    }
+}
@@ -0,0 +1,151 @@
+package com.erp.rag.supabase.vector;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A pgvector {@code vector} value backed by a {@code float[]}.
+ * <p>
+ * Story 1.3 – AC2: First-class embedding type so vectors travel between the application and
+ * PostgreSQL without a decimal text round-trip. {@link #toBinary()} / {@link #fromBinary(byte[])}
+ * implement pgvector's binary send/recv layout (int16 dimension, int16 reserved, big-endian
+ * float4 values); the text form {@code [1.0,2.0,...]} is only kept for logging and for reading
+ * columns that a native query returns untransformed.
+ * </p>
+ * <p>
+ * The backing array is not copied on construction or in {@link #toArray()}: an embedding is
+ * produced once and then only read, and copying 1536 floats per hop is exactly the overhead
+ * this type exists to avoid. Callers must not modify the array after wrapping it.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public final class PgVector implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int HEADER_BYTES = 4;
+
+    private final float[] values;
+
+    public PgVector(float[] values) {
+        this.values = Objects.requireNonNull(values, "values must not be null");
+    }
+
+    /**
+     * Decode pgvector's binary representation as produced by {@code vector_send}.
+     *
+     * @param bytes binary value
+     * @return decoded vector
+     */
+    public static PgVector fromBinary(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int dimension = Short.toUnsignedInt(buffer.getShort());
+        buffer.getShort(); // reserved
+        if (bytes.length != HEADER_BYTES + dimension * Float.BYTES) {
+            throw new IllegalArgumentException("Invalid pgvector binary length " + bytes.length
+                    + " for dimension " + dimension);
+        }
+        float[] values = new float[dimension];
+        buffer.asFloatBuffer().get(values);
+        return new PgVector(values);
+    }
+
+    /**
+     * Parse pgvector's text representation, e.g. {@code [0.1,0.2,0.3]}.
+     *
+     * @param text text value
+     * @return parsed vector
+     */
+    public static PgVector parse(String text) {
+        String trimmed = text.trim();
+        if (trimmed.length() < 2 || trimmed.charAt(0) != '[' || trimmed.charAt(trimmed.length() - 1) != ']') {
+            throw new IllegalArgumentException("Invalid pgvector text: " + abbreviate(trimmed));
+        }
+        String body = trimmed.substring(1, trimmed.length() - 1);
+        if (body.isBlank()) {
+            return new PgVector(new float[0]);
+        }
+
+        float[] values = new float[countElements(body)];
+        int start = 0;
+        for (int i = 0; i < values.length; i++) {
+            int end = body.indexOf(',', start);
+            if (end < 0) {
+                end = body.length();
+            }
+            values[i] = Float.parseFloat(body.substring(start, end).trim());
+            start = end + 1;
+        }
+        return new PgVector(values);
+    }
+
+    /**
+     * Encode as pgvector's binary representation (input of {@code vector_recv}).
+     *
+     * @return binary value
+     */
+    public byte[] toBinary() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + values.length * Float.BYTES);
+        buffer.putShort((short) values.length);
+        buffer.putShort((short) 0);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
+    }
+
+    /**
+     * @return the backing array (not a copy)
+     */
+    public float[] toArray() {
+        return values;
+    }
+
+    public int dimension() {
+        return values.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PgVector that))
+            return false;
+        return Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    /**
+     * @return pgvector text representation, e.g. {@code [0.1,0.2,0.3]}
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(values.length * 12 + 2).append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private static int countElements(String body) {
+        int count = 1;
+        for (int i = 0; i < body.length(); i++) {
+            if (body.charAt(i) == ',') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= 40 ? text : text.substring(0, 40) + "...";
+    }
+}
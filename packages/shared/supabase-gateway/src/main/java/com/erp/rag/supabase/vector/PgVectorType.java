@@ -0,0 +1,98 @@
+package com.erp.rag.supabase.vector;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.usertype.UserType;
+import org.postgresql.util.PGobject;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Objects;
+
+/**
+ * Hibernate type mapping {@link PgVector} to a pgvector {@code vector} column.
+ * <p>
+ * Story 1.3 – AC2: Writes bind the backing {@code float[]} directly; pgjdbc transmits
+ * primitive float arrays as binary {@code float4[]} and PostgreSQL converts it with
+ * pgvector's {@code real[] -> vector} cast, so no decimal string is formatted or parsed.
+ * Reads expect the column wrapped in {@code vector_send(...)} (see {@code @ColumnTransformer}
+ * on the mapped attributes) and decode the returned {@code bytea}; a plain {@code vector}
+ * column, as returned by native {@code SELECT *} queries, is still accepted in text form.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public class PgVectorType implements UserType<PgVector> {
+
+    @Override
+    public int getSqlType() {
+        return Types.OTHER;
+    }
+
+    @Override
+    public Class<PgVector> returnedClass() {
+        return PgVector.class;
+    }
+
+    @Override
+    public boolean equals(PgVector x, PgVector y) {
+        return Objects.equals(x, y);
+    }
+
+    @Override
+    public int hashCode(PgVector x) {
+        return Objects.hashCode(x);
+    }
+
+    @Override
+    public PgVector nullSafeGet(ResultSet rs, int position, SharedSessionContractImplementor session, Object owner)
+            throws SQLException {
+        Object value = rs.getObject(position);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof byte[] bytes) {
+            return PgVector.fromBinary(bytes);
+        }
+        if (value instanceof PGobject pgObject) {
+            return pgObject.getValue() != null ? PgVector.parse(pgObject.getValue()) : null;
+        }
+        if (value instanceof String text) {
+            return PgVector.parse(text);
+        }
+        throw new SQLException("Cannot convert " + value.getClass().getName() + " to PgVector");
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, PgVector value, int index, SharedSessionContractImplementor session)
+            throws SQLException {
+        if (value == null) {
+            st.setNull(index, Types.OTHER);
+        } else {
+            st.setObject(index, value.toArray());
+        }
+    }
+
+    @Override
+    public PgVector deepCopy(PgVector value) {
+        return value; // immutable by contract
+    }
+
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+
+    @Override
+    public Serializable disassemble(PgVector value) {
+        return value;
+    }
+
+    @Override
+    public PgVector assemble(Serializable cached, Object owner) {
+        return (PgVector) cached;
+    }
+}
@@ -0,0 +1,59 @@
+package com.erp.rag.supabase.vector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal rank fusion of several rankings of the same documents.
+ * <p>
+ * Story 1.5 – AC3: A document scores {@code sum(1 / (k + rank))} over the rankings that contain
+ * it (rank starting at 1). Only positions are used, so a text rank and a cosine distance need
+ * no common scale; {@code k} (60 in the original formulation) damps the weight of the very
+ * first positions. Documents found by several rankings rise above documents found by one.
+ * </p>
+ * <p>
+ * Hits keep their own cosine distance; fusion only decides their order. Ties keep the
+ * order in which documents were first seen, i.e. the earlier ranking wins.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public final class ReciprocalRankFusion {
+
+    /** Default {@code k}. */
+    public static final int DEFAULT_K = 60;
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * @param rankings rankings to fuse, best first
+     * @param k        rank damping constant (&gt;= 1)
+     * @param limit    maximum number of results
+     * @return fused top-{@code limit}, best first
+     */
+    public static List<VectorSearchResult> fuse(List<List<VectorSearchResult>> rankings, int k, int limit) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1, got " + k);
+        }
+        Map<Long, Fused> fused = new LinkedHashMap<>();
+        for (List<VectorSearchResult> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                VectorSearchResult hit = ranking.get(rank);
+                double score = 1.0 / (k + rank + 1);
+                fused.merge(hit.id(), new Fused(hit, score, fused.size()),
+                        (existing, added) -> new Fused(existing.hit(), existing.score() + score, existing.order()));
+            }
+        }
+        List<Fused> ordered = new ArrayList<>(fused.values());
+        ordered.sort(Comparator.comparingDouble(Fused::score).reversed().thenComparingInt(Fused::order));
+        return ordered.stream().limit(limit).map(Fused::hit).toList();
+    }
+
+    private record Fused(VectorSearchResult hit, double score, int order) {
+    }
+}
@@ -2,7 +2,9 @@ package com.erp.rag.supabase.vector;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.persistence.*;
-import com.erp.rag.supabase.vector.JsonNodeConverter;
+import org.hibernate.annotations.ColumnTransformer;
+import org.hibernate.annotations.Type;
+import org.hibernate.annotations.TypeRegistration;
 
 import java.time.OffsetDateTime;
 import java.util.Objects;
@@ -14,7 +16,8 @@ import java.util.UUID;
  * Story 1.3 – AC2: Vector storage with multi-tenant isolation, metadata
  * filtering, and soft deletes.
  * Embeddings are stored as VECTOR(1536) for OpenAI text-embedding-3-small
- * compatibility.
+ * compatibility and mapped to {@link PgVector}; the type registration also lets native
+ * queries bind {@code PgVector} parameters.
  * </p>
  *
  * @author dev-agent
@@ -22,6 +25,7 @@ import java.util.UUID;
  */
 @Entity
 @Table(name = "vector_documents", schema = "accounting")
+@TypeRegistration(basicClass = PgVector.class, userType = PgVectorType.class)
 public class VectorDocument {
 
     @Id
@@ -47,8 +51,10 @@ public class VectorDocument {
     @Column(name = "content_tsv", columnDefinition = "tsvector")
     private String contentTsv; // TSVECTOR stored as text for JDBC compatibility
 
+    @Type(PgVectorType.class)
+    @ColumnTransformer(read = "vector_send(embedding)", write = "CAST(? AS vector)")
     @Column(name = "embedding", nullable = false, columnDefinition = "vector(1536)")
-    private String embedding; // VECTOR stored as text representation: "[0.1,0.2,...]"
+    private PgVector embedding; // Read via vector_send (binary), written as float4[]
 
     @Column(name = "metadata", columnDefinition = "jsonb")
     @Convert(converter = JsonNodeConverter.class)
@@ -68,7 +74,7 @@ public class VectorDocument {
     }
 
     public VectorDocument(Long companyId, String sourceTable, Long sourceId,
-            String contentType, String contentText, String embedding, JsonNode metadata) {
+            String contentType, String contentText, PgVector embedding, JsonNode metadata) {
         this.companyId = Objects.requireNonNull(companyId, "companyId must not be null");
         this.sourceTable = Objects.requireNonNull(sourceTable, "sourceTable must not be null");
         this.sourceId = Objects.requireNonNull(sourceId, "sourceId must not be null");
@@ -138,11 +144,11 @@ public class VectorDocument {
         this.contentTsv = contentTsv;
     }
 
-    public String getEmbedding() {
+    public PgVector getEmbedding() {
         return embedding;
     }
 
-    public void setEmbedding(String embedding) {
+    public void setEmbedding(PgVector embedding) {
         this.embedding = embedding;
     }
 
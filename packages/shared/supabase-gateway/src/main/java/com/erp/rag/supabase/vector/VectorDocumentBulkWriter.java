@@ -0,0 +1,251 @@
+package com.erp.rag.supabase.vector;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bulk writer for {@code accounting.vector_documents} using PostgreSQL binary COPY.
+ * <p>
+ * Story 1.4 – AC6: Persists a whole slice of embeddings in one round-trip instead of one
+ * INSERT per document. Rows are encoded in the COPY binary format; embeddings use the
+ * pgvector binary representation (int16 dimension, int16 reserved, float4[] big-endian),
+ * so no 1536-float text literal is ever built or parsed. {@code created_at} and
+ * {@code updated_at} are left to their column defaults, and {@code content_tsv} is filled from
+ * the content text by the insert trigger of changelog 011, since COPY cannot evaluate
+ * {@code to_tsvector}.
+ * </p>
+ * <p>
+ * Runs on the Spring-managed connection, so it joins a surrounding transaction if there is
+ * one; otherwise each {@link #write(List)} commits on its own.
+ * </p>
+ * <p>
+ * A COPY is all or nothing, so one bad row (wrong dimension, constraint violation) would fail
+ * the whole slice. When the COPY fails, the rows are copied again one at a time and only the
+ * rows the database rejects are reported back as failed. Inside a surrounding transaction
+ * each attempt runs under a savepoint, so a rejected row does not abort the transaction.
+ * </p>
+ * <p>
+ * While an embedding model migration is running, rows also carry the target model's vector,
+ * which is copied into the shadow column {@code embedding_next} in the same COPY (dual
+ * write). Rows of one {@link #write(List)} either all have it or all lack it.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Repository
+public class VectorDocumentBulkWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorDocumentBulkWriter.class);
+
+    static final String COPY_SQL = "COPY accounting.vector_documents "
+            + "(company_id, source_table, source_id, content_type, content_text, embedding, metadata) "
+            + "FROM STDIN (FORMAT binary)";
+
+    static final String COPY_WITH_SHADOW_SQL = "COPY accounting.vector_documents "
+            + "(company_id, source_table, source_id, content_type, content_text, embedding, metadata, embedding_next) "
+            + "FROM STDIN (FORMAT binary)";
+
+    private static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short FIELD_COUNT = 7;
+    private static final byte JSONB_VERSION = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VectorDocumentBulkWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert all rows with a single {@code COPY ... FROM STDIN (FORMAT binary)}, falling back
+     * to one COPY per row if the database rejects the batch.
+     *
+     * @param rows rows to insert
+     * @return rows written and rows the database rejected
+     */
+    public WriteResult write(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return new WriteResult(0, List.of());
+        }
+
+        byte[] payload = encode(rows);
+        String copySql = rows.get(0).shadowEmbedding() != null ? COPY_WITH_SHADOW_SQL : COPY_SQL;
+        long start = System.currentTimeMillis();
+
+        WriteResult result = jdbcTemplate.execute((ConnectionCallback<WriteResult>) connection -> {
+            CopyManager copyApi = connection.unwrap(PGConnection.class).getCopyAPI();
+            try {
+                return new WriteResult(copy(connection, copyApi, copySql, payload), List.of());
+            } catch (SQLException e) {
+                logger.warn("COPY of {} vector documents failed, retrying row by row: {}",
+                        rows.size(), e.getMessage());
+            }
+
+            long written = 0;
+            List<Row> failed = new ArrayList<>();
+            for (Row row : rows) {
+                try {
+                    written += copy(connection, copyApi, copySql, encode(List.of(row)));
+                } catch (SQLException e) {
+                    logger.error("Failed to persist vector for {} id={}: {}",
+                            row.sourceTable(), row.sourceId(), e.getMessage());
+                    failed.add(row);
+                }
+            }
+            return new WriteResult(written, failed);
+        });
+
+        logger.debug("Bulk-inserted {} vector documents ({} bytes, {} rejected) in {}ms",
+                result.written(), payload.length, result.failed().size(), System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * One COPY; under a savepoint when a transaction is open, so a failure leaves it usable.
+     */
+    private static long copy(Connection connection, CopyManager copyApi, String copySql, byte[] payload)
+            throws SQLException {
+        Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+        try {
+            long written = copyApi.copyIn(copySql, new ByteArrayInputStream(payload));
+            if (savepoint != null) {
+                connection.releaseSavepoint(savepoint);
+            }
+            return written;
+        } catch (SQLException e) {
+            if (savepoint != null) {
+                connection.rollback(savepoint);
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException("COPY into vector_documents failed", e);
+        }
+    }
+
+    /**
+     * Encode rows as a complete COPY binary stream (header, tuples, trailer).
+     */
+    static byte[] encode(List<Row> rows) {
+        int dimension = rows.get(0).embedding().dimension();
+        boolean shadow = rows.get(0).shadowEmbedding() != null;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(rows.size() * ((shadow ? 2 : 1) * dimension * 4 + 512));
+
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.write(COPY_SIGNATURE);
+            out.writeInt(0); // flags
+            out.writeInt(0); // header extension length
+
+            for (Row row : rows) {
+                if ((row.shadowEmbedding() != null) != shadow) {
+                    throw new IllegalArgumentException("Rows of one write must all have or all lack a shadow embedding");
+                }
+                out.writeShort(shadow ? FIELD_COUNT + 1 : FIELD_COUNT);
+                writeInt8(out, row.companyId());
+                writeText(out, row.sourceTable());
+                writeInt8(out, row.sourceId());
+                writeText(out, row.contentType());
+                writeText(out, row.contentText());
+                writeVector(out, row.embedding());
+                writeJsonb(out, row.metadata());
+                if (shadow) {
+                    writeVector(out, row.shadowEmbedding());
+                }
+            }
+
+            out.writeShort(-1); // trailer
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void writeInt8(DataOutputStream out, long value) throws IOException {
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVector(DataOutputStream out, PgVector vector) throws IOException {
+        float[] embedding = vector.toArray();
+        out.writeInt(4 + 4 * embedding.length);
+        out.writeShort(embedding.length);
+        out.writeShort(0); // reserved, must be zero
+        for (float value : embedding) {
+            out.writeFloat(value);
+        }
+    }
+
+    private static void writeJsonb(DataOutputStream out, JsonNode metadata) throws IOException {
+        if (metadata == null || metadata.isNull()) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] json = metadata.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(1 + json.length);
+        out.writeByte(JSONB_VERSION);
+        out.write(json);
+    }
+
+    /**
+     * Outcome of one {@link #write(List)}.
+     *
+     * @param written number of rows written
+     * @param failed  rows the database rejected, in input order
+     */
+    public record WriteResult(long written, List<Row> failed) {
+    }
+
+    /**
+     * One vector document to insert.
+     *
+     * @param companyId       tenant id
+     * @param sourceTable     ERP source table
+     * @param sourceId        id of the source record
+     * @param contentType     document type
+     * @param contentText     rendered (PII-masked) text
+     * @param embedding       embedding vector
+     * @param metadata        optional JSONB metadata
+     * @param shadowEmbedding optional vector of the migration target model
+     */
+    public record Row(Long companyId, String sourceTable, Long sourceId, String contentType,
+            String contentText, PgVector embedding, JsonNode metadata, PgVector shadowEmbedding) {
+
+        public Row {
+            Objects.requireNonNull(companyId, "companyId must not be null");
+            Objects.requireNonNull(sourceTable, "sourceTable must not be null");
+            Objects.requireNonNull(sourceId, "sourceId must not be null");
+            Objects.requireNonNull(contentType, "contentType must not be null");
+            Objects.requireNonNull(contentText, "contentText must not be null");
+            Objects.requireNonNull(embedding, "embedding must not be null");
+        }
+
+        public Row(Long companyId, String sourceTable, Long sourceId, String contentType,
+                String contentText, PgVector embedding, JsonNode metadata) {
+            this(companyId, sourceTable, sourceId, contentType, contentText, embedding, metadata, null);
+        }
+    }
+}
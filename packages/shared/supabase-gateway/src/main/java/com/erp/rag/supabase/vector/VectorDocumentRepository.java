@@ -10,14 +10,23 @@ import java.util.List;
 import java.util.Optional;
 
 /**
- * Repository for {@link VectorDocument} with tenant-scoped queries and vector
- * similarity search.
+ * Repository for {@link VectorDocument} with tenant-scoped queries.
  * <p>
  * Story 1.3 – AC2: Vector access with multi-tenant isolation via company_id
  * filtering.
  * All queries automatically filter by company_id and exclude soft-deleted
  * records (deleted_at IS NULL).
  * </p>
+ * <p>
+ * Similarity search lives in {@link VectorSearchDao}, which returns lightweight
+ * {@link VectorSearchResult} rows instead of full entities.
+ * </p>
+ * <p>
+ * The table is partitioned by {@code company_id} (changelog 013): the company-scoped queries
+ * below are pruned to the tenant's partition. The inherited id-only methods
+ * ({@code findById}, {@code deleteById}) still work but probe every partition; prefer
+ * {@link #findByIdAndCompanyId} and {@link #softDelete}.
+ * </p>
  *
  * @author dev-agent
  * @since 1.0.0
@@ -79,49 +88,6 @@ public interface VectorDocumentRepository extends JpaRepository<VectorDocument,
     List<VectorDocument> findByFiscalPeriod(@Param("companyId") Long companyId,
             @Param("fiscalPeriod") String fiscalPeriod);
 
-    /**
-     * Perform vector similarity search using cosine distance.
-     * Returns top K nearest neighbors for a given embedding within the company
-     * scope.
-     *
-     * @param companyId      the company UUID
-     * @param queryEmbedding the query embedding as text (format: "[0.1,0.2,...]")
-     * @param limit          maximum number of results
-     * @return list of vector documents ordered by similarity (most similar first)
-     */
-    @Query(value = "SELECT *, " +
-            "embedding <-> CAST(:queryEmbedding AS vector) AS distance " +
-            "FROM accounting.vector_documents " +
-            "WHERE company_id = :companyId AND deleted_at IS NULL " +
-            "ORDER BY distance ASC " +
-            "LIMIT :limit", nativeQuery = true)
-    List<VectorDocument> findSimilarVectors(@Param("companyId") Long companyId,
-            @Param("queryEmbedding") String queryEmbedding,
-            @Param("limit") int limit);
-
-    /**
-     * Perform vector similarity search with metadata filtering.
-     *
-     * @param companyId      the company UUID
-     * @param queryEmbedding the query embedding as text
-     * @param metadataFilter JSONB path expression for filtering (e.g., '$.module ==
-     *                       "ar"')
-     * @param limit          maximum number of results
-     * @return list of vector documents ordered by similarity
-     */
-    @Query(value = "SELECT *, " +
-            "embedding <-> CAST(:queryEmbedding AS vector) AS distance " +
-            "FROM accounting.vector_documents " +
-            "WHERE company_id = :companyId " +
-            "AND deleted_at IS NULL " +
-            "AND jsonb_path_exists(metadata, CAST(:metadataFilter AS jsonpath)) " +
-            "ORDER BY distance ASC " +
-            "LIMIT :limit", nativeQuery = true)
-    List<VectorDocument> findSimilarVectorsWithMetadata(@Param("companyId") Long companyId,
-            @Param("queryEmbedding") String queryEmbedding,
-            @Param("metadataFilter") String metadataFilter,
-            @Param("limit") int limit);
-
     /**
      * Count non-deleted vector documents for a company.
      *
@@ -0,0 +1,266 @@
+package com.erp.rag.supabase.vector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Typed metadata predicates of a filtered vector search.
+ * <p>
+ * Story 1.5 – AC6: Request filters ({@code module}, {@code document_type},
+ * {@code fiscal_period}, {@code status}; camelCase accepted) become predicates on
+ * {@code vector_documents.metadata}. A value is matched exactly, a list matches any of its
+ * values, and an object {@code {"from": ..., "to": ...}} is an inclusive range. Equality
+ * predicates use JSONB containment ({@code @>}), which the GIN index
+ * {@code idx_vector_documents_metadata} serves; values are always bound, never inlined.
+ * Unknown keys are rejected.
+ * </p>
+ * <p>
+ * {@code minConfidence} is not a metadata predicate: it is kept as the minimum similarity of
+ * returned hits.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public final class VectorFilter {
+
+    /** No predicates. */
+    public static final VectorFilter NONE = new VectorFilter(List.of(), null);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Metadata keys that can be filtered on.
+     */
+    public enum Field {
+        MODULE("module"),
+        DOCUMENT_TYPE("document_type"),
+        FISCAL_PERIOD("fiscal_period"),
+        STATUS("status");
+
+        private final String key;
+
+        Field(String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return key in {@code vector_documents.metadata}
+         */
+        public String key() {
+            return key;
+        }
+
+        static Field fromRequestKey(String requestKey) {
+            String key = requestKey.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT);
+            for (Field field : values()) {
+                if (field.key.equals(key)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported filter '" + requestKey
+                    + "' (expected module, document_type, fiscal_period, status or minConfidence)");
+        }
+    }
+
+    /**
+     * One predicate on a metadata key.
+     */
+    public sealed interface Predicate permits AnyOf, Range {
+
+        Field field();
+    }
+
+    /**
+     * Metadata value equals one of {@code values}.
+     */
+    public record AnyOf(Field field, List<String> values) implements Predicate {
+    }
+
+    /**
+     * Metadata value within {@code [from, to]} (text order); either bound may be null.
+     */
+    public record Range(Field field, String from, String to) implements Predicate {
+    }
+
+    private final List<Predicate> predicates;
+    private final Double minSimilarity;
+
+    private VectorFilter(List<Predicate> predicates, Double minSimilarity) {
+        this.predicates = List.copyOf(predicates);
+        this.minSimilarity = minSimilarity;
+    }
+
+    /**
+     * Parse request filters.
+     *
+     * @param filters request filters; null or empty means {@link #NONE}
+     * @return the filter
+     * @throws IllegalArgumentException for unknown keys or malformed values
+     */
+    public static VectorFilter of(Map<String, Object> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return NONE;
+        }
+        List<Predicate> predicates = new ArrayList<>();
+        Double minSimilarity = null;
+        for (Map.Entry<String, Object> entry : filters.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            if (entry.getKey().equals("minConfidence") || entry.getKey().equals("min_confidence")) {
+                minSimilarity = toDouble(entry.getKey(), value);
+                continue;
+            }
+            Field field = Field.fromRequestKey(entry.getKey());
+            if (value instanceof Map<?, ?> range) {
+                String from = range.get("from") != null ? scalar(entry.getKey(), range.get("from")) : null;
+                String to = range.get("to") != null ? scalar(entry.getKey(), range.get("to")) : null;
+                if (from == null && to == null) {
+                    throw new IllegalArgumentException("Filter '" + entry.getKey() + "' range needs from or to");
+                }
+                predicates.add(new Range(field, from, to));
+            } else if (value instanceof Collection<?> values) {
+                if (values.isEmpty()) {
+                    throw new IllegalArgumentException("Filter '" + entry.getKey() + "' has no values");
+                }
+                predicates.add(new AnyOf(field, values.stream().map(v -> scalar(entry.getKey(), v)).toList()));
+            } else {
+                predicates.add(new AnyOf(field, List.of(scalar(entry.getKey(), value))));
+            }
+        }
+        return predicates.isEmpty() && minSimilarity == null ? NONE : new VectorFilter(predicates, minSimilarity);
+    }
+
+    /**
+     * @return true if no metadata predicate applies
+     */
+    public boolean isEmpty() {
+        return predicates.isEmpty();
+    }
+
+    public List<Predicate> predicates() {
+        return predicates;
+    }
+
+    /**
+     * @return minimum similarity of returned hits, or null
+     */
+    public Double minSimilarity() {
+        return minSimilarity;
+    }
+
+    /**
+     * Single-valued equality predicates, e.g. to match a partial index predicate.
+     *
+     * @return metadata key to value
+     */
+    public Map<String, String> equalities() {
+        Map<String, String> equalities = new LinkedHashMap<>();
+        for (Predicate predicate : predicates) {
+            if (predicate instanceof AnyOf anyOf && anyOf.values().size() == 1) {
+                equalities.put(anyOf.field().key(), anyOf.values().get(0));
+            }
+        }
+        return equalities;
+    }
+
+    /**
+     * SQL conjunction over {@code metadata}, with parameters {@code :filter<n>...}.
+     *
+     * @return predicate to append after {@code AND}, or null if empty
+     */
+    String sql() {
+        if (predicates.isEmpty()) {
+            return null;
+        }
+        List<String> parts = new ArrayList<>(predicates.size());
+        for (int i = 0; i < predicates.size(); i++) {
+            Predicate predicate = predicates.get(i);
+            if (predicate instanceof AnyOf anyOf) {
+                List<String> alternatives = new ArrayList<>(anyOf.values().size());
+                for (int j = 0; j < anyOf.values().size(); j++) {
+                    alternatives.add("metadata @> CAST(:filter" + i + "_" + j + " AS jsonb)");
+                }
+                parts.add(alternatives.size() == 1
+                        ? alternatives.get(0)
+                        : "(" + String.join(" OR ", alternatives) + ")");
+            } else if (predicate instanceof Range range) {
+                String value = "metadata->>'" + range.field().key() + "'";
+                if (range.from() != null) {
+                    parts.add(value + " >= :filter" + i + "_from");
+                }
+                if (range.to() != null) {
+                    parts.add(value + " <= :filter" + i + "_to");
+                }
+            }
+        }
+        return String.join(" AND ", parts);
+    }
+
+    /**
+     * Bind the parameters of {@link #sql()}.
+     */
+    MapSqlParameterSource bind(MapSqlParameterSource params) {
+        for (int i = 0; i < predicates.size(); i++) {
+            Predicate predicate = predicates.get(i);
+            if (predicate instanceof AnyOf anyOf) {
+                for (int j = 0; j < anyOf.values().size(); j++) {
+                    params.addValue("filter" + i + "_" + j, containment(anyOf.field(), anyOf.values().get(j)));
+                }
+            } else if (predicate instanceof Range range) {
+                if (range.from() != null) {
+                    params.addValue("filter" + i + "_from", range.from());
+                }
+                if (range.to() != null) {
+                    params.addValue("filter" + i + "_to", range.to());
+                }
+            }
+        }
+        return params;
+    }
+
+    private static String containment(Field field, String value) {
+        return MAPPER.createObjectNode().put(field.key(), value).toString();
+    }
+
+    private static String scalar(String key, Object value) {
+        if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        throw new IllegalArgumentException("Filter '" + key + "' has an unsupported value: " + value);
+    }
+
+    private static double toDouble(String key, Object value) {
+        try {
+            return value instanceof Number number ? number.doubleValue() : Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Filter '" + key + "' must be a number", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof VectorFilter filter && predicates.equals(filter.predicates)
+                && Objects.equals(minSimilarity, filter.minSimilarity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(predicates, minSimilarity);
+    }
+
+    @Override
+    public String toString() {
+        return "VectorFilter" + predicates + (minSimilarity != null ? " minSimilarity=" + minSimilarity : "");
+    }
+}
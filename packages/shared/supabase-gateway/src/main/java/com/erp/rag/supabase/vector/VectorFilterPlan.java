@@ -0,0 +1,63 @@
+package com.erp.rag.supabase.vector;
+
+import java.util.Map;
+
+/**
+ * How a filtered vector search finds its top-k.
+ * <p>
+ * Story 1.5 – AC6: An HNSW scan that filters afterwards loses recall when the filter is
+ * selective: the {@code ef_search} nearest rows may hold fewer than k matches. The plan picks
+ * one of:
+ * </p>
+ * <ul>
+ *   <li>{@link Strategy#EXACT}: few rows match; they are fetched through the metadata index
+ *       and ranked by exact distance (full recall, no HNSW)</li>
+ *   <li>{@link Strategy#PARTIAL_INDEX}: an HNSW index restricted to a metadata value implied by
+ *       the filter exists; it is scanned instead of the full index</li>
+ *   <li>{@link Strategy#ITERATIVE}: HNSW with {@code hnsw.iterative_scan} (pgvector &gt;= 0.8),
+ *       which keeps scanning until enough rows pass the filter, and a candidate count
+ *       oversampled by the inverse selectivity</li>
+ * </ul>
+ *
+ * @param strategy      chosen strategy
+ * @param partialIndex  index scanned by {@link Strategy#PARTIAL_INDEX}, else null
+ * @param candidates    rows taken from the index before the exact re-rank
+ * @param iterativeScan {@code hnsw.iterative_scan} mode, or null to leave it off
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public record VectorFilterPlan(Strategy strategy, PartialIndex partialIndex, int candidates, String iterativeScan) {
+
+    public enum Strategy {
+        EXACT, PARTIAL_INDEX, ITERATIVE
+    }
+
+    /**
+     * @return plan ranking every matching row exactly
+     */
+    public static VectorFilterPlan exact() {
+        return new VectorFilterPlan(Strategy.EXACT, null, 0, null);
+    }
+
+    /**
+     * HNSW index whose predicate is {@code deleted_at IS NULL} and one JSONB containment,
+     * e.g. {@code WHERE deleted_at IS NULL AND metadata @> '{"module": "ap"}'}.
+     *
+     * @param name         index name
+     * @param containment  metadata key/value pairs of the predicate
+     * @param predicateSql the containment exactly as in the index definition; it is inlined
+     *                     so the planner can prove the index applies
+     */
+    public record PartialIndex(String name, Map<String, String> containment, String predicateSql) {
+
+        /**
+         * @param filter search filter
+         * @return true if every row matching the filter is in the index
+         */
+        public boolean covers(VectorFilter filter) {
+            Map<String, String> equalities = filter.equalities();
+            return !containment.isEmpty() && containment.entrySet().stream()
+                    .allMatch(entry -> entry.getValue().equals(equalities.get(entry.getKey())));
+        }
+    }
+}
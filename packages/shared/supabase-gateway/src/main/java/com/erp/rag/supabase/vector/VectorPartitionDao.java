@@ -0,0 +1,377 @@
+package com.erp.rag.supabase.vector;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Partition layout of {@code accounting.vector_documents} and partition-aware index DDL.
+ * <p>
+ * Story 1.3 – AC2: Changelog 013 partitions the table {@code LIST (company_id)}. Large tenants
+ * get a dedicated partition {@code vector_documents_c<company_id>}; all other tenants share
+ * the default partition {@code vector_documents_default}, itself split
+ * {@code HASH (company_id)} into {@code vector_documents_hNN}. Every partition has its own
+ * HNSW indexes, so a query with {@code company_id = :companyId} is pruned to one partition and
+ * walks a graph holding only that tenant (or its hash bucket): recall and latency no longer
+ * depend on how many vectors other tenants store.
+ * </p>
+ * <p>
+ * Postgres cannot build or drop an index on a partitioned table {@code CONCURRENTLY}.
+ * {@link #createIndex} therefore creates the parent index {@code ON ONLY} the parent, builds
+ * one index per leaf partition concurrently and attaches them; an interrupted build resumes
+ * with the partitions still missing. On an unpartitioned table it falls back to a plain
+ * concurrent build, so callers need not know the layout.
+ * </p>
+ * <p>
+ * {@link #createTenantPartition} moves a tenant out of the default partition: its rows are
+ * copied to a standalone table and indexed there while the tenant stays searchable, then rows
+ * changed in the meantime are synchronised and the table is attached in one short
+ * transaction.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Repository
+public class VectorPartitionDao {
+
+    static final String SCHEMA = "accounting";
+    static final String TABLE_NAME = "vector_documents";
+    static final String TABLE = SCHEMA + "." + TABLE_NAME;
+    static final String DEFAULT_PARTITION = "vector_documents_default";
+
+    /** Postgres truncates identifiers to 63 bytes. */
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    static final String IS_PARTITIONED_SQL = """
+            SELECT count(*)
+            FROM pg_partitioned_table p
+            JOIN pg_class c ON c.oid = p.partrelid
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE n.nspname = 'accounting' AND c.relname = 'vector_documents'
+            """;
+
+    static final String PARTITIONS_SQL = """
+            SELECT c.relname AS name,
+                   pg_get_expr(c.relpartbound, c.oid) AS bound,
+                   c.relkind = 'p' AS partitioned,
+                   GREATEST(c.reltuples, 0)::bigint AS estimated_rows
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = CAST(:table AS regclass)
+            ORDER BY c.relname
+            """;
+
+    static final String INDEX_STATE_SQL = """
+            SELECT c.relkind = 'I' AS partitioned, x.indisvalid AS valid,
+                   EXISTS (SELECT 1 FROM pg_inherits i WHERE i.inhrelid = c.oid) AS attached
+            FROM pg_class c
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            JOIN pg_index x ON x.indexrelid = c.oid
+            WHERE n.nspname = 'accounting' AND c.relname = :name
+            """;
+
+    static final String ATTACHED_INDEX_SQL = """
+            SELECT count(*)
+            FROM pg_inherits i
+            JOIN pg_index x ON x.indexrelid = i.inhrelid
+            WHERE i.inhparent = CAST(:index AS regclass) AND x.indrelid = CAST(:table AS regclass)
+            """;
+
+    static final String INDEX_TREE_SQL = """
+            WITH RECURSIVE tree AS (
+                SELECT i.inhrelid AS index_oid FROM pg_inherits i WHERE i.inhparent = CAST(:index AS regclass)
+                UNION ALL
+                SELECT i.inhrelid FROM pg_inherits i JOIN tree t ON i.inhparent = t.index_oid
+            )
+            SELECT ci.relname AS index_name, ct.relname AS table_name
+            FROM tree
+            JOIN pg_index x ON x.indexrelid = tree.index_oid
+            JOIN pg_class ci ON ci.oid = x.indexrelid
+            JOIN pg_class ct ON ct.oid = x.indrelid
+            ORDER BY ct.relname
+            """;
+
+    static final String TABLE_INDEXES_SQL = """
+            SELECT c.relname AS name, pg_get_indexdef(x.indexrelid) AS definition
+            FROM pg_index x
+            JOIN pg_class c ON c.oid = x.indexrelid
+            WHERE x.indrelid = CAST(:table AS regclass)
+              AND NOT EXISTS (SELECT 1 FROM pg_constraint k WHERE k.conindid = x.indexrelid)
+            ORDER BY c.relname
+            """;
+
+    static final String COLUMNS_SQL = """
+            SELECT string_agg(quote_ident(attname), ', ' ORDER BY attnum)
+            FROM pg_attribute
+            WHERE attrelid = CAST(:table AS regclass) AND attnum > 0 AND NOT attisdropped
+            """;
+
+    static final String DEFAULT_PARTITION_TENANTS_SQL = """
+            SELECT company_id, count(*) AS live_rows
+            FROM accounting.vector_documents_default
+            WHERE deleted_at IS NULL
+            GROUP BY company_id
+            HAVING count(*) >= :minRows
+            ORDER BY live_rows DESC
+            """;
+
+    private static final Pattern INDEX_DEFINITION_HEAD = Pattern.compile(
+            "^CREATE (?:UNIQUE )?INDEX \\S+ ON (?:ONLY )?accounting\\.vector_documents ");
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public VectorPartitionDao(NamedParameterJdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @return whether changelog 013 has partitioned the table
+     */
+    public boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Map.of(), Integer.class);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Direct partitions of a table.
+     *
+     * @param table table name in the {@code accounting} schema
+     * @return partitions ordered by name
+     */
+    public List<Partition> findPartitions(String table) {
+        return jdbcTemplate.query(PARTITIONS_SQL, Map.of("table", SCHEMA + "." + table),
+                (rs, rowNum) -> new Partition(
+                        rs.getString("name"),
+                        rs.getString("bound"),
+                        rs.getBoolean("partitioned"),
+                        rs.getLong("estimated_rows")));
+    }
+
+    /**
+     * Tenants of the default partition with at least {@code minRows} live documents, i.e.
+     * candidates for a dedicated partition. Scans the default partition.
+     *
+     * @param minRows minimum number of live documents
+     * @return live document count by company id, largest first
+     */
+    public List<TenantSize> findDefaultPartitionTenants(long minRows) {
+        return jdbcTemplate.query(DEFAULT_PARTITION_TENANTS_SQL, Map.of("minRows", minRows),
+                (rs, rowNum) -> new TenantSize(rs.getLong("company_id"), rs.getLong("live_rows")));
+    }
+
+    /**
+     * Create an index on {@code vector_documents} without blocking writes, resuming an
+     * interrupted build.
+     *
+     * @param name index name
+     * @param tail index definition after the table name, e.g.
+     *             {@code USING hnsw (embedding vector_cosine_ops) WHERE deleted_at IS NULL}
+     */
+    public void createIndex(String name, String tail) {
+        if (!isPartitioned()) {
+            dropIfInvalid(name);
+            execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON " + TABLE + " " + tail);
+            return;
+        }
+        execute("CREATE INDEX IF NOT EXISTS " + name + " ON ONLY " + TABLE + " " + tail);
+        attachPartitionIndexes(TABLE_NAME, name, name, tail);
+    }
+
+    /**
+     * Drop an index on {@code vector_documents}. A partitioned index cannot be dropped
+     * concurrently and briefly locks every partition; a plain one is dropped concurrently.
+     *
+     * @param name index name
+     */
+    public void dropIndex(String name) {
+        IndexState state = indexState(name);
+        if (state == null) {
+            return;
+        }
+        execute((state.partitioned() ? "DROP INDEX IF EXISTS " : "DROP INDEX CONCURRENTLY IF EXISTS ")
+                + SCHEMA + "." + name);
+    }
+
+    /**
+     * Statements renaming an index and, on a partitioned table, the indexes of every partition
+     * after it, so partition index names keep following their parent.
+     *
+     * @param from current index name
+     * @param to   new index name
+     * @return {@code ALTER INDEX} statements to run in order
+     */
+    public List<String> renameIndexStatements(String from, String to) {
+        List<String> statements = new ArrayList<>();
+        statements.add("ALTER INDEX " + SCHEMA + "." + from + " RENAME TO " + to);
+        IndexState state = indexState(from);
+        if (state != null && state.partitioned()) {
+            jdbcTemplate.query(INDEX_TREE_SQL, Map.of("index", SCHEMA + "." + from), rs -> {
+                String current = rs.getString("index_name");
+                String renamed = partitionIndexName(to, rs.getString("table_name"));
+                if (!current.equals(renamed)) {
+                    statements.add("ALTER INDEX " + SCHEMA + "." + current + " RENAME TO " + renamed);
+                }
+            });
+        }
+        return statements;
+    }
+
+    /**
+     * Move a tenant from the default partition to a dedicated partition with its own indexes.
+     * <p>
+     * Copying and indexing run without locks on the shared partitions. The final transaction
+     * locks the default partition, re-syncs rows inserted, updated or deleted since the copy,
+     * deletes the tenant from it and attaches the new partition; attaching scans the default
+     * partition once, so long-tail queries wait for that scan.
+     * </p>
+     *
+     * @param companyId tenant to move
+     * @return name of the dedicated partition
+     * @throws IllegalStateException if the table is not partitioned or the tenant already has a
+     *                               dedicated partition
+     */
+    public String createTenantPartition(long companyId) {
+        if (!isPartitioned()) {
+            throw new IllegalStateException("accounting.vector_documents is not partitioned");
+        }
+        String partition = tenantPartitionName(companyId);
+        if (findPartitions(TABLE_NAME).stream().anyMatch(p -> p.name().equals(partition))) {
+            throw new IllegalStateException("Company " + companyId + " already has partition " + partition);
+        }
+        String qualified = SCHEMA + "." + partition;
+        String source = SCHEMA + "." + DEFAULT_PARTITION;
+        String columns = jdbcTemplate.queryForObject(COLUMNS_SQL, Map.of("table", TABLE), String.class);
+
+        // Leftover of an interrupted move: never attached, so it holds only copies.
+        execute("DROP TABLE IF EXISTS " + qualified);
+        execute("CREATE TABLE " + qualified + " (LIKE " + TABLE
+                + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS INCLUDING STORAGE)");
+        execute("INSERT INTO " + qualified + " (" + columns + ") SELECT " + columns + " FROM " + source
+                + " WHERE company_id = " + companyId);
+        execute("ALTER TABLE " + qualified + " ADD CONSTRAINT " + partition + "_bound CHECK (company_id = "
+                + companyId + ")");
+        execute("ALTER TABLE " + qualified + " ADD CONSTRAINT " + partition + "_pkey PRIMARY KEY (id, company_id)");
+        List<String> indexes = jdbcTemplate.query(TABLE_INDEXES_SQL, Map.of("table", TABLE),
+                (rs, rowNum) -> "CREATE INDEX " + partitionIndexName(rs.getString("name"), partition)
+                        + " ON " + qualified + " " + indexTail(rs.getString("definition")));
+        indexes.forEach(this::execute);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            execute("SET LOCAL lock_timeout = '10s'");
+            execute("LOCK TABLE " + source + " IN ACCESS EXCLUSIVE MODE");
+            execute("DELETE FROM " + qualified + " n WHERE NOT EXISTS (SELECT 1 FROM " + source + " d "
+                    + "WHERE d.company_id = " + companyId + " AND d.id = n.id AND d.updated_at = n.updated_at)");
+            execute("INSERT INTO " + qualified + " (" + columns + ") SELECT " + columns + " FROM " + source + " d "
+                    + "WHERE d.company_id = " + companyId + " AND NOT EXISTS (SELECT 1 FROM " + qualified + " n "
+                    + "WHERE n.id = d.id)");
+            execute("DELETE FROM " + source + " WHERE company_id = " + companyId);
+            execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + qualified + " FOR VALUES IN (" + companyId + ")");
+        });
+        // Implied by the partition bound from now on.
+        execute("ALTER TABLE " + qualified + " DROP CONSTRAINT " + partition + "_bound");
+        execute("ANALYZE " + qualified);
+        return partition;
+    }
+
+    /**
+     * @return name of the dedicated partition of a tenant
+     */
+    public static String tenantPartitionName(long companyId) {
+        return TABLE_NAME + "_c" + companyId;
+    }
+
+    /**
+     * Index definition after the table name, from a {@code pg_get_indexdef} or
+     * {@code pg_indexes.indexdef} of an index on {@code vector_documents}.
+     *
+     * @throws IllegalArgumentException for an index on another table
+     */
+    public static String indexTail(String definition) {
+        Matcher matcher = INDEX_DEFINITION_HEAD.matcher(definition);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("Not an index on " + TABLE + ": " + definition);
+        }
+        return definition.substring(matcher.end());
+    }
+
+    /**
+     * Name of the index of a partition under a parent index: the table name inside the parent
+     * name is replaced by the partition name, e.g. {@code idx_vector_documents_h03_embedding_hnsw}.
+     */
+    static String partitionIndexName(String parentIndex, String partition) {
+        String name = parentIndex.contains(TABLE_NAME)
+                ? parentIndex.replaceFirst(TABLE_NAME, partition)
+                : parentIndex + "_" + partition;
+        return name.length() > MAX_IDENTIFIER_LENGTH ? name.substring(0, MAX_IDENTIFIER_LENGTH) : name;
+    }
+
+    private void attachPartitionIndexes(String table, String index, String rootIndex, String tail) {
+        for (Partition partition : findPartitions(table)) {
+            Integer attached = jdbcTemplate.queryForObject(ATTACHED_INDEX_SQL, Map.of(
+                    "index", SCHEMA + "." + index,
+                    "table", SCHEMA + "." + partition.name()), Integer.class);
+            if (attached != null && attached > 0) {
+                continue;
+            }
+            String child = partitionIndexName(rootIndex, partition.name());
+            if (partition.partitioned()) {
+                execute("CREATE INDEX IF NOT EXISTS " + child + " ON ONLY " + SCHEMA + "." + partition.name()
+                        + " " + tail);
+                attachPartitionIndexes(partition.name(), child, rootIndex, tail);
+            } else {
+                dropIfInvalid(child);
+                execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + child + " ON " + SCHEMA + "."
+                        + partition.name() + " " + tail);
+            }
+            execute("ALTER INDEX " + SCHEMA + "." + index + " ATTACH PARTITION " + SCHEMA + "." + child);
+        }
+    }
+
+    private void dropIfInvalid(String name) {
+        IndexState state = indexState(name);
+        if (state != null && !state.valid() && !state.partitioned() && !state.attached()) {
+            execute("DROP INDEX CONCURRENTLY IF EXISTS " + SCHEMA + "." + name);
+        }
+    }
+
+    private IndexState indexState(String name) {
+        List<IndexState> states = jdbcTemplate.query(INDEX_STATE_SQL, Map.of("name", name),
+                (rs, rowNum) -> new IndexState(rs.getBoolean("partitioned"), rs.getBoolean("valid"),
+                        rs.getBoolean("attached")));
+        return states.isEmpty() ? null : states.get(0);
+    }
+
+    private void execute(String sql) {
+        jdbcTemplate.getJdbcOperations().execute(sql);
+    }
+
+    /**
+     * @param name          partition table name
+     * @param bound         partition bound, e.g. {@code FOR VALUES IN ('42')} or {@code DEFAULT}
+     * @param partitioned   whether the partition is itself partitioned
+     * @param estimatedRows planner row estimate
+     */
+    public record Partition(String name, String bound, boolean partitioned, long estimatedRows) {
+    }
+
+    /**
+     * @param companyId vector company id
+     * @param liveRows  live documents
+     */
+    public record TenantSize(long companyId, long liveRows) {
+    }
+
+    private record IndexState(boolean partitioned, boolean valid, boolean attached) {
+    }
+}
@@ -0,0 +1,137 @@
+package com.erp.rag.supabase.vector;
+
+import java.util.Locale;
+
+/**
+ * Compact representation searched before full-precision re-ranking.
+ * <p>
+ * Story 1.3 – AC3: {@code vector_documents.embedding} stays {@code vector(1536)}; a quantized
+ * mode adds an HNSW expression index over a compact cast of it (changelog 008, pgvector
+ * &gt;= 0.7). Search takes an oversampled candidate set from that index and re-ranks it by
+ * exact cosine distance on the stored vectors:
+ * </p>
+ * <ul>
+ *   <li>{@link #HALFVEC}: 16-bit floats, half the index size, recall close to full precision</li>
+ *   <li>{@link #BINARY}: one bit per dimension, Hamming distance, 1/32 of the index size;
+ *       needs a larger oversampling factor</li>
+ * </ul>
+ * <p>
+ * Any mode can also search only the first n dimensions (Matryoshka truncation, changelog
+ * 009), which shrinks the index and the distance computations by 1536/n.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public enum VectorQuantization {
+
+    /** Full-precision HNSW index only, or a {@code vector(n)} prefix index when truncated. */
+    NONE("idx_vector_documents_embedding", 1),
+
+    /** {@code halfvec_cosine_ops} index over {@code embedding::halfvec(1536)}. */
+    HALFVEC("idx_vector_documents_embedding_halfvec", 3),
+
+    /** {@code bit_hamming_ops} index over {@code binary_quantize(embedding)::bit(1536)}. */
+    BINARY("idx_vector_documents_embedding_bit", 10);
+
+    /** Width of {@code vector_documents.embedding}. */
+    public static final int FULL_DIMENSIONS = 1536;
+
+    private static final int TRUNCATED_OVERSAMPLING = 3;
+
+    private final String indexPrefix;
+    private final int defaultOversampling;
+
+    VectorQuantization(String indexPrefix, int defaultOversampling) {
+        this.indexPrefix = indexPrefix;
+        this.defaultOversampling = defaultOversampling;
+    }
+
+    /**
+     * @return name of the full-width HNSW expression index, or null for {@link #NONE}
+     */
+    public String indexName() {
+        return this == NONE ? null : indexName(FULL_DIMENSIONS);
+    }
+
+    /**
+     * Name of the HNSW index over the first {@code dimensions} components, as created by
+     * changelogs 008 (full width) and 009 (Matryoshka prefix).
+     *
+     * @param dimensions leading dimensions indexed
+     * @return index name
+     */
+    public String indexName(int dimensions) {
+        return indexPrefix + (dimensions < FULL_DIMENSIONS ? "_d" + dimensions : "") + "_hnsw";
+    }
+
+    /**
+     * @return ORDER BY expression matching the full-width index, or null for {@link #NONE}
+     */
+    public String candidateOrder() {
+        return candidateOrder(FULL_DIMENSIONS);
+    }
+
+    /**
+     * ORDER BY expression matching the index over the first {@code dimensions} components.
+     * <p>
+     * Matryoshka embeddings (text-embedding-3) keep most of their meaning in the leading
+     * components; a prefix compared by cosine needs no renormalization, as cosine ignores
+     * length.
+     * </p>
+     *
+     * @param dimensions leading dimensions compared, at most {@link #FULL_DIMENSIONS}
+     * @return ORDER BY expression, or null for {@link #NONE} at full width
+     */
+    public String candidateOrder(int dimensions) {
+        if (dimensions < 1 || dimensions > FULL_DIMENSIONS) {
+            throw new IllegalArgumentException("Search dimensions must be between 1 and " + FULL_DIMENSIONS
+                    + ", got " + dimensions);
+        }
+        boolean truncated = dimensions < FULL_DIMENSIONS;
+        String column = truncated ? "subvector(embedding, 1, " + dimensions + ")" : "embedding";
+        String query = truncated
+                ? "subvector(CAST(:queryEmbedding AS vector), 1, " + dimensions + ")"
+                : "CAST(:queryEmbedding AS vector)";
+        return switch (this) {
+            case NONE -> truncated ? column + "::vector(" + dimensions + ") <=> " + query : null;
+            case HALFVEC -> column + "::halfvec(" + dimensions + ") <=> CAST(" + query + " AS halfvec("
+                    + dimensions + "))";
+            case BINARY -> "binary_quantize(" + column + ")::bit(" + dimensions + ") <~> binary_quantize("
+                    + query + ")";
+        };
+    }
+
+    /**
+     * @return candidates fetched per requested result when no factor is configured
+     */
+    public int defaultOversampling() {
+        return defaultOversampling;
+    }
+
+    /**
+     * @param dimensions leading dimensions searched
+     * @return candidates fetched per requested result when no factor is configured
+     */
+    public int defaultOversampling(int dimensions) {
+        return this == NONE && dimensions < FULL_DIMENSIONS ? TRUNCATED_OVERSAMPLING : defaultOversampling;
+    }
+
+    /**
+     * Parse a configuration value ({@code none}, {@code halfvec}, {@code binary}).
+     *
+     * @param value configuration value; blank means {@link #NONE}
+     * @return the quantization mode
+     */
+    public static VectorQuantization fromConfig(String value) {
+        if (value == null || value.isBlank()) {
+            return NONE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown vector quantization '" + value.trim()
+                    + "' (expected none, halfvec or binary)", e);
+        }
+    }
+}
@@ -0,0 +1,635 @@
+package com.erp.rag.supabase.vector;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cosine similarity search over {@code accounting.vector_documents}.
+ * <p>
+ * Story 1.3 – AC3: Top-k queries order by the {@code <=>} expression so they are served by
+ * the partial HNSW index {@code idx_vector_documents_embedding_hnsw} ({@code vector_cosine_ops},
+ * {@code WHERE deleted_at IS NULL}). Rows are mapped straight into {@link VectorSearchResult}
+ * with plain JDBC: the select list names only the columns retrieval reads, so neither the
+ * embedding nor the whole metadata document is transferred or materialized as a
+ * {@link VectorDocument}.
+ * </p>
+ * <p>
+ * The query embedding is bound as {@code float[]}, which pgjdbc sends as binary
+ * {@code float4[]} for pgvector's {@code real[] -> vector} cast.
+ * </p>
+ * <p>
+ * With a {@link VectorQuantization} mode, the nearest {@code candidates} rows are taken from
+ * the compact expression index and re-ranked by exact cosine distance on the stored
+ * {@code vector(1536)}, so returned distances are full precision. An HNSW scan returns at most
+ * {@code hnsw.ef_search} rows; when more candidates are requested, the setting is raised for
+ * the query on the same connection and reset afterwards.
+ * </p>
+ * <p>
+ * The candidate scan may also compare only the leading dimensions of each embedding
+ * (Matryoshka truncation over a prefix index); the query embedding is still bound at full
+ * width and truncated in SQL, so the re-rank is unchanged.
+ * </p>
+ * <p>
+ * Story 1.5 – AC6: {@link VectorFilter} searches follow a {@link VectorFilterPlan}; this DAO
+ * supplies what the plan is chosen from: a bounded count of matching rows, a sampled
+ * selectivity and the partial HNSW indexes present in the database.
+ * </p>
+ * <p>
+ * Story 1.5 – AC3: {@link #findLexical} is the full-text leg of hybrid retrieval, served by the
+ * GIN index on {@code content_tsv}; its ranking is fused with the vector ranking by
+ * {@link ReciprocalRankFusion}.
+ * </p>
+ * <p>
+ * {@link #findByDocumentNumbers} resolves documents quoted by number with a btree lookup,
+ * for questions that need no semantic search at all.
+ * </p>
+ * <p>
+ * Every statement, including the join back to {@code vector_documents}, constrains
+ * {@code company_id}, so on the partitioned table (see {@link VectorPartitionDao}) each query
+ * is pruned to the tenant's partition and its HNSW graph.
+ * </p>
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+@Repository
+public class VectorSearchDao {
+
+    static final String SELECT_SQL = "SELECT id, " +
+            "COALESCE(metadata->>'document_type', content_type) AS document_type, " +
+            "metadata->>'module' AS module, " +
+            "COALESCE(NULLIF(content_text, ''), metadata->>'content_text') AS content_text, " +
+            "embedding <=> CAST(:queryEmbedding AS vector) AS distance " +
+            "FROM accounting.vector_documents " +
+            "WHERE company_id = :companyId AND deleted_at IS NULL ";
+
+    static final String ORDER_SQL = "ORDER BY embedding <=> CAST(:queryEmbedding AS vector) " +
+            "LIMIT :limit";
+
+    static final String SIMILAR_SQL = SELECT_SQL + ORDER_SQL;
+
+    static final String SIMILAR_WITH_METADATA_SQL = SELECT_SQL +
+            "AND jsonb_path_exists(metadata, CAST(:metadataFilter AS jsonpath)) " + ORDER_SQL;
+
+    static final String CONTENT_TEXT_SQL = "SELECT id, " +
+            "COALESCE(NULLIF(content_text, ''), metadata->>'content_text') AS content_text " +
+            "FROM accounting.vector_documents " +
+            "WHERE company_id = :companyId AND deleted_at IS NULL AND id = ANY(:ids)";
+
+    /** pgvector's default {@code hnsw.ef_search}. */
+    static final int DEFAULT_EF_SEARCH = 40;
+
+    /** pgvector's upper bound for {@code hnsw.ef_search}. */
+    static final int MAX_EF_SEARCH = 1000;
+
+    static final String EF_SEARCH_SQL = "SELECT set_config('hnsw.ef_search', " +
+            "GREATEST(COALESCE(current_setting('hnsw.ef_search', true), '40')::int, ?)::text, false)";
+
+    static final String RESET_ITERATIVE_SCAN_SQL = "RESET hnsw.iterative_scan";
+
+    static final String ITERATIVE_SCAN_SQL = "SELECT set_config('hnsw.iterative_scan', ?, false)";
+
+    static final String COUNT_MATCHING_SQL = "SELECT count(*) FROM (SELECT 1 FROM accounting.vector_documents " +
+            "WHERE company_id = :companyId AND deleted_at IS NULL AND %s LIMIT :cap) matching";
+
+    static final String SAMPLE_SELECTIVITY_SQL = "SELECT count(*) AS sampled, count(*) FILTER (WHERE %s) AS matching " +
+            "FROM (SELECT metadata FROM accounting.vector_documents " +
+            "WHERE company_id = :companyId AND deleted_at IS NULL LIMIT :sample) sample";
+
+    static final String PARTIAL_INDEXES_SQL = "SELECT indexname, indexdef FROM pg_indexes " +
+            "WHERE schemaname = 'accounting' AND tablename = 'vector_documents' " +
+            "AND indexdef LIKE '%USING hnsw (embedding vector_cosine_ops)%WHERE%'";
+
+    static final String CHANGED_SINCE_SQL = "SELECT id, " +
+            "COALESCE(metadata->>'document_type', content_type) AS document_type, " +
+            "metadata->>'module' AS module, " +
+            "COALESCE(NULLIF(content_text, ''), metadata->>'content_text') AS content_text, " +
+            "vector_send(embedding) AS embedding, updated_at, deleted_at IS NOT NULL AS deleted " +
+            "FROM accounting.vector_documents " +
+            "WHERE company_id = :companyId AND (updated_at, id) > (:since, :afterId) " +
+            "ORDER BY updated_at, id LIMIT :limit";
+
+    private static final String RANKED_COLUMNS_SQL = "SELECT d.id, " +
+            "COALESCE(d.metadata->>'document_type', d.content_type) AS document_type, " +
+            "d.metadata->>'module' AS module, " +
+            "COALESCE(NULLIF(d.content_text, ''), d.metadata->>'content_text') AS content_text, " +
+            "r.distance " +
+            "FROM ranked r JOIN accounting.vector_documents d ON d.id = r.id AND d.company_id = :companyId ";
+
+    static final String RANKED_PROJECTION_SQL = RANKED_COLUMNS_SQL + "ORDER BY r.distance";
+
+    /** Text search configuration of {@code content_tsv} (changelog 011). */
+    static final String TEXT_SEARCH_CONFIG = "accounting.vietnamese_unaccent";
+
+    private static final String METADATA_PATH_FILTER = "jsonb_path_exists(metadata, CAST(:metadataFilter AS jsonpath))";
+
+    private static final Pattern PARTIAL_PREDICATE = Pattern.compile(
+            "WHERE\\s*\\(*\\s*\\(?deleted_at IS NULL\\)? AND \\((metadata @> '((?:[^']|'')*)'::jsonb)\\)[\\s)]*$");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static final RowMapper<VectorSearchResult> ROW_MAPPER = (rs, rowNum) -> new VectorSearchResult(
+            rs.getLong("id"),
+            rs.getString("document_type"),
+            rs.getString("module"),
+            rs.getString("content_text"),
+            rs.getDouble("distance"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public VectorSearchDao(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Top-k nearest neighbours of the query embedding within the company scope.
+     *
+     * @param companyId      the company id
+     * @param queryEmbedding the query embedding
+     * @param limit          maximum number of results
+     * @return hits ordered by cosine distance (most similar first)
+     */
+    public List<VectorSearchResult> findSimilar(Long companyId, PgVector queryEmbedding, int limit) {
+        // An HNSW scan returns at most ef_search rows
+        return withEfSearch(Math.min(limit, MAX_EF_SEARCH),
+                template -> template.query(SIMILAR_SQL, params(companyId, queryEmbedding, limit), ROW_MAPPER));
+    }
+
+    /**
+     * Top-k nearest neighbours restricted by a JSONB path predicate on metadata.
+     *
+     * @param companyId      the company id
+     * @param queryEmbedding the query embedding
+     * @param metadataFilter JSONB path expression (e.g., '$.module == "ar"')
+     * @param limit          maximum number of results
+     * @return hits ordered by cosine distance (most similar first)
+     */
+    public List<VectorSearchResult> findSimilarWithMetadata(Long companyId, PgVector queryEmbedding,
+            String metadataFilter, int limit) {
+        return jdbcTemplate.query(SIMILAR_WITH_METADATA_SQL,
+                params(companyId, queryEmbedding, limit).addValue("metadataFilter", metadataFilter),
+                ROW_MAPPER);
+    }
+
+    /**
+     * Top-k nearest neighbours from a quantized candidate set, re-ranked at full precision.
+     *
+     * @param companyId      the company id
+     * @param queryEmbedding the query embedding
+     * @param limit          maximum number of results
+     * @param quantization   index to take candidates from; {@link VectorQuantization#NONE}
+     *                       searches the full-precision index directly
+     * @param candidates     candidates to re-rank (at least {@code limit})
+     * @return hits ordered by exact cosine distance (most similar first)
+     */
+    public List<VectorSearchResult> findSimilar(Long companyId, PgVector queryEmbedding, int limit,
+            VectorQuantization quantization, int candidates) {
+        return findSimilar(companyId, queryEmbedding, limit, quantization, VectorQuantization.FULL_DIMENSIONS,
+                candidates);
+    }
+
+    /**
+     * Top-k nearest neighbours from candidates compared on the first {@code dimensions}
+     * components (Matryoshka truncation), re-ranked on the full vectors.
+     *
+     * @param companyId      the company id
+     * @param queryEmbedding the full-width query embedding
+     * @param limit          maximum number of results
+     * @param quantization   representation of the indexed prefix
+     * @param dimensions     leading dimensions compared by the candidate scan
+     * @param candidates     candidates to re-rank (at least {@code limit})
+     * @return hits ordered by exact cosine distance (most similar first)
+     */
+    public List<VectorSearchResult> findSimilar(Long companyId, PgVector queryEmbedding, int limit,
+            VectorQuantization quantization, int dimensions, int candidates) {
+        if (quantization == VectorQuantization.NONE && dimensions >= VectorQuantization.FULL_DIMENSIONS) {
+            return findSimilar(companyId, queryEmbedding, limit);
+        }
+        int candidateLimit = Math.min(Math.max(candidates, limit), MAX_EF_SEARCH);
+        MapSqlParameterSource params = params(companyId, queryEmbedding, limit)
+                .addValue("candidates", candidateLimit);
+        return withEfSearch(candidateLimit,
+                template -> template.query(rerankSql(quantization, dimensions, false), params, ROW_MAPPER));
+    }
+
+    /**
+     * Quantized top-k search restricted by a JSONB path predicate on metadata.
+     *
+     * @param companyId      the company id
+     * @param queryEmbedding the query embedding
+     * @param metadataFilter JSONB path expression (e.g., '$.module == "ar"')
+     * @param limit          maximum number of results
+     * @param quantization   index to take candidates from
+     * @param candidates     candidates to re-rank (at least {@code limit})
+     * @return hits ordered by exact cosine distance (most similar first)
+     */
+    public List<VectorSearchResult> findSimilarWithMetadata(Long companyId, PgVector queryEmbedding,
+            String metadataFilter, int limit, VectorQuantization quantization, int candidates) {
+        return findSimilarWithMetadata(companyId, queryEmbedding, metadataFilter, limit, quantization,
+                VectorQuantization.FULL_DIMENSIONS, candidates);
+    }
+
+    /**
+     * Truncated and/or quantized top-k search restricted by a JSONB path predicate on metadata.
+     *
+     * @param companyId      the company id
+     * @param queryEmbedding the full-width query embedding
+     * @param metadataFilter JSONB path expression (e.g., '$.module == "ar"')
+     * @param limit          maximum number of results
+     * @param quantization   representation of the indexed prefix
+     * @param dimensions     leading dimensions compared by the candidate scan
+     * @param candidates     candidates to re-rank (at least {@code limit})
+     * @return hits ordered by exact cosine distance (most similar first)
+     */
+    public List<VectorSearchResult> findSimilarWithMetadata(Long companyId, PgVector queryEmbedding,
+            String metadataFilter, int limit, VectorQuantization quantization, int dimensions, int candidates) {
+        if (quantization == VectorQuantization.NONE && dimensions >= VectorQuantization.FULL_DIMENSIONS) {
+            return findSimilarWithMetadata(companyId, queryEmbedding, metadataFilter, limit);
+        }
+        int candidateLimit = Math.min(Math.max(candidates, limit), MAX_EF_SEARCH);
+        MapSqlParameterSource params = params(companyId, queryEmbedding, limit)
+                .addValue("candidates", candidateLimit)
+                .addValue("metadataFilter", metadataFilter);
+        return withEfSearch(candidateLimit,
+                template -> template.query(rerankSql(quantization, dimensions, true), params, ROW_MAPPER));
+    }
+
+    /**
+     * Top-k nearest neighbours matching typed metadata predicates, found as the plan says.
+     *
+     * @param companyId      the company id
+     * @param queryEmbedding the full-width query embedding
+     * @param limit          maximum number of results
+     * @param filter         metadata predicates
+     * @param plan           strategy chosen for the filter
+     * @param quantization   representation of the index scanned by {@link VectorFilterPlan.Strategy#ITERATIVE}
+     * @param dimensions     leading dimensions compared by that scan
+     * @return hits ordered by exact cosine distance (most similar first)
+     */
+    public List<VectorSearchResult> findSimilar(Long companyId, PgVector queryEmbedding, int limit,
+            VectorFilter filter, VectorFilterPlan plan, VectorQuantization quantization, int dimensions) {
+        if (filter.isEmpty()) {
+            return findSimilar(companyId, queryEmbedding, limit, quantization, dimensions, plan.candidates());
+        }
+        MapSqlParameterSource params = filter.bind(params(companyId, queryEmbedding, limit));
+        if (plan.strategy() == VectorFilterPlan.Strategy.EXACT) {
+            return jdbcTemplate.query(exactSql(filter.sql()), params, ROW_MAPPER);
+        }
+
+        int candidateLimit = Math.min(Math.max(plan.candidates(), limit), MAX_EF_SEARCH);
+        params.addValue("candidates", candidateLimit);
+        String sql = plan.strategy() == VectorFilterPlan.Strategy.PARTIAL_INDEX
+                // The partial index is full precision; its predicate must appear literally
+                ? rerankSql(VectorQuantization.NONE, VectorQuantization.FULL_DIMENSIONS,
+                        plan.partialIndex().predicateSql() + " AND " + filter.sql())
+                : rerankSql(quantization, dimensions, filter.sql());
+        return withSearchSettings(candidateLimit, plan.iterativeScan(),
+                template -> template.query(sql, params, ROW_MAPPER));
+    }
+
+    /**
+     * Full-text top-k over {@code content_tsv}: documents sharing any term with the query,
+     * ranked by {@code ts_rank_cd} (cover density, so documents holding several query terms
+     * close together come first).
+     * <p>
+     * The query is normalised with the column's configuration and its terms are OR-ed, so a
+     * question that also contains words absent from the document still matches on an invoice
+     * number or tax code. Each hit carries its exact cosine distance to the query embedding,
+     * so its similarity is comparable with vector hits.
+     * </p>
+     *
+     * @param companyId      the company id
+     * @param queryText      question text
+     * @param queryEmbedding the query embedding
+     * @param limit          maximum number of results
+     * @param filter         metadata predicates, or {@link VectorFilter#NONE}
+     * @return hits ordered by text rank (best first)
+     */
+    public List<VectorSearchResult> findLexical(Long companyId, String queryText, PgVector queryEmbedding,
+            int limit, VectorFilter filter) {
+        MapSqlParameterSource params = filter.bind(params(companyId, queryEmbedding, limit))
+                .addValue("queryText", queryText);
+        return jdbcTemplate.query(lexicalSql(filter.sql()), params, ROW_MAPPER);
+    }
+
+    /**
+     * Documents by business number (invoice, bill, payment, entry or transaction number,
+     * partner code), through the btree index on {@code upper(metadata->>'document_number')}
+     * (changelog 012). Hits have distance 0: they are exact matches, not neighbours.
+     *
+     * @param companyId       the company id
+     * @param documentNumbers numbers to look up, compared case-insensitively
+     * @param documentType    restrict to this document type, or null for any
+     * @param filter          metadata predicates, or {@link VectorFilter#NONE}
+     * @param limit           maximum number of results
+     * @return matching documents ordered by id
+     */
+    public List<VectorSearchResult> findByDocumentNumbers(Long companyId, Collection<String> documentNumbers,
+            String documentType, VectorFilter filter, int limit) {
+        if (documentNumbers.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = filter.bind(new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("documentNumbers", documentNumbers.stream()
+                        .map(number -> number.toUpperCase(Locale.ROOT))
+                        .toArray(String[]::new))
+                .addValue("documentType", documentType)
+                .addValue("limit", limit));
+        return jdbcTemplate.query(documentNumberSql(documentType != null, filter.sql()), params, ROW_MAPPER);
+    }
+
+    /**
+     * One page of the company's rows changed after a {@code (updated_at, id)} position,
+     * including soft-deleted ones, with their embedding; for copies of the index kept outside
+     * the database. Served by {@code idx_vector_documents_company_updated} (changelog 014).
+     * Embeddings are read through {@code vector_send} and decoded with
+     * {@link PgVector#fromBinary(byte[])}, as a full build reads every row of a tenant.
+     *
+     * @param companyId the company id
+     * @param since     {@code updated_at} of the last row seen
+     * @param afterId   id of the last row seen
+     * @param limit     page size
+     * @return rows ordered by {@code (updated_at, id)}
+     */
+    public List<ChangedVector> findChangedSince(Long companyId, OffsetDateTime since, long afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("since", since)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query(CHANGED_SINCE_SQL, params, (rs, rowNum) -> new ChangedVector(
+                new VectorSearchResult(
+                        rs.getLong("id"),
+                        rs.getString("document_type"),
+                        rs.getString("module"),
+                        rs.getString("content_text"),
+                        0.0),
+                PgVector.fromBinary(rs.getBytes("embedding")).toArray(),
+                rs.getObject("updated_at", OffsetDateTime.class),
+                rs.getBoolean("deleted")));
+    }
+
+    /**
+     * Number of the company's rows matching a filter, counting at most {@code cap}.
+     *
+     * @param companyId the company id
+     * @param filter    non-empty filter
+     * @param cap       count limit
+     * @return matching rows, or {@code cap} if there are at least that many
+     */
+    public long countMatching(Long companyId, VectorFilter filter, int cap) {
+        MapSqlParameterSource params = filter.bind(new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("cap", cap));
+        Long count = jdbcTemplate.queryForObject(COUNT_MATCHING_SQL.formatted(filter.sql()), params, Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Share of the company's rows matching a filter, over the first {@code sample} rows.
+     *
+     * @param companyId the company id
+     * @param filter    non-empty filter
+     * @param sample    rows inspected
+     * @return matching share in [0, 1]; 1 if the company has no rows
+     */
+    public double sampleSelectivity(Long companyId, VectorFilter filter, int sample) {
+        MapSqlParameterSource params = filter.bind(new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("sample", sample));
+        return jdbcTemplate.queryForObject(SAMPLE_SELECTIVITY_SQL.formatted(filter.sql()), params,
+                (rs, rowNum) -> {
+                    long sampled = rs.getLong("sampled");
+                    return sampled > 0 ? rs.getLong("matching") / (double) sampled : 1.0;
+                });
+    }
+
+    /**
+     * Full-precision HNSW indexes restricted to one metadata containment.
+     *
+     * @return partial indexes usable by {@link VectorFilterPlan.Strategy#PARTIAL_INDEX}
+     */
+    public List<VectorFilterPlan.PartialIndex> findPartialIndexes() {
+        List<VectorFilterPlan.PartialIndex> indexes = new ArrayList<>();
+        jdbcTemplate.query(PARTIAL_INDEXES_SQL, Map.of(), (RowCallbackHandler) rs -> {
+            VectorFilterPlan.PartialIndex index = partialIndex(rs.getString("indexname"), rs.getString("indexdef"));
+            if (index != null) {
+                indexes.add(index);
+            }
+        });
+        return indexes;
+    }
+
+    /**
+     * Content text of several documents in one round-trip.
+     *
+     * @param companyId the company id
+     * @param ids       vector document ids
+     * @return content text by id; missing or deleted documents are absent
+     */
+    public Map<Long, String> findContentText(Long companyId, Collection<Long> ids) {
+        Map<Long, String> texts = new HashMap<>();
+        if (ids.isEmpty()) {
+            return texts;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("ids", ids.toArray(new Long[0]));
+        jdbcTemplate.query(CONTENT_TEXT_SQL, params,
+                (RowCallbackHandler) rs -> texts.put(rs.getLong("id"), rs.getString("content_text")));
+        return texts;
+    }
+
+    /**
+     * Candidate scan on the quantized index, exact re-rank, then the projection for the
+     * surviving rows only.
+     */
+    static String rerankSql(VectorQuantization quantization, boolean withMetadataFilter) {
+        return rerankSql(quantization, VectorQuantization.FULL_DIMENSIONS, withMetadataFilter);
+    }
+
+    static String rerankSql(VectorQuantization quantization, int dimensions, boolean withMetadataFilter) {
+        return rerankSql(quantization, dimensions, withMetadataFilter ? METADATA_PATH_FILTER : null);
+    }
+
+    /**
+     * @param predicate extra condition on the candidate rows, or null
+     */
+    static String rerankSql(VectorQuantization quantization, int dimensions, String predicate) {
+        String candidateOrder = quantization.candidateOrder(dimensions);
+        if (candidateOrder == null) {
+            candidateOrder = "embedding <=> CAST(:queryEmbedding AS vector)";
+        }
+        return "WITH candidates AS (" +
+                "SELECT id, embedding FROM accounting.vector_documents " +
+                "WHERE company_id = :companyId AND deleted_at IS NULL " +
+                (predicate != null ? "AND " + predicate + " " : "") +
+                "ORDER BY " + candidateOrder + " LIMIT :candidates), " +
+                "ranked AS (" +
+                "SELECT id, embedding <=> CAST(:queryEmbedding AS vector) AS distance FROM candidates " +
+                "ORDER BY distance LIMIT :limit) " +
+                RANKED_PROJECTION_SQL;
+    }
+
+    /**
+     * Exact top-k over the rows matching a predicate; {@code + 0} keeps the planner off the
+     * HNSW index, so the metadata index selects the rows and every one is ranked.
+     */
+    static String exactSql(String predicate) {
+        return "WITH ranked AS (" +
+                "SELECT id, (embedding <=> CAST(:queryEmbedding AS vector)) + 0 AS distance " +
+                "FROM accounting.vector_documents " +
+                "WHERE company_id = :companyId AND deleted_at IS NULL AND " + predicate + " " +
+                "ORDER BY distance LIMIT :limit) " +
+                RANKED_PROJECTION_SQL;
+    }
+
+    /**
+     * Text-ranked top-k; the query's lexemes are quoted and OR-ed into a tsquery.
+     *
+     * @param predicate extra condition on the rows, or null
+     */
+    static String lexicalSql(String predicate) {
+        return "WITH terms AS (" +
+                "SELECT COALESCE(string_agg(quote_literal(lexeme), ' | '), '')::tsquery AS query " +
+                "FROM unnest(tsvector_to_array(to_tsvector('" + TEXT_SEARCH_CONFIG + "', :queryText))) lexeme), " +
+                "ranked AS (" +
+                "SELECT id, embedding <=> CAST(:queryEmbedding AS vector) AS distance, " +
+                "ts_rank_cd(content_tsv, terms.query) AS text_rank " +
+                "FROM accounting.vector_documents, terms " +
+                "WHERE company_id = :companyId AND deleted_at IS NULL AND content_tsv @@ terms.query " +
+                (predicate != null ? "AND " + predicate + " " : "") +
+                "ORDER BY text_rank DESC, id LIMIT :limit) " +
+                RANKED_COLUMNS_SQL +
+                "ORDER BY r.text_rank DESC, r.id";
+    }
+
+    /**
+     * Exact lookup by document number; every hit has distance 0.
+     *
+     * @param predicate extra condition on the rows, or null
+     */
+    static String documentNumberSql(boolean withDocumentType, String predicate) {
+        return "WITH ranked AS (" +
+                "SELECT id, 0.0::float8 AS distance FROM accounting.vector_documents " +
+                "WHERE company_id = :companyId AND deleted_at IS NULL " +
+                "AND upper(metadata->>'document_number') = ANY(:documentNumbers) " +
+                (withDocumentType ? "AND metadata->>'document_type' = :documentType " : "") +
+                (predicate != null ? "AND " + predicate + " " : "") +
+                "ORDER BY id LIMIT :limit) " +
+                RANKED_COLUMNS_SQL +
+                "ORDER BY d.id";
+    }
+
+    /**
+     * Partial index from a {@code pg_indexes.indexdef}, if its predicate is
+     * {@code deleted_at IS NULL} plus one flat JSONB containment.
+     *
+     * @return the index, or null for any other predicate
+     */
+    static VectorFilterPlan.PartialIndex partialIndex(String name, String definition) {
+        Matcher matcher = PARTIAL_PREDICATE.matcher(definition);
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            JsonNode json = MAPPER.readTree(matcher.group(2).replace("''", "'"));
+            Map<String, String> containment = new LinkedHashMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = json.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                if (!field.getValue().isValueNode()) {
+                    return null;
+                }
+                containment.put(field.getKey(), field.getValue().asText());
+            }
+            return new VectorFilterPlan.PartialIndex(name, containment, matcher.group(1));
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private <T> T withEfSearch(int candidates, Function<NamedParameterJdbcTemplate, T> action) {
+        return withSearchSettings(candidates, null, action);
+    }
+
+    /**
+     * Run a query with {@code hnsw.ef_search} raised to {@code candidates} and, if given,
+     * {@code hnsw.iterative_scan} set, on one connection; both are reset afterwards.
+     */
+    private <T> T withSearchSettings(int candidates, String iterativeScan,
+            Function<NamedParameterJdbcTemplate, T> action) {
+        if (candidates <= DEFAULT_EF_SEARCH && iterativeScan == null) {
+            return action.apply(jdbcTemplate);
+        }
+        return jdbcTemplate.getJdbcOperations().execute((ConnectionCallback<T>) connection -> {
+            if (candidates > DEFAULT_EF_SEARCH) {
+                try (PreparedStatement statement = connection.prepareStatement(EF_SEARCH_SQL)) {
+                    statement.setInt(1, candidates);
+                    statement.execute();
+                }
+            }
+            if (iterativeScan != null) {
+                try (PreparedStatement statement = connection.prepareStatement(ITERATIVE_SCAN_SQL)) {
+                    statement.setString(1, iterativeScan);
+                    statement.execute();
+                }
+            }
+            try {
+                return action.apply(new NamedParameterJdbcTemplate(new SingleConnectionDataSource(connection, true)));
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("RESET hnsw.ef_search");
+                    if (iterativeScan != null) {
+                        statement.execute(RESET_ITERATIVE_SCAN_SQL);
+                    }
+                } catch (SQLException e) {
+                    // Aborted transaction: its rollback discards the settings anyway
+                }
+            }
+        });
+    }
+
+    private static MapSqlParameterSource params(Long companyId, PgVector queryEmbedding, int limit) {
+        return new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("queryEmbedding", queryEmbedding.toArray())
+                .addValue("limit", limit);
+    }
+
+    /**
+     * A row changed after a given position.
+     *
+     * @param document  id, type, module and text (distance 0)
+     * @param embedding stored embedding
+     * @param updatedAt last modification
+     * @param deleted   whether the row is soft-deleted
+     */
+    public record ChangedVector(VectorSearchResult document, float[] embedding, OffsetDateTime updatedAt,
+            boolean deleted) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.erp.rag.supabase.vector;
+
+/**
+ * One hit of a cosine similarity search on {@code accounting.vector_documents}.
+ * <p>
+ * Story 1.3 – AC3: Carries only what retrieval needs. The embedding, {@code content_tsv} and
+ * the full JSONB metadata never leave the database; {@code documentType} and {@code module}
+ * are extracted server-side with {@code metadata->>}.
+ * </p>
+ *
+ * @param id           vector document id
+ * @param documentType {@code metadata.document_type}, falling back to {@code content_type}
+ * @param module       {@code metadata.module}, may be {@code null}
+ * @param contentText  rendered document text
+ * @param distance     cosine distance to the query embedding, in [0, 2]
+ *
+ * @author dev-agent
+ * @since 1.0.0
+ */
+public record VectorSearchResult(Long id, String documentType, String module, String contentText,
+        double distance) {
+
+    /**
+     * @return cosine similarity {@code 1 - distance}, clamped to [0, 1]
+     */
+    public double similarity() {
+        if (Double.isNaN(distance)) {
+            return 0.0;
+        }
+        return Math.max(0.0, Math.min(1.0, 1.0 - distance));
+    }
+}
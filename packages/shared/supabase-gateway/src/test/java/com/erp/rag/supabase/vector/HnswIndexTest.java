@@ -0,0 +1,110 @@
+package com.erp.rag.supabase.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for HnswIndex
+ *
+ * Tests Story 1.5 AC3: in-process nearest neighbour search of a tenant's embeddings.
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @Test
+    void search_MatchesBruteForceNeighbours() {
+        Random random = new Random(7);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100);
+        // More rows than one off-heap chunk
+        float[][] vectors = new float[HnswIndex.CHUNK_ROWS + 500][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random);
+            index.add(i, vectors[i]);
+        }
+
+        int found = 0;
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random);
+            List<Long> exact = IntStream.range(0, vectors.length).boxed()
+                    .sorted(Comparator.comparingDouble(i -> cosineDistance(query, vectors[i])))
+                    .limit(10)
+                    .map(Integer::longValue)
+                    .toList();
+            List<HnswIndex.Neighbour> hits = index.search(query, 10, 100);
+
+            assertThat(hits).hasSize(10);
+            assertThat(hits).isSortedAccordingTo(Comparator.comparingDouble(HnswIndex.Neighbour::distance));
+            assertThat(hits.get(0).distance())
+                    .isCloseTo(cosineDistance(query, vectors[(int) hits.get(0).key()]), within(1e-5));
+            found += (int) hits.stream().filter(hit -> exact.contains(hit.key())).count();
+        }
+        assertThat(found / 200.0).isGreaterThanOrEqualTo(0.9);
+        assertThat(index.size()).isEqualTo(vectors.length);
+        assertThat(index.offHeapBytes()).isEqualTo(2L * HnswIndex.CHUNK_ROWS * DIMENSIONS * Float.BYTES);
+    }
+
+    @Test
+    void removeAndReplace_NeverReturnStaleVectors() {
+        Random random = new Random(11);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 40);
+        for (int i = 0; i < 200; i++) {
+            index.add(i, randomVector(random));
+        }
+        float[] query = randomVector(random);
+        long nearest = index.search(query, 1, 40).get(0).key();
+
+        assertThat(index.remove(nearest)).isTrue();
+        assertThat(index.remove(nearest)).isFalse();
+        assertThat(index.contains(nearest)).isFalse();
+        assertThat(index.search(query, 200, 40)).hasSize(199)
+                .extracting(HnswIndex.Neighbour::key).doesNotContain(nearest);
+
+        long replaced = (nearest + 1) % 200;
+        index.add(replaced, query);
+        assertThat(index.search(query, 1, 40).get(0).key()).isEqualTo(replaced);
+        assertThat(index.search(query, 1, 40).get(0).distance()).isCloseTo(0.0, within(1e-5));
+        assertThat(index.size()).isEqualTo(199);
+        assertThat(index.deletedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void add_RejectsWrongDimensionsAndZeroVectors() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 40);
+
+        assertThatThrownBy(() -> index.add(1, new float[DIMENSIONS + 1]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.add(1, new float[DIMENSIONS]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.search(new float[DIMENSIONS], 5, 40))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(index.search(randomVector(new Random(3)), 5, 40)).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static double cosineDistance(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return 1 - dot / Math.sqrt(normA * normB);
+    }
+}
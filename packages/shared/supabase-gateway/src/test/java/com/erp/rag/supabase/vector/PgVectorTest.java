@@ -0,0 +1,71 @@
+package com.erp.rag.supabase.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for PgVector
+ *
+ * Tests Story 1.3 AC2: pgvector binary send/recv layout and text form of embeddings.
+ */
+class PgVectorTest {
+
+    @Test
+    void toBinary_UsesPgvectorLayout() {
+        PgVector vector = new PgVector(new float[] {1.5f, -2f});
+
+        ByteBuffer buf = ByteBuffer.wrap(vector.toBinary());
+
+        assertThat(buf.getShort()).isEqualTo((short) 2);
+        assertThat(buf.getShort()).isZero();
+        assertThat(buf.getFloat()).isEqualTo(1.5f);
+        assertThat(buf.getFloat()).isEqualTo(-2f);
+        assertThat(buf.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void binary_RoundTripsFullSizeEmbedding() {
+        float[] values = new float[1536];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) Math.sin(i);
+        }
+        PgVector vector = new PgVector(values);
+
+        PgVector decoded = PgVector.fromBinary(vector.toBinary());
+
+        assertThat(decoded).isEqualTo(vector);
+        assertThat(decoded.dimension()).isEqualTo(1536);
+    }
+
+    @Test
+    void fromBinary_RejectsTruncatedInput() {
+        byte[] truncated = new byte[] {0, 3, 0, 0, 0, 0, 0, 0};
+
+        assertThatThrownBy(() -> PgVector.fromBinary(truncated))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void parse_ReadsTextRepresentation() {
+        PgVector vector = PgVector.parse("[0.1, -0.2,3]");
+
+        assertThat(vector.toArray()).containsExactly(0.1f, -0.2f, 3f);
+    }
+
+    @Test
+    void toString_MatchesPgvectorTextFormat() {
+        PgVector vector = new PgVector(new float[] {0.1f, 0.2f, 0.3f});
+
+        assertThat(vector.toString()).isEqualTo("[0.1,0.2,0.3]");
+        assertThat(PgVector.parse(vector.toString())).isEqualTo(vector);
+    }
+
+    @Test
+    void parse_RejectsMalformedText() {
+        assertThatThrownBy(() -> PgVector.parse("0.1,0.2"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,42 @@
+package com.erp.rag.supabase.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for ReciprocalRankFusion
+ *
+ * Tests Story 1.5 AC3: vector and full-text rankings merged by rank position only.
+ */
+class ReciprocalRankFusionTest {
+
+    @Test
+    void fuse_DocumentsInBothRankingsComeFirst() {
+        List<VectorSearchResult> vector = List.of(hit(1, 0.10), hit(2, 0.12), hit(3, 0.20));
+        List<VectorSearchResult> lexical = List.of(hit(4, 0.45), hit(3, 0.20));
+
+        List<VectorSearchResult> fused = ReciprocalRankFusion.fuse(List.of(vector, lexical), 60, 10);
+
+        // 3: 1/63 + 1/62; 1 and 4: 1/61 (vector seen first); 2: 1/62
+        assertThat(fused).extracting(VectorSearchResult::id).containsExactly(3L, 1L, 4L, 2L);
+        assertThat(fused.get(0).distance()).isEqualTo(0.20);
+    }
+
+    @Test
+    void fuse_LimitsResultsAndAcceptsEmptyRankings() {
+        List<VectorSearchResult> vector = List.of(hit(1, 0.1), hit(2, 0.2), hit(3, 0.3));
+
+        assertThat(ReciprocalRankFusion.fuse(List.of(vector, List.of()), 60, 2))
+                .extracting(VectorSearchResult::id).containsExactly(1L, 2L);
+        assertThat(ReciprocalRankFusion.fuse(List.of(List.of(), List.of()), 60, 10)).isEmpty();
+        assertThatThrownBy(() -> ReciprocalRankFusion.fuse(List.of(vector), 0, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static VectorSearchResult hit(long id, double distance) {
+        return new VectorSearchResult(id, "invoice", "ar", "text " + id, distance);
+    }
+}
@@ -0,0 +1,174 @@
+package com.erp.rag.supabase.vector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for VectorDocumentBulkWriter
+ *
+ * Tests Story 1.4 AC6: COPY binary encoding of vector documents, including the pgvector
+ * binary layout.
+ */
+class VectorDocumentBulkWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void encode_WritesHeaderTuplesAndTrailer() {
+        ObjectNode metadata = objectMapper.createObjectNode().put("module", "ar");
+        VectorDocumentBulkWriter.Row row = new VectorDocumentBulkWriter.Row(
+                7L, "invoices", 42L, "invoice", "Hóa đơn", new PgVector(new float[] {0.5f, -1.25f, 2f}), metadata);
+
+        ByteBuffer buf = ByteBuffer.wrap(VectorDocumentBulkWriter.encode(List.of(row)));
+
+        // Header: signature, flags, extension length
+        byte[] signature = new byte[11];
+        buf.get(signature);
+        assertThat(new String(signature, 0, 5, StandardCharsets.US_ASCII)).isEqualTo("PGCOP");
+        assertThat(buf.getInt()).isZero();
+        assertThat(buf.getInt()).isZero();
+
+        // Tuple
+        assertThat(buf.getShort()).isEqualTo((short) 7);
+        assertThat(buf.getInt()).isEqualTo(8);
+        assertThat(buf.getLong()).isEqualTo(7L);
+        assertThat(readText(buf)).isEqualTo("invoices");
+        assertThat(buf.getInt()).isEqualTo(8);
+        assertThat(buf.getLong()).isEqualTo(42L);
+        assertThat(readText(buf)).isEqualTo("invoice");
+        assertThat(readText(buf)).isEqualTo("Hóa đơn");
+
+        // pgvector: int16 dim, int16 unused, float4 values
+        assertThat(buf.getInt()).isEqualTo(4 + 3 * 4);
+        assertThat(buf.getShort()).isEqualTo((short) 3);
+        assertThat(buf.getShort()).isZero();
+        assertThat(buf.getFloat()).isEqualTo(0.5f);
+        assertThat(buf.getFloat()).isEqualTo(-1.25f);
+        assertThat(buf.getFloat()).isEqualTo(2f);
+
+        // jsonb: version byte followed by JSON text
+        int jsonLength = buf.getInt();
+        assertThat(buf.get()).isEqualTo((byte) 1);
+        byte[] json = new byte[jsonLength - 1];
+        buf.get(json);
+        assertThat(new String(json, StandardCharsets.UTF_8)).isEqualTo("{\"module\":\"ar\"}");
+
+        // Trailer
+        assertThat(buf.getShort()).isEqualTo((short) -1);
+        assertThat(buf.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void encode_NullMetadataIsSqlNull() {
+        VectorDocumentBulkWriter.Row row = new VectorDocumentBulkWriter.Row(
+                1L, "bills", 2L, "bill", "text", new PgVector(new float[] {1f}), null);
+
+        byte[] payload = VectorDocumentBulkWriter.encode(List.of(row));
+
+        // Last field length before the 2-byte trailer is -1
+        ByteBuffer buf = ByteBuffer.wrap(payload, payload.length - 6, 6);
+        assertThat(buf.getInt()).isEqualTo(-1);
+        assertThat(buf.getShort()).isEqualTo((short) -1);
+    }
+
+    @Test
+    void encode_ShadowEmbeddingIsEighthField() {
+        VectorDocumentBulkWriter.Row row = new VectorDocumentBulkWriter.Row(
+                1L, "bills", 2L, "bill", "text", new PgVector(new float[] {1f}), null,
+                new PgVector(new float[] {0.25f, 0.75f}));
+
+        byte[] payload = VectorDocumentBulkWriter.encode(List.of(row));
+
+        // Field count after the 19-byte header; shadow vector right before the trailer
+        assertThat(ByteBuffer.wrap(payload, 19, 2).getShort()).isEqualTo((short) 8);
+        ByteBuffer buf = ByteBuffer.wrap(payload, payload.length - 18, 18);
+        assertThat(buf.getInt()).isEqualTo(4 + 2 * 4);
+        assertThat(buf.getShort()).isEqualTo((short) 2);
+        assertThat(buf.getShort()).isZero();
+        assertThat(buf.getFloat()).isEqualTo(0.25f);
+        assertThat(buf.getFloat()).isEqualTo(0.75f);
+        assertThat(buf.getShort()).isEqualTo((short) -1);
+        assertThat(VectorDocumentBulkWriter.COPY_WITH_SHADOW_SQL).contains("metadata, embedding_next)");
+    }
+
+    @Test
+    void encode_RejectsMixedShadowRows() {
+        VectorDocumentBulkWriter.Row plain = new VectorDocumentBulkWriter.Row(
+                1L, "bills", 2L, "bill", "text", new PgVector(new float[] {1f}), null);
+        VectorDocumentBulkWriter.Row shadow = new VectorDocumentBulkWriter.Row(
+                1L, "bills", 3L, "bill", "text", new PgVector(new float[] {1f}), null, new PgVector(new float[] {1f}));
+
+        assertThatThrownBy(() -> VectorDocumentBulkWriter.encode(List.of(shadow, plain)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void write_EmptyListSkipsDatabase() {
+        VectorDocumentBulkWriter writer = new VectorDocumentBulkWriter(null);
+
+        assertThat(writer.write(List.of()).written()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void write_FailedCopyRetriesRowByRowUnderSavepoints() throws Exception {
+        CopyManager copyApi = mock(CopyManager.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        Connection connection = mock(Connection.class);
+        Savepoint savepoint = mock(Savepoint.class);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(pgConnection.getCopyAPI()).thenReturn(copyApi);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(connection.getAutoCommit()).thenReturn(false);
+        when(connection.setSavepoint()).thenReturn(savepoint);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(inv -> ((ConnectionCallback<?>) inv.getArgument(0)).doInConnection(connection));
+        // Whole slice, then row 1 and row 2
+        when(copyApi.copyIn(anyString(), any(InputStream.class)))
+                .thenThrow(new SQLException("expected 1536 dimensions, not 3"))
+                .thenReturn(1L)
+                .thenThrow(new SQLException("expected 1536 dimensions, not 3"));
+        VectorDocumentBulkWriter.Row good = new VectorDocumentBulkWriter.Row(
+                1L, "bills", 2L, "bill", "text", new PgVector(new float[] {1f}), null);
+        VectorDocumentBulkWriter.Row bad = new VectorDocumentBulkWriter.Row(
+                1L, "bills", 3L, "bill", "text", new PgVector(new float[] {1f, 2f, 3f}), null);
+
+        VectorDocumentBulkWriter.WriteResult result = new VectorDocumentBulkWriter(jdbcTemplate)
+                .write(List.of(good, bad));
+
+        assertThat(result.written()).isEqualTo(1);
+        assertThat(result.failed()).containsExactly(bad);
+        verify(connection, times(2)).rollback(savepoint);
+        verify(connection).releaseSavepoint(savepoint);
+    }
+
+    @Test
+    void row_RequiresEmbedding() {
+        assertThatThrownBy(() -> new VectorDocumentBulkWriter.Row(1L, "bills", 2L, "bill", "text", null, null))
+                .isInstanceOf(NullPointerException.class)
+                .hasMessageContaining("embedding");
+    }
+
+    private static String readText(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
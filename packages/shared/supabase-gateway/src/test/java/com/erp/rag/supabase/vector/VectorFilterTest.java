@@ -0,0 +1,77 @@
+package com.erp.rag.supabase.vector;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for VectorFilter
+ *
+ * Tests Story 1.5 AC6: request filters become typed, bound metadata predicates.
+ */
+class VectorFilterTest {
+
+    @Test
+    void of_ParsesEqualityListAndRangePredicates() {
+        Map<String, Object> filters = new LinkedHashMap<>();
+        filters.put("module", "ap");
+        filters.put("documentType", List.of("invoice", "bill"));
+        filters.put("fiscal_period", Map.of("from", "2024-01", "to", "2024-03"));
+
+        VectorFilter filter = VectorFilter.of(filters);
+
+        assertThat(filter.predicates()).containsExactly(
+                new VectorFilter.AnyOf(VectorFilter.Field.MODULE, List.of("ap")),
+                new VectorFilter.AnyOf(VectorFilter.Field.DOCUMENT_TYPE, List.of("invoice", "bill")),
+                new VectorFilter.Range(VectorFilter.Field.FISCAL_PERIOD, "2024-01", "2024-03"));
+        assertThat(filter.equalities()).containsExactly(entry("module", "ap"));
+        assertThat(filter.minSimilarity()).isNull();
+    }
+
+    @Test
+    void sql_BindsContainmentValuesInsteadOfInliningThem() {
+        Map<String, Object> filters = new LinkedHashMap<>();
+        filters.put("module", "ap' OR '1'='1");
+        filters.put("documentType", List.of("invoice", "bill"));
+        filters.put("fiscalPeriod", Map.of("from", "2024-01"));
+        VectorFilter filter = VectorFilter.of(filters);
+
+        MapSqlParameterSource params = filter.bind(new MapSqlParameterSource());
+
+        assertThat(filter.sql()).isEqualTo("metadata @> CAST(:filter0_0 AS jsonb) AND "
+                + "(metadata @> CAST(:filter1_0 AS jsonb) OR metadata @> CAST(:filter1_1 AS jsonb)) AND "
+                + "metadata->>'fiscal_period' >= :filter2_from");
+        assertThat(params.getValue("filter0_0")).isEqualTo("{\"module\":\"ap' OR '1'='1\"}");
+        assertThat(params.getValue("filter1_1")).isEqualTo("{\"document_type\":\"bill\"}");
+        assertThat(params.getValue("filter2_from")).isEqualTo("2024-01");
+        assertThat(params.hasValue("filter2_to")).isFalse();
+    }
+
+    @Test
+    void of_MinConfidenceIsNotAMetadataPredicate() {
+        VectorFilter filter = VectorFilter.of(Map.of("minConfidence", "0.7"));
+
+        assertThat(filter.isEmpty()).isTrue();
+        assertThat(filter.minSimilarity()).isEqualTo(0.7);
+        assertThat(VectorFilter.of(null)).isSameAs(VectorFilter.NONE);
+        assertThat(VectorFilter.NONE.sql()).isNull();
+    }
+
+    @Test
+    void of_RejectsUnknownKeysAndMalformedValues() {
+        assertThatThrownBy(() -> VectorFilter.of(Map.of("customer", "c-1")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("customer");
+        assertThatThrownBy(() -> VectorFilter.of(Map.of("module", List.of())))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VectorFilter.of(Map.of("status", Map.of("after", "x"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VectorFilter.of(Map.of("minConfidence", "high")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,94 @@
+package com.erp.rag.supabase.vector;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for VectorPartitionDao
+ *
+ * Tests Story 1.3 AC2: per-partition indexes on the tenant-partitioned vector_documents.
+ */
+class VectorPartitionDaoTest {
+
+    private static final String TAIL = "USING hnsw (embedding vector_cosine_ops) WHERE (deleted_at IS NULL)";
+
+    @Test
+    void indexTail_StripsNameAndTable() {
+        assertThat(VectorPartitionDao.indexTail(
+                "CREATE INDEX idx_vector_documents_embedding_hnsw ON accounting.vector_documents " + TAIL))
+                .isEqualTo(TAIL);
+        assertThat(VectorPartitionDao.indexTail(
+                "CREATE INDEX idx_vector_documents_embedding_hnsw ON ONLY accounting.vector_documents " + TAIL))
+                .isEqualTo(TAIL);
+        assertThatThrownBy(() -> VectorPartitionDao.indexTail("CREATE INDEX idx ON accounting.customers (code)"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void partitionIndexName_FollowsParentName() {
+        assertThat(VectorPartitionDao.partitionIndexName("idx_vector_documents_embedding_hnsw", "vector_documents_h03"))
+                .isEqualTo("idx_vector_documents_h03_embedding_hnsw");
+        assertThat(VectorPartitionDao.partitionIndexName("vector_documents_pkey", "vector_documents_c42"))
+                .isEqualTo("vector_documents_c42_pkey");
+        assertThat(VectorPartitionDao.partitionIndexName(
+                "idx_vector_documents_embedding_halfvec_d512_hnsw_next", "vector_documents_c1234567890"))
+                .hasSize(63);
+        assertThat(VectorPartitionDao.tenantPartitionName(42L)).isEqualTo("vector_documents_c42");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createIndex_BuildsLeafIndexesConcurrentlyAndAttachesThem() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+        when(jdbcTemplate.getJdbcOperations()).thenReturn(jdbcOperations);
+        when(jdbcTemplate.queryForObject(eq(VectorPartitionDao.IS_PARTITIONED_SQL), anyMap(), eq(Integer.class)))
+                .thenReturn(1);
+        when(jdbcTemplate.queryForObject(eq(VectorPartitionDao.ATTACHED_INDEX_SQL), anyMap(), eq(Integer.class)))
+                .thenReturn(0);
+        when(jdbcTemplate.query(eq(VectorPartitionDao.INDEX_STATE_SQL), anyMap(), any(RowMapper.class)))
+                .thenReturn(List.of());
+        when(jdbcTemplate.query(eq(VectorPartitionDao.PARTITIONS_SQL),
+                eq(Map.of("table", "accounting.vector_documents")), any(RowMapper.class)))
+                .thenReturn(List.of(
+                        new VectorPartitionDao.Partition("vector_documents_c42", "FOR VALUES IN ('42')", false, 0),
+                        new VectorPartitionDao.Partition("vector_documents_default", "DEFAULT", true, 0)));
+        when(jdbcTemplate.query(eq(VectorPartitionDao.PARTITIONS_SQL),
+                eq(Map.of("table", "accounting.vector_documents_default")), any(RowMapper.class)))
+                .thenReturn(List.of(new VectorPartitionDao.Partition("vector_documents_h00",
+                        "FOR VALUES WITH (modulus 1, remainder 0)", false, 0)));
+
+        new VectorPartitionDao(jdbcTemplate, mock(PlatformTransactionManager.class))
+                .createIndex("idx_vector_documents_embedding_hnsw", TAIL);
+
+        InOrder order = inOrder(jdbcOperations);
+        order.verify(jdbcOperations).execute("CREATE INDEX IF NOT EXISTS idx_vector_documents_embedding_hnsw "
+                + "ON ONLY accounting.vector_documents " + TAIL);
+        order.verify(jdbcOperations).execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS "
+                + "idx_vector_documents_c42_embedding_hnsw ON accounting.vector_documents_c42 " + TAIL);
+        order.verify(jdbcOperations).execute("ALTER INDEX accounting.idx_vector_documents_embedding_hnsw "
+                + "ATTACH PARTITION accounting.idx_vector_documents_c42_embedding_hnsw");
+        order.verify(jdbcOperations).execute("CREATE INDEX IF NOT EXISTS idx_vector_documents_default_embedding_hnsw "
+                + "ON ONLY accounting.vector_documents_default " + TAIL);
+        order.verify(jdbcOperations).execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS "
+                + "idx_vector_documents_h00_embedding_hnsw ON accounting.vector_documents_h00 " + TAIL);
+        order.verify(jdbcOperations).execute("ALTER INDEX accounting.idx_vector_documents_default_embedding_hnsw "
+                + "ATTACH PARTITION accounting.idx_vector_documents_h00_embedding_hnsw");
+        order.verify(jdbcOperations).execute("ALTER INDEX accounting.idx_vector_documents_embedding_hnsw "
+                + "ATTACH PARTITION accounting.idx_vector_documents_default_embedding_hnsw");
+        verifyNoMoreInteractions(jdbcOperations);
+    }
+}
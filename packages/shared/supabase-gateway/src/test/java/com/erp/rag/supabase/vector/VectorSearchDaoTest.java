@@ -0,0 +1,299 @@
+package com.erp.rag.supabase.vector;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for VectorSearchDao
+ *
+ * Tests Story 1.3 AC3: cosine top-k queries that stay on the HNSW index and never select the
+ * embedding column.
+ */
+class VectorSearchDaoTest {
+
+    @Test
+    void queries_OrderByCosineOperatorAndSkipHeavyColumns() {
+        for (String sql : List.of(VectorSearchDao.SIMILAR_SQL, VectorSearchDao.SIMILAR_WITH_METADATA_SQL)) {
+            String selectList = sql.substring(0, sql.indexOf("FROM"));
+
+            assertThat(sql).contains("ORDER BY embedding <=> CAST(:queryEmbedding AS vector)");
+            assertThat(sql).doesNotContain("<->").doesNotContain("SELECT *");
+            assertThat(selectList).doesNotContain("content_tsv").doesNotContain("metadata,");
+            assertThat(selectList.replace("embedding <=>", "")).doesNotContain("embedding");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findSimilar_BindsEmbeddingAsFloatArray() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        when(jdbcTemplate.query(eq(VectorSearchDao.SIMILAR_SQL), any(MapSqlParameterSource.class),
+                any(RowMapper.class))).thenReturn(List.of());
+        float[] embedding = {0.1f, 0.2f};
+
+        new VectorSearchDao(jdbcTemplate).findSimilar(7L, new PgVector(embedding), 10);
+
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(eq(VectorSearchDao.SIMILAR_SQL), params.capture(), any(RowMapper.class));
+        assertThat(params.getValue().getValue("queryEmbedding")).isSameAs(embedding);
+        assertThat(params.getValue().getValue("companyId")).isEqualTo(7L);
+        assertThat(params.getValue().getValue("limit")).isEqualTo(10);
+    }
+
+    @Test
+    void rerankSql_OrdersCandidatesByIndexExpressionThenExactDistance() {
+        for (VectorQuantization quantization : List.of(VectorQuantization.HALFVEC, VectorQuantization.BINARY)) {
+            String sql = VectorSearchDao.rerankSql(quantization, true);
+            String candidates = sql.substring(0, sql.indexOf("ranked AS"));
+
+            assertThat(candidates).contains("ORDER BY " + quantization.candidateOrder() + " LIMIT :candidates")
+                    .contains("deleted_at IS NULL").contains(":metadataFilter");
+            assertThat(sql).contains("embedding <=> CAST(:queryEmbedding AS vector) AS distance FROM candidates")
+                    .contains("LIMIT :limit").endsWith("ORDER BY r.distance");
+        }
+        assertThat(VectorQuantization.BINARY.candidateOrder()).contains("<~>");
+        assertThat(VectorSearchDao.rerankSql(VectorQuantization.HALFVEC, false)).doesNotContain(":metadataFilter");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findSimilar_QuantizedBindsCandidateLimit() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        String sql = VectorSearchDao.rerankSql(VectorQuantization.HALFVEC, false);
+        when(jdbcTemplate.query(eq(sql), any(MapSqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(List.of());
+
+        // Act: 30 candidates fit the default ef_search, so no session setting is needed
+        new VectorSearchDao(jdbcTemplate).findSimilar(7L, new PgVector(new float[] {0.1f}), 10,
+                VectorQuantization.HALFVEC, 30);
+
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(eq(sql), params.capture(), any(RowMapper.class));
+        assertThat(params.getValue().getValue("candidates")).isEqualTo(30);
+        assertThat(params.getValue().getValue("limit")).isEqualTo(10);
+        verify(jdbcTemplate, never()).getJdbcOperations();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findSimilar_NoQuantizationUsesFullPrecisionQuery() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+
+        new VectorSearchDao(jdbcTemplate).findSimilar(7L, new PgVector(new float[] {0.1f}), 10,
+                VectorQuantization.NONE, 100);
+
+        verify(jdbcTemplate).query(eq(VectorSearchDao.SIMILAR_SQL), any(MapSqlParameterSource.class),
+                any(RowMapper.class));
+    }
+
+    @Test
+    void rerankSql_TruncatedCandidatesComparePrefixOfBothVectors() {
+        String sql = VectorSearchDao.rerankSql(VectorQuantization.NONE, 512, false);
+
+        assertThat(sql).contains("ORDER BY subvector(embedding, 1, 512)::vector(512) <=> " +
+                "subvector(CAST(:queryEmbedding AS vector), 1, 512) LIMIT :candidates");
+        assertThat(VectorQuantization.BINARY.candidateOrder(768))
+                .startsWith("binary_quantize(subvector(embedding, 1, 768))::bit(768) <~>");
+        assertThat(VectorQuantization.HALFVEC.indexName(512))
+                .isEqualTo("idx_vector_documents_embedding_halfvec_d512_hnsw");
+        assertThat(VectorQuantization.NONE.indexName(512)).isEqualTo("idx_vector_documents_embedding_d512_hnsw");
+        assertThat(VectorQuantization.NONE.candidateOrder()).isNull();
+        assertThatThrownBy(() -> VectorQuantization.NONE.candidateOrder(2048))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findSimilar_TruncatedSearchWithoutQuantizationUsesPrefixIndex() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        String sql = VectorSearchDao.rerankSql(VectorQuantization.NONE, 512, false);
+        when(jdbcTemplate.query(eq(sql), any(MapSqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(List.of());
+
+        new VectorSearchDao(jdbcTemplate).findSimilar(7L, new PgVector(new float[] {0.1f}), 10,
+                VectorQuantization.NONE, 512, 30);
+
+        verify(jdbcTemplate).query(eq(sql), any(MapSqlParameterSource.class), any(RowMapper.class));
+        verify(jdbcTemplate, never()).query(eq(VectorSearchDao.SIMILAR_SQL), any(MapSqlParameterSource.class),
+                any(RowMapper.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findSimilar_ExactPlanRanksEveryMatchingRowWithoutHnsw() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        VectorFilter filter = VectorFilter.of(Map.of("module", "ap"));
+
+        new VectorSearchDao(jdbcTemplate).findSimilar(7L, new PgVector(new float[] {0.1f}), 10, filter,
+                VectorFilterPlan.exact(), VectorQuantization.HALFVEC, 1536);
+
+        String sql = VectorSearchDao.exactSql(filter.sql());
+        assertThat(sql).contains("(embedding <=> CAST(:queryEmbedding AS vector)) + 0 AS distance")
+                .contains("AND metadata @> CAST(:filter0_0 AS jsonb)").doesNotContain(":candidates");
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(eq(sql), params.capture(), any(RowMapper.class));
+        assertThat(params.getValue().getValue("filter0_0")).isEqualTo("{\"module\":\"ap\"}");
+        verify(jdbcTemplate, never()).getJdbcOperations();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findSimilar_IterativePlanSetsScanModeOnOneConnection() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        JdbcOperations operations = mock(JdbcOperations.class);
+        when(jdbcTemplate.getJdbcOperations()).thenReturn(operations);
+        VectorFilter filter = VectorFilter.of(Map.of("status", "posted"));
+        VectorFilterPlan plan = new VectorFilterPlan(VectorFilterPlan.Strategy.ITERATIVE, null, 200,
+                "relaxed_order");
+
+        new VectorSearchDao(jdbcTemplate).findSimilar(7L, new PgVector(new float[] {0.1f}), 10, filter, plan,
+                VectorQuantization.HALFVEC, 1536);
+
+        verify(operations).execute(any(ConnectionCallback.class));
+        verify(jdbcTemplate, never()).query(any(String.class), any(MapSqlParameterSource.class),
+                any(RowMapper.class));
+        assertThat(VectorSearchDao.rerankSql(VectorQuantization.HALFVEC, 1536, filter.sql()))
+                .contains("AND metadata @> CAST(:filter0_0 AS jsonb) ORDER BY "
+                        + VectorQuantization.HALFVEC.candidateOrder());
+    }
+
+    @Test
+    void partialIndex_ParsesSingleContainmentPredicate() {
+        VectorFilterPlan.PartialIndex index = VectorSearchDao.partialIndex("idx_vector_documents_ap_hnsw",
+                "CREATE INDEX idx_vector_documents_ap_hnsw ON accounting.vector_documents USING hnsw "
+                        + "(embedding vector_cosine_ops) WHERE ((deleted_at IS NULL) AND "
+                        + "(metadata @> '{\"module\": \"ap\"}'::jsonb))");
+
+        assertThat(index.containment()).containsExactly(entry("module", "ap"));
+        assertThat(index.predicateSql()).isEqualTo("metadata @> '{\"module\": \"ap\"}'::jsonb");
+        assertThat(index.covers(VectorFilter.of(Map.of("module", "ap", "status", "posted")))).isTrue();
+        assertThat(index.covers(VectorFilter.of(Map.of("module", List.of("ap", "ar"))))).isFalse();
+        assertThat(index.covers(VectorFilter.of(Map.of("status", "posted")))).isFalse();
+        assertThat(VectorSearchDao.partialIndex("idx_other", "CREATE INDEX idx_other ON "
+                + "accounting.vector_documents USING hnsw (embedding vector_cosine_ops) "
+                + "WHERE (company_id = 7)")).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findLexical_OrsNormalisedQueryTermsAndRanksByTextRank() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        VectorFilter filter = VectorFilter.of(Map.of("module", "ap"));
+
+        new VectorSearchDao(jdbcTemplate).findLexical(7L, "Hóa đơn INV-2024-001", new PgVector(new float[] {0.1f}),
+                40, filter);
+
+        String sql = VectorSearchDao.lexicalSql(filter.sql());
+        assertThat(sql).contains("to_tsvector('accounting.vietnamese_unaccent', :queryText)")
+                .contains("string_agg(quote_literal(lexeme), ' | ')")
+                .contains("content_tsv @@ terms.query AND metadata @> CAST(:filter0_0 AS jsonb)")
+                .contains("embedding <=> CAST(:queryEmbedding AS vector) AS distance")
+                .endsWith("ORDER BY r.text_rank DESC, r.id");
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(eq(sql), params.capture(), any(RowMapper.class));
+        assertThat(params.getValue().getValue("queryText")).isEqualTo("Hóa đơn INV-2024-001");
+        assertThat(params.getValue().getValue("limit")).isEqualTo(40);
+        assertThat(VectorSearchDao.lexicalSql(null)).doesNotContain(":filter");
+    }
+
+    @Test
+    void findSimilar_LimitAboveDefaultEfSearchRaisesIt() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        JdbcOperations operations = mock(JdbcOperations.class);
+        when(jdbcTemplate.getJdbcOperations()).thenReturn(operations);
+
+        new VectorSearchDao(jdbcTemplate).findSimilar(7L, new PgVector(new float[] {0.1f}), 60);
+
+        verify(operations).execute(any(ConnectionCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findByDocumentNumbers_LooksUpUpperCasedNumbersWithZeroDistance() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        VectorSearchDao dao = new VectorSearchDao(jdbcTemplate);
+
+        dao.findByDocumentNumbers(7L, List.of("inv-2024-0042"), "invoice", VectorFilter.NONE, 10);
+
+        String sql = VectorSearchDao.documentNumberSql(true, null);
+        assertThat(sql).contains("upper(metadata->>'document_number') = ANY(:documentNumbers)")
+                .contains("metadata->>'document_type' = :documentType")
+                .contains("0.0::float8 AS distance")
+                .doesNotContain("<=>");
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(eq(sql), params.capture(), any(RowMapper.class));
+        assertThat((String[]) params.getValue().getValue("documentNumbers")).containsExactly("INV-2024-0042");
+        assertThat(VectorSearchDao.documentNumberSql(false, null)).doesNotContain(":documentType");
+
+        assertThat(dao.findByDocumentNumbers(7L, List.of(), null, VectorFilter.NONE, 10)).isEmpty();
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void quantizationFromConfig_ParsesModes() {
+        assertThat(VectorQuantization.fromConfig(" Halfvec ")).isEqualTo(VectorQuantization.HALFVEC);
+        assertThat(VectorQuantization.fromConfig("")).isEqualTo(VectorQuantization.NONE);
+        assertThatThrownBy(() -> VectorQuantization.fromConfig("int8"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("int8");
+    }
+
+    @Test
+    void findContentText_FetchesAllIdsInOneQuery() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        VectorSearchDao dao = new VectorSearchDao(jdbcTemplate);
+
+        dao.findContentText(7L, List.of(1L, 2L, 3L));
+
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate, times(1)).query(eq(VectorSearchDao.CONTENT_TEXT_SQL), params.capture(),
+                any(RowCallbackHandler.class));
+        assertThat((Long[]) params.getValue().getValue("ids")).containsExactly(1L, 2L, 3L);
+        assertThat(VectorSearchDao.CONTENT_TEXT_SQL).contains("id = ANY(:ids)");
+    }
+
+    @Test
+    void findContentText_EmptyIdsSkipsDatabase() {
+        NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+
+        assertThat(new VectorSearchDao(jdbcTemplate).findContentText(7L, List.of())).isEmpty();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void rowMapper_MapsProjectionColumns() throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(42L);
+        when(rs.getString("document_type")).thenReturn("invoice");
+        when(rs.getString("module")).thenReturn("ar");
+        when(rs.getString("content_text")).thenReturn("Hóa đơn");
+        when(rs.getDouble("distance")).thenReturn(0.25);
+
+        VectorSearchResult result = VectorSearchDao.ROW_MAPPER.mapRow(rs, 0);
+
+        assertThat(result).isEqualTo(new VectorSearchResult(42L, "invoice", "ar", "Hóa đơn", 0.25));
+        assertThat(result.similarity()).isEqualTo(0.75);
+    }
+
+    @Test
+    void similarity_IsClampedToUnitInterval() {
+        assertThat(new VectorSearchResult(1L, null, null, null, 1.6).similarity()).isZero();
+        assertThat(new VectorSearchResult(1L, null, null, null, -0.0001).similarity()).isEqualTo(1.0);
+        assertThat(new VectorSearchResult(1L, null, null, null, Double.NaN).similarity()).isZero();
+    }
+}